@@ -0,0 +1,95 @@
+package ar.edu.itba.cep.api_gateway;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Builds requests that look like the ones the gateway receives from browsers, to be used in benchmarks.
+ */
+public final class BenchmarkRequests {
+
+    /**
+     * The origin from which requests are sent.
+     */
+    public static final String ORIGIN = "https://cep.itba.edu.ar";
+
+    /**
+     * The gateway's base URL (i.e where requests are sent).
+     */
+    public static final String BASE_URL = "https://api.cep.itba.edu.ar";
+
+    /**
+     * The path to which requests are sent.
+     */
+    public static final String PATH = "/exams/1234/exercises";
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private BenchmarkRequests() {
+    }
+
+
+    /**
+     * Creates a {@link ServerWebExchange} for a GET request including the given {@code authorization} header.
+     *
+     * @param authorization The value of the {@link HttpHeaders#AUTHORIZATION} header
+     *                      (or {@code null} if the header must not be included).
+     * @return The {@link ServerWebExchange}.
+     */
+    public static ServerWebExchange get(final String authorization) {
+        final var builder = browserRequest(MockServerHttpRequest.get(BASE_URL + PATH));
+        if (authorization != null) {
+            builder.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return MockServerWebExchange.from(builder);
+    }
+
+    /**
+     * Creates a {@link ServerWebExchange} for a CORS preflight request.
+     *
+     * @return The {@link ServerWebExchange}.
+     */
+    public static ServerWebExchange preflight() {
+        return MockServerWebExchange.from(preflightRequest());
+    }
+
+    /**
+     * Creates a {@link MockServerHttpRequest} for a CORS preflight request, with an absolute URL
+     * (so it can be handled by the whole application).
+     *
+     * @return The {@link MockServerHttpRequest}.
+     */
+    public static MockServerHttpRequest preflightRequest() {
+        return browserRequest(MockServerHttpRequest.options(BASE_URL + PATH))
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, HttpMethod.POST.name())
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_HEADERS, "authorization, content-type")
+                .build();
+    }
+
+
+    /**
+     * Adds the headers a browser sends in a cross origin request to the given {@code builder}.
+     *
+     * @param builder The {@link MockServerHttpRequest.BaseBuilder} to which headers are added.
+     * @return The given {@code builder}.
+     */
+    private static MockServerHttpRequest.BaseBuilder<?> browserRequest(
+            final MockServerHttpRequest.BaseBuilder<?> builder) {
+        return builder
+                .header(HttpHeaders.HOST, BASE_URL.substring("https://".length()))
+                .header(HttpHeaders.ORIGIN, ORIGIN)
+                .header(HttpHeaders.REFERER, ORIGIN + "/")
+                .header(HttpHeaders.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:66.0) Gecko/20100101 Firefox/66.0")
+                .header(HttpHeaders.ACCEPT, "application/json, text/plain, */*")
+                .header(HttpHeaders.ACCEPT_LANGUAGE, "es-AR,es;q=0.8,en-US;q=0.5,en;q=0.3")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br")
+                .header(HttpHeaders.CONNECTION, "keep-alive")
+                .header("DNT", "1")
+                ;
+    }
+}
@@ -0,0 +1,68 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks compressing JSON response bodies (a list of exams, like those of the {@code evaluations-service})
+ * with the {@link GzipCoding}, at different levels and body sizes.
+ * The compressed size of the body is printed when the trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GzipCodingBenchmark {
+
+    /**
+     * The compression level.
+     */
+    @Param({"1", "6", "9"})
+    private int level;
+
+    /**
+     * The amount of exams in the body.
+     */
+    @Param({"10", "1000"})
+    private int exams;
+
+    /**
+     * The {@link GzipCoding} being benchmarked.
+     */
+    private GzipCoding coding;
+    /**
+     * The uncompressed body.
+     */
+    private byte[] body;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.coding = new GzipCoding(level);
+        this.body = IntStream.range(0, exams)
+                .mapToObj(i -> "{\"id\":" + i
+                        + ",\"description\":\"Exam " + i + "\""
+                        + ",\"startingAt\":\"2019-0" + (i % 9 + 1) + "-1" + i % 10 + "T10:00:00\""
+                        + ",\"duration\":\"PT" + (i % 4 + 1) + "H\""
+                        + ",\"state\":\"" + (i % 3 == 0 ? "UPCOMING" : "FINISHED") + "\""
+                        + ",\"owners\":[\"teacher-" + i % 7 + "\"]}")
+                .collect(Collectors.joining(",", "[", "]"))
+                .getBytes(StandardCharsets.UTF_8);
+        final var compressed = coding.encode(body).length;
+        System.out.printf("%nLevel %d: %d bytes compressed into %d bytes (%.1f%%)%n",
+                level, body.length, compressed, 100d * compressed / body.length);
+    }
+
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return coding.encode(body);
+    }
+}
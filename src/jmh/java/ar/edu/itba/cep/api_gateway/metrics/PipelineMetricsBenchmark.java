@@ -0,0 +1,60 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the overhead of the pipeline metrics: recording the {@link StageTimings} of a request
+ * (which must not allocate), and measuring a stage (compared with not measuring it).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineMetricsBenchmark {
+
+    /**
+     * The {@link PipelineMetrics} being benchmarked.
+     */
+    private PipelineMetrics pipelineMetrics;
+    /**
+     * The {@link StageTimings} of a request that went through all the stages.
+     */
+    private StageTimings timings;
+    /**
+     * The {@link Mono} being measured.
+     */
+    private Mono<String> mono;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.pipelineMetrics = new PipelineMetrics(new SimpleMeterRegistry());
+        this.timings = new StageTimings();
+        for (final var stage : Stage.values()) {
+            timings.add(stage, 1_000 + stage.ordinal() * 1_000);
+        }
+        this.mono = Mono.just("token");
+    }
+
+
+    @Benchmark
+    public void record() {
+        pipelineMetrics.record("evaluations-service", timings);
+    }
+
+    @Benchmark
+    public String untimedStage() {
+        return mono.block();
+    }
+
+    @Benchmark
+    public String timedStage() {
+        return timings.time(Stage.DECODING, mono).block();
+    }
+}
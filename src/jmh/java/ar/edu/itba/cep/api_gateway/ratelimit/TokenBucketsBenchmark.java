@@ -0,0 +1,86 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks acquiring tokens from {@link TokenBuckets} with different amounts of active users
+ * (each invocation acquires a token for the next user, round robin, so every bucket stays in use).
+ * The heap retained by the buckets of all the users is printed when the trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBucketsBenchmark {
+
+    /**
+     * The amount of active users.
+     */
+    @Param({"1000", "100000"})
+    private int users;
+
+    /**
+     * The {@link TokenBuckets} being benchmarked.
+     */
+    private TokenBuckets buckets;
+    /**
+     * The usernames of the active users.
+     */
+    private String[] usernames;
+    /**
+     * The index of the next user.
+     */
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.usernames = IntStream.range(0, users).mapToObj(i -> "student-" + i).toArray(String[]::new);
+        final var before = usedHeap();
+        this.buckets = new TokenBuckets(
+                "benchmark",
+                10,
+                30,
+                Duration.ofMinutes(1),
+                Duration.ofMinutes(10),
+                1_000_000,
+                new SimpleMeterRegistry()
+        );
+        for (final var username : usernames) {
+            buckets.tryAcquire(username);
+        }
+        final var after = usedHeap();
+        System.out.printf("%nRetained by %d buckets: %d bytes (%d bytes per user)%n",
+                buckets.size(), after - before, (after - before) / users);
+        this.next = 0;
+    }
+
+
+    @Benchmark
+    public long tryAcquire() {
+        final var username = usernames[next];
+        next = next + 1 == users ? 0 : next + 1;
+        return buckets.tryAcquire(username);
+    }
+
+
+    /**
+     * Returns the used heap after collecting garbage.
+     *
+     * @return The used heap, in bytes.
+     */
+    private static long usedHeap() {
+        final var runtime = Runtime.getRuntime();
+        for (var i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
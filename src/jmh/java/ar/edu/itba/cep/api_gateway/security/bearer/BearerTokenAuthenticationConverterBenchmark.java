@@ -0,0 +1,55 @@
+package ar.edu.itba.cep.api_gateway.security.bearer;
+
+import ar.edu.itba.cep.api_gateway.BenchmarkRequests;
+import ar.edu.itba.cep.api_gateway.security.bearer.jwt.JwtFixtures;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the extraction of the bearer token from a request
+ * (i.e {@link BearerTokenAuthenticationConverter#convert(ServerWebExchange)}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BearerTokenAuthenticationConverterBenchmark {
+
+    /**
+     * Whether the request includes a bearer token (or it is an anonymous request).
+     */
+    @Param({"true", "false"})
+    private boolean authenticated;
+
+    /**
+     * The {@link BearerTokenAuthenticationConverter} being benchmarked.
+     */
+    private BearerTokenAuthenticationConverter converter;
+    /**
+     * The {@link ServerWebExchange} being converted.
+     */
+    private ServerWebExchange exchange;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.converter = new BearerTokenAuthenticationConverter();
+        final var authorization = authenticated
+                ? Constants.BEARER_SCHEME + " "
+                + JwtFixtures.externalToken(JwtFixtures.externalKeyPair(), UUID.randomUUID())
+                : null;
+        this.exchange = BenchmarkRequests.get(authorization);
+    }
+
+
+    @Benchmark
+    public Authentication convert() {
+        return converter.convert(exchange).block();
+    }
+}
@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.api_gateway.security.bearer;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.jwt.JwtFixtures;
+import ar.edu.itba.cep.api_gateway.services.ServicesFixtures;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the authentication of a valid bearer token
+ * (i.e {@link BearerTokenAuthenticationManager#authenticate(Authentication)}),
+ * with a real {@link TokenDecoder} (with its verified tokens cache enabled)
+ * and a real record of revoked tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BearerTokenAuthenticationManagerBenchmark {
+
+    /**
+     * The amount of revoked tokens.
+     */
+    @Param({"0", "100000"})
+    private int revokedTokens;
+
+    /**
+     * The {@link BearerTokenAuthenticationManager} being benchmarked.
+     */
+    private BearerTokenAuthenticationManager manager;
+    /**
+     * The {@link PreAuthenticatedBearerToken} being authenticated.
+     */
+    private PreAuthenticatedBearerToken token;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var keyPair = JwtFixtures.externalKeyPair();
+        this.manager = new BearerTokenAuthenticationManager(
+                JwtFixtures.newDecoder(keyPair, true),
+                ServicesFixtures.newInvalidBearerTokenManager(revokedTokens)
+        );
+        this.token = new PreAuthenticatedBearerToken(JwtFixtures.externalToken(keyPair, UUID.randomUUID()));
+    }
+
+
+    @Benchmark
+    public Authentication authenticate() {
+        return manager.authenticate(token).block();
+    }
+}
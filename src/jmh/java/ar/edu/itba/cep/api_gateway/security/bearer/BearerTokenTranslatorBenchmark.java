@@ -0,0 +1,66 @@
+package ar.edu.itba.cep.api_gateway.security.bearer;
+
+import ar.edu.itba.cep.api_gateway.BenchmarkRequests;
+import ar.edu.itba.cep.api_gateway.security.bearer.jwt.JwtFixtures;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the whole {@link BearerTokenTranslator} filter for an authenticated request,
+ * with a real {@link TokenEncoder} (signed internal tokens are reused, as happens in steady state).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BearerTokenTranslatorBenchmark {
+
+    /**
+     * The {@link BearerTokenTranslator} being benchmarked.
+     */
+    private BearerTokenTranslator translator;
+    /**
+     * The {@link BearerTokenAuthentication} of the request.
+     */
+    private BearerTokenAuthentication authentication;
+    /**
+     * The {@link ServerWebExchange} being filtered.
+     */
+    private ServerWebExchange exchange;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.translator = new BearerTokenTranslator(JwtFixtures.newEncoder());
+        this.authentication = new BearerTokenAuthentication(UUID.randomUUID(), JwtFixtures.USERNAME, JwtFixtures.ROLES);
+        this.authentication.authenticate();
+        final var keyPair = JwtFixtures.externalKeyPair();
+        this.exchange = BenchmarkRequests.get(
+                Constants.BEARER_SCHEME + " " + JwtFixtures.externalToken(keyPair, authentication.getTokenId())
+        );
+    }
+
+
+    @Benchmark
+    public void filter(final Blackhole blackhole) {
+        translator
+                .filter(
+                        exchange,
+                        filtered -> {
+                            blackhole.consume(filtered.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+                            return Mono.empty();
+                        }
+                )
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication))
+                .block();
+    }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the signing of internal tokens with each of the supported {@link SignatureAlgorithm}s.
+ * The size of the resulting tokens is printed when setting up each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InternalTokenSignersBenchmark {
+
+    /**
+     * The algorithm used to sign tokens.
+     */
+    @Param({"HS256", "RS256", "RS512", "ES256"})
+    private SignatureAlgorithm algorithm;
+
+    /**
+     * The {@link InternalTokenSigner} being benchmarked.
+     */
+    private InternalTokenSigner signer;
+
+
+    @Setup(Level.Trial)
+    public void createSigner() {
+        final var key = algorithm.isHmac()
+                ? Keys.secretKeyFor(algorithm)
+                : Keys.keyPairFor(algorithm).getPrivate();
+        this.signer = new KeyInternalTokenSigner(key, algorithm, "benchmark");
+        System.out.println();
+        System.out.println(algorithm + " token size: " + sign().length() + " characters");
+    }
+
+
+    @Benchmark
+    public String sign() {
+        return signer.sign(newBuilder());
+    }
+
+
+    /**
+     * Creates a {@link JwtBuilder} with the same claims as the ones the gateway sets in internal tokens.
+     *
+     * @return The {@link JwtBuilder}.
+     */
+    private static JwtBuilder newBuilder() {
+        final var now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("benchmark-user")
+                .claim(Constants.ROLES_CLAIM, List.of("USER", "ADMIN"))
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + TimeUnit.MINUTES.toMillis(10)))
+                ;
+    }
+}
@@ -0,0 +1,104 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates JWT components and tokens to be used in benchmarks.
+ */
+public final class JwtFixtures {
+
+    /**
+     * The algorithm with which external tokens are signed.
+     */
+    private static final SignatureAlgorithm EXTERNAL_ALGORITHM = SignatureAlgorithm.RS512;
+
+    /**
+     * The username included in tokens.
+     */
+    public static final String USERNAME = "benchmark-user";
+
+    /**
+     * The roles included in tokens.
+     */
+    public static final List<String> ROLES = List.of("USER", "ADMIN");
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private JwtFixtures() {
+    }
+
+
+    /**
+     * Creates a {@link KeyPair} for signing and verifying external tokens.
+     *
+     * @return The {@link KeyPair}.
+     */
+    public static KeyPair externalKeyPair() {
+        return Keys.keyPairFor(SignatureAlgorithm.RS256); // A 2048 bits RSA key pair
+    }
+
+    /**
+     * Creates an external token (i.e like the ones issued by the auth service), valid for one hour.
+     *
+     * @param keyPair The {@link KeyPair} used to sign the token.
+     * @param tokenId The token's id.
+     * @return The token, in compact form.
+     */
+    public static String externalToken(final KeyPair keyPair, final UUID tokenId) {
+        final var now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setId(tokenId.toString())
+                .setSubject(USERNAME)
+                .claim(Constants.ROLES_CLAIM, ROLES)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + TimeUnit.HOURS.toMillis(1)))
+                .signWith(keyPair.getPrivate(), EXTERNAL_ALGORITHM)
+                .compact();
+    }
+
+    /**
+     * Creates a {@link JwtTokenDecoder}.
+     *
+     * @param keyPair The {@link KeyPair} whose public key is used to verify tokens.
+     * @param cached  Whether verified tokens are cached.
+     * @return The {@link JwtTokenDecoder}.
+     */
+    public static JwtTokenDecoder newDecoder(final KeyPair keyPair, final boolean cached) {
+        final var properties = new JwtProperties();
+        properties.setExternal(new JwtProperties.ExternalTokensProperties());
+        if (!cached) {
+            // Entries expire as soon as they are created
+            properties.getExternal().getCache().setTimeToLive(Duration.ZERO);
+        }
+        return new JwtTokenDecoder(keyPair.getPublic(), properties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Creates a {@link JwtTokenEncoder} that signs internal tokens with the default algorithm.
+     *
+     * @return The {@link JwtTokenEncoder}.
+     */
+    public static JwtTokenEncoder newEncoder() {
+        final var properties = new JwtProperties();
+        properties.setInternal(new JwtProperties.InternalTokensProperties());
+        final var algorithm = properties.getInternal().getAlgorithm();
+        final var privateKey = Keys.keyPairFor(SignatureAlgorithm.RS256).getPrivate(); // A 2048 bits RSA key
+        return new JwtTokenEncoder(
+                new KeyInternalTokenSigner(privateKey, algorithm, null),
+                properties,
+                new SimpleMeterRegistry()
+        );
+    }
+}
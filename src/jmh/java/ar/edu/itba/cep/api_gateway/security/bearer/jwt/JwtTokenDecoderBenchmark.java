@@ -0,0 +1,49 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the decoding of an external token (i.e {@link JwtTokenDecoder#decode(String)}),
+ * either hitting the verified tokens cache, or verifying the signature each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenDecoderBenchmark {
+
+    /**
+     * Whether verified tokens are cached.
+     */
+    @Param({"true", "false"})
+    private boolean cached;
+
+    /**
+     * The {@link JwtTokenDecoder} being benchmarked.
+     */
+    private JwtTokenDecoder decoder;
+    /**
+     * The token being decoded.
+     */
+    private String rawToken;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var keyPair = JwtFixtures.externalKeyPair();
+        this.decoder = JwtFixtures.newDecoder(keyPair, cached);
+        this.rawToken = JwtFixtures.externalToken(keyPair, UUID.randomUUID());
+    }
+
+
+    @Benchmark
+    public BearerTokenAuthentication decode() {
+        return decoder.decode(rawToken).block();
+    }
+}
@@ -0,0 +1,58 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the encoding of an internal token (i.e {@link JwtTokenEncoder#encode(BearerTokenAuthentication)}),
+ * either reusing an already signed token, or signing a new one each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenEncoderBenchmark {
+
+    /**
+     * Whether the same token is encoded each time (so the signed token can be reused).
+     */
+    @Param({"true", "false"})
+    private boolean reused;
+
+    /**
+     * The {@link JwtTokenEncoder} being benchmarked.
+     */
+    private JwtTokenEncoder encoder;
+    /**
+     * The {@link BearerTokenAuthentication} being encoded (when reused).
+     */
+    private BearerTokenAuthentication authentication;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.encoder = JwtFixtures.newEncoder();
+        this.authentication = newAuthentication();
+    }
+
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(reused ? authentication : newAuthentication()).block();
+    }
+
+
+    /**
+     * Creates a {@link BearerTokenAuthentication} with a new token id.
+     *
+     * @return The {@link BearerTokenAuthentication}.
+     */
+    private static BearerTokenAuthentication newAuthentication() {
+        return new BearerTokenAuthentication(UUID.randomUUID(), JwtFixtures.USERNAME, JwtFixtures.ROLES);
+    }
+}
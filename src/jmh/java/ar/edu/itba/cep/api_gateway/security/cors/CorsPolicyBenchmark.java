@@ -0,0 +1,87 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import ar.edu.itba.cep.api_gateway.BenchmarkRequests;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.DefaultCorsProcessor;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the CORS handling of a request with a compiled {@link CorsPolicy}, against Spring's
+ * {@link DefaultCorsProcessor} with an equivalent {@link CorsConfiguration} (i.e the approach used before
+ * policies were compiled). The response headers are cleared after each invocation so the same exchange can be reused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorsPolicyBenchmark {
+
+    /**
+     * Whether the request is a preflight request.
+     */
+    @Param({"true", "false"})
+    private boolean preflight;
+
+    /**
+     * Whether the allowed origins are listed (an exact origin and a wildcard domain), or any origin is allowed.
+     */
+    @Param({"true", "false"})
+    private boolean listedOrigins;
+
+    /**
+     * The {@link CorsPolicy} being benchmarked.
+     */
+    private CorsPolicy policy;
+    /**
+     * The {@link DefaultCorsProcessor} against which the policy is compared.
+     */
+    private DefaultCorsProcessor processor;
+    /**
+     * The {@link CorsConfiguration} applied by the {@link DefaultCorsProcessor}.
+     */
+    private CorsConfiguration configuration;
+    /**
+     * The {@link ServerWebExchange} being processed.
+     */
+    private ServerWebExchange exchange;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final var policyProperties = new CorsProperties.PolicyProperties();
+        if (listedOrigins) {
+            policyProperties.setAllowedOrigins(List.of("https://*.itba.edu.ar", BenchmarkRequests.ORIGIN));
+        }
+        this.policy = CorsPolicy.compile(policyProperties);
+        this.processor = new DefaultCorsProcessor();
+        this.configuration = new CorsConfiguration();
+        configuration.setAllowedOrigins(policyProperties.getAllowedOrigins());
+        configuration.setAllowedMethods(policyProperties.getAllowedMethods());
+        configuration.setAllowedHeaders(policyProperties.getAllowedHeaders());
+        configuration.setExposedHeaders(policyProperties.getExposedHeaders());
+        configuration.setAllowCredentials(policyProperties.isAllowCredentials());
+        configuration.setMaxAge(policyProperties.getMaxAge().getSeconds());
+        this.exchange = preflight ? BenchmarkRequests.preflight() : BenchmarkRequests.get(null);
+    }
+
+
+    @Benchmark
+    public boolean compiledPolicy() {
+        final var valid = policy.apply(exchange, preflight);
+        exchange.getResponse().getHeaders().clear();
+        return valid;
+    }
+
+    @Benchmark
+    public boolean defaultProcessor() {
+        final var valid = processor.process(configuration, exchange);
+        exchange.getResponse().getHeaders().clear();
+        return valid;
+    }
+}
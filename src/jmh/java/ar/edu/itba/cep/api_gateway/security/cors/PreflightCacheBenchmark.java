@@ -0,0 +1,69 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import ar.edu.itba.cep.api_gateway.BenchmarkRequests;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks how a CORS preflight request is answered by the whole application (i.e all the web filters,
+ * including the security ones), with and without the {@link PreflightCacheWebFilter}.
+ * The warmup is longer than in other benchmarks, as the whole request handling path must be compiled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreflightCacheBenchmark {
+
+    /**
+     * Whether the preflight responses cache is enabled.
+     */
+    @Param({"true", "false"})
+    private boolean cached;
+
+    /**
+     * The application's {@link ConfigurableApplicationContext}.
+     */
+    private ConfigurableApplicationContext context;
+    /**
+     * The application's {@link HttpHandler} (i.e the entry point of requests).
+     */
+    private HttpHandler httpHandler;
+
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        this.context = new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(
+                        "--server.port=0",
+                        "--eureka.client.enabled=false",
+                        "--spring.zipkin.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--cors.preflight-cache.enabled=" + cached
+                );
+        this.httpHandler = context.getBean(HttpHandler.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public MockServerHttpResponse preflight() {
+        final var response = new MockServerHttpResponse();
+        httpHandler.handle(BenchmarkRequests.preflightRequest(), response).block();
+        return response;
+    }
+}
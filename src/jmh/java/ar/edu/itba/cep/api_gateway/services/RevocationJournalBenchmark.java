@@ -0,0 +1,80 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the startup replay of a {@link RevocationJournal} into an empty {@link RevokedTokensTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RevocationJournalBenchmark {
+
+    /**
+     * The amount of entries in the journal.
+     */
+    @Param({"1000000", "10000000"})
+    private int entries;
+
+    /**
+     * The directory in which the journal is stored.
+     */
+    private Path directory;
+    /**
+     * The journal file.
+     */
+    private Path path;
+
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        this.directory = Files.createTempDirectory("revocation-journal-benchmark");
+        this.path = directory.resolve("revoked-tokens.journal");
+        final var journal = newJournal(new RevokedTokensTable(1));
+        journal.replay();
+        final var random = ThreadLocalRandom.current();
+        final var expiration = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (var i = 0; i < entries; i++) {
+            journal.append(random.nextLong(), random.nextLong(), expiration);
+        }
+        journal.destroy();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+
+
+    @Benchmark
+    public int replay() throws IOException {
+        final var journal = newJournal(new RevokedTokensTable(entries));
+        try {
+            return journal.replay();
+        } finally {
+            journal.destroy();
+        }
+    }
+
+
+    /**
+     * Creates a {@link RevocationJournal} for the benchmark's journal file.
+     *
+     * @param table The {@link RevokedTokensTable} into which the journal is replayed.
+     * @return The {@link RevocationJournal}.
+     */
+    private RevocationJournal newJournal(final RevokedTokensTable table) {
+        return new RevocationJournal(path, table, Duration.ofHours(1), 1024);
+    }
+}
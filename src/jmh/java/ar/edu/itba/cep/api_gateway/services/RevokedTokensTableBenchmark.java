@@ -0,0 +1,119 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link RevokedTokensTable}, measuring lookup latency while there are concurrent writers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevokedTokensTableBenchmark {
+
+    /**
+     * The amount of distinct tokens revoked by the writer (must be a power of two).
+     */
+    private static final int WRITER_POOL_SIZE = 1 << 20;
+
+    /**
+     * The amount of time revocations last.
+     */
+    private static final long EXPIRATION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The amount of revoked tokens in the table before starting the benchmark.
+     */
+    @Param({"100000", "1000000", "4000000"})
+    private int entries;
+
+    /**
+     * The table being benchmarked.
+     */
+    private RevokedTokensTable table;
+    /**
+     * Ids of revoked tokens (half of the lookups use them, in order to measure both hits and misses).
+     */
+    private UUID[] revoked;
+    /**
+     * Ids of tokens revoked by the writer while benchmarking (reused in a cycle, in order to bound the table's size).
+     */
+    private UUID[] toRevoke;
+    /**
+     * The index of the next token to be revoked by the writer.
+     */
+    private int nextToRevoke;
+    /**
+     * The expiration of the revoked tokens.
+     */
+    private long expiration;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.table = new RevokedTokensTable(entries);
+        this.revoked = new UUID[entries];
+        final var now = System.currentTimeMillis();
+        this.expiration = now + EXPIRATION_MILLIS;
+        for (var i = 0; i < entries; i++) {
+            revoked[i] = UUID.randomUUID();
+            table.add(revoked[i].getMostSignificantBits(), revoked[i].getLeastSignificantBits(), expiration, now);
+        }
+        this.toRevoke = new UUID[WRITER_POOL_SIZE];
+        for (var i = 0; i < WRITER_POOL_SIZE; i++) {
+            toRevoke[i] = UUID.randomUUID();
+        }
+        this.nextToRevoke = 0;
+    }
+
+
+    @Benchmark
+    @Group("lookupOnly")
+    @GroupThreads(4)
+    public boolean lookupOnly() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Group("lookupWithWriter")
+    @GroupThreads(3)
+    public boolean lookupWithWriter() {
+        return lookup();
+    }
+
+    @Benchmark
+    @Group("lookupWithWriter")
+    @GroupThreads(1)
+    public boolean writer() {
+        // Only the writer thread touches the index. Once the pool is exhausted, revocations are extended.
+        final var index = nextToRevoke++ & (WRITER_POOL_SIZE - 1);
+        final var id = toRevoke[index];
+        final var now = System.currentTimeMillis();
+        return table.add(id.getMostSignificantBits(), id.getLeastSignificantBits(), now + EXPIRATION_MILLIS, now);
+    }
+
+
+    /**
+     * Performs a lookup, that hits a revoked token half of the time.
+     *
+     * @return The lookup result.
+     */
+    private boolean lookup() {
+        final var random = ThreadLocalRandom.current();
+        if (random.nextBoolean()) {
+            final var id = revoked[random.nextInt(entries)];
+            return table.contains(
+                    id.getMostSignificantBits(),
+                    id.getLeastSignificantBits(),
+                    System.currentTimeMillis()
+            );
+        }
+        return table.contains(random.nextLong(), random.nextLong(), System.currentTimeMillis());
+    }
+}
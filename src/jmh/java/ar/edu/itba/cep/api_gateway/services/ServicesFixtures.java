@@ -0,0 +1,43 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Creates services to be used in benchmarks.
+ */
+public final class ServicesFixtures {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private ServicesFixtures() {
+    }
+
+
+    /**
+     * Creates an {@link InvalidBearerTokenManager} (with no background tasks running)
+     * holding the given amount of random revoked tokens.
+     *
+     * @param revokedTokens The amount of revoked tokens.
+     * @return The {@link InvalidBearerTokenManager}.
+     */
+    public static InvalidBearerTokenManager newInvalidBearerTokenManager(final int revokedTokens) {
+        final var properties = new RevocationProperties();
+        final var table = new RevokedTokensTable(Math.max(revokedTokens, properties.getExpectedTokens()));
+        final var manager = new InvalidBearerTokenManager(
+                properties,
+                table,
+                List.of(),
+                Optional.empty(),
+                Optional.empty()
+        );
+        final var expiration = Instant.now().plus(properties.getRetention());
+        for (var i = 0; i < revokedTokens; i++) {
+            manager.invalidateToken(UUID.randomUUID(), expiration);
+        }
+        return manager;
+    }
+}
@@ -0,0 +1,47 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the generation of request ids with a {@link RequestIdGenerator}, by one thread and by several threads
+ * sharing the generator (i.e like the server's event loops), compared with generating a random {@link UUID}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestIdGeneratorBenchmark {
+
+    /**
+     * The {@link RequestIdGenerator} being benchmarked.
+     */
+    private RequestIdGenerator requestIdGenerator;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.requestIdGenerator = new RequestIdGenerator();
+    }
+
+
+    @Benchmark
+    public String generate() {
+        return requestIdGenerator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generateShared() {
+        return requestIdGenerator.next();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,106 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import ar.edu.itba.cep.api_gateway.BenchmarkRequests;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.sleuth.zipkin2.ZipkinAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import zipkin2.Call;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the tracing overhead of a request handled by the whole application, with different sampling
+ * probabilities. Spans are encoded and batched as usual, but discarded instead of being sent to a collector.
+ * The per route limit is disabled (i.e set to a huge value), so the probability is the only thing that changes.
+ * A probability of zero shows the cost of recording spans locally (needed to keep spans of failed or slow requests).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TracingBenchmark {
+
+    /**
+     * The sampling probability.
+     */
+    @Param({"0.0", "0.01", "0.1", "1.0"})
+    private String probability;
+
+    /**
+     * The application's {@link ConfigurableApplicationContext}.
+     */
+    private ConfigurableApplicationContext context;
+    /**
+     * The application's {@link HttpHandler} (i.e the entry point of requests).
+     */
+    private HttpHandler httpHandler;
+
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        this.context = new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .registerSingleton(ZipkinAutoConfiguration.SENDER_BEAN_NAME, new DiscardingSender()))
+                .run(
+                        "--server.port=0",
+                        "--eureka.client.enabled=false",
+                        "--logging.level.root=WARN",
+                        // Preflight requests are used as they are answered by the gateway without errors
+                        "--cors.preflight-cache.enabled=false",
+                        "--tracing.sampling.probability=" + probability,
+                        "--tracing.sampling.traces-per-second=" + Integer.MAX_VALUE
+                );
+        this.httpHandler = context.getBean(HttpHandler.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public MockServerHttpResponse request() {
+        final var response = new MockServerHttpResponse();
+        httpHandler.handle(BenchmarkRequests.preflightRequest(), response).block();
+        return response;
+    }
+
+
+    /**
+     * A {@link Sender} that discards the spans it receives.
+     */
+    private static final class DiscardingSender extends Sender {
+
+        @Override
+        public Encoding encoding() {
+            return Encoding.JSON;
+        }
+
+        @Override
+        public int messageMaxBytes() {
+            return 5 * 1024 * 1024;
+        }
+
+        @Override
+        public int messageSizeInBytes(final List<byte[]> encodedSpans) {
+            return encoding().listSizeInBytes(encodedSpans);
+        }
+
+        @Override
+        public Call<Void> sendSpans(final List<byte[]> encodedSpans) {
+            return Call.create(null);
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A self-contained test that checks that large bodies are streamed through the gateway in both directions,
+ * with backpressure, and that the size of request bodies is limited while they are streamed.
+ * <p>
+ * It starts a {@link TransferBackend} as the evaluations and users services, and the gateway (in this same process,
+ * which should run with a heap smaller than the transferred bodies). Then, it uploads a body of the configured size
+ * (consumed slowly by the service), downloads one (read slowly by the client), and uploads a chunked body larger than
+ * the limit of the users service route, which must be rejected with a 413 Payload Too Large response.
+ * Meanwhile, it samples the heap and direct memory use, and it fails (exiting with a non-zero status) if any transfer
+ * fails, or the memory use grows more than the configured maximum.
+ * The test is configured through {@code transfer.*} system properties (see {@link TransferSettings}).
+ */
+public final class LargeTransferTest {
+
+    /**
+     * The id of the service to which large bodies are transferred.
+     */
+    private static final String SERVICE_ID = "evaluations-service";
+
+    /**
+     * The path to which large bodies are transferred.
+     */
+    private static final String PATH = "/test-cases/transfer";
+
+    /**
+     * The id of the service whose request bodies are limited to {@link #LIMITED_SIZE}.
+     */
+    private static final String LIMITED_SERVICE_ID = "users-service";
+
+    /**
+     * The path to which a body larger than the limit is uploaded.
+     */
+    private static final String LIMITED_PATH = "/users/transfer";
+
+    /**
+     * The maximum size of the request bodies of the limited service.
+     */
+    private static final long LIMITED_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum time each transfer can take.
+     */
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private LargeTransferTest() {
+    }
+
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments (ignored).
+     */
+    public static void main(final String[] args) {
+        final var settings = TransferSettings.fromSystemProperties();
+        System.out.println("Large transfer test settings: " + settings
+                + ", max heap=" + (Runtime.getRuntime().maxMemory() >> 20) + "MB");
+
+        final var backend = new TransferBackend(settings.getRate().toBytes());
+        final var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        final var gateway = startGateway(backend, keyPair, settings);
+        final var connectionProvider = ConnectionProvider.fixed("large-transfer-test", 2);
+        final boolean passed;
+        try {
+            final var token = LoadTest.externalToken(keyPair, "large-transfer-test");
+            final var client = HttpClient.create(connectionProvider)
+                    .baseUrl("http://localhost:"
+                            + ((ReactiveWebServerApplicationContext) gateway).getWebServer().getPort())
+                    .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token));
+            passed = run(client, backend, settings);
+        } finally {
+            connectionProvider.dispose();
+            gateway.close();
+            backend.stop();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Starts the gateway in a random port, routing requests to the given {@code backend}.
+     *
+     * @param backend  The {@link TransferBackend} to which requests are routed.
+     * @param keyPair  The {@link KeyPair} with which external tokens are signed.
+     * @param settings The {@link TransferSettings}.
+     * @return The gateway's {@link ConfigurableApplicationContext}.
+     */
+    private static ConfigurableApplicationContext startGateway(
+            final TransferBackend backend,
+            final KeyPair keyPair,
+            final TransferSettings settings) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("server.port", 0);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.zipkin.enabled", false);
+        properties.put("rate-limit.enabled", false);
+        properties.put("body-limit.default-route.max-request-size", LIMITED_SIZE + "B");
+        properties.put("body-limit.routes." + SERVICE_ID + ".max-request-size", settings.getSize().toBytes() + "B");
+        properties.put("logging.level.ar.edu.itba.cep.api_gateway", "INFO");
+        properties.put(
+                "authentication.jwt.external.public-key",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        );
+        properties.putAll(LoadTest.staticDiscovery(SERVICE_ID, List.of(backend.getPort())));
+        properties.putAll(LoadTest.staticDiscovery(LIMITED_SERVICE_ID, List.of(backend.getPort())));
+        // Passed as command line arguments, so they take precedence over the application's configuration
+        final var args = properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+
+    /**
+     * Runs the transfers, printing their results and the memory use.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param backend  The {@link TransferBackend}.
+     * @param settings The {@link TransferSettings}.
+     * @return Whether the test passed.
+     */
+    private static boolean run(
+            final HttpClient client,
+            final TransferBackend backend,
+            final TransferSettings settings) {
+        final var size = settings.getSize().toBytes();
+        final var sampler = new MemorySampler();
+        var passed = true;
+        try {
+            final var upload = upload(client, PATH, TransferBackend.chunks(size)).block(TIMEOUT);
+            final var uploaded = upload != null && upload.getT1() == 200 ? Long.parseLong(upload.getT2()) : -1;
+            passed &= check("upload", uploaded == size, uploaded + " of " + size + " bytes received by the service");
+
+            final var downloaded = client.get()
+                    .uri(PATH + "?size=" + size)
+                    .response((response, content) -> TransferBackend.throttle(
+                            content.map(ByteBuf::readableBytes),
+                            settings.getRate().toBytes()
+                    ))
+                    .reduce(0L, Long::sum)
+                    .block(TIMEOUT);
+            passed &= check("download", downloaded != null && downloaded == size,
+                    downloaded + " of " + size + " bytes received by the client");
+
+            final var before = backend.getReceived();
+            // The body never ends, so it is only completed by the gateway rejecting it
+            final var rejection = upload(
+                    client,
+                    LIMITED_PATH,
+                    Flux.concat(TransferBackend.chunks(LIMITED_SIZE + TransferBackend.CHUNK_SIZE), Flux.never())
+            ).block(TIMEOUT);
+            final var status = rejection == null ? -1 : rejection.getT1();
+            final var forwarded = backend.getReceived() - before;
+            passed &= check("too large upload", status == 413 && forwarded <= LIMITED_SIZE,
+                    "status " + status + ", " + forwarded + " bytes received by the service");
+        } catch (final RuntimeException e) {
+            System.out.println("Transfer failed: " + e);
+            passed = false;
+        } finally {
+            sampler.stop();
+        }
+        final var maxGrowth = settings.getMaxGrowth().toBytes();
+        System.out.printf("  peak heap use:                 %d MB (baseline %d MB)%n",
+                sampler.peakHeap.get() >> 20, sampler.heapBaseline >> 20);
+        passed &= check("heap (after GC)", sampler.heapGrowth() <= maxGrowth,
+                "grew " + (sampler.heapGrowth() >> 20) + " MB");
+        passed &= check("direct memory (peak)", sampler.directGrowth() <= maxGrowth,
+                "grew " + (sampler.directGrowth() >> 20) + " MB");
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * Uploads the given {@code body} to the given {@code path}, without declaring its length (i.e chunked).
+     *
+     * @param client The {@link HttpClient} used to send requests to the gateway.
+     * @param path   The path.
+     * @param body   The body.
+     * @return A {@link Mono} that emits the response status and body.
+     */
+    private static Mono<Tuple2<Integer, String>> upload(
+            final HttpClient client,
+            final String path,
+            final Publisher<ByteBuf> body) {
+        return client.post()
+                .uri(path)
+                .send(body)
+                .responseSingle((response, content) -> content.asString()
+                        .defaultIfEmpty("")
+                        .map(text -> Tuples.of(response.status().code(), text)));
+    }
+
+    /**
+     * Prints the result of a check.
+     *
+     * @param name    The name of the check.
+     * @param passed  Whether the check passed.
+     * @param details The details of the result.
+     * @return Whether the check passed.
+     */
+    private static boolean check(final String name, final boolean passed, final String details) {
+        System.out.printf("  %-30s %s (%s)%n", name + ":", passed ? "ok" : "FAILED", details);
+        return passed;
+    }
+
+
+    /**
+     * Samples the heap and direct memory use of the process.
+     * Direct memory is taken from Netty's pooled allocator or from the JVM's direct buffer pool
+     * (whichever is larger, as Netty only uses the latter when it can not allocate direct memory by itself).
+     */
+    private static final class MemorySampler {
+
+        /**
+         * The interval between samples.
+         */
+        private static final long INTERVAL_MILLIS = 50;
+
+
+        /**
+         * The JVM's direct {@link BufferPoolMXBean} ({@code null} if it is not available).
+         */
+        private final BufferPoolMXBean directPool;
+        /**
+         * The heap use after a collection, before transferring.
+         */
+        private final long heapBaseline;
+        /**
+         * The direct memory use before transferring.
+         */
+        private final long directBaseline;
+        /**
+         * The largest sampled heap use.
+         */
+        private final AtomicLong peakHeap;
+        /**
+         * The largest sampled direct memory use.
+         */
+        private final AtomicLong peakDirect;
+        /**
+         * The {@link ScheduledExecutorService} that takes the samples.
+         */
+        private final ScheduledExecutorService executor;
+        /**
+         * The heap use after a collection, once stopped.
+         */
+        private long heapAfter;
+
+
+        /**
+         * Constructor. Takes the baselines, and starts sampling.
+         */
+        private MemorySampler() {
+            this.directPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+                    .stream()
+                    .filter(pool -> "direct".equals(pool.getName()))
+                    .findFirst()
+                    .orElse(null);
+            this.heapBaseline = heapAfterCollection();
+            this.directBaseline = direct();
+            this.peakHeap = new AtomicLong(heapBaseline);
+            this.peakDirect = new AtomicLong(directBaseline);
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final var thread = new Thread(runnable, "memory-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(this::sample, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+
+        /**
+         * Stops sampling, and takes the heap use after a collection.
+         */
+        private void stop() {
+            executor.shutdownNow();
+            sample();
+            this.heapAfter = heapAfterCollection();
+        }
+
+        /**
+         * @return How much the heap use after a collection grew.
+         */
+        private long heapGrowth() {
+            return Math.max(0, heapAfter - heapBaseline);
+        }
+
+        /**
+         * @return How much the peak direct memory use grew.
+         */
+        private long directGrowth() {
+            return Math.max(0, peakDirect.get() - directBaseline);
+        }
+
+        /**
+         * Takes a sample.
+         */
+        private void sample() {
+            peakHeap.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+            peakDirect.accumulateAndGet(direct(), Math::max);
+        }
+
+        /**
+         * @return The current direct memory use.
+         */
+        private long direct() {
+            final var netty = PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory();
+            return Math.max(netty, directPool == null ? 0 : directPool.getMemoryUsed());
+        }
+
+        /**
+         * @return The heap use after a (requested) collection.
+         */
+        private static long heapAfterCollection() {
+            System.gc();
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of the requests sent during a load test, per route (i.e per service).
+ * For each request, both the total latency and the gateway overhead (i.e the total latency minus the time spent
+ * in the backend) are recorded.
+ */
+/* package */ final class LatencyReport {
+
+    /**
+     * The maximum latency that can be recorded (greater values are clamped).
+     */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The amount of significant decimal digits kept by the histograms.
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+
+    /**
+     * The {@link RouteLatencies} of each route, keyed by service id.
+     */
+    private final Map<String, RouteLatencies> routes;
+    /**
+     * The amount of failed requests (i.e errors or non successful responses).
+     */
+    private final LongAdder errors;
+
+
+    /**
+     * Constructor.
+     */
+    /* package */ LatencyReport() {
+        this.routes = new ConcurrentHashMap<>();
+        this.errors = new LongAdder();
+    }
+
+
+    /**
+     * Records a successful request.
+     *
+     * @param serviceId      The id of the service that answered the request.
+     * @param totalNanos     The latency observed by the client, in nanoseconds.
+     * @param processingNanos The time spent in the backend, in nanoseconds.
+     */
+    /* package */ void record(final String serviceId, final long totalNanos, final long processingNanos) {
+        final var latencies = routes.computeIfAbsent(serviceId, ignored -> new RouteLatencies());
+        latencies.total.recordValue(Math.min(totalNanos, HIGHEST_TRACKABLE_NANOS));
+        latencies.overhead.recordValue(Math.min(Math.max(totalNanos - processingNanos, 0), HIGHEST_TRACKABLE_NANOS));
+    }
+
+    /**
+     * Records a failed request.
+     */
+    /* package */ void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param title  The report's title.
+     * @param output The {@link PrintStream} in which the report is printed.
+     */
+    /* package */ void print(final String title, final PrintStream output) {
+        output.println();
+        output.println(title + " (" + errors.sum() + " errors)");
+        output.printf("%-22s %9s | %25s %10s | %10s %10s%n",
+                "route", "requests", "overhead p50 / p99 / p999", "max", "total p50", "total p99");
+        new TreeMap<>(routes).forEach((route, latencies) -> output.printf(
+                "%-22s %9d | %7s / %7s / %7s %10s | %10s %10s%n",
+                route,
+                latencies.total.getTotalCount(),
+                millis(latencies.overhead, 50),
+                millis(latencies.overhead, 99),
+                millis(latencies.overhead, 99.9),
+                millis(latencies.overhead.getMaxValue()),
+                millis(latencies.total, 50),
+                millis(latencies.total, 99)
+        ));
+        output.println("(latencies in milliseconds)");
+    }
+
+
+    /**
+     * Formats the given percentile of the given {@link Histogram}, in milliseconds.
+     *
+     * @param histogram  The {@link Histogram}.
+     * @param percentile The percentile.
+     * @return The formatted value.
+     */
+    private static String millis(final Histogram histogram, final double percentile) {
+        return millis(histogram.getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Formats the given amount of nanoseconds, in milliseconds.
+     *
+     * @param nanos The amount of nanoseconds.
+     * @return The formatted value.
+     */
+    private static String millis(final long nanos) {
+        return String.format("%.3f", nanos / 1_000_000d);
+    }
+
+
+    /**
+     * The latencies of a route.
+     */
+    private static final class RouteLatencies {
+
+        /**
+         * The latencies observed by the client.
+         */
+        private final Histogram total = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        /**
+         * The latencies added by the gateway.
+         */
+        private final Histogram overhead = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+}
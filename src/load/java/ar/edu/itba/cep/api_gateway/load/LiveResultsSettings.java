@@ -0,0 +1,47 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+
+/**
+ * The settings of a live results test, taken from system properties.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class LiveResultsSettings {
+
+    /**
+     * The amount of clients waiting for the result of an execution (each one its own).
+     */
+    private final int clients;
+    /**
+     * The time each execution takes.
+     */
+    private final Duration executionTime;
+    /**
+     * How often polling clients ask for the result.
+     */
+    private final Duration pollInterval;
+
+
+    /**
+     * Creates the {@link LiveResultsSettings} from the {@code live.*} system properties.
+     *
+     * @return The {@link LiveResultsSettings}.
+     */
+    /* package */ static LiveResultsSettings fromSystemProperties() {
+        return new LiveResultsSettings(
+                Integer.getInteger("live.clients", 500),
+                DurationStyle.detectAndParse(System.getProperty("live.execution-time", "5s")),
+                DurationStyle.detectAndParse(System.getProperty("live.poll-interval", "500ms"))
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "clients=" + clients + ", execution time=" + executionTime + ", poll interval=" + pollInterval;
+    }
+}
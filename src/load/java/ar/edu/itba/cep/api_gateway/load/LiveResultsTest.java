@@ -0,0 +1,268 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A self-contained test that shows the load removed from the gateway (and the playground service)
+ * when clients watch the results of their execution requests with a WebSocket instead of polling them.
+ * <p>
+ * It starts a {@link ResultsBackend} as the playground service, and the gateway (in this same process).
+ * Then, the configured amount of clients wait for the result of an execution at the same time,
+ * first polling it, and then with a WebSocket (authenticated with the {@code access_token} query parameter,
+ * like a browser would). For each mode, it prints the requests received by the service, the messages it sent,
+ * and how long clients took to get their result.
+ * The test is configured through {@code live.*} system properties (see {@link LiveResultsSettings}).
+ */
+public final class LiveResultsTest {
+
+    /**
+     * The id of the service serving the results.
+     */
+    private static final String SERVICE_ID = "playground-service";
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private LiveResultsTest() {
+    }
+
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments (ignored).
+     */
+    public static void main(final String[] args) {
+        final var settings = LiveResultsSettings.fromSystemProperties();
+        System.out.println("Live results test settings: " + settings);
+
+        final var backend = new ResultsBackend(settings.getExecutionTime());
+        final var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        final var gateway = startGateway(backend, keyPair, settings);
+        final var connectionProvider = ConnectionProvider.fixed("live-results-test", settings.getClients());
+        try {
+            final var client = HttpClient.create(connectionProvider)
+                    .baseUrl("http://localhost:"
+                            + ((ReactiveWebServerApplicationContext) gateway).getWebServer().getPort());
+            final var token = LoadTest.externalToken(keyPair, "live-results-test");
+            run("polling", backend, settings, id -> poll(client, token, id, settings)).print();
+            run("websocket", backend, settings, id -> watch(client, token, id)).print();
+        } finally {
+            connectionProvider.dispose();
+            gateway.close();
+            backend.stop();
+        }
+    }
+
+
+    /**
+     * Starts the gateway in a random port, routing execution requests to the given {@code backend}.
+     *
+     * @param backend  The {@link ResultsBackend} to which execution requests are routed.
+     * @param keyPair  The {@link KeyPair} with which external tokens are signed.
+     * @param settings The {@link LiveResultsSettings}.
+     * @return The gateway's {@link ConfigurableApplicationContext}.
+     */
+    private static ConfigurableApplicationContext startGateway(
+            final ResultsBackend backend,
+            final KeyPair keyPair,
+            final LiveResultsSettings settings) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("server.port", 0);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.zipkin.enabled", false);
+        // A single user polls far more than the per user limits allow
+        properties.put("rate-limit.enabled", false);
+        properties.put("resilience.default-route.bulkhead.max-concurrent-requests", settings.getClients());
+        properties.put("logging.level.ar.edu.itba.cep.api_gateway", "INFO");
+        properties.put(
+                "authentication.jwt.external.public-key",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        );
+        properties.putAll(LoadTest.staticDiscovery(SERVICE_ID, List.of(backend.getPort())));
+        // Passed as command line arguments, so they take precedence over the application's configuration
+        final var args = properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+
+    /**
+     * Makes all the clients wait for the result of their execution at the same time, in the given way.
+     *
+     * @param mode     The name of the way in which clients wait for their results.
+     * @param backend  The {@link ResultsBackend}.
+     * @param settings The {@link LiveResultsSettings}.
+     * @param wait     A function that takes an execution id, and returns a {@link Mono}
+     *                 that completes once its result is received.
+     * @return The {@link Run}.
+     */
+    private static Run run(
+            final String mode,
+            final ResultsBackend backend,
+            final LiveResultsSettings settings,
+            final Function<String, Mono<Void>> wait) {
+        backend.reset();
+        final var run = new Run(mode);
+        Flux.range(0, settings.getClients())
+                .flatMap(
+                        index -> Mono.defer(() -> {
+                            final var startTime = System.nanoTime();
+                            return wait.apply(mode + "-" + index)
+                                    .doOnSuccess(ignored -> run.record(System.nanoTime() - startTime))
+                                    .onErrorResume(ignored -> Mono.fromRunnable(run.errors::increment));
+                        }),
+                        settings.getClients()
+                )
+                .blockLast();
+        run.requests = backend.getRequests();
+        run.messages = backend.getMessages();
+        return run;
+    }
+
+    /**
+     * Polls the result of the given execution until it is completed.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param token    The token of the user.
+     * @param id       The id of the execution.
+     * @param settings The {@link LiveResultsSettings}.
+     * @return A {@link Mono} that completes once the result is received.
+     */
+    private static Mono<Void> poll(
+            final HttpClient client,
+            final String token,
+            final String id,
+            final LiveResultsSettings settings) {
+        return Mono
+                .defer(() -> client
+                        .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                        .get()
+                        .uri("/execution-requests/" + id + "/result")
+                        .responseSingle((response, body) -> body.asString()))
+                .filter(ResultsBackend::isCompleted)
+                .repeatWhenEmpty(repeats -> repeats.concatMap(ignored -> Mono.delay(settings.getPollInterval())))
+                .then();
+    }
+
+    /**
+     * Watches the result of the given execution with a WebSocket until it is received.
+     *
+     * @param client The {@link HttpClient} used to send requests to the gateway.
+     * @param token  The token of the user.
+     * @param id     The id of the execution.
+     * @return A {@link Mono} that completes once the result is received.
+     */
+    private static Mono<Void> watch(final HttpClient client, final String token, final String id) {
+        return client
+                .websocket()
+                .uri("/execution-requests/" + id + "/result?access_token=" + token)
+                .handle((inbound, outbound) -> inbound.receive().asString())
+                .filter(ResultsBackend::isCompleted)
+                .next()
+                .switchIfEmpty(Mono.error(new IllegalStateException("The session was closed without a result")))
+                .then();
+    }
+
+
+    /**
+     * The results of making all the clients wait for their results in a given way.
+     */
+    private static final class Run {
+
+        /**
+         * The name of the way in which clients waited for their results.
+         */
+        private final String mode;
+        /**
+         * The time each client took to get its result, in nanoseconds.
+         */
+        private final List<Long> nanos;
+        /**
+         * The amount of clients that did not get their result.
+         */
+        private final LongAdder errors;
+        /**
+         * The amount of requests received by the service.
+         */
+        private long requests;
+        /**
+         * The amount of messages sent by the service through WebSockets.
+         */
+        private long messages;
+
+
+        /**
+         * Constructor.
+         *
+         * @param mode The name of the way in which clients waited for their results.
+         */
+        private Run(final String mode) {
+            this.mode = mode;
+            this.nanos = Collections.synchronizedList(new ArrayList<>());
+            this.errors = new LongAdder();
+        }
+
+
+        /**
+         * Records the time a client took to get its result.
+         *
+         * @param elapsedNanos The time, in nanoseconds.
+         */
+        private void record(final long elapsedNanos) {
+            nanos.add(elapsedNanos);
+        }
+
+        /**
+         * Prints the results.
+         */
+        private void print() {
+            final var sorted = new ArrayList<>(nanos);
+            Collections.sort(sorted);
+            System.out.println();
+            System.out.println(mode + " (" + errors.sum() + " errors)");
+            System.out.printf("  requests to the gateway and the service: %d%n", requests);
+            System.out.printf("  messages sent through WebSockets:        %d%n", messages);
+            if (!sorted.isEmpty()) {
+                System.out.printf("  time to result (ms): p50 %.1f, p99 %.1f, max %.1f%n",
+                        millis(sorted, 0.5), millis(sorted, 0.99), millis(sorted, 1));
+            }
+        }
+
+        /**
+         * Returns the given {@code quantile} of the given sorted times, in milliseconds.
+         *
+         * @param sorted   The sorted times, in nanoseconds.
+         * @param quantile The quantile.
+         * @return The quantile, in milliseconds.
+         */
+        private static double millis(final List<Long> sorted, final double quantile) {
+            final var index = (int) Math.min(sorted.size() - 1, Math.ceil(quantile * sorted.size()) - 1);
+            return sorted.get(Math.max(0, index)) / 1_000_000d;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpMethod;
+
+/**
+ * A request to be sent to the gateway during a load test.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class LoadRequest {
+
+    /**
+     * The request's {@link HttpMethod}.
+     */
+    private final HttpMethod method;
+    /**
+     * The request's path.
+     */
+    private final String path;
+    /**
+     * The request's JSON body (or {@code null} if the request has no body).
+     */
+    private final String body;
+    /**
+     * The external bearer token with which the request is authenticated.
+     */
+    private final String token;
+}
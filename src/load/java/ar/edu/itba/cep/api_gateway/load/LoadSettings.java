@@ -0,0 +1,151 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The settings of a load test, taken from system properties.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class LoadSettings {
+
+    /**
+     * The {@link TrafficMix}es to be run (one after the other).
+     */
+    private final List<TrafficMix> mixes;
+    /**
+     * For how long each mix is run before measuring (in order to warm up the gateway).
+     */
+    private final Duration warmup;
+    /**
+     * For how long each mix is measured.
+     */
+    private final Duration duration;
+    /**
+     * The amount of distinct users (i.e distinct tokens) sending requests.
+     */
+    private final int users;
+    /**
+     * The base rate of the mixes, in requests per second (its meaning depends on the mix).
+     */
+    private final int rate;
+    /**
+     * The maximum amount of connections opened against the gateway.
+     */
+    private final int connections;
+    /**
+     * The time the stub backends take to answer each request.
+     */
+    private final Duration backendLatency;
+    /**
+     * The amount of stub backends (i.e instances) of each service.
+     */
+    private final int instances;
+    /**
+     * The time the first stub backend of each service takes to answer each request, when there is more than one
+     * instance (or zero to make it as fast as the others).
+     */
+    private final Duration slowInstanceLatency;
+    /**
+     * Whether the gateway chooses instances by their latency (or with plain round-robin).
+     */
+    private final boolean latencyAwareBalancing;
+    /**
+     * Whether the gateway sends requests to the stub backends with h2c (or with HTTP/1.1).
+     */
+    private final boolean h2cUpstream;
+
+
+    /**
+     * Creates the {@link LoadSettings} from the {@code load.*} system properties.
+     *
+     * @return The {@link LoadSettings}.
+     */
+    /* package */ static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                parseMixes(System.getProperty("load.mix", "all")),
+                DurationStyle.detectAndParse(System.getProperty("load.warmup", "10s")),
+                DurationStyle.detectAndParse(System.getProperty("load.duration", "30s")),
+                Integer.getInteger("load.users", 1000),
+                Integer.getInteger("load.rate", 200),
+                Integer.getInteger("load.connections", 500),
+                DurationStyle.detectAndParse(System.getProperty("load.backend-latency", "0ms")),
+                Integer.getInteger("load.instances", 1),
+                DurationStyle.detectAndParse(System.getProperty("load.slow-instance-latency", "0ms")),
+                parseBalancing(System.getProperty("load.balancing", "peak-ewma")),
+                parseUpstreamProtocol(System.getProperty("load.upstream-protocol", "http1"))
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "mixes=" + mixes + ", warmup=" + warmup + ", duration=" + duration + ", users=" + users
+                + ", rate=" + rate + "/s, connections=" + connections + ", backend latency=" + backendLatency
+                + ", instances=" + instances + ", slow instance latency=" + slowInstanceLatency
+                + ", balancing=" + (latencyAwareBalancing ? "peak-ewma" : "round-robin")
+                + ", upstream protocol=" + (h2cUpstream ? "h2c" : "http1");
+    }
+
+
+    /**
+     * Parses a comma separated list of {@link TrafficMix} names (e.g {@code exam-start-storm}),
+     * or {@code all} to run all of them.
+     *
+     * @param mixes The list to be parsed.
+     * @return The {@link TrafficMix}es.
+     * @throws IllegalArgumentException If a name does not match any {@link TrafficMix}.
+     */
+    private static List<TrafficMix> parseMixes(final String mixes) throws IllegalArgumentException {
+        if ("all".equalsIgnoreCase(mixes.trim())) {
+            return List.of(TrafficMix.values());
+        }
+        return Arrays.stream(mixes.split(","))
+                .map(String::trim)
+                .map(name -> TrafficMix.valueOf(name.replace('-', '_').toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parses the load balancing mode of the gateway ({@code peak-ewma} or {@code round-robin}).
+     *
+     * @param balancing The mode to be parsed.
+     * @return {@code true} if instances are chosen by their latency, or {@code false} for round-robin.
+     * @throws IllegalArgumentException If the mode is not a known one.
+     */
+    private static boolean parseBalancing(final String balancing) throws IllegalArgumentException {
+        switch (balancing.trim().toLowerCase(Locale.ROOT)) {
+            case "peak-ewma":
+                return true;
+            case "round-robin":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown load balancing mode: " + balancing);
+        }
+    }
+
+    /**
+     * Parses the protocol with which the gateway sends requests to the stub backends ({@code http1} or {@code h2c}).
+     *
+     * @param protocol The protocol to be parsed.
+     * @return {@code true} if requests are sent with h2c, or {@code false} for HTTP/1.1.
+     * @throws IllegalArgumentException If the protocol is not a known one.
+     */
+    private static boolean parseUpstreamProtocol(final String protocol) throws IllegalArgumentException {
+        switch (protocol.trim().toLowerCase(Locale.ROOT)) {
+            case "h2c":
+                return true;
+            case "http1":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown upstream protocol: " + protocol);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.netty.handler.codec.http.HttpMethod;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A self-contained load test that measures the latency the gateway adds on top of the services behind it.
+ * <p>
+ * It starts {@link StubBackend}s for each service
+ * (one per instance, where the first one can be slower than the others), and the gateway (in this same process),
+ * which finds the stubs through a static list of servers instead of using the discovery service.
+ * Then, it runs each of the configured {@link TrafficMix}es (first warming up the gateway),
+ * and prints the latencies of each route, and the amount of connections the gateway used to reach each service.
+ * The load test is configured through {@code load.*} system properties (see {@link LoadSettings}).
+ */
+public final class LoadTest {
+
+    /**
+     * The ids of the services behind the gateway.
+     */
+    private static final List<String> SERVICES =
+            List.of("playground-service", "evaluations-service", "users-service", "lti-service");
+
+    /**
+     * The roles included in the users' tokens.
+     */
+    private static final List<String> ROLES = List.of("STUDENT");
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private LoadTest() {
+    }
+
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments (ignored).
+     */
+    public static void main(final String[] args) {
+        final var settings = LoadSettings.fromSystemProperties();
+        System.out.println("Load test settings: " + settings);
+
+        final var backends = SERVICES.stream()
+                .flatMap(serviceId -> IntStream.range(0, settings.getInstances())
+                        .mapToObj(instance -> new StubBackend(serviceId, latency(settings, instance))))
+                .collect(Collectors.toList());
+        final var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        final var gateway = startGateway(backends, keyPair, settings);
+        final var connectionProvider = ConnectionProvider.fixed("load-test", settings.getConnections());
+        try {
+            final var client = HttpClient.create(connectionProvider)
+                    .baseUrl("http://localhost:"
+                            + ((ReactiveWebServerApplicationContext) gateway).getWebServer().getPort());
+            final var tokens = IntStream.range(0, settings.getUsers())
+                    .mapToObj(user -> externalToken(keyPair, "user-" + user))
+                    .collect(Collectors.toList());
+            for (final var mix : settings.getMixes()) {
+                run(client, mix, settings, settings.getWarmup(), tokens);
+                backends.forEach(StubBackend::resetConnections);
+                run(client, mix, settings, settings.getDuration(), tokens).print(mix.toString(), System.out);
+                printUpstreamConnections(backends);
+            }
+        } finally {
+            connectionProvider.dispose();
+            gateway.close();
+            backends.forEach(StubBackend::stop);
+        }
+    }
+
+
+    /**
+     * Starts the gateway in a random port, routing to the given {@code backends}.
+     *
+     * @param backends The {@link StubBackend}s to which requests are routed.
+     * @param keyPair  The {@link KeyPair} with which external tokens are signed.
+     * @param settings The {@link LoadSettings}.
+     * @return The gateway's {@link ConfigurableApplicationContext}.
+     */
+    private static ConfigurableApplicationContext startGateway(
+            final List<StubBackend> backends,
+            final KeyPair keyPair,
+            final LoadSettings settings) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("server.port", 0);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.zipkin.enabled", false);
+        // Synthetic users send far more execution requests than the per user limits allow
+        properties.put("rate-limit.enabled", false);
+        // Every connection may be waiting for the same route, which must not be rejected by its bulkhead
+        properties.put("resilience.default-route.bulkhead.max-concurrent-requests", settings.getConnections());
+        // The overhead is computed from the processing time reported by the backend in each response,
+        // which would be stale in cached or coalesced responses (i.e every request must reach the backend)
+        properties.put("coalescing.enabled", false);
+        properties.put("response-cache.enabled", false);
+        properties.put("load-balancing.enabled", settings.isLatencyAwareBalancing());
+        properties.put("http2.upstream.enabled", settings.isH2cUpstream());
+        if (settings.isH2cUpstream()) {
+            SERVICES.forEach(serviceId -> properties.put("http2.upstream.routes." + serviceId + ".max-connections", 2));
+        }
+        properties.put("logging.level.ar.edu.itba.cep.api_gateway", "INFO");
+        properties.put(
+                "authentication.jwt.external.public-key",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        );
+        backends.stream()
+                .collect(Collectors.groupingBy(StubBackend::getServiceId))
+                .forEach((serviceId, instances) -> properties.putAll(staticDiscovery(
+                        serviceId,
+                        instances.stream().map(StubBackend::getPort).collect(Collectors.toList())
+                )));
+        // Passed as command line arguments, so they take precedence over the application's configuration
+        final var args = properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+
+    /**
+     * Returns the latency of the given instance of a service
+     * (i.e the first one is the slow one, if there is more than one and a slow instance latency is configured).
+     *
+     * @param settings The {@link LoadSettings}.
+     * @param instance The index of the instance.
+     * @return The time the instance takes to answer each request.
+     */
+    private static Duration latency(final LoadSettings settings, final int instance) {
+        return instance == 0 && settings.getInstances() > 1 && !settings.getSlowInstanceLatency().isZero()
+                ? settings.getSlowInstanceLatency()
+                : settings.getBackendLatency();
+    }
+
+    /**
+     * Creates the properties that make the gateway find the backends of a service (in the given {@code ports})
+     * without using the discovery service (i.e a static list of servers for the load balancer,
+     * and static instances for the discovery client).
+     *
+     * @param serviceId The id of the service.
+     * @param ports     The ports in which the backends of the service (i.e its instances) are listening.
+     * @return The properties.
+     */
+    /* package */ static Map<String, Object> staticDiscovery(final String serviceId, final List<Integer> ports) {
+        final var properties = new HashMap<String, Object>();
+        properties.put(
+                serviceId + ".ribbon.listOfServers",
+                ports.stream().map(port -> "localhost:" + port).collect(Collectors.joining(","))
+        );
+        for (var i = 0; i < ports.size(); i++) {
+            properties.put(
+                    "spring.cloud.discovery.client.simple.instances." + serviceId + "[" + i + "].uri",
+                    "http://localhost:" + ports.get(i)
+            );
+        }
+        return properties;
+    }
+
+    /**
+     * Prints the amount of connections through which the given {@code backends} received requests, by service.
+     *
+     * @param backends The {@link StubBackend}s.
+     */
+    private static void printUpstreamConnections(final List<StubBackend> backends) {
+        final var connections = backends.stream()
+                .collect(Collectors.groupingBy(
+                        StubBackend::getServiceId,
+                        Collectors.summingInt(StubBackend::getConnections)
+                ));
+        System.out.println("(upstream connections: " + SERVICES.stream()
+                .map(serviceId -> serviceId + "=" + connections.getOrDefault(serviceId, 0))
+                .collect(Collectors.joining(", ")) + ")");
+    }
+
+    /**
+     * Creates an external token (i.e like the ones issued by the users service), valid for one day.
+     *
+     * @param keyPair  The {@link KeyPair} used to sign the token.
+     * @param username The username.
+     * @return The token, in compact form.
+     */
+    /* package */ static String externalToken(final KeyPair keyPair, final String username) {
+        final var now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(username)
+                .claim("roles", ROLES)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + Duration.ofDays(1).toMillis()))
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    /**
+     * Runs the given {@code mix} for the given {@code duration}, waiting for all the responses.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param mix      The {@link TrafficMix} to be run.
+     * @param settings The {@link LoadSettings}.
+     * @param duration For how long the mix runs.
+     * @param tokens   The tokens of the users.
+     * @return The {@link LatencyReport} of the run.
+     */
+    private static LatencyReport run(
+            final HttpClient client,
+            final TrafficMix mix,
+            final LoadSettings settings,
+            final Duration duration,
+            final List<String> tokens) {
+        final var report = new LatencyReport();
+        mix.requests(settings, duration, tokens)
+                .flatMap(request -> send(client, request, report), Integer.MAX_VALUE)
+                .blockLast();
+        return report;
+    }
+
+    /**
+     * Sends the given {@code request}, recording its latency in the given {@code report}.
+     *
+     * @param client  The {@link HttpClient} used to send the request.
+     * @param request The {@link LoadRequest} to be sent.
+     * @param report  The {@link LatencyReport} in which the latency is recorded.
+     * @return A {@link Mono} that completes when the response is received.
+     */
+    private static Mono<Void> send(final HttpClient client, final LoadRequest request, final LatencyReport report) {
+        return Mono.defer(() -> {
+            final var startTime = System.nanoTime();
+            return client
+                    .headers(headers -> {
+                        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + request.getToken());
+                        Optional.ofNullable(request.getBody())
+                                .ifPresent(ignored ->
+                                        headers.set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE));
+                    })
+                    .request(HttpMethod.valueOf(request.getMethod().name()))
+                    .uri(request.getPath())
+                    .send(Optional.ofNullable(request.getBody())
+                            .map(body -> ByteBufFlux.fromString(Mono.just(body)))
+                            .orElseGet(() -> ByteBufFlux.fromString(Flux.empty())))
+                    .responseSingle((response, content) -> content.asByteArray()
+                            .then(Mono.fromRunnable(() -> record(report, response, System.nanoTime() - startTime))))
+                    .onErrorResume(ignored -> Mono.fromRunnable(report::recordError))
+                    .then();
+        });
+    }
+
+    /**
+     * Records a response in the given {@code report}.
+     *
+     * @param report     The {@link LatencyReport}.
+     * @param response   The {@link HttpClientResponse}.
+     * @param totalNanos The latency observed by the client, in nanoseconds.
+     */
+    private static void record(final LatencyReport report, final HttpClientResponse response, final long totalNanos) {
+        final var headers = response.responseHeaders();
+        final var serviceId = headers.get(StubBackend.SERVICE_HEADER);
+        final var processingNanos = headers.get(StubBackend.PROCESSING_TIME_HEADER);
+        if (response.status().code() / 100 != 2 || serviceId == null || processingNanos == null) {
+            report.recordError();
+            return;
+        }
+        report.record(serviceId, totalNanos, Long.parseLong(processingNanos));
+    }
+}
@@ -0,0 +1,349 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A self-contained benchmark that compares the time it takes to load the exam-taking page
+ * (i.e to get the responses of all the requests the page needs) with and without the batch endpoint.
+ * <p>
+ * It starts a {@link StubBackend} for each service the page calls, and the gateway (in this same process).
+ * Then, the configured amount of users load the page several times at the same time, in each of these modes:
+ * sending the requests one after the other (like the frontend does), sending them through up to six connections
+ * at once (like a browser would, at best), and sending all of them in a single batch. The round trip time between
+ * the clients and the gateway is simulated by delaying each request sent by a client.
+ * For each mode, it prints the requests sent to the gateway per page, and the page load times.
+ * The benchmark is configured through {@code page.*} system properties (see {@link PageLoadSettings}).
+ */
+public final class PageLoadBenchmark {
+
+    /**
+     * The services called by the page.
+     */
+    private static final List<String> SERVICES = List.of("evaluations-service", "users-service");
+
+    /**
+     * The requests sent to load the page.
+     */
+    private static final List<String> PAGE_REQUESTS = List.of(
+            "/actual-user",
+            "/exams/1",
+            "/exams/1/exercises",
+            "/exercises/1",
+            "/exercises/2",
+            "/exercises/3",
+            "/test-cases/1",
+            "/test-cases/2"
+    );
+
+    /**
+     * The maximum amount of connections a browser opens to the same host.
+     */
+    private static final int BROWSER_CONNECTIONS = 6;
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private PageLoadBenchmark() {
+    }
+
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments (ignored).
+     */
+    public static void main(final String[] args) {
+        final var settings = PageLoadSettings.fromSystemProperties();
+        System.out.println("Page load benchmark settings: " + settings);
+
+        final var backends = SERVICES.stream()
+                .map(serviceId -> new StubBackend(serviceId, settings.getBackendLatency()))
+                .collect(Collectors.toList());
+        final var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        final var gateway = startGateway(backends, keyPair, settings);
+        final var connectionProvider = ConnectionProvider.fixed(
+                "page-load-benchmark",
+                settings.getUsers() * BROWSER_CONNECTIONS
+        );
+        try {
+            final var client = HttpClient.create(connectionProvider)
+                    .baseUrl("http://localhost:"
+                            + ((ReactiveWebServerApplicationContext) gateway).getWebServer().getPort());
+            final var tokens = new ArrayList<String>();
+            for (var i = 0; i < settings.getUsers(); i++) {
+                tokens.add(LoadTest.externalToken(keyPair, "page-load-user-" + i));
+            }
+            // Warm up the gateway (and the internal tokens of the users) before measuring
+            run("warm-up", settings, tokens, PAGE_REQUESTS.size(), token -> sequential(client, token, settings));
+            run("sequential", settings, tokens, PAGE_REQUESTS.size(),
+                    token -> sequential(client, token, settings)).print();
+            run("parallel (" + BROWSER_CONNECTIONS + " connections)", settings, tokens, PAGE_REQUESTS.size(),
+                    token -> parallel(client, token, settings)).print();
+            run("batched", settings, tokens, 1, token -> batched(client, token, settings)).print();
+        } finally {
+            connectionProvider.dispose();
+            gateway.close();
+            backends.forEach(StubBackend::stop);
+        }
+    }
+
+
+    /**
+     * Starts the gateway in a random port, routing to the given {@code backends}.
+     *
+     * @param backends The {@link StubBackend}s to which requests are routed.
+     * @param keyPair  The {@link KeyPair} with which external tokens are signed.
+     * @param settings The {@link PageLoadSettings}.
+     * @return The gateway's {@link ConfigurableApplicationContext}.
+     */
+    private static ConfigurableApplicationContext startGateway(
+            final List<StubBackend> backends,
+            final KeyPair keyPair,
+            final PageLoadSettings settings) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("server.port", 0);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.zipkin.enabled", false);
+        // Each user loads pages far faster than the per user limits allow
+        properties.put("rate-limit.enabled", false);
+        // All users load the same page: only the batching must make a difference
+        properties.put("coalescing.enabled", false);
+        properties.put("response-cache.enabled", false);
+        properties.put(
+                "resilience.default-route.bulkhead.max-concurrent-requests",
+                settings.getUsers() * PAGE_REQUESTS.size()
+        );
+        properties.put("logging.level.ar.edu.itba.cep.api_gateway", "INFO");
+        properties.put(
+                "authentication.jwt.external.public-key",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        );
+        backends.forEach(backend -> properties.putAll(
+                LoadTest.staticDiscovery(backend.getServiceId(), List.of(backend.getPort()))
+        ));
+        // Passed as command line arguments, so they take precedence over the application's configuration
+        final var args = properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+
+    /**
+     * Makes all the users load the page (each one the configured amount of times) in the given way.
+     *
+     * @param mode             The name of the way in which the page is loaded.
+     * @param settings         The {@link PageLoadSettings}.
+     * @param tokens           The tokens of the users.
+     * @param requestsPerPage  The amount of requests sent to the gateway to load the page.
+     * @param load             A function that takes the token of a user, and returns a {@link Mono}
+     *                         that completes once the page is loaded (or fails if any of its requests failed).
+     * @return The {@link Run}.
+     */
+    private static Run run(
+            final String mode,
+            final PageLoadSettings settings,
+            final List<String> tokens,
+            final int requestsPerPage,
+            final Function<String, Mono<Void>> load) {
+        final var run = new Run(mode, requestsPerPage);
+        Flux.fromIterable(tokens)
+                .flatMap(
+                        token -> Flux.range(0, settings.getLoads())
+                                .concatMap(attempt -> Mono.defer(() -> {
+                                    final var startTime = System.nanoTime();
+                                    return load.apply(token)
+                                            .doOnSuccess(result -> run.record(System.nanoTime() - startTime))
+                                            .onErrorResume(error -> Mono.fromRunnable(run.errors::increment));
+                                })),
+                        tokens.size()
+                )
+                .blockLast();
+        return run;
+    }
+
+    /**
+     * Loads the page sending its requests one after the other.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param token    The token of the user.
+     * @param settings The {@link PageLoadSettings}.
+     * @return A {@link Mono} that completes once the page is loaded.
+     */
+    private static Mono<Void> sequential(final HttpClient client, final String token, final PageLoadSettings settings) {
+        return Flux.fromIterable(PAGE_REQUESTS)
+                .concatMap(path -> get(client, token, path, settings))
+                .then();
+    }
+
+    /**
+     * Loads the page sending its requests through up to {@link #BROWSER_CONNECTIONS} connections at once.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param token    The token of the user.
+     * @param settings The {@link PageLoadSettings}.
+     * @return A {@link Mono} that completes once the page is loaded.
+     */
+    private static Mono<Void> parallel(final HttpClient client, final String token, final PageLoadSettings settings) {
+        return Flux.fromIterable(PAGE_REQUESTS)
+                .flatMap(path -> get(client, token, path, settings), BROWSER_CONNECTIONS)
+                .then();
+    }
+
+    /**
+     * Loads the page sending all its requests in a single batch.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param token    The token of the user.
+     * @param settings The {@link PageLoadSettings}.
+     * @return A {@link Mono} that completes once the page is loaded.
+     */
+    private static Mono<Void> batched(final HttpClient client, final String token, final PageLoadSettings settings) {
+        final var batch = PAGE_REQUESTS.stream()
+                .map(path -> "{\"method\":\"GET\",\"path\":\"" + path + "\"}")
+                .collect(Collectors.joining(",", "{\"requests\":[", "]}"));
+        return Mono.delay(settings.getClientLatency())
+                .then(client
+                        .headers(headers -> headers
+                                .set(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                                .set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE))
+                        .post()
+                        .uri("/batch")
+                        .send(ByteBufFlux.fromString(Mono.just(batch)))
+                        .responseSingle((response, body) -> response.status().code() == 200
+                                ? body.asString()
+                                : Mono.error(new IllegalStateException("The batch failed: " + response.status()))))
+                .flatMap(results -> {
+                    final var lines = results.lines().filter(line -> !line.isBlank()).collect(Collectors.toList());
+                    return lines.size() == PAGE_REQUESTS.size()
+                            && lines.stream().allMatch(line -> line.contains("\"status\":200"))
+                            ? Mono.<Void>empty()
+                            : Mono.<Void>error(new IllegalStateException("A request of the batch failed"));
+                });
+    }
+
+    /**
+     * Sends a GET request with the given {@code path} to the gateway, after the client latency.
+     *
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @param token    The token of the user.
+     * @param path     The path.
+     * @param settings The {@link PageLoadSettings}.
+     * @return A {@link Mono} that completes once the response is received (or fails if it is not a 200 OK one).
+     */
+    private static Mono<Void> get(
+            final HttpClient client,
+            final String token,
+            final String path,
+            final PageLoadSettings settings) {
+        return Mono.delay(settings.getClientLatency())
+                .then(client
+                        .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                        .get()
+                        .uri(path)
+                        .responseSingle((response, body) -> response.status().code() == 200
+                                ? body.asString().then()
+                                : Mono.error(new IllegalStateException(path + " failed: " + response.status()))));
+    }
+
+
+    /**
+     * The results of loading the page in a given way.
+     */
+    private static final class Run {
+
+        /**
+         * The name of the way in which the page was loaded.
+         */
+        private final String mode;
+        /**
+         * The amount of requests sent to the gateway to load the page.
+         */
+        private final int requestsPerPage;
+        /**
+         * The time each page load took, in nanoseconds.
+         */
+        private final List<Long> nanos;
+        /**
+         * The amount of page loads that failed.
+         */
+        private final LongAdder errors;
+
+
+        /**
+         * Constructor.
+         *
+         * @param mode            The name of the way in which the page was loaded.
+         * @param requestsPerPage The amount of requests sent to the gateway to load the page.
+         */
+        private Run(final String mode, final int requestsPerPage) {
+            this.mode = mode;
+            this.requestsPerPage = requestsPerPage;
+            this.nanos = Collections.synchronizedList(new ArrayList<>());
+            this.errors = new LongAdder();
+        }
+
+
+        /**
+         * Records the time a page load took.
+         *
+         * @param elapsedNanos The time, in nanoseconds.
+         */
+        private void record(final long elapsedNanos) {
+            nanos.add(elapsedNanos);
+        }
+
+        /**
+         * Prints the results.
+         */
+        private void print() {
+            final var sorted = new ArrayList<>(nanos);
+            Collections.sort(sorted);
+            System.out.println();
+            System.out.println(mode + " (" + errors.sum() + " errors)");
+            System.out.printf("  requests to the gateway per page: %d%n", requestsPerPage);
+            if (!sorted.isEmpty()) {
+                System.out.printf("  page load time (ms): p50 %.1f, p99 %.1f, max %.1f%n",
+                        millis(sorted, 0.5), millis(sorted, 0.99), millis(sorted, 1));
+            }
+        }
+
+        /**
+         * Returns the given {@code quantile} of the given sorted times, in milliseconds.
+         *
+         * @param sorted   The sorted times, in nanoseconds.
+         * @param quantile The quantile.
+         * @return The quantile, in milliseconds.
+         */
+        private static double millis(final List<Long> sorted, final double quantile) {
+            final var index = (int) Math.min(sorted.size() - 1, Math.ceil(quantile * sorted.size()) - 1);
+            return sorted.get(Math.max(0, index)) / 1_000_000d;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+
+/**
+ * The settings of a page load benchmark, taken from system properties.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class PageLoadSettings {
+
+    /**
+     * The amount of users loading pages at the same time.
+     */
+    private final int users;
+    /**
+     * The amount of pages each user loads (one after the other) in each mode.
+     */
+    private final int loads;
+    /**
+     * The time the services take to answer each request.
+     */
+    private final Duration backendLatency;
+    /**
+     * The round trip time between the clients and the gateway (added to each request sent by a client).
+     */
+    private final Duration clientLatency;
+
+
+    /**
+     * Creates the {@link PageLoadSettings} from the {@code page.*} system properties.
+     *
+     * @return The {@link PageLoadSettings}.
+     */
+    /* package */ static PageLoadSettings fromSystemProperties() {
+        return new PageLoadSettings(
+                Integer.getInteger("page.users", 50),
+                Integer.getInteger("page.loads", 20),
+                DurationStyle.detectAndParse(System.getProperty("page.backend-latency", "10ms")),
+                DurationStyle.detectAndParse(System.getProperty("page.client-latency", "40ms"))
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", loads=" + loads
+                + ", backend latency=" + backendLatency + ", client latency=" + clientLatency;
+    }
+}
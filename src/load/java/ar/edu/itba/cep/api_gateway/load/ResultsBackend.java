@@ -0,0 +1,174 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stub of the playground service that only serves the results of execution requests
+ * (in {@code /execution-requests/{id}/result}), running on a local Netty server.
+ * <p>
+ * Each execution completes a fixed time after its result is first requested.
+ * Results can be polled (the response says whether the execution is still running),
+ * or watched with a WebSocket, through which the result is sent once the execution completes.
+ * It counts the requests it receives (i.e polls and handshakes) and the messages it sends.
+ */
+/* package */ final class ResultsBackend {
+
+    /**
+     * The prefix of the results paths.
+     */
+    private static final String PATH_PREFIX = "/execution-requests/";
+
+    /**
+     * The body of the responses of executions that are still running.
+     */
+    private static final String RUNNING = "{\"state\":\"RUNNING\"}";
+
+    /**
+     * The body of the responses (and messages) of completed executions.
+     */
+    private static final String COMPLETED = "{\"state\":\"COMPLETED\",\"exitCode\":0,\"stdout\":[\"Hello world\"]}";
+
+
+    /**
+     * The time each execution takes, in nanoseconds.
+     */
+    private final long executionNanos;
+    /**
+     * The instant in which each execution completes (in {@link System#nanoTime()} terms), keyed by id.
+     */
+    private final Map<String, Long> completions;
+    /**
+     * The amount of received requests (polls and handshakes).
+     */
+    private final LongAdder requests;
+    /**
+     * The amount of messages sent through WebSockets.
+     */
+    private final LongAdder messages;
+    /**
+     * The running server.
+     */
+    private final DisposableServer server;
+
+
+    /**
+     * Constructor. Starts the server in a random port.
+     *
+     * @param executionTime The time each execution takes.
+     */
+    /* package */ ResultsBackend(final Duration executionTime) {
+        this.executionNanos = executionTime.toNanos();
+        this.completions = new ConcurrentHashMap<>();
+        this.requests = new LongAdder();
+        this.messages = new LongAdder();
+        this.server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> {
+                    requests.increment();
+                    final var id = executionId(request);
+                    if (id == null) {
+                        return response.sendNotFound();
+                    }
+                    final var completion = completions
+                            .computeIfAbsent(id, ignored -> System.nanoTime() + executionNanos);
+                    final var headers = request.requestHeaders();
+                    if (headers.containsValue(HttpHeaderNames.UPGRADE, HttpHeaderValues.WEBSOCKET, true)) {
+                        return response.sendWebsocket((inbound, outbound) -> outbound
+                                .sendString(Mono.delay(remaining(completion))
+                                        .map(ignored -> COMPLETED)
+                                        .doOnNext(ignored -> messages.increment()))
+                                .then(outbound.sendClose()));
+                    }
+                    return response
+                            .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                            .sendString(Mono.just(System.nanoTime() >= completion ? COMPLETED : RUNNING))
+                            .then();
+                })
+                .bindNow();
+    }
+
+
+    /**
+     * @return The port in which the server is listening.
+     */
+    /* package */ int getPort() {
+        return server.port();
+    }
+
+    /**
+     * @return The amount of received requests (polls and handshakes) since the last reset.
+     */
+    /* package */ long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return The amount of messages sent through WebSockets since the last reset.
+     */
+    /* package */ long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * Resets the counters.
+     */
+    /* package */ void reset() {
+        requests.reset();
+        messages.reset();
+    }
+
+    /**
+     * Stops the server.
+     */
+    /* package */ void stop() {
+        server.disposeNow();
+    }
+
+
+    /**
+     * Returns whether the given polled {@code body} is the one of a completed execution.
+     *
+     * @param body The body of a poll response.
+     * @return {@code true} if the execution is completed, or {@code false} otherwise.
+     */
+    /* package */ static boolean isCompleted(final String body) {
+        return COMPLETED.equals(body);
+    }
+
+
+    /**
+     * Takes the execution id from the path of the given {@code request}.
+     *
+     * @param request The {@link HttpServerRequest}.
+     * @return The id, or {@code null} if the path is not a results path.
+     */
+    private static String executionId(final HttpServerRequest request) {
+        final var path = request.path(); // Without leading slash, nor query
+        final var prefix = PATH_PREFIX.substring(1);
+        if (!path.startsWith(prefix) || !path.endsWith("/result")) {
+            return null;
+        }
+        final var id = path.substring(prefix.length(), path.length() - "/result".length());
+        return id.isEmpty() || id.contains("/") ? null : id;
+    }
+
+    /**
+     * Returns the time remaining until the given {@code completion} instant.
+     *
+     * @param completion The instant (in {@link System#nanoTime()} terms).
+     * @return The remaining time (zero if it already passed).
+     */
+    private static Duration remaining(final long completion) {
+        return Duration.ofNanos(Math.max(0, completion - System.nanoTime()));
+    }
+}
@@ -0,0 +1,403 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import ar.edu.itba.cep.api_gateway.Application;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A benchmark of how long the gateway takes to start, from the process being launched until the first request
+ * is proxied (i.e the time a new replica takes to be useful), and of its resident set size at that point.
+ * <p>
+ * It prepares the application for a fast startup with the same script used when building the Docker image,
+ * starts a {@link StubBackend} of the evaluations service, and then starts the gateway (in a new process each time)
+ * once per run and {@link Mode}, sending requests until one is proxied to the stub.
+ * Modes are interleaved in each run, so they are equally affected by any change in the machine's load.
+ * The gateway does not use the discovery service (i.e it finds the stub through a static list of servers),
+ * so the time it takes to register and fetch the registry is not included.
+ * The benchmark is configured through {@code startup.*} system properties (see {@link StartupSettings}).
+ */
+public final class StartupBenchmark {
+
+    /**
+     * The id of the service to which the first request is proxied.
+     */
+    private static final String SERVICE_ID = "evaluations-service";
+
+    /**
+     * The path of the first request.
+     */
+    private static final String PATH = "/exams/1";
+
+    /**
+     * The time between requests sent while the gateway is starting.
+     */
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+
+    /**
+     * For how long each request sent while the gateway is starting is waited.
+     */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The classpath of the exploded application (relative to the directory in which it is prepared).
+     */
+    private static final String EXPLODED_CLASSPATH = "application.jar:lib/*";
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private StartupBenchmark() {
+    }
+
+
+    /**
+     * Entry point.
+     *
+     * @param args Program arguments (ignored).
+     * @throws IOException          If the application can not be prepared, or a gateway process can not be started.
+     * @throws InterruptedException If interrupted while waiting for a gateway process.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final var settings = StartupSettings.fromSystemProperties();
+        System.out.println("Startup benchmark settings: " + settings);
+        prepare(settings);
+
+        final var backend = new StubBackend(SERVICE_ID, Duration.ZERO);
+        final var keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        final var token = LoadTest.externalToken(keyPair, "startup-benchmark");
+        final var client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        final var samples = new EnumMap<Mode, List<Sample>>(Mode.class);
+        try {
+            for (var run = 1; run <= settings.getRuns(); run++) {
+                for (final var mode : Mode.values()) {
+                    final var sample = measure(mode, settings, backend, keyPair, token, client);
+                    System.out.printf("Run %d, %s: first request proxied after %d ms, RSS %d MB%n",
+                            run, mode, sample.getMillis(), sample.getRssMegabytes());
+                    samples.computeIfAbsent(mode, ignored -> new ArrayList<>()).add(sample);
+                }
+            }
+        } finally {
+            backend.stop();
+        }
+        print(samples);
+    }
+
+
+    /**
+     * Prepares the application for a fast startup in the configured directory
+     * (i.e explodes it and creates the class data sharing archive).
+     *
+     * @param settings The {@link StartupSettings}.
+     * @throws IOException          If the script can not be run, or it fails.
+     * @throws InterruptedException If interrupted while waiting for the script.
+     */
+    private static void prepare(final StartupSettings settings) throws IOException, InterruptedException {
+        final var process = new ProcessBuilder(
+                "sh",
+                settings.getScript().toString(),
+                settings.getJar().toString(),
+                settings.getDirectory().toString(),
+                "true"
+        )
+                .inheritIO()
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IOException("Could not prepare the application for a fast startup");
+        }
+    }
+
+    /**
+     * Starts the gateway in the given {@code mode}, and measures the time until the first request is proxied,
+     * and its resident set size at that point. The gateway is stopped afterwards.
+     *
+     * @param mode     The {@link Mode}.
+     * @param settings The {@link StartupSettings}.
+     * @param backend  The {@link StubBackend} to which requests are routed.
+     * @param keyPair  The {@link KeyPair} with which external tokens are signed.
+     * @param token    The external token sent in the requests.
+     * @param client   The {@link HttpClient} used to send requests to the gateway.
+     * @return The measured {@link Sample}.
+     * @throws IOException          If the gateway process can not be started.
+     * @throws InterruptedException If interrupted while waiting for the gateway.
+     * @throws IllegalStateException If the gateway exits, or does not proxy a request within the configured timeout.
+     */
+    private static Sample measure(
+            final Mode mode,
+            final StartupSettings settings,
+            final StubBackend backend,
+            final KeyPair keyPair,
+            final String token,
+            final HttpClient client) throws IOException, InterruptedException, IllegalStateException {
+        final var port = freePort();
+        final var command = mode.command(settings);
+        command.addAll(arguments(port, backend, keyPair));
+        final var log = settings.getDirectory().resolve(mode.name().toLowerCase(Locale.ROOT) + ".log");
+        final var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + PATH))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+
+        final var startTime = System.nanoTime();
+        final var process = new ProcessBuilder(command)
+                .directory(settings.getDirectory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+        try {
+            while (!isProxied(client, request)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The gateway exited with status " + process.exitValue()
+                            + " (see " + log + ")");
+                }
+                if (System.nanoTime() - startTime > settings.getTimeout().toNanos()) {
+                    throw new IllegalStateException("The gateway did not proxy a request in time (see " + log + ")");
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            final var elapsedNanos = System.nanoTime() - startTime;
+            return new Sample(elapsedNanos, residentSetSizeKilobytes(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * Creates the program arguments of the gateway, which make it listen on the given {@code port},
+     * and route requests to the given {@code backend} without using the discovery service.
+     *
+     * @param port    The port in which the gateway listens.
+     * @param backend The {@link StubBackend} to which requests are routed.
+     * @param keyPair The {@link KeyPair} with which external tokens are signed.
+     * @return The arguments.
+     */
+    private static List<String> arguments(final int port, final StubBackend backend, final KeyPair keyPair) {
+        final var properties = new HashMap<String, Object>();
+        properties.put("server.port", port);
+        properties.put("eureka.client.enabled", false);
+        properties.put("spring.zipkin.enabled", false);
+        properties.put(
+                "authentication.jwt.external.public-key",
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded())
+        );
+        properties.putAll(LoadTest.staticDiscovery(backend.getServiceId(), List.of(backend.getPort())));
+        return properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sends the given {@code request}, and checks whether it was proxied to the stub backend.
+     *
+     * @param client  The {@link HttpClient} used to send the request.
+     * @param request The {@link HttpRequest}.
+     * @return {@code true} if the request was proxied, or {@code false} otherwise
+     * (i.e the gateway is not listening yet, or the request could not be routed yet).
+     * @throws InterruptedException If interrupted while waiting for the response.
+     */
+    private static boolean isProxied(final HttpClient client, final HttpRequest request) throws InterruptedException {
+        try {
+            final var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200
+                    && response.headers().firstValue(StubBackend.SERVICE_HEADER).isPresent();
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds a free port.
+     *
+     * @return The port.
+     * @throws IOException If no port can be opened.
+     */
+    private static int freePort() throws IOException {
+        try (final var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Gets the resident set size of the process with the given {@code pid} (using {@code ps}).
+     *
+     * @param pid The process id.
+     * @return The resident set size, in kilobytes, or {@code -1} if it can not be known.
+     * @throws IOException          If {@code ps} can not be run.
+     * @throws InterruptedException If interrupted while waiting for {@code ps}.
+     */
+    private static long residentSetSizeKilobytes(final long pid) throws IOException, InterruptedException {
+        final var process = new ProcessBuilder("ps", "-o", "rss=", "-p", Long.toString(pid))
+                .redirectErrorStream(true)
+                .start();
+        final var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+        if (process.waitFor() != 0 || output.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(output);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Prints the median, minimum and maximum times until the first request is proxied,
+     * and the median resident set size, of each mode.
+     *
+     * @param samples The {@link Sample}s of each {@link Mode}.
+     */
+    private static void print(final Map<Mode, List<Sample>> samples) {
+        System.out.println();
+        System.out.println("Time to first proxied request, and resident set size at that point");
+        System.out.printf("  %-14s %10s %10s %10s %10s%n", "mode", "p50 (ms)", "min (ms)", "max (ms)", "RSS (MB)");
+        samples.forEach((mode, modeSamples) -> System.out.printf("  %-14s %10d %10d %10d %10d%n",
+                mode,
+                median(modeSamples, Sample::getMillis),
+                modeSamples.stream().mapToLong(Sample::getMillis).min().orElse(0),
+                modeSamples.stream().mapToLong(Sample::getMillis).max().orElse(0),
+                median(modeSamples, Sample::getRssMegabytes)
+        ));
+    }
+
+    /**
+     * Calculates the median of the given {@code samples}.
+     *
+     * @param samples The {@link Sample}s.
+     * @param value   A function that takes the value from each {@link Sample}.
+     * @return The median value.
+     */
+    private static long median(final List<Sample> samples, final ToLongFunction<Sample> value) {
+        final var values = samples.stream().mapToLong(value).sorted().toArray();
+        return values.length == 0 ? 0 : values[values.length / 2];
+    }
+
+
+    /**
+     * The ways in which the gateway is started.
+     */
+    private enum Mode {
+        /**
+         * The Spring Boot jar (i.e how the gateway started before fast startups were supported).
+         */
+        BASELINE,
+        /**
+         * The exploded application, with lazy initialization.
+         */
+        LAZY,
+        /**
+         * The exploded application, with lazy initialization and the class data sharing archive
+         * (i.e like the Docker image built for fast startups).
+         */
+        FAST_STARTUP;
+
+        /**
+         * Creates the command that starts the gateway in this mode (without program arguments),
+         * to be run in the directory in which the application was prepared.
+         *
+         * @param settings The {@link StartupSettings}.
+         * @return The command (a mutable {@link List}, so program arguments can be added).
+         * @throws IOException If the JVM options of a fast startup can not be read.
+         */
+        private List<String> command(final StartupSettings settings) throws IOException {
+            final var command = new ArrayList<String>();
+            command.add("java");
+            switch (this) {
+                case BASELINE:
+                    command.add("-jar");
+                    command.add(settings.getJar().toAbsolutePath().toString());
+                    return command;
+                case LAZY:
+                    // The same settings as the fast startup JVM options (see the prepare-fast-startup.sh script)
+                    command.add("-Dfast-startup.lazy-initialization=true");
+                    command.add("-Dspring.jmx.enabled=false");
+                    break;
+                case FAST_STARTUP:
+                    // Fail early if the application was not prepared with an archive
+                    if (Files.readString(settings.getDirectory().resolve("jvm.options")).isBlank()) {
+                        throw new IOException("There are no JVM options for a fast startup");
+                    }
+                    command.add("@jvm.options");
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown mode: " + this);
+            }
+            command.add("-cp");
+            command.add(EXPLODED_CLASSPATH);
+            command.add(Application.class.getName());
+            return command;
+        }
+    }
+
+    /**
+     * A measurement of a single startup.
+     */
+    private static final class Sample {
+
+        /**
+         * The time until the first request was proxied, in nanoseconds.
+         */
+        private final long nanos;
+        /**
+         * The resident set size when the first request was proxied, in kilobytes (or {@code -1} if unknown).
+         */
+        private final long rssKilobytes;
+
+
+        /**
+         * Constructor.
+         *
+         * @param nanos        The time until the first request was proxied, in nanoseconds.
+         * @param rssKilobytes The resident set size when the first request was proxied, in kilobytes
+         *                     (or {@code -1} if unknown).
+         */
+        private Sample(final long nanos, final long rssKilobytes) {
+            this.nanos = nanos;
+            this.rssKilobytes = rssKilobytes;
+        }
+
+
+        /**
+         * @return The time until the first request was proxied, in milliseconds.
+         */
+        private long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * @return The resident set size when the first request was proxied, in megabytes (or {@code -1} if unknown).
+         */
+        private long getRssMegabytes() {
+            return rssKilobytes < 0 ? -1 : rssKilobytes / 1024;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The settings of a startup benchmark, taken from system properties.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class StartupSettings {
+
+    /**
+     * The application's (Spring Boot) jar.
+     */
+    private final Path jar;
+    /**
+     * The script that prepares the application for a fast startup (the same one used when building the Docker image).
+     */
+    private final Path script;
+    /**
+     * The directory in which the application is prepared for a fast startup.
+     */
+    private final Path directory;
+    /**
+     * How many times the gateway is started in each mode.
+     */
+    private final int runs;
+    /**
+     * For how long a single start is waited (until the first request is proxied) before failing.
+     */
+    private final Duration timeout;
+
+
+    /**
+     * Creates the {@link StartupSettings} from the {@code startup.*} system properties.
+     *
+     * @return The {@link StartupSettings}.
+     * @throws NullPointerException If the jar or the script are not set.
+     */
+    /* package */ static StartupSettings fromSystemProperties() throws NullPointerException {
+        return new StartupSettings(
+                Paths.get(Objects.requireNonNull(System.getProperty("startup.jar"), "startup.jar must be set")),
+                Paths.get(Objects.requireNonNull(System.getProperty("startup.script"), "startup.script must be set")),
+                Paths.get(System.getProperty("startup.directory", "target/startup-benchmark")),
+                Integer.getInteger("startup.runs", 5),
+                DurationStyle.detectAndParse(System.getProperty("startup.timeout", "2m"))
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "jar=" + jar + ", directory=" + directory + ", runs=" + runs + ", timeout=" + timeout;
+    }
+}
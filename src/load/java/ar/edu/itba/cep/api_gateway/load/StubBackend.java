@@ -0,0 +1,120 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A stub of one of the services behind the gateway, running on a local Netty server.
+ * It drains the request body, waits for the configured latency, and answers with a small JSON body.
+ * Responses include the {@link #SERVICE_HEADER} (so the load test knows which route handled the request),
+ * and the {@link #PROCESSING_TIME_HEADER} (so the time spent in the backend can be subtracted from the latency).
+ * It accepts both HTTP/1.1 and h2c (with prior knowledge),
+ * and counts the connections through which it received requests.
+ */
+/* package */ final class StubBackend {
+
+    /**
+     * The header with the id of the service that answered the request.
+     */
+    /* package */ static final String SERVICE_HEADER = "X-Stub-Service";
+
+    /**
+     * The header with the time spent in the backend, in nanoseconds.
+     */
+    /* package */ static final String PROCESSING_TIME_HEADER = "X-Stub-Processing-Nanos";
+
+    /**
+     * The body of every response.
+     */
+    private static final String RESPONSE_BODY =
+            "{\"id\":1234,\"description\":\"Stub response\",\"state\":\"IN_PROGRESS\",\"duration\":120}";
+
+
+    /**
+     * The id of the stubbed service.
+     */
+    private final String serviceId;
+    /**
+     * The running server.
+     */
+    private final DisposableServer server;
+    /**
+     * The remote addresses of the connections through which requests were received (i.e one per connection).
+     */
+    private final Set<InetSocketAddress> connections;
+
+
+    /**
+     * Constructor. Starts the server in a random port.
+     *
+     * @param serviceId The id of the stubbed service.
+     * @param latency   The time the backend takes to answer each request.
+     */
+    /* package */ StubBackend(final String serviceId, final Duration latency) {
+        this.serviceId = serviceId;
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.server = HttpServer.create()
+                .port(0)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .handle((request, response) -> {
+                    final var startTime = System.nanoTime();
+                    connections.add(request.remoteAddress());
+                    return request.receive()
+                            .then()
+                            .then(latency.isZero() ? Mono.empty() : Mono.delay(latency).then())
+                            .then(Mono.defer(() -> response
+                                    .header(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+                                    .header(SERVICE_HEADER, serviceId)
+                                    .header(PROCESSING_TIME_HEADER, Long.toString(System.nanoTime() - startTime))
+                                    .sendString(Mono.just(RESPONSE_BODY))
+                                    .then()
+                            ));
+                })
+                .bindNow();
+    }
+
+
+    /**
+     * @return The id of the stubbed service.
+     */
+    /* package */ String getServiceId() {
+        return serviceId;
+    }
+
+    /**
+     * @return The port in which the server is listening.
+     */
+    /* package */ int getPort() {
+        return server.port();
+    }
+
+    /**
+     * @return The amount of connections through which requests were received since the last reset.
+     */
+    /* package */ int getConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Resets the amount of connections (i.e only the ones through which requests are received from now on count).
+     */
+    /* package */ void resetConnections() {
+        connections.clear();
+    }
+
+    /**
+     * Stops the server.
+     */
+    /* package */ void stop() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,156 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import org.springframework.http.HttpMethod;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The kinds of traffic with which the gateway can be loaded.
+ * Each mix emits the requests to be sent, at the moment they must be sent (i.e the load is open-loop).
+ */
+/* package */ enum TrafficMix {
+
+    /**
+     * All the users start an exam during the run: each user loads the exam, its exercises and its own data.
+     * Users arrive uniformly during the run (so the rate is given by the amount of users and the duration).
+     */
+    EXAM_START_STORM {
+        @Override
+        /* package */ Flux<LoadRequest> requests(
+                final LoadSettings settings,
+                final Duration duration,
+                final List<String> tokens) {
+            final var window = duration.toMillis();
+            return Flux.range(0, settings.getUsers())
+                    .flatMap(
+                            user -> Mono.delay(Duration.ofMillis(ThreadLocalRandom.current().nextLong(window)))
+                                    .flatMapMany(ignored -> examStart(tokens.get(user))),
+                            settings.getUsers()
+                    );
+        }
+    },
+
+    /**
+     * Users save and submit solutions at a steady rate (the configured one).
+     */
+    STEADY_SUBMISSIONS {
+        @Override
+        /* package */ Flux<LoadRequest> requests(
+                final LoadSettings settings,
+                final Duration duration,
+                final List<String> tokens) {
+            return Flux.interval(Duration.ofNanos(1_000_000_000L / settings.getRate()))
+                    .take(duration)
+                    .map(i -> i % 4 == 0
+                            ? new LoadRequest(
+                                    HttpMethod.POST,
+                                    "/solutions-submissions/" + id(),
+                                    null,
+                                    randomToken(tokens)
+                            )
+                            : new LoadRequest(HttpMethod.PUT, "/solutions/" + id(), SOLUTION, randomToken(tokens))
+                    );
+        }
+    },
+
+    /**
+     * Users run code in the playground in bursts: every second, as many execution requests
+     * as the configured rate are sent at once.
+     */
+    PLAYGROUND_BURSTS {
+        @Override
+        /* package */ Flux<LoadRequest> requests(
+                final LoadSettings settings,
+                final Duration duration,
+                final List<String> tokens) {
+            return Flux.interval(Duration.ZERO, Duration.ofSeconds(1))
+                    .take(duration)
+                    .flatMapIterable(ignored -> IntStream.range(0, settings.getRate())
+                            .mapToObj(i -> new LoadRequest(
+                                    HttpMethod.POST,
+                                    "/execution-requests",
+                                    EXECUTION_REQUEST,
+                                    randomToken(tokens)
+                            ))
+                            .collect(Collectors.toList())
+                    );
+        }
+    },
+    ;
+
+
+    /**
+     * The body of a solution being saved.
+     */
+    private static final String SOLUTION = "{\"answer\":\""
+            + "def solve(values):\\n    return sorted(values)\\n".repeat(20)
+            + "\",\"language\":\"PYTHON\",\"compilerFlags\":null,\"mainFileName\":\"main.py\"}";
+
+    /**
+     * The body of an execution request.
+     */
+    private static final String EXECUTION_REQUEST = "{\"code\":\"" + "print(input())\\n".repeat(40)
+            + "\",\"programArguments\":[\"1\",\"2\"],\"stdin\":[\"hello\"],\"timeout\":1000,\"language\":\"PYTHON\"}";
+
+    /**
+     * The amount of distinct exams.
+     */
+    private static final int EXAMS = 10;
+
+
+    /**
+     * Creates the requests to be sent to the gateway.
+     *
+     * @param settings The {@link LoadSettings}.
+     * @param duration For how long requests are emitted.
+     * @param tokens   The tokens of the users (one per user).
+     * @return A {@link Flux} that emits each request when it must be sent.
+     */
+    /* package */ abstract Flux<LoadRequest> requests(
+            final LoadSettings settings,
+            final Duration duration,
+            final List<String> tokens);
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+
+    /**
+     * Creates the requests a user sends when starting an exam.
+     *
+     * @param token The user's token.
+     * @return A {@link Flux} with the requests.
+     */
+    private static Flux<LoadRequest> examStart(final String token) {
+        final var exam = "/exams/" + ThreadLocalRandom.current().nextInt(EXAMS);
+        return Flux.just(
+                new LoadRequest(HttpMethod.GET, exam, null, token),
+                new LoadRequest(HttpMethod.GET, exam + "/exercises", null, token),
+                new LoadRequest(HttpMethod.GET, "/actual-user", null, token)
+        );
+    }
+
+    /**
+     * @param tokens The tokens of the users.
+     * @return A token of a random user.
+     */
+    private static String randomToken(final List<String> tokens) {
+        return tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+    }
+
+    /**
+     * @return A random id.
+     */
+    private static long id() {
+        return ThreadLocalRandom.current().nextLong(1, 100_000);
+    }
+}
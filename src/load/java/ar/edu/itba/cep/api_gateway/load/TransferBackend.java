@@ -0,0 +1,134 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stub service that receives and sends large bodies, running on a local Netty server.
+ * <p>
+ * POST requests get the size of their body, which is consumed at a limited rate (so the service is the slow side).
+ * GET requests get a body of the size in their {@code size} query parameter, sent as fast as the client reads it.
+ * Bodies are never aggregated, and the sent ones are made of a single shared chunk.
+ */
+/* package */ final class TransferBackend {
+
+    /**
+     * The size of the chunks in which bodies are sent.
+     */
+    /* package */ static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The chunk of which sent bodies are made.
+     */
+    private static final byte[] CHUNK = new byte[CHUNK_SIZE];
+
+
+    /**
+     * The rate at which request bodies are consumed, in bytes per second.
+     */
+    private final long bytesPerSecond;
+    /**
+     * The amount of bytes received in request bodies.
+     */
+    private final AtomicLong received;
+    /**
+     * The running server.
+     */
+    private final DisposableServer server;
+
+
+    /**
+     * Constructor. Starts the server in a random port.
+     *
+     * @param bytesPerSecond The rate at which request bodies are consumed, in bytes per second.
+     */
+    /* package */ TransferBackend(final long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.received = new AtomicLong(0);
+        this.server = HttpServer.create()
+                .port(0)
+                .handle((request, response) -> {
+                    if (request.method().equals(HttpMethod.POST)) {
+                        return response.sendString(
+                                throttle(request.receive().map(ByteBuf::readableBytes), bytesPerSecond)
+                                        .doOnNext(received::addAndGet)
+                                        .reduce(0L, Long::sum)
+                                        .map(String::valueOf)
+                        );
+                    }
+                    final var size = new QueryStringDecoder(request.uri()).parameters()
+                            .getOrDefault("size", List.of("0"))
+                            .get(0);
+                    return response.send(chunks(Long.parseLong(size)));
+                })
+                .bindNow();
+    }
+
+
+    /**
+     * @return The port in which the server is listening.
+     */
+    /* package */ int getPort() {
+        return server.port();
+    }
+
+    /**
+     * @return The amount of bytes received in request bodies.
+     */
+    /* package */ long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Stops the server.
+     */
+    /* package */ void stop() {
+        server.disposeNow();
+    }
+
+
+    /**
+     * Creates a body of the given {@code size}, made of the shared chunk.
+     *
+     * @param size The size of the body.
+     * @return A {@link Flux} with the chunks of the body.
+     */
+    /* package */ static Flux<ByteBuf> chunks(final long size) {
+        final var chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return Flux.range(0, (int) chunks)
+                .map(index -> Unpooled.wrappedBuffer(
+                        CHUNK,
+                        0,
+                        (int) Math.min(CHUNK_SIZE, size - (long) index * CHUNK_SIZE)
+                ));
+    }
+
+    /**
+     * Consumes the given sizes of received chunks at the given rate.
+     *
+     * @param sizes          The sizes of the received chunks.
+     * @param bytesPerSecond The rate, in bytes per second.
+     * @return A {@link Flux} that emits the sizes once consumed.
+     */
+    /* package */ static Flux<Integer> throttle(final Flux<Integer> sizes, final long bytesPerSecond) {
+        return Flux.defer(() -> {
+            final var start = System.nanoTime();
+            final var consumed = new AtomicLong(0);
+            return sizes.concatMap(size -> {
+                final var due = start + consumed.addAndGet(size) * 1_000_000_000L / bytesPerSecond;
+                final var wait = due - System.nanoTime();
+                return wait <= 0 ? Mono.just(size) : Mono.delay(Duration.ofNanos(wait)).thenReturn(size);
+            }, 1);
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package ar.edu.itba.cep.api_gateway.load;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * The settings of a large transfer test, taken from system properties.
+ */
+@Getter
+@AllArgsConstructor
+/* package */ final class TransferSettings {
+
+    /**
+     * The size of the body uploaded and downloaded through the gateway.
+     */
+    private final DataSize size;
+    /**
+     * The rate (per second) at which the slow side of each transfer consumes the body
+     * (the service when uploading, and the client when downloading).
+     */
+    private final DataSize rate;
+    /**
+     * The maximum growth of the heap (after a collection) and of the direct memory for the test to pass.
+     */
+    private final DataSize maxGrowth;
+
+
+    /**
+     * Creates the {@link TransferSettings} from the {@code transfer.*} system properties.
+     *
+     * @return The {@link TransferSettings}.
+     */
+    /* package */ static TransferSettings fromSystemProperties() {
+        return new TransferSettings(
+                DataSize.parse(System.getProperty("transfer.size", "500MB")),
+                DataSize.parse(System.getProperty("transfer.rate", "100MB")),
+                DataSize.parse(System.getProperty("transfer.max-growth", "128MB"))
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + ", rate=" + rate + "/s, max growth=" + maxGrowth;
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/sh
+#
+# Lays out the application's jar for running it without the Spring Boot launcher, optionally with a class data sharing
+# (AppCDS) archive of the classes loaded while starting the gateway and serving the first requests.
+#
+# Usage: prepare-fast-startup.sh <jar> <directory> [<create-archive>]
+#
+# The directory ends up containing:
+#   - application.jar: the application's classes and resources.
+#   - lib/: the dependencies.
+#   - jvm.options: the JVM options (an argument file) with which the gateway must be started, i.e
+#     java @jvm.options -cp 'application.jar:lib/*' ar.edu.itba.cep.api_gateway.Application
+#   - app.jsa: the class data sharing archive (only if <create-archive> is true, the default).
+#
+# Note that, in Java 11, classes are only archived if loaded by the built-in class loaders from jar files,
+# so the Spring Boot jar is exploded, and the application's classes are packaged again in a plain jar.
+# Both the archive and the classpath are only valid for the same JVM and the same directory layout.
+
+set -e
+
+JAR=$(cd "$(dirname "$1")" && pwd)/$(basename "$1")
+DIRECTORY=$2
+CREATE_ARCHIVE=${3:-true}
+MAIN_CLASS=ar.edu.itba.cep.api_gateway.Application
+CLASSPATH="application.jar:lib/*"
+
+rm -rf "${DIRECTORY}"
+mkdir -p "${DIRECTORY}/lib" "${DIRECTORY}/exploded"
+cd "${DIRECTORY}"
+
+# Extracting by name makes the jar tool read the central directory,
+# which works even with the launch script prepended to executable jars
+(cd exploded && jar -xf "${JAR}" BOOT-INF/)
+mv exploded/BOOT-INF/lib/*.jar lib/
+jar -cf application.jar -C exploded/BOOT-INF/classes .
+rm -rf exploded
+: > jvm.options
+
+if [ "${CREATE_ARCHIVE}" != "true" ]; then
+    exit 0
+fi
+
+# Training run: the gateway starts (without registering in, nor fetching from the discovery service),
+# sends a request to each route, and exits, recording the loaded classes
+java -Xshare:off -XX:DumpLoadedClassList=classes.lst -cp "${CLASSPATH}" ${MAIN_CLASS} \
+    --spring.profiles.active=dev,fast-startup \
+    --fast-startup.training.enabled=true \
+    --server.port=0 \
+    --eureka.client.register-with-eureka=false \
+    --eureka.client.fetch-registry=false \
+    --spring.zipkin.enabled=false
+java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa -cp "${CLASSPATH}"
+rm classes.lst
+
+# The fast startup settings are set as properties instead of including the fast-startup profile, as including
+# a profile from outside the configuration files replaces the default active profile (i.e the dev profile)
+echo "-Xshare:auto -XX:SharedArchiveFile=app.jsa -Dfast-startup.lazy-initialization=true -Dspring.jmx.enabled=false" \
+    > jvm.options
@@ -5,12 +5,24 @@ import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Configuration class for the API gateway routes.
  */
 @Configuration
 public class RoutesConfig {
 
+    /**
+     * The path patterns handled by each route, keyed by the route id
+     * (which is also the id of the service to which requests are routed).
+     */
+    public static final Map<String, List<String>> ROUTE_PATHS = routePaths();
+
+
     /**
      * Creates a bean of {@link RouteLocator} in order to setup the routes the API gateway will handle.
      *
@@ -19,46 +31,37 @@ public class RoutesConfig {
      */
     @Bean
     public RouteLocator routes(final RouteLocatorBuilder builder) {
-        return builder.routes()
-                .route(
-                        "playground-service",
-                        r -> r
-                                .path("/execution-requests/**")
-                                .uri("lb://playground-service")
-                )
-                .route(
-                        "evaluations-service",
-                        r -> r
-                                .path("/exams/**")
-                                .or()
-                                .path("/exercises/**")
-                                .or()
-                                .path("/test-cases/**")
-                                .or()
-                                .path("/solutions-submissions/**")
-                                .or()
-                                .path("/solutions/**")
-                                .and()
-                                .uri("lb://evaluations-service")
-                )
-                .route(
-                        "users-service",
-                        r -> r
-                                .path("/users/**")
-                                .or()
-                                .path("/actual-user/**")
-                                .or()
-                                .path("/tokens/**")
-                                .and()
-                                .uri("lb://users-service")
-                )
-                .route(
-                        "lti-service",
-                        r -> r
-                                .path("/lti/admin/**")
-                                .and()
-                                .uri("lb://lti-service")
-                )
-                .build();
+        final var routes = builder.routes();
+        ROUTE_PATHS.forEach((id, paths) ->
+                routes.route(id, r -> r.path(paths.toArray(String[]::new)).uri("lb://" + id))
+        );
+        return routes.build();
+    }
+
+
+    /**
+     * Builds the {@link #ROUTE_PATHS} {@link Map} (keeping the order in which routes are defined).
+     *
+     * @return The path patterns handled by each route.
+     */
+    private static Map<String, List<String>> routePaths() {
+        final var routePaths = new LinkedHashMap<String, List<String>>();
+        routePaths.put(
+                "playground-service",
+                List.of("/execution-requests/**")
+        );
+        routePaths.put(
+                "evaluations-service",
+                List.of("/exams/**", "/exercises/**", "/test-cases/**", "/solutions-submissions/**", "/solutions/**")
+        );
+        routePaths.put(
+                "users-service",
+                List.of("/users/**", "/actual-user/**", "/tokens/**")
+        );
+        routePaths.put(
+                "lti-service",
+                List.of("/lti/admin/**")
+        );
+        return Collections.unmodifiableMap(routePaths);
     }
 }
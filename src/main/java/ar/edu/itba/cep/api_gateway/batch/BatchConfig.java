@@ -0,0 +1,92 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import ar.edu.itba.cep.api_gateway.security.bearer.TokenEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+
+/**
+ * Configuration class for the batch endpoint.
+ * Only enabled if the {@code batch.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(BatchProperties.class)
+@ConditionalOnProperty(prefix = "batch", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BatchConfig {
+
+    /**
+     * Creates the {@link BatchHandler}.
+     *
+     * @param batchProperties   The {@link BatchProperties} from where configuration values are taken.
+     * @param objectMapper      The {@link ObjectMapper} used to read batches and write their responses.
+     * @param tokenEncoder      The {@link TokenEncoder} used to encode the internal token of a batch.
+     * @param dispatcherHandler Provides the {@link DispatcherHandler} through which requests are dispatched.
+     * @param meterRegistry     The {@link MeterRegistry} to which the batch statistics are reported.
+     * @return The {@link BatchHandler} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or the properties are not valid.
+     */
+    @Bean
+    /* package */ BatchHandler batchHandler(
+            final BatchProperties batchProperties,
+            final ObjectMapper objectMapper,
+            final TokenEncoder tokenEncoder,
+            final ObjectProvider<DispatcherHandler> dispatcherHandler,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(batchProperties.getMaxItems() > 0, "The maximum amount of requests must be positive");
+        Assert.isTrue(batchProperties.getMaxRequestSize().toBytes() > 0, "The maximum request size must be positive");
+        Assert.isTrue(batchProperties.getMaxResponseSize().toBytes() > 0, "The maximum response size must be positive");
+        Assert.isTrue(
+                !batchProperties.getItemTimeout().isNegative() && !batchProperties.getItemTimeout().isZero(),
+                "The request timeout must be positive"
+        );
+        Assert.isTrue(
+                batchProperties.getGzipLevel() >= 0 && batchProperties.getGzipLevel() <= 9,
+                "The gzip level must be between 0 and 9"
+        );
+        final var pathPatternParser = new PathPatternParser();
+        final var paths = new ArrayList<PathPattern>();
+        batchProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            routeProperties.getPaths().stream().map(pathPatternParser::parse).forEach(paths::add);
+        });
+        return new BatchHandler(
+                objectMapper,
+                tokenEncoder,
+                dispatcherHandler,
+                paths,
+                batchProperties.getMaxItems(),
+                batchProperties.getMaxRequestSize().toBytes(),
+                batchProperties.getMaxResponseSize().toBytes(),
+                batchProperties.getItemTimeout(),
+                batchProperties.getGzipLevel(),
+                meterRegistry
+        );
+    }
+
+    /**
+     * Creates the {@link RouterFunction} of the batch endpoint.
+     *
+     * @param batchHandler The {@link BatchHandler} that handles batch requests.
+     * @return The {@link RouterFunction} bean.
+     */
+    @Bean
+    /* package */ RouterFunction<ServerResponse> batchRoutes(final BatchHandler batchHandler) {
+        return RouterFunctions.route(POST(BatchHandler.PATH), batchHandler);
+    }
+}
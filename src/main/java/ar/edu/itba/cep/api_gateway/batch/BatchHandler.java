@@ -0,0 +1,691 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import ar.edu.itba.cep.api_gateway.compression.AcceptEncoding;
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenTranslator;
+import ar.edu.itba.cep.api_gateway.security.bearer.TokenEncoder;
+import ar.edu.itba.cep.api_gateway.tracing.RequestIdFilter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.reactive.DispatcherHandler;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles batch requests: a {@code POST} with a list of requests that are executed in parallel,
+ * streaming back their responses as they complete.
+ * <p>
+ * The batch request is authenticated once (like any other request), and its internal token is encoded once
+ * and shared by all its requests. Each request is dispatched in this same process through the gateway routes
+ * (so its route filters apply as usual: rate limiting, caching, coalescing, resilience, load balancing...),
+ * skipping the web filters (i.e it is not authenticated again). The response is a stream of JSON objects,
+ * one per line (in the order in which requests complete), with the id, status, headers and body of each request,
+ * or the reason why it failed.
+ * <p>
+ * Only requests to the configured paths can be batched (event streams and WebSockets never can),
+ * and the amount of requests, the size of the batch request, and the total size of the response bodies are limited.
+ * <p>
+ * The responses of the requests are never compressed (their bodies are embedded in the batch response).
+ * Instead, the batch response is compressed with gzip if the client accepts it, flushing the compressed stream
+ * after each line (see {@link GzipLines}), as it is not a gateway route (i.e the compression filter never sees it).
+ */
+/* package */ class BatchHandler implements HandlerFunction<ServerResponse> {
+
+    /**
+     * The path of the batch endpoint.
+     */
+    /* package */ static final String PATH = "/batch";
+
+    /**
+     * The {@link MediaType} of the batch response (newline delimited JSON).
+     */
+    private static final MediaType NDJSON = new MediaType("application", "x-ndjson");
+
+    /**
+     * The {@link HttpMethod}s of the requests that can be batched.
+     */
+    private static final Set<HttpMethod> BATCHABLE_METHODS = Set.of(
+            HttpMethod.GET,
+            HttpMethod.HEAD,
+            HttpMethod.POST,
+            HttpMethod.PUT,
+            HttpMethod.PATCH,
+            HttpMethod.DELETE
+    );
+
+    /**
+     * The headers of the batch request that are sent with all its requests.
+     */
+    private static final List<String> INHERITED_HEADERS = List.of(HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.USER_AGENT);
+
+    /**
+     * The (lower case) names of the headers that can not be set for a request of a batch.
+     */
+    private static final Set<String> EXCLUDED_REQUEST_HEADERS = Set.of(
+            "authorization",
+            "host",
+            "connection",
+            "upgrade",
+            "content-length",
+            "transfer-encoding",
+            "te",
+            "expect",
+            "accept-encoding"
+    );
+
+    /**
+     * The name of the gzip content coding.
+     */
+    private static final String GZIP = "gzip";
+
+    /**
+     * The (lower case) names of the response headers that are not reported.
+     */
+    private static final Set<String> EXCLUDED_RESPONSE_HEADERS = Set.of(
+            "connection",
+            "content-length",
+            "transfer-encoding",
+            "content-encoding"
+    );
+
+
+    /**
+     * The {@link ObjectMapper} used to read batches and write their responses.
+     */
+    private final ObjectMapper objectMapper;
+    /**
+     * The {@link TokenEncoder} used to encode the internal token of a batch.
+     */
+    private final TokenEncoder tokenEncoder;
+    /**
+     * Provides the {@link DispatcherHandler} through which requests are dispatched
+     * (looked up lazily, as it depends on the routes, this handler among them).
+     */
+    private final ObjectProvider<DispatcherHandler> dispatcherHandler;
+    /**
+     * The {@link PathPattern}s of the requests that can be batched.
+     */
+    private final List<PathPattern> paths;
+    /**
+     * The maximum amount of requests in a batch.
+     */
+    private final int maxItems;
+    /**
+     * The maximum size of the body of a batch request.
+     */
+    private final long maxRequestSize;
+    /**
+     * The maximum total size of the response bodies of a batch.
+     */
+    private final long maxResponseSize;
+    /**
+     * How long each request of a batch can take.
+     */
+    private final Duration itemTimeout;
+    /**
+     * The gzip compression level of the batch response (or {@code 0} if it is not compressed).
+     */
+    private final int gzipLevel;
+    /**
+     * The {@link DistributionSummary} of the amount of requests in each batch.
+     */
+    private final DistributionSummary items;
+    /**
+     * The {@link Counter} of batches rejected for being too large.
+     */
+    private final Counter tooLarge;
+    /**
+     * The {@link Counter} of batches rejected for having too many requests.
+     */
+    private final Counter tooManyItems;
+    /**
+     * The {@link Counter} of batches rejected for being invalid.
+     */
+    private final Counter invalid;
+
+
+    /**
+     * Constructor.
+     *
+     * @param objectMapper      The {@link ObjectMapper} used to read batches and write their responses.
+     * @param tokenEncoder      The {@link TokenEncoder} used to encode the internal token of a batch.
+     * @param dispatcherHandler Provides the {@link DispatcherHandler} through which requests are dispatched.
+     * @param paths             The {@link PathPattern}s of the requests that can be batched.
+     * @param maxItems          The maximum amount of requests in a batch.
+     * @param maxRequestSize    The maximum size of the body of a batch request.
+     * @param maxResponseSize   The maximum total size of the response bodies of a batch.
+     * @param itemTimeout       How long each request of a batch can take.
+     * @param gzipLevel         The gzip compression level of the batch response (or {@code 0} to not compress it).
+     * @param meterRegistry     The {@link MeterRegistry} to which the batch statistics are reported.
+     */
+    /* package */ BatchHandler(
+            final ObjectMapper objectMapper,
+            final TokenEncoder tokenEncoder,
+            final ObjectProvider<DispatcherHandler> dispatcherHandler,
+            final List<PathPattern> paths,
+            final int maxItems,
+            final long maxRequestSize,
+            final long maxResponseSize,
+            final Duration itemTimeout,
+            final int gzipLevel,
+            final MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.tokenEncoder = tokenEncoder;
+        this.dispatcherHandler = dispatcherHandler;
+        this.paths = List.copyOf(paths);
+        this.maxItems = maxItems;
+        this.maxRequestSize = maxRequestSize;
+        this.maxResponseSize = maxResponseSize;
+        this.itemTimeout = itemTimeout;
+        this.gzipLevel = gzipLevel;
+        this.items = meterRegistry.summary("gateway.batch.items");
+        this.tooLarge = meterRegistry.counter("gateway.batch.rejections", "reason", "too-large");
+        this.tooManyItems = meterRegistry.counter("gateway.batch.rejections", "reason", "too-many-items");
+        this.invalid = meterRegistry.counter("gateway.batch.rejections", "reason", "invalid");
+    }
+
+
+    @Override
+    public Mono<ServerResponse> handle(final ServerRequest request) {
+        final var exchange = request.exchange();
+        final var bufferFactory = exchange.getResponse().bufferFactory();
+        final var gzip = gzipLevel > 0 && acceptsGzip(exchange.getRequest().getHeaders());
+        return readBody(exchange.getRequest())
+                .map(this::parse)
+                .flatMap(batch -> internalToken()
+                        .flatMap(internalToken -> {
+                            final var lines = execute(exchange, batch, internalToken);
+                            final var body = gzip ? compress(lines) : lines;
+                            return ServerResponse.ok()
+                                    .contentType(NDJSON)
+                                    .headers(headers -> {
+                                        if (gzipLevel > 0) {
+                                            headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+                                        }
+                                        if (gzip) {
+                                            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+                                        }
+                                    })
+                                    .body(BodyInserters.fromDataBuffers(body.map(bufferFactory::wrap)));
+                        }));
+    }
+
+
+    /**
+     * Reads the body of the given batch {@code request}.
+     *
+     * @param request The batch {@link ServerHttpRequest}.
+     * @return A {@link Mono} that emits the body, or fails with a 413 Payload Too Large
+     * {@link ResponseStatusException} if it is too large.
+     */
+    private Mono<byte[]> readBody(final ServerHttpRequest request) {
+        if (request.getHeaders().getContentLength() > maxRequestSize) {
+            tooLarge.increment();
+            return Mono.error(tooLargeException());
+        }
+        final var body = new ByteArrayOutputStream();
+        return request.getBody()
+                .doOnNext(buffer -> {
+                    try {
+                        if (body.size() + buffer.readableByteCount() > maxRequestSize) {
+                            tooLarge.increment();
+                            throw tooLargeException();
+                        }
+                        final var bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        body.writeBytes(bytes);
+                    } finally {
+                        DataBufferUtils.release(buffer);
+                    }
+                })
+                .then(Mono.fromSupplier(body::toByteArray));
+    }
+
+    /**
+     * Parses the given batch {@code body}.
+     *
+     * @param body The body of the batch request.
+     * @return The {@link BatchRequest.Item}s of the batch, with their ids set.
+     * @throws ResponseStatusException (a 400 Bad Request one) If the batch is not valid.
+     */
+    private List<BatchRequest.Item> parse(final byte[] body) throws ResponseStatusException {
+        final BatchRequest batch;
+        try {
+            batch = objectMapper.readValue(body, BatchRequest.class);
+        } catch (final IOException e) {
+            throw invalidBatch("The batch is not valid JSON");
+        }
+        final var requests = Optional.ofNullable(batch).map(BatchRequest::getRequests).orElse(List.of());
+        if (requests.isEmpty() || requests.contains(null)) {
+            throw invalidBatch("The batch must have a list of requests");
+        }
+        if (requests.size() > maxItems) {
+            tooManyItems.increment();
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "A batch can not have more than " + maxItems + " requests"
+            );
+        }
+        final var ids = new HashSet<String>();
+        for (var i = 0; i < requests.size(); i++) {
+            final var item = requests.get(i);
+            if (item.getId() == null) {
+                item.setId(Integer.toString(i));
+            }
+            if (!ids.add(item.getId())) {
+                throw invalidBatch("Duplicated request id '" + item.getId() + "'");
+            }
+        }
+        items.record(requests.size());
+        return requests;
+    }
+
+    /**
+     * Encodes the internal token with which the requests of the batch are sent, using the authentication
+     * in the subscriber context.
+     *
+     * @return A {@link Mono} that emits an {@link Optional} with the internal token,
+     * or empty if the batch request is not authenticated with a bearer token.
+     */
+    private Mono<Optional<String>> internalToken() {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(BearerTokenAuthentication.class::isInstance)
+                .cast(BearerTokenAuthentication.class)
+                .flatMap(tokenEncoder::encode)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * Executes the given {@code batch} in parallel.
+     *
+     * @param exchange      The {@link ServerWebExchange} of the batch request.
+     * @param batch         The {@link BatchRequest.Item}s of the batch.
+     * @param internalToken The internal token with which the requests are sent, if any.
+     * @return A {@link Flux} with the (newline terminated) JSON result of each request, as they complete.
+     */
+    private Flux<byte[]> execute(
+            final ServerWebExchange exchange,
+            final List<BatchRequest.Item> batch,
+            final Optional<String> internalToken) {
+        final var available = new AtomicLong(maxResponseSize);
+        return Flux.fromIterable(batch)
+                .flatMap(item -> execute(exchange, item, internalToken, available), batch.size());
+    }
+
+    /**
+     * Compresses the given {@code lines} of the batch response into a gzip stream,
+     * in which each line is flushed as soon as it is emitted.
+     *
+     * @param lines The (newline terminated) JSON results.
+     * @return A {@link Flux} with the compressed stream.
+     */
+    private Flux<byte[]> compress(final Flux<byte[]> lines) {
+        return Flux.using(
+                () -> new GzipLines(gzipLevel),
+                gzip -> Flux.concat(
+                        Mono.fromSupplier(gzip::header),
+                        lines.map(gzip::compress),
+                        Mono.fromSupplier(gzip::finish)
+                ),
+                GzipLines::end
+        );
+    }
+
+    /**
+     * Executes the given {@code item} of a batch.
+     *
+     * @param exchange      The {@link ServerWebExchange} of the batch request.
+     * @param item          The {@link BatchRequest.Item}.
+     * @param internalToken The internal token with which the request is sent, if any.
+     * @param available     The space left in the batch response.
+     * @return A {@link Mono} that emits the (newline terminated) JSON result of the request.
+     */
+    private Mono<byte[]> execute(
+            final ServerWebExchange exchange,
+            final BatchRequest.Item item,
+            final Optional<String> internalToken,
+            final AtomicLong available) {
+        final BatchItemExchange itemExchange;
+        try {
+            itemExchange = itemExchange(exchange, item, internalToken, available);
+        } catch (final ResponseStatusException e) {
+            return Mono.just(failure(item.getId(), e.getStatus(), e.getReason()));
+        }
+        return Mono.defer(() -> dispatcherHandler.getObject().handle(itemExchange))
+                .timeout(itemTimeout)
+                .then(Mono.fromSupplier(() -> success(item.getId(), (BatchItemResponse) itemExchange.getResponse())))
+                .onErrorResume(error -> Mono.just(failure(item.getId(), error)));
+    }
+
+    /**
+     * Creates the {@link BatchItemExchange} with which the given {@code item} is dispatched.
+     *
+     * @param exchange      The {@link ServerWebExchange} of the batch request.
+     * @param item          The {@link BatchRequest.Item}.
+     * @param internalToken The internal token with which the request is sent, if any.
+     * @param available     The space left in the batch response.
+     * @return The {@link BatchItemExchange}.
+     * @throws ResponseStatusException If the request is not valid, or can not be batched.
+     */
+    private BatchItemExchange itemExchange(
+            final ServerWebExchange exchange,
+            final BatchRequest.Item item,
+            final Optional<String> internalToken,
+            final AtomicLong available) throws ResponseStatusException {
+        final var method = Optional.ofNullable(item.getMethod())
+                .map(String::toUpperCase)
+                .map(HttpMethod::resolve)
+                .filter(BATCHABLE_METHODS::contains)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid method"));
+        final var target = target(item.getPath());
+        final var path = PathContainer.parsePath(target.getRawPath());
+        if (paths.stream().noneMatch(pattern -> pattern.matches(path))) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Requests to this path can not be batched");
+        }
+
+        final var batchRequest = exchange.getRequest();
+        final var headers = new HttpHeaders();
+        INHERITED_HEADERS.forEach(name -> Optional.ofNullable(batchRequest.getHeaders().get(name))
+                .ifPresent(values -> headers.put(name, values)));
+        Optional.ofNullable(item.getHeaders()).ifPresent(itemHeaders -> itemHeaders.forEach((name, value) -> {
+            if (name != null && value != null && !EXCLUDED_REQUEST_HEADERS.contains(name.toLowerCase())) {
+                headers.set(name, value);
+            }
+        }));
+        if (isEventStream(headers)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Event streams can not be batched");
+        }
+        final var body = body(item);
+        if (body.length > 0) {
+            headers.setContentLength(body.length);
+            if (!headers.containsKey(HttpHeaders.CONTENT_TYPE)) {
+                headers.setContentType(MediaType.APPLICATION_JSON);
+            }
+        }
+
+        final var uri = UriComponentsBuilder.fromUri(batchRequest.getURI())
+                .replacePath(target.getRawPath())
+                .replaceQuery(target.getRawQuery())
+                .build(true)
+                .toUri();
+        final var request = batchRequest.mutate()
+                .method(method)
+                .uri(uri)
+                .headers(requestHeaders -> {
+                    requestHeaders.clear();
+                    requestHeaders.putAll(headers);
+                })
+                .build();
+        final DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+        final var itemRequest = new ServerHttpRequestDecorator(request) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return body.length == 0 ? Flux.empty() : Flux.defer(() -> Flux.just(bufferFactory.wrap(body)));
+            }
+        };
+
+        final var attributes = new HashMap<String, Object>();
+        Optional.ofNullable(exchange.getAttribute(RequestIdFilter.REQUEST_ID_ATTRIBUTE))
+                .ifPresent(requestId -> attributes.put(RequestIdFilter.REQUEST_ID_ATTRIBUTE, requestId));
+        internalToken.ifPresent(token -> attributes.put(BearerTokenTranslator.INTERNAL_TOKEN_ATTRIBUTE, token));
+        return new BatchItemExchange(
+                exchange,
+                itemRequest,
+                new BatchItemResponse(exchange.getResponse(), available),
+                attributes
+        );
+    }
+
+    /**
+     * Parses the given {@code path} of a request of a batch.
+     *
+     * @param path The path (including the query, if any).
+     * @return The path and query as a relative {@link URI}.
+     * @throws ResponseStatusException (a 400 Bad Request one) If the path is not a valid, normalized absolute path.
+     */
+    private static URI target(final String path) throws ResponseStatusException {
+        if (path == null || !path.startsWith("/") || path.startsWith("//")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The path must be absolute");
+        }
+        try {
+            final var uri = new URI(path);
+            if (uri.getRawFragment() != null || !uri.normalize().getRawPath().equals(uri.getRawPath())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The path must be normalized");
+            }
+            return uri;
+        } catch (final URISyntaxException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid path");
+        }
+    }
+
+    /**
+     * Serializes the body of the given {@code item}.
+     *
+     * @param item The {@link BatchRequest.Item}.
+     * @return The serialized body (empty if it has none).
+     * @throws ResponseStatusException (a 400 Bad Request one) If the body could not be serialized.
+     */
+    private byte[] body(final BatchRequest.Item item) throws ResponseStatusException {
+        if (item.getBody() == null || item.getBody().isNull()) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(item.getBody());
+        } catch (final JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid body");
+        }
+    }
+
+    /**
+     * Creates the result of a request of a batch that completed.
+     *
+     * @param id       The request id.
+     * @param response The request's {@link BatchItemResponse}.
+     * @return The (newline terminated) JSON result.
+     */
+    private byte[] success(final String id, final BatchItemResponse response) {
+        if (response.isTooLarge()) {
+            return failure(id, HttpStatus.BAD_GATEWAY, "The response does not fit in the batch response");
+        }
+        final var result = objectMapper.createObjectNode();
+        result.put("id", id);
+        result.put("status", Optional.ofNullable(response.getStatusCodeValue()).orElse(HttpStatus.OK.value()));
+        final var headers = result.putObject("headers");
+        response.getHeaders().forEach((name, values) -> {
+            if (!EXCLUDED_RESPONSE_HEADERS.contains(name.toLowerCase())) {
+                headers.put(name, String.join(", ", values));
+            }
+        });
+        final var body = response.getBody();
+        if (body.length > 0) {
+            setBody(result, contentType(response.getHeaders()), body);
+        }
+        return line(result);
+    }
+
+    /**
+     * Sets the given response {@code body} in the given {@code result}: as JSON if it is JSON, as a string if it is
+     * text, or base64 encoded otherwise (with a {@code bodyEncoding} field).
+     *
+     * @param result      The result.
+     * @param contentType The response's content type ({@code null} if unknown).
+     * @param body        The response's body.
+     */
+    private void setBody(final ObjectNode result, final MediaType contentType, final byte[] body) {
+        final var json = contentType != null
+                && (MediaType.APPLICATION_JSON.isCompatibleWith(contentType)
+                || contentType.getSubtype().endsWith("+json"));
+        if (json) {
+            try {
+                result.set("body", objectMapper.readTree(body));
+                return;
+            } catch (final IOException e) {
+                // Not valid JSON (reported as text)
+            }
+        }
+        if (json || contentType != null && ("text".equals(contentType.getType()) || contentType.getCharset() != null)) {
+            final var charset = Optional.ofNullable(contentType.getCharset()).orElse(StandardCharsets.UTF_8);
+            result.put("body", new String(body, charset));
+            return;
+        }
+        result.put("bodyEncoding", "base64");
+        result.put("body", Base64.getEncoder().encodeToString(body));
+    }
+
+    /**
+     * Creates the result of a request of a batch that failed with the given {@code error}.
+     *
+     * @param id    The request id.
+     * @param error The error.
+     * @return The (newline terminated) JSON result.
+     */
+    private byte[] failure(final String id, final Throwable error) {
+        if (error instanceof ResponseStatusException) {
+            final var statusException = (ResponseStatusException) error;
+            return failure(id, statusException.getStatus(), statusException.getReason());
+        }
+        if (error instanceof TimeoutException) {
+            return failure(id, HttpStatus.GATEWAY_TIMEOUT, "The request timed out");
+        }
+        return failure(id, HttpStatus.BAD_GATEWAY, "The request failed");
+    }
+
+    /**
+     * Creates the result of a request of a batch that failed.
+     *
+     * @param id      The request id.
+     * @param status  The {@link HttpStatus} of the failure.
+     * @param message The reason of the failure ({@code null} to use the status reason phrase).
+     * @return The (newline terminated) JSON result.
+     */
+    private byte[] failure(final String id, final HttpStatus status, final String message) {
+        final var result = objectMapper.createObjectNode();
+        result.put("id", id);
+        result.put("status", status.value());
+        result.put("error", Optional.ofNullable(message).orElse(status.getReasonPhrase()));
+        return line(result);
+    }
+
+    /**
+     * Serializes the given {@code result} as a line of the batch response.
+     *
+     * @param result The result.
+     * @return The (newline terminated) JSON result.
+     */
+    private byte[] line(final ObjectNode result) {
+        try {
+            final var json = objectMapper.writeValueAsBytes(result);
+            final var line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            return line;
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize a batch result", e);
+        }
+    }
+
+    /**
+     * Checks whether the given batch request {@code headers} accept a gzip encoded response
+     * (i.e the {@code Accept-Encoding} header lists {@code gzip}, or {@code *}, without a zero quality value).
+     *
+     * @param headers The batch request's {@link HttpHeaders}.
+     * @return {@code true} if gzip is accepted, or {@code false} otherwise.
+     */
+    private static boolean acceptsGzip(final HttpHeaders headers) {
+        return AcceptEncoding.accepts(headers, GZIP);
+    }
+
+    /**
+     * Checks whether the given request {@code headers} subscribe to an event stream.
+     *
+     * @param headers The request's {@link HttpHeaders}.
+     * @return {@code true} if the request subscribes to an event stream, or {@code false} otherwise.
+     */
+    private static boolean isEventStream(final HttpHeaders headers) {
+        try {
+            return headers.getAccept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+        } catch (final InvalidMediaTypeException e) {
+            return false; // Invalid Accept header (left to the service)
+        }
+    }
+
+    /**
+     * Returns the content type in the given response {@code headers}.
+     *
+     * @param headers The response's {@link HttpHeaders}.
+     * @return The content type, or {@code null} if there is none, or it is not valid.
+     */
+    private static MediaType contentType(final HttpHeaders headers) {
+        try {
+            return headers.getContentType();
+        } catch (final InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the exception with which batches that are too large are rejected.
+     *
+     * @return A 413 Payload Too Large {@link ResponseStatusException}.
+     */
+    private ResponseStatusException tooLargeException() {
+        return new ResponseStatusException(
+                HttpStatus.PAYLOAD_TOO_LARGE,
+                "The batch is larger than " + maxRequestSize + " bytes"
+        );
+    }
+
+    /**
+     * Creates the exception with which invalid batches are rejected, counting the rejection.
+     *
+     * @param reason The reason why the batch is not valid.
+     * @return A 400 Bad Request {@link ResponseStatusException}.
+     */
+    private ResponseStatusException invalidBatch(final String reason) {
+        invalid.increment();
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
@@ -0,0 +1,66 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ServerWebExchange} of a request of a batch, based on the exchange of the batch request
+ * (i.e with its principal, session and application context), but with its own request, response and attributes
+ * (so the requests of a batch are routed independently of each other).
+ */
+/* package */ final class BatchItemExchange extends ServerWebExchangeDecorator {
+
+    /**
+     * The request.
+     */
+    private final ServerHttpRequest request;
+    /**
+     * The response.
+     */
+    private final ServerHttpResponse response;
+    /**
+     * The attributes.
+     */
+    private final Map<String, Object> attributes;
+
+
+    /**
+     * Constructor.
+     *
+     * @param batchExchange The {@link ServerWebExchange} of the batch request.
+     * @param request       The request.
+     * @param response      The response.
+     * @param attributes    The initial attributes.
+     */
+    /* package */ BatchItemExchange(
+            final ServerWebExchange batchExchange,
+            final ServerHttpRequest request,
+            final ServerHttpResponse response,
+            final Map<String, Object> attributes) {
+        super(batchExchange);
+        this.request = request;
+        this.response = response;
+        this.attributes = new ConcurrentHashMap<>(attributes);
+    }
+
+
+    @Override
+    public ServerHttpRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public ServerHttpResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,159 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The response of a request of a batch.
+ * <p>
+ * It is not written to any client: its body is copied (releasing the received buffers), taking its size from
+ * the space left in the batch response. Once a body does not fit, it stops being read
+ * (so the upstream response is cancelled), the response is marked as too large, and all the space its body took
+ * is given back (as it is reported without its body).
+ */
+/* package */ final class BatchItemResponse extends AbstractServerHttpResponse {
+
+    /**
+     * The response of the batch request (whose buffer factory and native response are used).
+     */
+    private final ServerHttpResponse batchResponse;
+    /**
+     * The space left in the batch response, in bytes (shared by all the requests of the batch).
+     */
+    private final AtomicLong available;
+    /**
+     * The received body (guarded by its lock, which also guards {@link #taken}).
+     */
+    private final ByteArrayOutputStream body;
+    /**
+     * The amount of bytes taken from the space left in the batch response by the received body.
+     */
+    private long taken;
+    /**
+     * Whether the body did not fit in the batch response.
+     */
+    private volatile boolean tooLarge;
+
+
+    /**
+     * Constructor.
+     *
+     * @param batchResponse The response of the batch request.
+     * @param available     The space left in the batch response, in bytes
+     *                      (shared by all the requests of the batch).
+     */
+    /* package */ BatchItemResponse(final ServerHttpResponse batchResponse, final AtomicLong available) {
+        super(batchResponse.bufferFactory());
+        this.batchResponse = batchResponse;
+        this.available = available;
+        this.body = new ByteArrayOutputStream();
+        this.taken = 0;
+        this.tooLarge = false;
+    }
+
+
+    /**
+     * @return The received body.
+     */
+    /* package */ byte[] getBody() {
+        synchronized (body) {
+            return body.toByteArray();
+        }
+    }
+
+    /**
+     * @return Whether the body did not fit in the batch response.
+     */
+    /* package */ boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    /**
+     * Returns the native response of the batch request (for the filters that inspect the server's response,
+     * as this one is never written to the connection), unwrapping its decorators.
+     *
+     * @param <T> The type of the native response.
+     * @return The native response.
+     */
+    @Override
+    public <T> T getNativeResponse() {
+        var response = batchResponse;
+        while (response instanceof ServerHttpResponseDecorator) {
+            response = ((ServerHttpResponseDecorator) response).getDelegate();
+        }
+        if (!(response instanceof AbstractServerHttpResponse)) {
+            throw new IllegalStateException("The batch response has no native response");
+        }
+        return ((AbstractServerHttpResponse) response).getNativeResponse();
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(final Publisher<? extends DataBuffer> body) {
+        return Flux.<DataBuffer>from(body)
+                .<Void>handle((buffer, sink) -> {
+                    if (!add(buffer)) {
+                        sink.complete(); // Cancels the rest of the body
+                    }
+                })
+                .then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return writeWithInternal(Flux.<Publisher<? extends DataBuffer>>from(body).concatMap(buffers -> buffers));
+    }
+
+    @Override
+    protected void applyStatusCode() {
+        // The status is read once the response is complete
+    }
+
+    @Override
+    protected void applyHeaders() {
+        // Headers are read once the response is complete
+    }
+
+    @Override
+    protected void applyCookies() {
+        // Upstream cookies are received as headers
+    }
+
+
+    /**
+     * Adds the given {@code buffer} to the body, releasing it.
+     * If it does not fit, the body is discarded, giving back all the space it took.
+     *
+     * @param buffer The {@link DataBuffer} being written.
+     * @return {@code true} if the buffer was added, or {@code false} if it did not fit in the batch response.
+     */
+    private boolean add(final DataBuffer buffer) {
+        try {
+            final var readable = buffer.readableByteCount();
+            synchronized (body) {
+                if (available.addAndGet(-readable) < 0) {
+                    available.addAndGet(readable + taken);
+                    this.taken = 0;
+                    this.tooLarge = true;
+                    body.reset();
+                    return false;
+                }
+                this.taken += readable;
+                final var bytes = new byte[readable];
+                buffer.read(bytes);
+                body.writeBytes(bytes);
+            }
+            return true;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
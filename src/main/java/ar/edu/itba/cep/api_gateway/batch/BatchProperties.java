@@ -0,0 +1,66 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties for configuring the batch endpoint.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "batch")
+/* package */ class BatchProperties {
+
+    /**
+     * Whether the batch endpoint is enabled.
+     */
+    private boolean enabled = true;
+    /**
+     * The maximum amount of requests in a batch.
+     */
+    private int maxItems = 20;
+    /**
+     * The maximum size of the body of a batch request (larger ones are rejected with a 413 Payload Too Large response).
+     */
+    private DataSize maxRequestSize = DataSize.ofKilobytes(256);
+    /**
+     * The maximum total size of the response bodies of a batch
+     * (responses that do not fit are reported as failed, without their body).
+     */
+    private DataSize maxResponseSize = DataSize.ofMegabytes(8);
+    /**
+     * How long each request of a batch can take (slower ones are reported as timed out).
+     */
+    private Duration itemTimeout = Duration.ofSeconds(30);
+    /**
+     * The gzip compression level (from 1 to 9) of the batch response, used when the client accepts gzip
+     * (or {@code 0} to never compress it).
+     */
+    private int gzipLevel = 6;
+    /**
+     * The batch properties of each route, keyed by route id (requests to other routes can not be batched).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for batching the requests of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The path patterns of the requests that can be batched.
+         */
+        private List<String> paths = new ArrayList<>();
+    }
+}
@@ -0,0 +1,51 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The body of a batch request.
+ */
+@Getter
+@Setter
+/* package */ class BatchRequest {
+
+    /**
+     * The requests of the batch.
+     */
+    private List<Item> requests;
+
+
+    /**
+     * A request of a batch.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class Item {
+
+        /**
+         * The id with which the response is reported (its index in the batch if not set).
+         */
+        private String id;
+        /**
+         * The request's method.
+         */
+        private String method = "GET";
+        /**
+         * The request's path (including the query, if any).
+         */
+        private String path;
+        /**
+         * The request's headers (the authorization is taken from the batch request).
+         */
+        private Map<String, String> headers = Map.of();
+        /**
+         * The request's body (sent as JSON), or {@code null} if it has none.
+         */
+        private JsonNode body;
+    }
+}
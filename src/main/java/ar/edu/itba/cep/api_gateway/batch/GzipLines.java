@@ -0,0 +1,132 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the lines of a batch response into a single gzip stream, as they are emitted.
+ * <p>
+ * The compressed stream is flushed after each line (i.e a sync flush, which ends the deflate block),
+ * so the client can decompress each line as soon as it is received,
+ * while the compression window is still shared by all the lines.
+ * Methods are synchronized, as the stream can be ended (e.g cancelled) while a line is being compressed.
+ */
+/* package */ final class GzipLines {
+
+    /**
+     * The gzip header (deflate method, no flags, no modification time, unknown operating system).
+     */
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * The size of the buffer into which the deflater writes.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+
+    /**
+     * The {@link Deflater} (without the zlib wrapper, as the gzip one is written instead).
+     */
+    private final Deflater deflater;
+    /**
+     * The checksum of the uncompressed lines.
+     */
+    private final CRC32 crc;
+    /**
+     * The buffer into which the deflater writes.
+     */
+    private final byte[] buffer;
+    /**
+     * Whether the stream was ended (i.e the deflater was released).
+     */
+    private boolean ended;
+
+
+    /**
+     * Constructor.
+     *
+     * @param level The compression level (from 1 to 9).
+     */
+    /* package */ GzipLines(final int level) {
+        this.deflater = new Deflater(level, true);
+        this.crc = new CRC32();
+        this.buffer = new byte[BUFFER_SIZE];
+        this.ended = false;
+    }
+
+
+    /**
+     * @return The gzip header, which must be sent before any line.
+     */
+    /* package */ byte[] header() {
+        return HEADER.clone();
+    }
+
+    /**
+     * Compresses the given {@code line}, flushing the compressed stream.
+     *
+     * @param line The line.
+     * @return The compressed bytes of the line.
+     * @throws IllegalStateException If the stream was already ended.
+     */
+    /* package */ synchronized byte[] compress(final byte[] line) throws IllegalStateException {
+        if (ended) {
+            throw new IllegalStateException("The gzip stream was already ended");
+        }
+        crc.update(line);
+        deflater.setInput(line);
+        final var output = new ByteArrayOutputStream(line.length / 4 + 16);
+        int written;
+        do {
+            written = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            output.write(buffer, 0, written);
+        } while (written == buffer.length);
+        return output.toByteArray();
+    }
+
+    /**
+     * Finishes the compressed stream (i.e the last deflate block and the gzip trailer), and ends it.
+     *
+     * @return The remaining compressed bytes.
+     * @throws IllegalStateException If the stream was already ended.
+     */
+    /* package */ synchronized byte[] finish() throws IllegalStateException {
+        if (ended) {
+            throw new IllegalStateException("The gzip stream was already ended");
+        }
+        deflater.finish();
+        final var output = new ByteArrayOutputStream(32);
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        writeInt(output, (int) crc.getValue());
+        writeInt(output, (int) deflater.getBytesRead()); // The size modulo 2^32
+        end();
+        return output.toByteArray();
+    }
+
+    /**
+     * Ends the stream, releasing the deflater (if it was not ended yet).
+     */
+    /* package */ synchronized void end() {
+        if (!ended) {
+            ended = true;
+            deflater.end();
+        }
+    }
+
+
+    /**
+     * Writes the given {@code value} in little endian order (as gzip does).
+     *
+     * @param output The {@link ByteArrayOutputStream} into which the value is written.
+     * @param value  The value.
+     */
+    private static void writeInt(final ByteArrayOutputStream output, final int value) {
+        output.write(value);
+        output.write(value >>> 8);
+        output.write(value >>> 16);
+        output.write(value >>> 24);
+    }
+}
@@ -0,0 +1,159 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The 'Cache-Control' directives of a request or a response that are relevant to the gateway's cache.
+ */
+/* package */ final class CacheDirectives {
+
+    /**
+     * Indicates that a directive with a delta-seconds value is not present (or its value is not valid).
+     */
+    private static final long ABSENT = -1;
+
+
+    /**
+     * Whether the 'no-store' directive is present.
+     */
+    private boolean noStore;
+    /**
+     * Whether the 'no-cache' directive is present.
+     */
+    private boolean noCache;
+    /**
+     * Whether the 'private' directive is present.
+     */
+    private boolean isPrivate;
+    /**
+     * The value of the 'max-age' directive, in seconds (or {@link #ABSENT}).
+     */
+    private long maxAge;
+    /**
+     * The value of the 's-maxage' directive, in seconds (or {@link #ABSENT}).
+     */
+    private long sharedMaxAge;
+
+
+    /**
+     * Private constructor, use {@link #of(HttpHeaders)}.
+     */
+    private CacheDirectives() {
+        this.maxAge = ABSENT;
+        this.sharedMaxAge = ABSENT;
+    }
+
+
+    /**
+     * Indicates whether the 'no-cache' directive is present (i.e a stored response must be revalidated).
+     *
+     * @return {@code true} if the directive is present, or {@code false} otherwise.
+     */
+    /* package */ boolean isNoCache() {
+        return noCache;
+    }
+
+    /**
+     * Indicates whether a response with these directives can be stored by the gateway (a shared cache).
+     *
+     * @return {@code true} if the response can be stored, or {@code false} otherwise.
+     */
+    /* package */ boolean isStorable() {
+        return !noStore && !isPrivate;
+    }
+
+    /**
+     * Indicates whether a response with these directives states for how long it is fresh.
+     *
+     * @return {@code true} if the 'max-age' or the 's-maxage' directives are present, or {@code false} otherwise.
+     */
+    /* package */ boolean hasFreshnessLifetime() {
+        return maxAge != ABSENT || sharedMaxAge != ABSENT;
+    }
+
+    /**
+     * Returns for how long a response with these directives is fresh (i.e it can be served without revalidation).
+     * The 's-maxage' directive takes precedence over the 'max-age' one, as the gateway is a shared cache.
+     *
+     * @return The freshness lifetime ({@link Duration#ZERO} if the response must always be revalidated).
+     */
+    /* package */ Duration freshnessLifetime() {
+        if (noCache) {
+            return Duration.ZERO;
+        }
+        if (sharedMaxAge != ABSENT) {
+            return Duration.ofSeconds(sharedMaxAge);
+        }
+        return maxAge != ABSENT ? Duration.ofSeconds(maxAge) : Duration.ZERO;
+    }
+
+
+    /**
+     * Parses the 'Cache-Control' directives in the given {@code headers}.
+     * Unknown or invalid directives are ignored.
+     *
+     * @param headers The {@link HttpHeaders} of a request or a response.
+     * @return The {@link CacheDirectives}.
+     */
+    /* package */ static CacheDirectives of(final HttpHeaders headers) {
+        final var directives = new CacheDirectives();
+        final var values = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (values == null) {
+            return directives;
+        }
+        for (final var value : values) {
+            for (final var directive : StringUtils.tokenizeToStringArray(value, ",")) {
+                final var separator = directive.indexOf('=');
+                final var name = (separator == -1 ? directive : directive.substring(0, separator))
+                        .trim()
+                        .toLowerCase(Locale.ROOT);
+                final var argument = separator == -1 ? null : directive.substring(separator + 1).trim();
+                switch (name) {
+                    case "no-store":
+                        directives.noStore = true;
+                        break;
+                    case "no-cache":
+                        directives.noCache = true;
+                        break;
+                    case "private":
+                        directives.isPrivate = true;
+                        break;
+                    case "max-age":
+                        directives.maxAge = deltaSeconds(argument);
+                        break;
+                    case "s-maxage":
+                        directives.sharedMaxAge = deltaSeconds(argument);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return directives;
+    }
+
+    /**
+     * Parses the given delta-seconds {@code argument} of a directive.
+     *
+     * @param argument The argument (might be quoted, or {@code null} if the directive has none).
+     * @return The amount of seconds, or {@link #ABSENT} if the argument is not valid.
+     */
+    private static long deltaSeconds(final String argument) {
+        if (argument == null) {
+            return ABSENT;
+        }
+        try {
+            final var seconds = Long.parseLong(StringUtils.trimTrailingCharacter(
+                    StringUtils.trimLeadingCharacter(argument, '"'),
+                    '"'
+            ));
+            return seconds < 0 ? ABSENT : seconds;
+        } catch (final NumberFormatException e) {
+            return ABSENT;
+        }
+    }
+}
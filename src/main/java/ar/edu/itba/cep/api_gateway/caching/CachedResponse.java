@@ -0,0 +1,210 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import ar.edu.itba.cep.api_gateway.coalescing.SharedResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response stored in the gateway's cache, together with its validator and its freshness.
+ */
+/* package */ final class CachedResponse {
+
+    /**
+     * The headers of a 200 OK response that are also sent in a 304 Not Modified one.
+     */
+    private static final List<String> NOT_MODIFIED_HEADERS = List.of(
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.CONTENT_LOCATION,
+            HttpHeaders.DATE,
+            HttpHeaders.ETAG,
+            HttpHeaders.EXPIRES,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.VARY
+    );
+    /**
+     * An estimation of the memory used by an entry, besides its body and headers.
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+
+    /**
+     * The stored response.
+     */
+    private final SharedResponse response;
+    /**
+     * The response's 'ETag' header ({@code null} if there is none, in which case it can not be revalidated).
+     */
+    private final String etag;
+    /**
+     * The instant (in {@link System#nanoTime()} terms) in which the response was received (or last revalidated).
+     */
+    private final long storedAt;
+    /**
+     * The instant (in {@link System#nanoTime()} terms) until which the response can be served without revalidation.
+     */
+    private final long freshUntil;
+
+
+    /**
+     * Constructor.
+     *
+     * @param response   The stored response.
+     * @param storedAt   The instant in which the response was received (or last revalidated).
+     * @param directives The {@link CacheDirectives} that define for how long the response is fresh.
+     */
+    private CachedResponse(final SharedResponse response, final long storedAt, final CacheDirectives directives) {
+        this.response = response;
+        this.etag = response.getHeaders().getETag();
+        this.storedAt = storedAt;
+        this.freshUntil = storedAt + directives.freshnessLifetime().toNanos();
+    }
+
+
+    /**
+     * Indicates whether this response can be served without revalidation at the given instant.
+     *
+     * @param now The instant (in {@link System#nanoTime()} terms).
+     * @return {@code true} if the response is fresh, or {@code false} otherwise.
+     */
+    /* package */ boolean isFresh(final long now) {
+        return freshUntil - now > 0;
+    }
+
+    /**
+     * Returns the response's 'ETag' header, used to revalidate it.
+     *
+     * @return An {@link Optional} with the 'ETag' header, or empty if the response can not be revalidated.
+     */
+    /* package */ Optional<String> getETag() {
+        return Optional.ofNullable(etag);
+    }
+
+    /**
+     * Returns an estimation of the memory used by this response.
+     *
+     * @return The amount of bytes.
+     */
+    /* package */ int weight() {
+        var weight = ENTRY_OVERHEAD + response.getBody().length;
+        for (final var header : response.getHeaders().entrySet()) {
+            weight += header.getKey().length();
+            for (final var value : header.getValue()) {
+                weight += value.length();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Creates the {@link CachedResponse} that results from revalidating this one,
+     * with the freshness stated by the 304 Not Modified response received from upstream.
+     *
+     * @param notModifiedHeaders The headers of the 304 Not Modified response.
+     * @param now                The instant in which the response was received.
+     * @return An {@link Optional} with the revalidated response, or empty if it can not be stored anymore.
+     */
+    /* package */ Optional<CachedResponse> revalidate(final HttpHeaders notModifiedHeaders, final long now) {
+        final var directives = CacheDirectives.of(
+                notModifiedHeaders.containsKey(HttpHeaders.CACHE_CONTROL) ? notModifiedHeaders : response.getHeaders()
+        );
+        return directives.isStorable()
+                ? Optional.of(new CachedResponse(response, now, directives))
+                : Optional.empty();
+    }
+
+    /**
+     * Indicates whether the given (conditional) {@code requestHeaders} are satisfied by this response
+     * (i.e the client already has it, and a 304 Not Modified response can be sent).
+     * As in the 'If-None-Match' header, entity tags are compared using the weak comparison.
+     *
+     * @param requestHeaders The {@link HttpHeaders} of the client request.
+     * @return {@code true} if the client already has this response, or {@code false} otherwise.
+     */
+    /* package */ boolean isNotModified(final HttpHeaders requestHeaders) {
+        final var ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return etag != null && ifNoneMatch.stream().anyMatch(tag -> "*".equals(tag) || weakMatch(tag, etag));
+        }
+        final var ifModifiedSince = requestHeaders.getIfModifiedSince();
+        final var lastModified = response.getHeaders().getLastModified();
+        return ifModifiedSince != -1 && lastModified != -1 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Writes this response into the given {@code response}, or a 304 Not Modified one if the client already has it.
+     * Headers already set in the given response (e.g the CORS ones) are kept (the 'Vary' header is merged).
+     *
+     * @param response       The {@link ServerHttpResponse} to be written.
+     * @param requestHeaders The {@link HttpHeaders} of the client request.
+     * @param now            The instant in which the response is written.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    /* package */ Mono<Void> writeTo(
+            final ServerHttpResponse response,
+            final HttpHeaders requestHeaders,
+            final long now) {
+        final var responseHeaders = response.getHeaders();
+        responseHeaders.set(HttpHeaders.AGE, Long.toString(TimeUnit.NANOSECONDS.toSeconds(now - storedAt)));
+        if (!isNotModified(requestHeaders)) {
+            return this.response.writeTo(response);
+        }
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        final var headers = this.response.getHeaders();
+        for (final var name : NOT_MODIFIED_HEADERS) {
+            final var values = headers.get(name);
+            if (values != null) {
+                SharedResponse.addHeader(responseHeaders, name, values);
+            }
+        }
+        return response.setComplete();
+    }
+
+
+    /**
+     * Creates the {@link CachedResponse} of the given upstream {@code response}, if it can be stored
+     * (i.e it is a 200 OK response that can be shared with other users, as stated by
+     * {@link SharedResponse#isShareable()}, and that has a validator or a freshness lifetime).
+     *
+     * @param response The upstream response.
+     * @param now      The instant in which the response was received.
+     * @return An {@link Optional} with the {@link CachedResponse}, or empty if the response can not be stored.
+     */
+    /* package */ static Optional<CachedResponse> of(final SharedResponse response, final long now) {
+        final var headers = response.getHeaders();
+        if (response.getStatus() != HttpStatus.OK || !response.isShareable()) {
+            return Optional.empty();
+        }
+        final var directives = CacheDirectives.of(headers);
+        if (!directives.isStorable() || (headers.getETag() == null && !directives.hasFreshnessLifetime())) {
+            return Optional.empty();
+        }
+        return Optional.of(new CachedResponse(response, now, directives));
+    }
+
+    /**
+     * Compares the given entity tags using the weak comparison (i.e ignoring the weakness indicator).
+     *
+     * @param tag   An entity tag.
+     * @param other Another entity tag.
+     * @return {@code true} if both tags match, or {@code false} otherwise.
+     */
+    private static boolean weakMatch(final String tag, final String other) {
+        return stripWeakness(tag).equals(stripWeakness(other));
+    }
+
+    /**
+     * Removes the weakness indicator of the given entity {@code tag}.
+     *
+     * @param tag The entity tag.
+     * @return The opaque tag.
+     */
+    private static String stripWeakness(final String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
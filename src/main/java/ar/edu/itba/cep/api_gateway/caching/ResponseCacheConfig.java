@@ -0,0 +1,97 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import ar.edu.itba.cep.api_gateway.coalescing.RequestKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.HashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration class for the gateway's response cache.
+ * Only enabled if the {@code response-cache.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+@ConditionalOnProperty(prefix = "response-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheConfig {
+
+    /**
+     * The name of the cache (used to report metrics).
+     */
+    private static final String CACHE_NAME = "gateway.response-cache";
+
+
+    /**
+     * Creates the {@link ResponseCacheFilter}, with the {@link ResponseCacheFilter.RouteCache} of each configured
+     * route. Responses are held in a Caffeine {@link Cache} bounded by their (estimated) size, whose W-TinyLFU
+     * eviction policy only admits a new response if it is requested more often than the one it would evict,
+     * so one-off reads do not flush the frequently read ones.
+     * The cache statistics (e.g the hit ratio) and its weighted size (in bytes) are reported to the given
+     * {@link MeterRegistry}.
+     *
+     * @param responseCacheProperties The {@link ResponseCacheProperties} from where configuration values are taken.
+     * @param meterRegistry           The {@link MeterRegistry} to which the caching statistics are reported.
+     * @return The {@link ResponseCacheFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ ResponseCacheFilter responseCacheFilter(
+            final ResponseCacheProperties responseCacheProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(responseCacheProperties.getMaximumSize().toBytes() > 0, "The maximum size must be positive");
+        final Cache<RequestKey, CachedResponse> cache = Caffeine.newBuilder()
+                .maximumWeight(responseCacheProperties.getMaximumSize().toBytes())
+                .<RequestKey, CachedResponse>weigher((key, response) -> response.weight())
+                .expireAfterWrite(responseCacheProperties.getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder(CACHE_NAME + ".weight", cache, ResponseCacheConfig::weightedSize)
+                .description("The estimated size of the cached responses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        final var pathPatternParser = new PathPatternParser();
+        final var routeCaches = new HashMap<String, ResponseCacheFilter.RouteCache>();
+        responseCacheProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            final var maxBodySize = routeProperties.getMaxBodySize().toBytes();
+            Assert.isTrue(maxBodySize > 0 && maxBodySize <= Integer.MAX_VALUE, "The maximum body size is not valid");
+            routeCaches.put(routeId, new ResponseCacheFilter.RouteCache(
+                    routeId,
+                    routeProperties.getPaths()
+                            .stream()
+                            .map(pathPatternParser::parse)
+                            .collect(Collectors.toList()),
+                    (int) maxBodySize,
+                    meterRegistry
+            ));
+        });
+        return new ResponseCacheFilter(cache, routeCaches);
+    }
+
+
+    /**
+     * Returns the weighted size of the given {@code cache} (i.e the estimated size of the cached responses).
+     *
+     * @param cache The {@link Cache}.
+     * @return The amount of bytes.
+     */
+    private static double weightedSize(final Cache<?, ?> cache) {
+        return cache.policy()
+                .eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+}
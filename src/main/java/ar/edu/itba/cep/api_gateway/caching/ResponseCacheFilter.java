@@ -0,0 +1,307 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import ar.edu.itba.cep.api_gateway.coalescing.CapturingResponse;
+import ar.edu.itba.cep.api_gateway.coalescing.CoalescingFilter;
+import ar.edu.itba.cep.api_gateway.coalescing.RequestKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link GlobalFilter} that serves GET requests to the configured paths of a route from a bounded cache of
+ * upstream responses, honoring their 'Cache-Control' and 'ETag' headers.
+ * <p>
+ * Responses are keyed by {@link RequestKey} (i.e by the roles of the user, so they must only depend on them).
+ * Fresh responses are served without going upstream. Stale responses with an 'ETag' are revalidated upstream
+ * with an 'If-None-Match' header, so a 304 Not Modified response travels upstream instead of the whole body.
+ * In both cases, clients that send matching validators get a 304 Not Modified response.
+ * The client validators are never sent upstream, so a full response is always received to be stored.
+ * It runs right before the {@link CoalescingFilter}, so misses and revalidations can still be coalesced.
+ * Responses are compressed after they are captured (the key includes the 'Accept-Encoding' header),
+ * so hits reuse the stored compressed body instead of compressing it again.
+ */
+/* package */ class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The order of this filter.
+     */
+    /* package */ static final int ORDER = CoalescingFilter.ORDER - 1;
+
+
+    /**
+     * The {@link Cache} of responses.
+     */
+    private final Cache<RequestKey, CachedResponse> cache;
+    /**
+     * The {@link RouteCache} of each cached route, keyed by route id.
+     */
+    private final Map<String, RouteCache> routeCaches;
+
+
+    /**
+     * Constructor.
+     *
+     * @param cache       The {@link Cache} of responses.
+     * @param routeCaches The {@link RouteCache} of each cached route, keyed by route id.
+     */
+    /* package */ ResponseCacheFilter(
+            final Cache<RequestKey, CachedResponse> cache,
+            final Map<String, RouteCache> routeCaches) {
+        this.cache = cache;
+        this.routeCaches = Map.copyOf(routeCaches);
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || request.getHeaders().containsKey(HttpHeaders.RANGE)) {
+            return chain.filter(exchange);
+        }
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var routeCache = route == null ? null : routeCaches.get(route.getId());
+        if (routeCache == null || !routeCache.matches(request)) {
+            return chain.filter(exchange);
+        }
+        final var validators = validators(request.getHeaders());
+        final var upstreamRequest = withoutValidators(request);
+        return RequestKey.of(route.getId(), upstreamRequest)
+                .flatMap(key -> {
+                    final var now = System.nanoTime();
+                    final var cached = cache.getIfPresent(key);
+                    if (cached == null) {
+                        routeCache.misses.increment();
+                        return fetch(exchange.mutate().request(upstreamRequest).build(), chain, routeCache, key);
+                    }
+                    if (cached.isFresh(now) && !CacheDirectives.of(request.getHeaders()).isNoCache()) {
+                        routeCache.hits.increment();
+                        return cached.writeTo(exchange.getResponse(), validators, now);
+                    }
+                    return cached.getETag()
+                            .map(etag -> {
+                                routeCache.revalidations.increment();
+                                return revalidate(
+                                        exchange, chain, routeCache, key, cached, upstreamRequest, validators, etag
+                                );
+                            })
+                            .orElseGet(() -> {
+                                routeCache.misses.increment();
+                                final var upstreamExchange = exchange.mutate().request(upstreamRequest).build();
+                                return fetch(upstreamExchange, chain, routeCache, key);
+                            });
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+
+    /**
+     * Sends the request in the given {@code exchange} upstream, storing its response if it can be cached.
+     *
+     * @param exchange   The {@link ServerWebExchange} with the request (without the client validators).
+     * @param chain      The {@link GatewayFilterChain}.
+     * @param routeCache The {@link RouteCache} of the request's route.
+     * @param key        The request's {@link RequestKey}.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private Mono<Void> fetch(
+            final ServerWebExchange exchange,
+            final GatewayFilterChain chain,
+            final RouteCache routeCache,
+            final RequestKey key) {
+        final var response = new CapturingResponse(exchange.getResponse(), routeCache.maxBodySize);
+        return chain.filter(exchange.mutate().response(response).build())
+                .doOnSuccess(ignored -> store(key, response));
+    }
+
+    /**
+     * Revalidates the given {@code cached} response upstream, writing it if it is still valid.
+     *
+     * @param exchange        The {@link ServerWebExchange} with the client request.
+     * @param chain           The {@link GatewayFilterChain}.
+     * @param routeCache      The {@link RouteCache} of the request's route.
+     * @param key             The request's {@link RequestKey}.
+     * @param cached          The stale {@link CachedResponse}.
+     * @param upstreamRequest The request to be sent upstream (without the client validators).
+     * @param validators      The client validators.
+     * @param etag            The cached response's 'ETag' header.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private Mono<Void> revalidate(
+            final ServerWebExchange exchange,
+            final GatewayFilterChain chain,
+            final RouteCache routeCache,
+            final RequestKey key,
+            final CachedResponse cached,
+            final ServerHttpRequest upstreamRequest,
+            final HttpHeaders validators,
+            final String etag) {
+        final var revalidating = new RevalidatingResponse(
+                exchange.getResponse(),
+                cached,
+                validators,
+                revalidated -> revalidated.ifPresentOrElse(
+                        present -> cache.asMap().replace(key, cached, present),
+                        () -> cache.asMap().remove(key, cached)
+                )
+        );
+        final var response = new CapturingResponse(revalidating, routeCache.maxBodySize);
+        final var request = upstreamRequest.mutate()
+                .headers(headers -> headers.set(HttpHeaders.IF_NONE_MATCH, etag))
+                .build();
+        return chain.filter(exchange.mutate().request(request).response(response).build())
+                .doOnSuccess(ignored -> {
+                    if (!revalidating.isNotModified()) {
+                        store(key, response);
+                    }
+                });
+    }
+
+    /**
+     * Stores the response captured by the given {@code response}, if it can be cached.
+     *
+     * @param key      The {@link RequestKey} of the request.
+     * @param response The {@link CapturingResponse} that captured the upstream response.
+     */
+    private void store(final RequestKey key, final CapturingResponse response) {
+        final var now = System.nanoTime();
+        response.toShared()
+                .flatMap(shared -> CachedResponse.of(shared, now))
+                .ifPresentOrElse(cached -> cache.put(key, cached), () -> cache.invalidate(key));
+    }
+
+    /**
+     * Copies the client validators in the given {@code requestHeaders}
+     * (as mutating a request also mutates the headers of the original one).
+     *
+     * @param requestHeaders The {@link HttpHeaders} of the client request.
+     * @return The 'If-None-Match' and 'If-Modified-Since' headers.
+     */
+    private static HttpHeaders validators(final HttpHeaders requestHeaders) {
+        final var validators = new HttpHeaders();
+        final var ifNoneMatch = requestHeaders.get(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            validators.addAll(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        final var ifModifiedSince = requestHeaders.get(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            validators.addAll(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        return validators;
+    }
+
+    /**
+     * Removes the client validators from the given {@code request}.
+     *
+     * @param request The {@link ServerHttpRequest}.
+     * @return The request without the 'If-None-Match' and 'If-Modified-Since' headers.
+     */
+    private static ServerHttpRequest withoutValidators(final ServerHttpRequest request) {
+        final var headers = request.getHeaders();
+        if (!headers.containsKey(HttpHeaders.IF_NONE_MATCH) && !headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+            return request;
+        }
+        return request.mutate()
+                .headers(mutable -> {
+                    mutable.remove(HttpHeaders.IF_NONE_MATCH);
+                    mutable.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                })
+                .build();
+    }
+
+
+    /**
+     * The caching configuration and meters of a route.
+     */
+    /* package */ static final class RouteCache {
+
+        /**
+         * The {@link PathPattern}s of the requests whose responses are cached.
+         */
+        private final List<PathPattern> paths;
+        /**
+         * The maximum size of a response body to be cached.
+         */
+        private final int maxBodySize;
+        /**
+         * The {@link Counter} of requests served from the cache.
+         */
+        private final Counter hits;
+        /**
+         * The {@link Counter} of requests that revalidated a stale response.
+         */
+        private final Counter revalidations;
+        /**
+         * The {@link Counter} of requests with no cached response.
+         */
+        private final Counter misses;
+
+
+        /**
+         * Constructor.
+         *
+         * @param routeId       The route id.
+         * @param paths         The {@link PathPattern}s of the requests whose responses are cached.
+         * @param maxBodySize   The maximum size of a response body to be cached.
+         * @param meterRegistry The {@link MeterRegistry} to which the caching statistics are reported.
+         */
+        /* package */ RouteCache(
+                final String routeId,
+                final List<PathPattern> paths,
+                final int maxBodySize,
+                final MeterRegistry meterRegistry) {
+            this.paths = List.copyOf(paths);
+            this.maxBodySize = maxBodySize;
+            this.hits = counter(meterRegistry, routeId, "hit");
+            this.revalidations = counter(meterRegistry, routeId, "revalidation");
+            this.misses = counter(meterRegistry, routeId, "miss");
+        }
+
+
+        /**
+         * Checks whether the response of the given {@code request} is to be cached
+         * (i.e its path matches any of the patterns).
+         *
+         * @param request The {@link ServerHttpRequest}.
+         * @return {@code true} if the response is to be cached, or {@code false} otherwise.
+         */
+        private boolean matches(final ServerHttpRequest request) {
+            final var path = request.getPath().pathWithinApplication();
+            for (final var pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Registers the {@link Counter} of cached requests of a route, with the given {@code result}.
+         *
+         * @param meterRegistry The {@link MeterRegistry} in which the counter is registered.
+         * @param routeId       The route id.
+         * @param result        How the requests were handled.
+         * @return The {@link Counter}.
+         */
+        private static Counter counter(final MeterRegistry meterRegistry, final String routeId, final String result) {
+            return meterRegistry.counter("gateway.response-cache.requests", "route", routeId, "result", result);
+        }
+    }
+}
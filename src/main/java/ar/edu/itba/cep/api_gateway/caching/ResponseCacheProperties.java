@@ -0,0 +1,58 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties for configuring the gateway's response cache.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "response-cache")
+/* package */ class ResponseCacheProperties {
+
+    /**
+     * Whether responses are cached.
+     */
+    private boolean enabled = true;
+    /**
+     * The maximum amount of memory used by the cached responses (bodies and headers, estimated).
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+    /**
+     * The maximum amount of time a response is kept since it was stored (or last revalidated),
+     * even if it can still be revalidated.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+    /**
+     * The caching properties of each route, keyed by route id (routes not included are not cached).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for caching the responses of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The path patterns of the requests whose responses are cached (i.e the ones whose response only depends
+         * on the path, the query and the roles of the user).
+         */
+        private List<String> paths = new ArrayList<>();
+        /**
+         * The maximum size of a response body to be cached (larger responses are not cached).
+         */
+        private DataSize maxBodySize = DataSize.ofKilobytes(512);
+    }
+}
@@ -0,0 +1,110 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * A {@link ServerHttpResponseDecorator} for requests that revalidate a stale {@link CachedResponse} upstream.
+ * <p>
+ * If upstream answers with a 304 Not Modified response, the cached response is written instead
+ * (or the 304 Not Modified response is kept, if the client already has the cached response).
+ * The revalidated response is handed to be stored again before anything is written,
+ * so requests sent once the client gets the response already find it fresh.
+ * Any other response is written as is.
+ */
+/* package */ final class RevalidatingResponse extends ServerHttpResponseDecorator {
+
+    /**
+     * The {@link CachedResponse} being revalidated.
+     */
+    private final CachedResponse cached;
+    /**
+     * The client validators (i.e the 'If-None-Match' and 'If-Modified-Since' headers of the client request).
+     */
+    private final HttpHeaders validators;
+    /**
+     * The {@link Consumer} of the revalidated response (empty if it can not be stored anymore).
+     */
+    private final Consumer<Optional<CachedResponse>> revalidationConsumer;
+    /**
+     * Whether upstream answered with a 304 Not Modified response.
+     */
+    private boolean notModified;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate             The decorated {@link ServerHttpResponse}.
+     * @param cached               The {@link CachedResponse} being revalidated.
+     * @param validators           The client validators.
+     * @param revalidationConsumer The {@link Consumer} of the revalidated response
+     *                             (empty if it can not be stored anymore).
+     */
+    /* package */ RevalidatingResponse(
+            final ServerHttpResponse delegate,
+            final CachedResponse cached,
+            final HttpHeaders validators,
+            final Consumer<Optional<CachedResponse>> revalidationConsumer) {
+        super(delegate);
+        this.cached = cached;
+        this.validators = validators;
+        this.revalidationConsumer = revalidationConsumer;
+        this.notModified = false;
+    }
+
+
+    @Override
+    public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+        if (getStatusCode() != HttpStatus.NOT_MODIFIED) {
+            return super.writeWith(body);
+        }
+        return Flux.from(body)
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.defer(this::writeCached));
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+        return getStatusCode() != HttpStatus.NOT_MODIFIED ? super.setComplete() : writeCached();
+    }
+
+    /**
+     * Indicates whether upstream answered with a 304 Not Modified response.
+     *
+     * @return {@code true} if the cached response was still valid, or {@code false} otherwise.
+     */
+    /* package */ boolean isNotModified() {
+        return notModified;
+    }
+
+
+    /**
+     * Writes the cached response, once upstream answered with a 304 Not Modified response
+     * (keeping the 304 Not Modified response if the client already has the cached response).
+     *
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private Mono<Void> writeCached() {
+        final var now = System.nanoTime();
+        this.notModified = true;
+        final var revalidated = cached.revalidate(getHeaders(), now);
+        revalidationConsumer.accept(revalidated);
+        if (cached.isNotModified(validators)) {
+            return super.setComplete();
+        }
+        getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        return revalidated.orElse(cached).writeTo(getDelegate(), HttpHeaders.EMPTY, now);
+    }
+}
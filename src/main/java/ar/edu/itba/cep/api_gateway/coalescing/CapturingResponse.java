@@ -0,0 +1,165 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import ar.edu.itba.cep.api_gateway.tracing.RequestIdFilter;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ServerHttpResponseDecorator} that writes an upstream response to the client,
+ * while capturing it in order to be shared with coalesced requests (or cached).
+ * <p>
+ * The status and headers are captured when the first buffer of the body is written (i.e as received from upstream,
+ * plus the ones set by decorators while writing the body, like the compression ones, but before any header
+ * is added when committing). Only the header values added since the request was routed are captured
+ * (i.e the ones set before, like the CORS ones, depend on each request), so a header already set before routing
+ * (e.g the CORS 'Vary') keeps the values added by upstream and by the compression.
+ * Streamed responses and responses with a body larger than the maximum size are not captured.
+ */
+public final class CapturingResponse extends ServerHttpResponseDecorator {
+
+    /**
+     * The maximum size of the body to be captured.
+     */
+    private final int maxBodySize;
+    /**
+     * The header values that were set before the request was routed (i.e they are not captured), keyed by name
+     * (case insensitive, as upstream headers may replace them with another case).
+     */
+    private final Map<String, List<String>> routingHeaders;
+    /**
+     * The captured status ({@code null} until captured).
+     */
+    private HttpStatus status;
+    /**
+     * The captured headers ({@code null} until captured).
+     */
+    private HttpHeaders headers;
+    /**
+     * The captured body (only the first {@link #bodySize} bytes are used).
+     */
+    private byte[] body;
+    /**
+     * The size of the captured body.
+     */
+    private int bodySize;
+    /**
+     * Whether the response can be shared (i.e it was not streamed and the body is not too large).
+     */
+    private boolean shareable;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The decorated {@link ServerHttpResponse} (i.e the one of the request sent upstream).
+     * @param maxBodySize The maximum size of the body to be captured.
+     */
+    public CapturingResponse(final ServerHttpResponse delegate, final int maxBodySize) {
+        super(delegate);
+        this.maxBodySize = maxBodySize;
+        this.routingHeaders = new LinkedCaseInsensitiveMap<>(delegate.getHeaders().size(), Locale.ENGLISH);
+        delegate.getHeaders().forEach((name, values) -> routingHeaders.put(name, List.copyOf(values)));
+        this.body = new byte[0];
+        this.bodySize = 0;
+        this.shareable = true;
+    }
+
+
+    @Override
+    public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+        return super.writeWith(Flux.from(body)
+                .doOnNext(buffer -> {
+                    captureHead();
+                    captureBody(buffer);
+                })
+                .doOnComplete(this::captureHead));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        this.shareable = false; // Streamed responses are not shared
+        return super.writeAndFlushWith(body);
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+        captureHead();
+        return super.setComplete();
+    }
+
+    /**
+     * Returns the captured response, once it was completely written.
+     *
+     * @return An {@link Optional} with the captured {@link SharedResponse},
+     * or empty if the response can not be shared.
+     */
+    public Optional<SharedResponse> toShared() {
+        if (!shareable || status == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new SharedResponse(status, headers, Arrays.copyOf(body, bodySize)));
+    }
+
+
+    /**
+     * Captures the status and the headers of the response (only the first time it is called).
+     */
+    private void captureHead() {
+        if (status != null) {
+            return;
+        }
+        final var delegateHeaders = getDelegate().getHeaders();
+        final var captured = new LinkedMultiValueMap<String, String>(delegateHeaders.size());
+        delegateHeaders.forEach((name, values) -> {
+            if (RequestIdFilter.REQUEST_ID_HEADER.equalsIgnoreCase(name)) {
+                return;
+            }
+            final var routingValues = routingHeaders.getOrDefault(name, List.of());
+            final var added = values.stream()
+                    .filter(value -> !routingValues.contains(value))
+                    .collect(Collectors.toList());
+            if (!added.isEmpty()) {
+                captured.put(name, added);
+            }
+        });
+        this.headers = HttpHeaders.readOnlyHttpHeaders(new HttpHeaders(captured));
+        this.status = Optional.ofNullable(getDelegate().getStatusCode()).orElse(HttpStatus.OK);
+    }
+
+    /**
+     * Captures the given {@code buffer} of the body, unless the body becomes too large.
+     *
+     * @param buffer The {@link DataBuffer} being written.
+     */
+    private void captureBody(final DataBuffer buffer) {
+        if (!shareable) {
+            return;
+        }
+        final var readable = buffer.readableByteCount();
+        if (bodySize + readable > maxBodySize) {
+            this.shareable = false;
+            this.body = null;
+            return;
+        }
+        if (bodySize + readable > body.length) {
+            this.body = Arrays.copyOf(body, Math.min(Math.max(body.length * 2, bodySize + readable), maxBodySize));
+        }
+        buffer.asByteBuffer().get(body, bodySize, readable);
+        this.bodySize += readable;
+    }
+}
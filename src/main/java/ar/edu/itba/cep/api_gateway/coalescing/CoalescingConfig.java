@@ -0,0 +1,55 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.HashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration class for coalescing identical concurrent GET requests.
+ * Only enabled if the {@code coalescing.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(CoalescingProperties.class)
+@ConditionalOnProperty(prefix = "coalescing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CoalescingConfig {
+
+    /**
+     * Creates the {@link CoalescingFilter}, with the {@link CoalescingFilter.RouteCoalescer} of each configured route.
+     *
+     * @param coalescingProperties The {@link CoalescingProperties} from where configuration values are taken.
+     * @param meterRegistry        The {@link MeterRegistry} to which the coalescing statistics are reported.
+     * @return The {@link CoalescingFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ CoalescingFilter coalescingFilter(
+            final CoalescingProperties coalescingProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var pathPatternParser = new PathPatternParser();
+        final var coalescers = new HashMap<String, CoalescingFilter.RouteCoalescer>();
+        coalescingProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            final var maxBodySize = routeProperties.getMaxBodySize().toBytes();
+            Assert.isTrue(maxBodySize > 0 && maxBodySize <= Integer.MAX_VALUE, "The maximum body size is not valid");
+            coalescers.put(routeId, new CoalescingFilter.RouteCoalescer(
+                    routeId,
+                    routeProperties.getPaths()
+                            .stream()
+                            .map(pathPatternParser::parse)
+                            .collect(Collectors.toList()),
+                    (int) maxBodySize,
+                    routeProperties.getTimeout(),
+                    meterRegistry
+            ));
+        });
+        return new CoalescingFilter(coalescers);
+    }
+}
@@ -0,0 +1,265 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link GlobalFilter} that coalesces identical concurrent GET requests to the configured paths of a route,
+ * so only one of them is sent upstream, and its (buffered) response is shared with the others.
+ * <p>
+ * Requests are identical if they have the same {@link RequestKey}
+ * (i.e responses to these paths must only depend on the roles, not on the user).
+ * If the response can not be shared (i.e it is streamed, too large, or the request fails,
+ * or it is not meant for other users, as it sets cookies, is private or no-store, or varies on other headers),
+ * or it takes longer than the timeout, the waiting requests are sent upstream by themselves.
+ * It runs after the rate limiting, the request id propagation and the response cache, and before the token
+ * translation, so coalesced requests do not pay for encoding a token.
+ */
+public class CoalescingFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The order of this filter.
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 3;
+
+    /**
+     * The {@link RouteCoalescer} of each coalesced route, keyed by route id.
+     */
+    private final Map<String, RouteCoalescer> coalescers;
+    /**
+     * The {@link Flight}s of the requests currently sent upstream, keyed by their {@link RequestKey}.
+     */
+    private final Map<RequestKey, Flight> flights;
+
+
+    /**
+     * Constructor.
+     *
+     * @param coalescers The {@link RouteCoalescer} of each coalesced route, keyed by route id.
+     */
+    /* package */ CoalescingFilter(final Map<String, RouteCoalescer> coalescers) {
+        this.coalescers = Map.copyOf(coalescers);
+        this.flights = new ConcurrentHashMap<>();
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || request.getHeaders().containsKey(HttpHeaders.RANGE)) {
+            return chain.filter(exchange);
+        }
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var coalescer = route == null ? null : coalescers.get(route.getId());
+        if (coalescer == null || !coalescer.matches(request)) {
+            return chain.filter(exchange);
+        }
+        return RequestKey.of(route.getId(), request)
+                .flatMap(key -> {
+                    final var existing = flights.get(key);
+                    if (existing != null) {
+                        return follow(exchange, chain, coalescer, existing);
+                    }
+                    final var flight = new Flight();
+                    final var raced = flights.putIfAbsent(key, flight);
+                    return raced == null
+                            ? lead(exchange, chain, coalescer, key, flight)
+                            : follow(exchange, chain, coalescer, raced);
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+
+    /**
+     * Sends the request in the given {@code exchange} upstream, sharing its response with the coalesced requests.
+     *
+     * @param exchange  The {@link ServerWebExchange} with the request.
+     * @param chain     The {@link GatewayFilterChain}.
+     * @param coalescer The {@link RouteCoalescer} of the request's route.
+     * @param key       The request's {@link RequestKey}.
+     * @param flight    The {@link Flight} through which the response is shared.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private Mono<Void> lead(
+            final ServerWebExchange exchange,
+            final GatewayFilterChain chain,
+            final RouteCoalescer coalescer,
+            final RequestKey key,
+            final Flight flight) {
+        coalescer.leaders.increment();
+        final var response = new CapturingResponse(exchange.getResponse(), coalescer.maxBodySize);
+        return chain.filter(exchange.mutate().response(response).build())
+                .doOnSuccess(ignored -> land(
+                        key,
+                        flight,
+                        response.toShared().filter(SharedResponse::isShareable).orElse(SharedResponse.NONE)
+                ))
+                .doFinally(ignored -> land(key, flight, SharedResponse.NONE)); // Failed or cancelled
+    }
+
+    /**
+     * Waits for the response of the given {@code flight}, and writes it in the given {@code exchange}.
+     * If there is no response to be shared, or it takes longer than the timeout,
+     * the request is sent upstream by itself.
+     *
+     * @param exchange  The {@link ServerWebExchange} with the request.
+     * @param chain     The {@link GatewayFilterChain}.
+     * @param coalescer The {@link RouteCoalescer} of the request's route.
+     * @param flight    The {@link Flight} of the identical request being sent upstream.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private static Mono<Void> follow(
+            final ServerWebExchange exchange,
+            final GatewayFilterChain chain,
+            final RouteCoalescer coalescer,
+            final Flight flight) {
+        return flight.response
+                .timeout(coalescer.timeout, Mono.just(SharedResponse.NONE))
+                .flatMap(shared -> {
+                    if (shared == SharedResponse.NONE) {
+                        coalescer.fallbacks.increment();
+                        return chain.filter(exchange);
+                    }
+                    coalescer.coalesced.increment();
+                    return shared.writeTo(exchange.getResponse());
+                });
+    }
+
+    /**
+     * Completes the given {@code flight} with the given {@code response} (only the first time it is called),
+     * removing it so new requests are not coalesced with it.
+     *
+     * @param key      The {@link RequestKey} of the flight.
+     * @param flight   The {@link Flight} to be completed.
+     * @param response The {@link SharedResponse}.
+     */
+    private void land(final RequestKey key, final Flight flight, final SharedResponse response) {
+        if (flight.landed.compareAndSet(false, true)) {
+            flights.remove(key, flight);
+            flight.response.onNext(response);
+        }
+    }
+
+
+    /**
+     * The coalescing configuration and meters of a route.
+     */
+    /* package */ static final class RouteCoalescer {
+
+        /**
+         * The {@link PathPattern}s of the requests to be coalesced.
+         */
+        private final List<PathPattern> paths;
+        /**
+         * The maximum size of a response body to be shared.
+         */
+        private final int maxBodySize;
+        /**
+         * The maximum amount of time a request waits for the response of an identical one.
+         */
+        private final Duration timeout;
+        /**
+         * The {@link Counter} of requests sent upstream with their response shared.
+         */
+        private final Counter leaders;
+        /**
+         * The {@link Counter} of requests that got the response of an identical one.
+         */
+        private final Counter coalesced;
+        /**
+         * The {@link Counter} of requests that waited for an identical one, but were sent upstream by themselves.
+         */
+        private final Counter fallbacks;
+
+
+        /**
+         * Constructor.
+         *
+         * @param routeId       The route id.
+         * @param paths         The {@link PathPattern}s of the requests to be coalesced.
+         * @param maxBodySize   The maximum size of a response body to be shared.
+         * @param timeout       The maximum amount of time a request waits for the response of an identical one.
+         * @param meterRegistry The {@link MeterRegistry} to which the coalescing statistics are reported.
+         */
+        /* package */ RouteCoalescer(
+                final String routeId,
+                final List<PathPattern> paths,
+                final int maxBodySize,
+                final Duration timeout,
+                final MeterRegistry meterRegistry) {
+            this.paths = List.copyOf(paths);
+            this.maxBodySize = maxBodySize;
+            this.timeout = timeout;
+            this.leaders = counter(meterRegistry, routeId, "leader");
+            this.coalesced = counter(meterRegistry, routeId, "coalesced");
+            this.fallbacks = counter(meterRegistry, routeId, "fallback");
+        }
+
+
+        /**
+         * Checks whether the given {@code request} is to be coalesced (i.e its path matches any of the patterns).
+         *
+         * @param request The {@link ServerHttpRequest}.
+         * @return {@code true} if the request is to be coalesced, or {@code false} otherwise.
+         */
+        private boolean matches(final ServerHttpRequest request) {
+            final var path = request.getPath().pathWithinApplication();
+            for (final var pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Registers the {@link Counter} of coalesced requests of a route, with the given {@code result}.
+         *
+         * @param meterRegistry The {@link MeterRegistry} in which the counter is registered.
+         * @param routeId       The route id.
+         * @param result        How the requests were handled.
+         * @return The {@link Counter}.
+         */
+        private static Counter counter(final MeterRegistry meterRegistry, final String routeId, final String result) {
+            return meterRegistry.counter("gateway.coalescing.requests", "route", routeId, "result", result);
+        }
+    }
+
+    /**
+     * A request being sent upstream, whose response is shared with the identical requests.
+     */
+    private static final class Flight {
+
+        /**
+         * The {@link MonoProcessor} that emits the response to be shared
+         * (or {@link SharedResponse#NONE} if there is none).
+         */
+        private final MonoProcessor<SharedResponse> response = MonoProcessor.create();
+        /**
+         * Whether the flight already completed.
+         */
+        private final AtomicBoolean landed = new AtomicBoolean(false);
+    }
+}
@@ -0,0 +1,54 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties for configuring the coalescing of identical concurrent GET requests.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "coalescing")
+/* package */ class CoalescingProperties {
+
+    /**
+     * Whether requests are coalesced.
+     */
+    private boolean enabled = true;
+    /**
+     * The coalescing properties of each route, keyed by route id (routes not included are not coalesced).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for coalescing the requests of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The path patterns of the requests to be coalesced (i.e the ones whose response only depends on the path,
+         * the query and the roles of the user).
+         */
+        private List<String> paths = new ArrayList<>();
+        /**
+         * The maximum size of a response body to be shared (larger responses are not shared).
+         */
+        private DataSize maxBodySize = DataSize.ofMegabytes(1);
+        /**
+         * The maximum amount of time a request waits for the response of an identical one
+         * (once elapsed, the request is sent upstream by itself).
+         */
+        private Duration timeout = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,140 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * The key that identifies equivalent GET requests (i.e the ones that get the same response).
+ * <p>
+ * Requests are equivalent if they are routed by the same route and have the same path, query, 'Accept',
+ * 'Accept-Encoding' and conditional headers, and the user has the same roles
+ * (i.e responses to the keyed paths must only depend on the roles, not on the user).
+ */
+public final class RequestKey {
+
+    /**
+     * The roles of requests without a bearer token.
+     */
+    private static final String NO_ROLES = "";
+
+
+    /**
+     * The route id.
+     */
+    private final String routeId;
+    /**
+     * The request's path.
+     */
+    private final String path;
+    /**
+     * The request's raw query ({@code null} if there is none).
+     */
+    private final String query;
+    /**
+     * The request's 'Accept' header ({@code null} if there is none).
+     */
+    private final String accept;
+    /**
+     * The request's 'Accept-Encoding' header ({@code null} if there is none).
+     */
+    private final String acceptEncoding;
+    /**
+     * The request's 'If-None-Match' header ({@code null} if there is none).
+     */
+    private final String ifNoneMatch;
+    /**
+     * The request's 'If-Modified-Since' header ({@code null} if there is none).
+     */
+    private final String ifModifiedSince;
+    /**
+     * The user's roles.
+     */
+    private final String roles;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routeId The route id.
+     * @param request The {@link ServerHttpRequest}.
+     * @param roles   The user's roles.
+     */
+    private RequestKey(final String routeId, final ServerHttpRequest request, final String roles) {
+        final var headers = request.getHeaders();
+        this.routeId = routeId;
+        this.path = request.getPath().pathWithinApplication().value();
+        this.query = request.getURI().getRawQuery();
+        this.accept = headers.getFirst(HttpHeaders.ACCEPT);
+        this.acceptEncoding = headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+        this.ifNoneMatch = headers.getFirst(HttpHeaders.IF_NONE_MATCH);
+        this.ifModifiedSince = headers.getFirst(HttpHeaders.IF_MODIFIED_SINCE);
+        this.roles = roles;
+    }
+
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        final var that = (RequestKey) o;
+        return routeId.equals(that.routeId)
+                && path.equals(that.path)
+                && Objects.equals(query, that.query)
+                && Objects.equals(accept, that.accept)
+                && Objects.equals(acceptEncoding, that.acceptEncoding)
+                && Objects.equals(ifNoneMatch, that.ifNoneMatch)
+                && Objects.equals(ifModifiedSince, that.ifModifiedSince)
+                && roles.equals(that.roles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(routeId, path, query, accept, acceptEncoding, ifNoneMatch, ifModifiedSince, roles);
+    }
+
+
+    /**
+     * Creates the {@link RequestKey} of the given {@code request}, taking the roles from the security context.
+     *
+     * @param routeId The id of the route that handles the request.
+     * @param request The {@link ServerHttpRequest}.
+     * @return A {@link Mono} with the {@link RequestKey}.
+     */
+    public static Mono<RequestKey> of(final String routeId, final ServerHttpRequest request) {
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(RequestKey::roles)
+                .defaultIfEmpty(NO_ROLES)
+                .map(roles -> new RequestKey(routeId, request, roles));
+    }
+
+    /**
+     * Returns the roles of the given {@code authentication}, as a (sorted) {@link String}.
+     *
+     * @param authentication The {@link Authentication}.
+     * @return The roles.
+     */
+    private static String roles(final Authentication authentication) {
+        if (!(authentication instanceof BearerTokenAuthentication)) {
+            return NO_ROLES;
+        }
+        return authentication.getAuthorities()
+                .stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,126 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A fully buffered upstream response (i.e its status, its headers and its body),
+ * shared with the requests coalesced with the one that received it, or with later requests when cached.
+ */
+@Getter
+public final class SharedResponse {
+
+    /**
+     * A {@link SharedResponse} indicating that there is no response to be shared
+     * (i.e the coalesced requests must be sent upstream by themselves).
+     */
+    public static final SharedResponse NONE = new SharedResponse(HttpStatus.OK, HttpHeaders.EMPTY, new byte[0]);
+    /**
+     * The request headers a response can vary on to be shared (i.e the ones included in the {@link RequestKey}).
+     */
+    private static final Set<String> SHAREABLE_VARY = Set.of(
+            HttpHeaders.ACCEPT.toLowerCase(Locale.ROOT),
+            HttpHeaders.ACCEPT_ENCODING.toLowerCase(Locale.ROOT)
+    );
+    /**
+     * The 'Cache-Control' directives that forbid serving a response to other users.
+     */
+    private static final Set<String> UNSHAREABLE_DIRECTIVES = Set.of("private", "no-store");
+
+
+    /**
+     * The response's status.
+     */
+    private final HttpStatus status;
+    /**
+     * The response's headers (read only), as received from upstream.
+     */
+    private final HttpHeaders headers;
+    /**
+     * The response's body.
+     */
+    private final byte[] body;
+
+
+    /**
+     * Constructor.
+     *
+     * @param status  The response's status.
+     * @param headers The response's headers (read only), as received from upstream.
+     * @param body    The response's body.
+     */
+    /* package */ SharedResponse(final HttpStatus status, final HttpHeaders headers, final byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+
+    /**
+     * Indicates whether this response can be served to other users with the same {@link RequestKey}
+     * (i.e it does not set cookies, it is not marked as private or no-store,
+     * and it only varies on headers included in the key).
+     *
+     * @return {@code true} if the response can be shared, or {@code false} otherwise.
+     */
+    public boolean isShareable() {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        final var vary = headers.getVary().stream().map(name -> name.toLowerCase(Locale.ROOT));
+        if (!vary.allMatch(SHAREABLE_VARY::contains)) {
+            return false;
+        }
+        return headers.getValuesAsList(HttpHeaders.CACHE_CONTROL).stream()
+                .map(directive -> directive.split("=", 2)[0].trim().toLowerCase(Locale.ROOT))
+                .noneMatch(UNSHAREABLE_DIRECTIVES::contains);
+    }
+
+    /**
+     * Writes this response into the given {@code response}. Headers already set in the given response
+     * (e.g the CORS ones) are kept, except for the 'Vary' header, to which the missing values are added.
+     *
+     * @param response The {@link ServerHttpResponse} to be written.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    public Mono<Void> writeTo(final ServerHttpResponse response) {
+        response.setStatusCode(status);
+        final var responseHeaders = response.getHeaders();
+        headers.forEach((name, values) -> addHeader(responseHeaders, name, values));
+        if (body.length == 0) {
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+
+    /**
+     * Adds the given header to the given {@code responseHeaders}, unless it is already set (e.g a CORS header).
+     * The 'Vary' header is merged instead, as the response varies on both the already set and the given values.
+     *
+     * @param responseHeaders The {@link HttpHeaders} of the response being written.
+     * @param name            The name of the header.
+     * @param values          The values of the header.
+     */
+    public static void addHeader(final HttpHeaders responseHeaders, final String name, final List<String> values) {
+        if (!responseHeaders.containsKey(name)) {
+            responseHeaders.addAll(name, values);
+            return;
+        }
+        if (!HttpHeaders.VARY.equalsIgnoreCase(name)) {
+            return;
+        }
+        final var vary = new HttpHeaders();
+        vary.addAll(HttpHeaders.VARY, values);
+        final var present = responseHeaders.getVary();
+        vary.getVary().stream()
+                .filter(value -> present.stream().noneMatch(value::equalsIgnoreCase))
+                .forEach(value -> responseHeaders.add(HttpHeaders.VARY, value));
+    }
+}
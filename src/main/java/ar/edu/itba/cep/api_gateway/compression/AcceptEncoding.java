@@ -0,0 +1,82 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Helper class for the {@code Accept-Encoding} request header.
+ */
+public final class AcceptEncoding {
+
+    /**
+     * The name that stands for any coding not listed in the header.
+     */
+    private static final String ANY = "*";
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private AcceptEncoding() {
+    }
+
+
+    /**
+     * Parses the {@code Accept-Encoding} header values in the given request {@code headers}.
+     * Names are case insensitive (so they are lower cased), and an invalid quality value does not accept the coding.
+     *
+     * @param headers The request's {@link HttpHeaders}.
+     * @return The quality value of each listed coding (and of {@code *}, if listed), keyed by lower case name
+     * (empty if there is no {@code Accept-Encoding} header).
+     */
+    public static Map<String, Double> qualities(final HttpHeaders headers) {
+        final var qualities = new HashMap<String, Double>();
+        for (final var value : headers.getValuesAsList(HttpHeaders.ACCEPT_ENCODING)) {
+            final var parameters = value.split(";");
+            final var name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty()) {
+                continue;
+            }
+            var quality = 1d;
+            for (var i = 1; i < parameters.length; i++) {
+                final var parameter = parameters[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (final NumberFormatException e) {
+                        quality = 0; // Invalid quality value (the coding is not accepted)
+                    }
+                }
+            }
+            qualities.put(name, quality);
+        }
+        return qualities;
+    }
+
+    /**
+     * Returns the quality value of the given {@code coding} in the given parsed {@code qualities}
+     * (i.e its own one, or that of {@code *} if it is not listed, or zero if neither is).
+     *
+     * @param qualities The quality value of each listed coding, as returned by {@link #qualities(HttpHeaders)}.
+     * @param coding    The coding's name (in lower case).
+     * @return The quality value (zero if the coding is not accepted).
+     */
+    public static double quality(final Map<String, Double> qualities, final String coding) {
+        return qualities.getOrDefault(coding, qualities.getOrDefault(ANY, 0d));
+    }
+
+    /**
+     * Checks whether the given request {@code headers} accept the given {@code coding}
+     * (i.e its quality value is greater than zero).
+     *
+     * @param headers The request's {@link HttpHeaders}.
+     * @param coding  The coding's name (in lower case).
+     * @return {@code true} if the coding is accepted, or {@code false} otherwise.
+     */
+    public static boolean accepts(final HttpHeaders headers, final String coding) {
+        return quality(qualities(headers), coding) > 0;
+    }
+}
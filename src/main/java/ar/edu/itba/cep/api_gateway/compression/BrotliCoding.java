@@ -0,0 +1,99 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Optional;
+
+/**
+ * The {@code br} {@link ContentCoding}, backed by brotli4j.
+ * <p>
+ * Neither the JDK nor this Netty version include a brotli encoder, and brotli4j needs a native library
+ * for each platform, so it is not a dependency of the gateway: the coding is only available if brotli4j
+ * (and the native library for the platform) is added to the classpath.
+ */
+/* package */ final class BrotliCoding implements ContentCoding {
+
+    /**
+     * The name of the class that loads brotli4j's native library.
+     */
+    private static final String LOADER_CLASS = "com.aayushatharva.brotli4j.Brotli4jLoader";
+    /**
+     * The name of brotli4j's encoder class.
+     */
+    private static final String ENCODER_CLASS = "com.aayushatharva.brotli4j.encoder.Encoder";
+    /**
+     * The name of the class of brotli4j's encoder parameters.
+     */
+    private static final String PARAMETERS_CLASS = ENCODER_CLASS + "$Parameters";
+
+
+    /**
+     * The {@link MethodHandle} of brotli4j's {@code Encoder.compress(byte[], Parameters)},
+     * bound to the encoder parameters.
+     */
+    private final MethodHandle compress;
+
+
+    /**
+     * Constructor.
+     *
+     * @param compress The {@link MethodHandle} of brotli4j's {@code Encoder.compress(byte[], Parameters)},
+     *                 bound to the encoder parameters.
+     */
+    private BrotliCoding(final MethodHandle compress) {
+        this.compress = compress;
+    }
+
+
+    /**
+     * Loads the brotli coding, if available.
+     *
+     * @param quality The compression quality (from 0 to 11).
+     * @return An {@link Optional} with the brotli {@link ContentCoding},
+     * or empty if brotli4j (or its native library) is not available.
+     */
+    /* package */ static Optional<ContentCoding> load(final int quality) {
+        try {
+            final var lookup = MethodHandles.publicLookup();
+            final var loaderClass = Class.forName(LOADER_CLASS);
+            final var available = lookup.findStatic(loaderClass, "isAvailable", MethodType.methodType(boolean.class));
+            if (!(boolean) available.invoke()) {
+                return Optional.empty();
+            }
+            final var encoderClass = Class.forName(ENCODER_CLASS);
+            final var parametersClass = Class.forName(PARAMETERS_CLASS);
+            final var parameters = lookup
+                    .findConstructor(parametersClass, MethodType.methodType(void.class))
+                    .invoke();
+            lookup.findVirtual(parametersClass, "setQuality", MethodType.methodType(parametersClass, int.class))
+                    .invoke(parameters, quality);
+            final var compress = lookup.findStatic(
+                    encoderClass,
+                    "compress",
+                    MethodType.methodType(byte[].class, byte[].class, parametersClass)
+            );
+            return Optional.of(new BrotliCoding(MethodHandles.insertArguments(compress, 1, parameters)));
+        } catch (final Throwable e) {
+            return Optional.empty(); // Not in the classpath, incompatible version, or no native library
+        }
+    }
+
+
+    @Override
+    public String getName() {
+        return "br";
+    }
+
+    @Override
+    public byte[] encode(final byte[] input) throws IOException {
+        try {
+            return (byte[]) compress.invoke(input);
+        } catch (final IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IOException("Could not encode with brotli", e);
+        }
+    }
+}
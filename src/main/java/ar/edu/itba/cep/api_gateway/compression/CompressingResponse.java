@@ -0,0 +1,197 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A {@link ServerHttpResponseDecorator} that compresses the body of the response with a {@link ContentCoding}.
+ * <p>
+ * The body is buffered (copied into the heap, releasing the received buffers) until it is complete,
+ * and then compressed by the {@link Compressor}'s workers. Only then the headers are updated
+ * ({@code Content-Encoding}, {@code Content-Length}, {@code Vary}, and the {@code ETag} is made weak),
+ * and the compressed body is written. If the body becomes larger than the maximum size, the buffered bytes
+ * and the rest of the body are written uncompressed; same if it is smaller than the minimum size,
+ * does not shrink, or the workers are saturated. Streamed responses are never compressed.
+ */
+/* package */ final class CompressingResponse extends ServerHttpResponseDecorator {
+
+    /**
+     * The {@link Compressor} that decides whether the response is compressed, and compresses it.
+     */
+    private final Compressor compressor;
+    /**
+     * The {@link ContentCoding} negotiated with the client.
+     */
+    private final ContentCoding coding;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The decorated {@link ServerHttpResponse}.
+     * @param compressor The {@link Compressor} that decides whether the response is compressed, and compresses it.
+     * @param coding     The {@link ContentCoding} negotiated with the client.
+     */
+    /* package */ CompressingResponse(
+            final ServerHttpResponse delegate,
+            final Compressor compressor,
+            final ContentCoding coding) {
+        super(delegate);
+        this.compressor = compressor;
+        this.coding = coding;
+    }
+
+
+    @Override
+    public Mono<Void> writeWith(final Publisher<? extends DataBuffer> body) {
+        if (!compressor.isCompressible(getDelegate())) {
+            return super.writeWith(body);
+        }
+        final var pending = new PendingBody(compressor.getMaxSize());
+        return super.writeWith(
+                Flux.<DataBuffer>from(body)
+                        .<DataBuffer>handle((buffer, sink) -> pending.add(buffer, sink))
+                        .concatWith(Mono.defer(() -> pending.isOverflowed() ? Mono.empty() : finish(pending.bytes())))
+        );
+    }
+
+
+    /**
+     * Writes the given (complete) {@code body}, compressing it if it is worth it.
+     *
+     * @param body The uncompressed body.
+     * @return A {@link Mono} that emits the {@link DataBuffer} to be written (empty if the body is empty).
+     */
+    private Mono<DataBuffer> finish(final byte[] body) {
+        if (body.length == 0) {
+            return Mono.empty();
+        }
+        if (body.length < compressor.getMinSize()) {
+            compressor.skipped(coding);
+            return Mono.just(wrap(body));
+        }
+        return compressor.encode(coding, body)
+                .map(compressed -> {
+                    if (compressed.length >= body.length) {
+                        compressor.skipped(coding);
+                        return wrap(body);
+                    }
+                    setEncodedHeaders(compressed.length);
+                    compressor.compressed(coding, body.length, compressed.length);
+                    return wrap(compressed);
+                })
+                .onErrorResume(error -> {
+                    compressor.rejected(coding);
+                    return Mono.just(wrap(body));
+                });
+    }
+
+    /**
+     * Updates the headers for the compressed body.
+     *
+     * @param length The length of the compressed body.
+     */
+    private void setEncodedHeaders(final int length) {
+        final var headers = getHeaders();
+        headers.set(HttpHeaders.CONTENT_ENCODING, coding.getName());
+        headers.setContentLength(length);
+        final var vary = headers.getVary();
+        if (vary.stream().noneMatch(name -> "*".equals(name) || HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(name))) {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        final var eTag = headers.getETag();
+        if (eTag != null && !eTag.startsWith("W/")) {
+            headers.setETag("W/" + eTag); // The compressed representation is not byte for byte the same
+        }
+    }
+
+    /**
+     * Wraps the given {@code bytes} into a {@link DataBuffer} of the response.
+     *
+     * @param bytes The bytes.
+     * @return The {@link DataBuffer}.
+     */
+    private DataBuffer wrap(final byte[] bytes) {
+        return bufferFactory().wrap(bytes);
+    }
+
+
+    /**
+     * The part of the body received until it is complete, or it becomes too large to be compressed.
+     */
+    private final class PendingBody {
+
+        /**
+         * The maximum size of the body.
+         */
+        private final int maxSize;
+        /**
+         * The received bytes ({@code null} once overflowed).
+         */
+        private ByteArrayOutputStream bytes;
+
+
+        /**
+         * Constructor.
+         *
+         * @param maxSize The maximum size of the body.
+         */
+        private PendingBody(final int maxSize) {
+            this.maxSize = maxSize;
+            this.bytes = new ByteArrayOutputStream();
+        }
+
+
+        /**
+         * Adds the given {@code buffer} to the body, releasing it.
+         * If the body becomes too large, the received bytes are emitted into the given {@code sink}
+         * (and the following buffers are emitted as they are received).
+         *
+         * @param buffer The received {@link DataBuffer}.
+         * @param sink   The {@link SynchronousSink} of the buffers to be written.
+         */
+        private void add(final DataBuffer buffer, final SynchronousSink<DataBuffer> sink) {
+            if (isOverflowed()) {
+                sink.next(buffer);
+                return;
+            }
+            try {
+                final var copy = new byte[buffer.readableByteCount()];
+                buffer.read(copy);
+                bytes.writeBytes(copy);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+            if (bytes.size() > maxSize) {
+                // Too large: write what was received, and stream the rest
+                compressor.skipped(coding);
+                final var received = bytes.toByteArray();
+                this.bytes = null;
+                sink.next(wrap(received));
+            }
+        }
+
+        /**
+         * @return Whether the body became too large to be compressed.
+         */
+        private boolean isOverflowed() {
+            return bytes == null;
+        }
+
+        /**
+         * @return The received bytes (the whole body, once complete).
+         */
+        private byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration class for compressing responses.
+ * Only enabled if the {@code compression.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(CompressionProperties.class)
+@ConditionalOnProperty(prefix = "compression", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CompressionConfig {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionConfig.class);
+
+
+    /**
+     * Creates the {@link CompressionFilter}, with brotli (if available) and gzip.
+     *
+     * @param compressionProperties The {@link CompressionProperties} from where configuration values are taken.
+     * @param meterRegistry         The {@link MeterRegistry} to which the compression statistics are reported.
+     * @return The {@link CompressionFilter} bean.
+     * @throws IllegalArgumentException If the properties are not valid.
+     */
+    @Bean
+    /* package */ CompressionFilter compressionFilter(
+            final CompressionProperties compressionProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var minSize = compressionProperties.getMinSize().toBytes();
+        final var maxSize = compressionProperties.getMaxSize().toBytes();
+        Assert.isTrue(minSize >= 0 && minSize <= maxSize, "The minimum size must not exceed the maximum size");
+        Assert.isTrue(maxSize < Integer.MAX_VALUE, "The maximum size is too large");
+        final var gzipLevel = compressionProperties.getGzipLevel();
+        Assert.isTrue(gzipLevel >= 1 && gzipLevel <= 9, "The gzip level must be between 1 and 9");
+        final var brotliQuality = compressionProperties.getBrotliQuality();
+        Assert.isTrue(brotliQuality >= 0 && brotliQuality <= 11, "The brotli quality must be between 0 and 11");
+        Assert.isTrue(compressionProperties.getWorkers() > 0, "The amount of workers must be positive");
+        Assert.isTrue(
+                compressionProperties.getMaxQueued() > 0,
+                "The maximum amount of queued responses must be positive"
+        );
+
+        final var codings = new ArrayList<ContentCoding>();
+        BrotliCoding.load(brotliQuality).ifPresentOrElse(
+                codings::add,
+                () -> LOGGER.info("Brotli is not available. Responses will only be compressed with gzip")
+        );
+        codings.add(new GzipCoding(gzipLevel));
+        final var compressor = new Compressor(
+                (int) minSize,
+                (int) maxSize,
+                compressionProperties.getExcludedContentTypes()
+                        .stream()
+                        .map(MediaType::parseMediaType)
+                        .collect(Collectors.toList()),
+                compressionProperties.getWorkers(),
+                compressionProperties.getMaxQueued(),
+                codings,
+                meterRegistry
+        );
+        return new CompressionFilter(codings, compressor);
+    }
+}
@@ -0,0 +1,96 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link GlobalFilter} that compresses upstream responses with the {@link ContentCoding} negotiated
+ * with the client (through the {@code Accept-Encoding} header). When several codings are equally accepted,
+ * the first of the available ones is chosen (i.e brotli, if available, over gzip).
+ * <p>
+ * It runs right before the filters that write the response (so it decorates the response they write),
+ * and thus after the response cache and the coalescing: they capture the compressed response, so it is shared
+ * and stored compressed, and it is not compressed again for each request.
+ * Responses already encoded upstream are sent as they are.
+ */
+/* package */ class CompressionFilter implements GlobalFilter, Ordered, DisposableBean {
+
+    /**
+     * The available {@link ContentCoding}s, in order of preference.
+     */
+    private final List<ContentCoding> codings;
+    /**
+     * The {@link Compressor} that decides whether responses are compressed, and compresses them.
+     */
+    private final Compressor compressor;
+
+
+    /**
+     * Constructor.
+     *
+     * @param codings    The available {@link ContentCoding}s, in order of preference.
+     * @param compressor The {@link Compressor} that decides whether responses are compressed, and compresses them.
+     */
+    /* package */ CompressionFilter(final List<ContentCoding> codings, final Compressor compressor) {
+        this.codings = List.copyOf(codings);
+        this.compressor = compressor;
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (request.getMethod() == HttpMethod.HEAD) {
+            return chain.filter(exchange);
+        }
+        return negotiate(request.getHeaders())
+                .map(coding -> exchange.mutate()
+                        .response(new CompressingResponse(exchange.getResponse(), compressor, coding))
+                        .build())
+                .map(chain::filter)
+                .orElseGet(() -> chain.filter(exchange));
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 2;
+    }
+
+    @Override
+    public void destroy() {
+        compressor.dispose();
+    }
+
+
+    /**
+     * Chooses the {@link ContentCoding} with which the response is compressed,
+     * according to the {@code Accept-Encoding} header of the request.
+     *
+     * @param headers The request's {@link HttpHeaders}.
+     * @return An {@link Optional} with the chosen {@link ContentCoding},
+     * or empty if the client accepts none of the available ones.
+     */
+    private Optional<ContentCoding> negotiate(final HttpHeaders headers) {
+        final var qualities = AcceptEncoding.qualities(headers);
+        ContentCoding chosen = null;
+        var chosenQuality = 0d;
+        for (final var coding : codings) {
+            final var quality = AcceptEncoding.quality(qualities, coding.getName());
+            if (quality > chosenQuality) {
+                chosen = coding;
+                chosenQuality = quality;
+            }
+        }
+        return Optional.ofNullable(chosen);
+    }
+}
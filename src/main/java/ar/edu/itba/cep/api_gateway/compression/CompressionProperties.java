@@ -0,0 +1,64 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * Properties for configuring the compression of responses.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "compression")
+/* package */ class CompressionProperties {
+
+    /**
+     * Whether responses are compressed.
+     */
+    private boolean enabled = true;
+    /**
+     * The minimum size of a response body to be compressed (smaller bodies are not worth it).
+     */
+    private DataSize minSize = DataSize.ofKilobytes(1);
+    /**
+     * The maximum size of a response body to be compressed
+     * (larger bodies are streamed uncompressed, as bodies are buffered in order to be compressed).
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(4);
+    /**
+     * The content types that are not compressed (e.g already compressed formats, or streams).
+     */
+    private List<String> excludedContentTypes = List.of(
+            "image/*",
+            "video/*",
+            "audio/*",
+            "font/woff",
+            "font/woff2",
+            "application/zip",
+            "application/gzip",
+            "application/octet-stream",
+            "application/pdf",
+            "text/event-stream"
+    );
+    /**
+     * The gzip compression level (from 1, the fastest, to 9, the smallest output).
+     */
+    private int gzipLevel = 6;
+    /**
+     * The brotli compression quality (from 0, the fastest, to 11, the smallest output).
+     * Only used if brotli is available (i.e brotli4j is in the classpath).
+     */
+    private int brotliQuality = 4;
+    /**
+     * The amount of threads that compress responses.
+     */
+    private int workers = Runtime.getRuntime().availableProcessors();
+    /**
+     * The maximum amount of responses waiting to be compressed
+     * (if there are more, responses are sent uncompressed).
+     */
+    private int maxQueued = 256;
+}
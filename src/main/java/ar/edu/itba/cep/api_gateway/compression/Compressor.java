@@ -0,0 +1,279 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Decides which responses are compressed, and compresses them in a bounded pool of worker threads
+ * (so compressing large bodies does not stall the event loop). If the pool is saturated, compression is rejected
+ * (and the response is sent uncompressed) instead of queueing unboundedly.
+ * <p>
+ * The amount of bytes saved and the CPU time spent compressing are reported for each coding.
+ */
+/* package */ final class Compressor {
+
+    /**
+     * The minimum size of a response body to be compressed.
+     */
+    private final int minSize;
+    /**
+     * The maximum size of a response body to be compressed.
+     */
+    private final int maxSize;
+    /**
+     * The {@link MediaType}s of the content types that are not compressed.
+     */
+    private final List<MediaType> excludedContentTypes;
+    /**
+     * The {@link ThreadPoolExecutor} of the worker threads.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * The {@link Scheduler} backed by the {@link #executor}.
+     */
+    private final Scheduler workers;
+    /**
+     * The {@link ThreadMXBean} used to measure the CPU time spent compressing.
+     */
+    private final ThreadMXBean threads;
+    /**
+     * The {@link CodingMeters} of each coding, keyed by name.
+     */
+    private final Map<String, CodingMeters> meters;
+
+
+    /**
+     * Constructor.
+     *
+     * @param minSize              The minimum size of a response body to be compressed.
+     * @param maxSize              The maximum size of a response body to be compressed.
+     * @param excludedContentTypes The {@link MediaType}s of the content types that are not compressed.
+     * @param workers              The amount of worker threads.
+     * @param maxQueued            The maximum amount of responses waiting to be compressed.
+     * @param codings              The {@link ContentCoding}s whose statistics are reported.
+     * @param meterRegistry        The {@link MeterRegistry} to which the compression statistics are reported.
+     */
+    /* package */ Compressor(
+            final int minSize,
+            final int maxSize,
+            final List<MediaType> excludedContentTypes,
+            final int workers,
+            final int maxQueued,
+            final List<ContentCoding> codings,
+            final MeterRegistry meterRegistry) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.excludedContentTypes = List.copyOf(excludedContentTypes);
+        final var threadCount = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(
+                workers,
+                workers,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued),
+                runnable -> {
+                    final var thread = new Thread(runnable, "compression-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.workers = Schedulers.fromExecutorService(executor);
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.meters = codings.stream()
+                .map(ContentCoding::getName)
+                .collect(Collectors.toUnmodifiableMap(
+                        Function.identity(),
+                        coding -> new CodingMeters(coding, meterRegistry)
+                ));
+        Gauge.builder("gateway.compression.queued", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * @return The minimum size of a response body to be compressed.
+     */
+    /* package */ int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * @return The maximum size of a response body to be compressed.
+     */
+    /* package */ int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Checks whether the given {@code response} can be compressed, according to its status and headers
+     * (i.e it has a body with a content type that is not excluded, it is not already encoded,
+     * it does not forbid transformations, and its declared length, if any, is within the limits).
+     *
+     * @param response The {@link ServerHttpResponse} (with the status and headers received from upstream).
+     * @return {@code true} if the response can be compressed, or {@code false} otherwise.
+     */
+    /* package */ boolean isCompressible(final ServerHttpResponse response) {
+        final var status = response.getStatusCode();
+        if (status != null && (status.is1xxInformational()
+                || status == HttpStatus.NO_CONTENT
+                || status == HttpStatus.PARTIAL_CONTENT
+                || status == HttpStatus.NOT_MODIFIED)) {
+            return false;
+        }
+        final var headers = response.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || headers.containsKey(HttpHeaders.CONTENT_RANGE)) {
+            return false;
+        }
+        final var cacheControl = headers.getCacheControl();
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-transform")) {
+            return false;
+        }
+        final var contentLength = headers.getContentLength();
+        if (contentLength >= 0 && (contentLength < minSize || contentLength > maxSize)) {
+            return false;
+        }
+        try {
+            final var contentType = headers.getContentType();
+            return contentType != null && excludedContentTypes.stream().noneMatch(type -> type.includes(contentType));
+        } catch (final InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Encodes the given {@code input} with the given {@code coding}, in a worker thread.
+     * The CPU time spent is recorded (if the JVM supports measuring it).
+     *
+     * @param coding The {@link ContentCoding}.
+     * @param input  The bytes to be encoded.
+     * @return A {@link Mono} that emits the encoded bytes, or fails if they could not be encoded,
+     * or if the workers are saturated (with a {@link java.util.concurrent.RejectedExecutionException}).
+     */
+    /* package */ Mono<byte[]> encode(final ContentCoding coding, final byte[] input) {
+        final var codingMeters = meters.get(coding.getName());
+        return Mono
+                .fromCallable(() -> {
+                    final var measured = threads.isCurrentThreadCpuTimeSupported();
+                    final var start = measured ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+                    try {
+                        return coding.encode(input);
+                    } finally {
+                        final var end = measured ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+                        codingMeters.cpuTime.record(end - start, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .subscribeOn(workers);
+    }
+
+    /**
+     * Records that a response was compressed with the given {@code coding}.
+     *
+     * @param coding         The {@link ContentCoding}.
+     * @param originalSize   The size of the uncompressed body.
+     * @param compressedSize The size of the compressed body.
+     */
+    /* package */ void compressed(final ContentCoding coding, final int originalSize, final int compressedSize) {
+        final var codingMeters = meters.get(coding.getName());
+        codingMeters.compressed.increment();
+        codingMeters.bytesSaved.increment(originalSize - compressedSize);
+    }
+
+    /**
+     * Records that a compressible response was not compressed with the given {@code coding}
+     * (i.e its body was too small or too large, or it did not shrink).
+     *
+     * @param coding The {@link ContentCoding}.
+     */
+    /* package */ void skipped(final ContentCoding coding) {
+        meters.get(coding.getName()).skipped.increment();
+    }
+
+    /**
+     * Records that a response was not compressed with the given {@code coding} because the workers were saturated,
+     * or the encoding failed.
+     *
+     * @param coding The {@link ContentCoding}.
+     */
+    /* package */ void rejected(final ContentCoding coding) {
+        meters.get(coding.getName()).rejected.increment();
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    /* package */ void dispose() {
+        workers.dispose();
+        executor.shutdown();
+    }
+
+
+    /**
+     * The meters of a coding.
+     */
+    private static final class CodingMeters {
+
+        /**
+         * The {@link Counter} of compressed responses.
+         */
+        private final Counter compressed;
+        /**
+         * The {@link Counter} of compressible responses that were not compressed.
+         */
+        private final Counter skipped;
+        /**
+         * The {@link Counter} of responses not compressed because the workers were saturated, or encoding failed.
+         */
+        private final Counter rejected;
+        /**
+         * The {@link Counter} of bytes saved by compressing.
+         */
+        private final Counter bytesSaved;
+        /**
+         * The {@link Timer} of the CPU time spent compressing each response.
+         */
+        private final Timer cpuTime;
+
+
+        /**
+         * Constructor.
+         *
+         * @param coding        The coding's name.
+         * @param meterRegistry The {@link MeterRegistry} to which the compression statistics are reported.
+         */
+        private CodingMeters(final String coding, final MeterRegistry meterRegistry) {
+            this.compressed = meterRegistry.counter(
+                    "gateway.compression.responses", "coding", coding, "result", "compressed"
+            );
+            this.skipped = meterRegistry.counter(
+                    "gateway.compression.responses", "coding", coding, "result", "skipped"
+            );
+            this.rejected = meterRegistry.counter(
+                    "gateway.compression.responses", "coding", coding, "result", "rejected"
+            );
+            this.bytesSaved = meterRegistry.counter("gateway.compression.bytes-saved", "coding", coding);
+            this.cpuTime = meterRegistry.timer("gateway.compression.cpu-time", "coding", coding);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import java.io.IOException;
+
+/**
+ * A content coding with which response bodies can be compressed.
+ */
+/* package */ interface ContentCoding {
+
+    /**
+     * @return The coding's name (as used in the {@code Accept-Encoding} and {@code Content-Encoding} headers).
+     */
+    String getName();
+
+    /**
+     * Encodes the given {@code input}.
+     *
+     * @param input The bytes to be encoded.
+     * @return The encoded bytes.
+     * @throws IOException If the bytes could not be encoded.
+     */
+    byte[] encode(byte[] input) throws IOException;
+}
@@ -0,0 +1,61 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The {@code gzip} {@link ContentCoding} (using the JDK's deflater).
+ */
+/* package */ final class GzipCoding implements ContentCoding {
+
+    /**
+     * The compression level.
+     */
+    private final int level;
+
+
+    /**
+     * Constructor.
+     *
+     * @param level The compression level (from 1 to 9).
+     */
+    /* package */ GzipCoding(final int level) {
+        this.level = level;
+    }
+
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public byte[] encode(final byte[] input) throws IOException {
+        final var output = new ByteArrayOutputStream(input.length / 4 + 32);
+        try (final var gzip = new LeveledGzipOutputStream(output, level)) {
+            gzip.write(input);
+        }
+        return output.toByteArray();
+    }
+
+
+    /**
+     * A {@link GZIPOutputStream} with a configurable compression level.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        /**
+         * Constructor.
+         *
+         * @param output The {@link OutputStream} into which the compressed bytes are written.
+         * @param level  The compression level.
+         * @throws IOException If the gzip header could not be written.
+         */
+        private LeveledGzipOutputStream(final OutputStream output, final int level) throws IOException {
+            super(output);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits the body of a server-sent event stream into events (i.e the bytes up to, and including,
+ * an empty line), so each one is multicast as a whole, and clients joining a stream start at an event boundary.
+ * <p>
+ * Lines can end with CRLF, LF or CR. Events larger than the maximum size are split, so the pending bytes are bounded.
+ * Not thread safe (it is fed by the single upstream subscription of a stream).
+ */
+/* package */ final class EventSplitter {
+
+    /**
+     * The carriage return byte.
+     */
+    private static final byte CR = '\r';
+    /**
+     * The line feed byte.
+     */
+    private static final byte LF = '\n';
+
+
+    /**
+     * The maximum size of an event.
+     */
+    private final int maxEventSize;
+    /**
+     * The bytes of the event being received.
+     */
+    private final ByteArrayOutputStream pending;
+    /**
+     * Whether the line being received is still empty.
+     */
+    private boolean lineEmpty;
+    /**
+     * Whether the last received byte was a carriage return (so a line feed would be part of the same line end).
+     */
+    private boolean afterCr;
+    /**
+     * Whether an event ended with a carriage return, so it is split once it is known whether a line feed follows.
+     */
+    private boolean eventEnded;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxEventSize The maximum size of an event.
+     */
+    /* package */ EventSplitter(final int maxEventSize) {
+        this.maxEventSize = maxEventSize;
+        this.pending = new ByteArrayOutputStream();
+        this.lineEmpty = true;
+        this.afterCr = false;
+        this.eventEnded = false;
+    }
+
+
+    /**
+     * Feeds the given {@code bytes} of the stream, returning the events completed by them.
+     *
+     * @param bytes The received bytes.
+     * @return The completed events (empty if none).
+     */
+    /* package */ List<byte[]> split(final byte[] bytes) {
+        final var events = new ArrayList<byte[]>(1);
+        var start = 0;
+        for (var i = 0; i < bytes.length; i++) {
+            final var current = bytes[i];
+            if (afterCr) {
+                afterCr = false;
+                if (current == LF) {
+                    if (eventEnded) {
+                        eventEnded = false;
+                        events.add(take(bytes, start, i + 1));
+                        start = i + 1;
+                    }
+                    continue;
+                }
+            }
+            if (eventEnded) {
+                eventEnded = false;
+                events.add(take(bytes, start, i));
+                start = i;
+            }
+            if (current == CR || current == LF) {
+                if (lineEmpty) {
+                    if (current == CR) {
+                        eventEnded = true;
+                    } else {
+                        events.add(take(bytes, start, i + 1));
+                        start = i + 1;
+                    }
+                }
+                lineEmpty = true;
+                afterCr = current == CR;
+            } else {
+                lineEmpty = false;
+                if (pending.size() + i + 1 - start >= maxEventSize) {
+                    events.add(take(bytes, start, i + 1));
+                    start = i + 1;
+                }
+            }
+        }
+        pending.write(bytes, start, bytes.length - start);
+        return events;
+    }
+
+    /**
+     * Takes the bytes received after the last event (i.e once the stream completed).
+     *
+     * @return The remaining bytes (empty if there are none).
+     */
+    /* package */ byte[] remaining() {
+        final var remaining = pending.toByteArray();
+        pending.reset();
+        return remaining;
+    }
+
+
+    /**
+     * Takes the pending bytes plus the given range of {@code bytes} as an event.
+     *
+     * @param bytes The received bytes.
+     * @param from  The start of the range (inclusive).
+     * @param to    The end of the range (exclusive).
+     * @return The event.
+     */
+    private byte[] take(final byte[] bytes, final int from, final int to) {
+        if (pending.size() == 0) {
+            return Arrays.copyOfRange(bytes, from, to);
+        }
+        pending.write(bytes, from, to - from);
+        return remaining();
+    }
+}
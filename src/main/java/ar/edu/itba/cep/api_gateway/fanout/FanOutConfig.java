@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.HashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration class for fanning out server-sent event streams.
+ * Only enabled if the {@code fan-out.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(FanOutProperties.class)
+@ConditionalOnProperty(prefix = "fan-out", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class FanOutConfig {
+
+    /**
+     * Creates the {@link FanOutFilter}, with the {@link FanOutFilter.RouteFanOut} of each configured route.
+     *
+     * @param fanOutProperties The {@link FanOutProperties} from where configuration values are taken.
+     * @param meterRegistry    The {@link MeterRegistry} to which the fan-out statistics are reported.
+     * @return The {@link FanOutFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ FanOutFilter fanOutFilter(
+            final FanOutProperties fanOutProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var pathPatternParser = new PathPatternParser();
+        final var fanOuts = new HashMap<String, FanOutFilter.RouteFanOut>();
+        fanOutProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            Assert.isTrue(routeProperties.getBufferSize() > 0, "The buffer size must be positive");
+            final var maxEventSize = routeProperties.getMaxEventSize().toBytes();
+            Assert.isTrue(maxEventSize > 0 && maxEventSize <= Integer.MAX_VALUE, "The maximum event size is not valid");
+            fanOuts.put(routeId, new FanOutFilter.RouteFanOut(
+                    routeId,
+                    routeProperties.getPaths()
+                            .stream()
+                            .map(pathPatternParser::parse)
+                            .collect(Collectors.toList()),
+                    routeProperties.getBufferSize(),
+                    (int) maxEventSize,
+                    meterRegistry
+            ));
+        });
+        return new FanOutFilter(fanOuts);
+    }
+}
@@ -0,0 +1,285 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import ar.edu.itba.cep.api_gateway.coalescing.CoalescingFilter;
+import ar.edu.itba.cep.api_gateway.coalescing.RequestKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link GlobalFilter} that fans out the server-sent event streams of the configured paths of a route,
+ * so clients subscribing to the same stream share a single upstream subscription, and its events are multicast
+ * to all of them.
+ * <p>
+ * Streams are the same if their requests have the same {@link RequestKey} (i.e events in these paths must only
+ * depend on the roles, not on the user), so the amount of upstream connections depends on the amount of distinct
+ * streams, not on the amount of clients. The upstream request is sent with the context of the client that opened
+ * the stream, but it is not tied to its connection: it is cancelled once the last client leaves.
+ * Clients join a stream at the next event, and the {@code Last-Event-ID} header is not sent upstream
+ * (shared streams are not resumed). Each client buffers a bounded amount of events: slow clients are disconnected
+ * instead of holding up the others (so they reconnect at the current event).
+ * It runs after the coalescing, and before the resilience filter, so each stream (not each client) takes
+ * a bulkhead permit of the route.
+ */
+public class FanOutFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The order of this filter.
+     */
+    public static final int ORDER = CoalescingFilter.ORDER + 1;
+
+
+    /**
+     * The {@link RouteFanOut} of each fanned out route, keyed by route id.
+     */
+    private final Map<String, RouteFanOut> fanOuts;
+    /**
+     * The open {@link SharedStream}s, keyed by the {@link RequestKey} of their requests.
+     */
+    private final Map<RequestKey, SharedStream> streams;
+
+
+    /**
+     * Constructor.
+     *
+     * @param fanOuts The {@link RouteFanOut} of each fanned out route, keyed by route id.
+     */
+    /* package */ FanOutFilter(final Map<String, RouteFanOut> fanOuts) {
+        this.fanOuts = Map.copyOf(fanOuts);
+        this.streams = new ConcurrentHashMap<>();
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || !isEventStream(request)) {
+            return chain.filter(exchange);
+        }
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var fanOut = route == null ? null : fanOuts.get(route.getId());
+        if (fanOut == null || !fanOut.matches(request)) {
+            return chain.filter(exchange);
+        }
+        return Mono.subscriberContext()
+                .flatMap(context -> RequestKey.of(route.getId(), request)
+                        .flatMap(key -> watch(exchange, chain, fanOut, key, context)));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+
+    /**
+     * Makes the client in the given {@code exchange} watch the stream with the given {@code key},
+     * opening it if there is none.
+     *
+     * @param exchange The {@link ServerWebExchange} with the client's request.
+     * @param chain    The {@link GatewayFilterChain}.
+     * @param fanOut   The {@link RouteFanOut} of the request's route.
+     * @param key      The request's {@link RequestKey}.
+     * @param context  The {@link Context} with which the upstream request is sent if the stream is opened.
+     * @return A {@link Mono} that completes once the stream is written.
+     */
+    private Mono<Void> watch(
+            final ServerWebExchange exchange,
+            final GatewayFilterChain chain,
+            final RouteFanOut fanOut,
+            final RequestKey key,
+            final Context context) {
+        final var viewer = UnicastProcessor.<byte[]>create(Queues.<byte[]>get(fanOut.bufferSize).get());
+        while (true) {
+            final var existing = streams.get(key);
+            if (existing != null) {
+                if (existing.join(viewer)) {
+                    return view(exchange, fanOut, existing, viewer);
+                }
+                streams.remove(key, existing); // Closed, but not removed yet
+                continue;
+            }
+            final var stream = new SharedStream(fanOut.maxEventSize, closed -> {
+                streams.remove(key, closed);
+                fanOut.streams.decrementAndGet();
+            });
+            if (streams.putIfAbsent(key, stream) == null) {
+                fanOut.streams.incrementAndGet();
+                stream.join(viewer);
+                stream.open(chain.filter(upstreamExchange(exchange, stream)).subscriberContext(context));
+                return view(exchange, fanOut, stream, viewer);
+            }
+        }
+    }
+
+    /**
+     * Writes the given {@code stream} into the response of the given {@code exchange}.
+     *
+     * @param exchange The {@link ServerWebExchange} with the client's request.
+     * @param fanOut   The {@link RouteFanOut} of the request's route.
+     * @param stream   The {@link SharedStream} being watched.
+     * @param viewer   The client's viewer (already joined to the stream).
+     * @return A {@link Mono} that completes once the stream is written.
+     */
+    private static Mono<Void> view(
+            final ServerWebExchange exchange,
+            final RouteFanOut fanOut,
+            final SharedStream stream,
+            final UnicastProcessor<byte[]> viewer) {
+        fanOut.viewers.incrementAndGet();
+        return stream.writeTo(exchange.getResponse(), viewer, fanOut.dropped::increment)
+                .doFinally(ignored -> fanOut.viewers.decrementAndGet());
+    }
+
+    /**
+     * Creates the exchange with which the request of the given {@code exchange} is sent upstream for
+     * the given {@code stream}: its response is written into the stream, and its request has neither a body
+     * nor a {@code Last-Event-ID} header (so it does not depend on the client's connection, nor on its position).
+     *
+     * @param exchange The {@link ServerWebExchange} with the request of the client that opened the stream.
+     * @param stream   The {@link SharedStream}.
+     * @return The upstream {@link ServerWebExchange}.
+     */
+    private static ServerWebExchange upstreamExchange(final ServerWebExchange exchange, final SharedStream stream) {
+        final var headers = new HttpHeaders();
+        headers.putAll(exchange.getRequest().getHeaders());
+        headers.remove("Last-Event-ID");
+        final var readOnlyHeaders = HttpHeaders.readOnlyHttpHeaders(headers);
+        final var request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public HttpHeaders getHeaders() {
+                return readOnlyHeaders;
+            }
+
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.empty();
+            }
+        };
+        return exchange.mutate()
+                .request(request)
+                .response(new SharedStreamResponse(exchange.getResponse(), stream))
+                .build();
+    }
+
+    /**
+     * Checks whether the given {@code request} subscribes to an event stream
+     * (i.e it explicitly accepts {@code text/event-stream}).
+     *
+     * @param request The {@link ServerHttpRequest}.
+     * @return {@code true} if the request subscribes to an event stream, or {@code false} otherwise.
+     */
+    private static boolean isEventStream(final ServerHttpRequest request) {
+        try {
+            return request.getHeaders()
+                    .getAccept()
+                    .stream()
+                    .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype);
+        } catch (final IllegalArgumentException e) {
+            return false; // Invalid Accept header (left to the service)
+        }
+    }
+
+
+    /**
+     * The fan-out configuration, streams and meters of a route.
+     */
+    /* package */ static final class RouteFanOut {
+
+        /**
+         * The {@link PathPattern}s of the event streams to be fanned out.
+         */
+        private final List<PathPattern> paths;
+        /**
+         * The maximum amount of events buffered for each client.
+         */
+        private final int bufferSize;
+        /**
+         * The maximum size of an event.
+         */
+        private final int maxEventSize;
+        /**
+         * The amount of open streams (i.e of upstream subscriptions).
+         */
+        private final AtomicInteger streams;
+        /**
+         * The amount of clients watching the streams.
+         */
+        private final AtomicInteger viewers;
+        /**
+         * The {@link Counter} of clients disconnected because they fell too far behind.
+         */
+        private final Counter dropped;
+
+
+        /**
+         * Constructor.
+         * Registers the amount of open streams and of clients watching them as gauges.
+         *
+         * @param routeId       The route id.
+         * @param paths         The {@link PathPattern}s of the event streams to be fanned out.
+         * @param bufferSize    The maximum amount of events buffered for each client.
+         * @param maxEventSize  The maximum size of an event.
+         * @param meterRegistry The {@link MeterRegistry} to which the fan-out statistics are reported.
+         */
+        /* package */ RouteFanOut(
+                final String routeId,
+                final List<PathPattern> paths,
+                final int bufferSize,
+                final int maxEventSize,
+                final MeterRegistry meterRegistry) {
+            this.paths = List.copyOf(paths);
+            this.bufferSize = bufferSize;
+            this.maxEventSize = maxEventSize;
+            this.streams = new AtomicInteger(0);
+            this.viewers = new AtomicInteger(0);
+            this.dropped = meterRegistry.counter("gateway.fan-out.dropped-viewers", "route", routeId);
+            Gauge.builder("gateway.fan-out.streams", streams, AtomicInteger::get)
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.fan-out.viewers", viewers, AtomicInteger::get)
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+
+        /**
+         * Checks whether the given {@code request} is to be fanned out (i.e its path matches any of the patterns).
+         *
+         * @param request The {@link ServerHttpRequest}.
+         * @return {@code true} if the request is to be fanned out, or {@code false} otherwise.
+         */
+        private boolean matches(final ServerHttpRequest request) {
+            final var path = request.getPath().pathWithinApplication();
+            for (final var pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties for configuring the fan-out of server-sent event streams.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fan-out")
+/* package */ class FanOutProperties {
+
+    /**
+     * Whether event streams are fanned out.
+     */
+    private boolean enabled = true;
+    /**
+     * The fan-out properties of each route, keyed by route id (routes not included are not fanned out).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for fanning out the event streams of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The path patterns of the event streams to be fanned out (i.e the ones whose events only depend on the path,
+         * the query and the roles of the user).
+         */
+        private List<String> paths = new ArrayList<>();
+        /**
+         * The maximum amount of events buffered for each client (rounded up to a power of two).
+         * Clients that fall further behind are disconnected.
+         */
+        private int bufferSize = 256;
+        /**
+         * The maximum size of an event (larger events are multicast in parts,
+         * so clients joining while they are received might get them incomplete).
+         */
+        private DataSize maxEventSize = DataSize.ofKilobytes(64);
+    }
+}
@@ -0,0 +1,278 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * An event stream received through a single upstream subscription, and multicast to its viewers.
+ * <p>
+ * Each viewer is a {@link UnicastProcessor} with a bounded queue, so a viewer that falls too far behind overflows
+ * and is disconnected right away (even if its client stopped reading), without holding up the others.
+ * The upstream subscription is cancelled once the last viewer leaves, and the stream is closed once that happens
+ * or the upstream response completes (viewers can not join closed streams).
+ * If the upstream request fails before its response is received, so do the viewers' requests.
+ */
+/* package */ final class SharedStream {
+
+    /**
+     * The {@link EventSplitter} that splits the upstream body into the multicast events.
+     */
+    private final EventSplitter splitter;
+    /**
+     * Called once the stream is closed.
+     */
+    private final Consumer<SharedStream> onClose;
+    /**
+     * The {@link MonoProcessor} that emits the upstream response's {@link Head}
+     * (empty if the upstream response completed without one).
+     */
+    private final MonoProcessor<Head> head;
+    /**
+     * The viewers of the stream, with the {@link MonoProcessor} that completes if they are dropped.
+     */
+    private final Map<UnicastProcessor<byte[]>, MonoProcessor<Void>> viewers;
+    /**
+     * The upstream subscription.
+     */
+    private final Disposable.Swap upstream;
+    /**
+     * Whether the stream is closed (guarded by this).
+     */
+    private boolean closed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxEventSize The maximum size of an event.
+     * @param onClose      Called once the stream is closed.
+     */
+    /* package */ SharedStream(final int maxEventSize, final Consumer<SharedStream> onClose) {
+        this.splitter = new EventSplitter(maxEventSize);
+        this.onClose = onClose;
+        this.head = MonoProcessor.create();
+        this.viewers = new ConcurrentHashMap<>();
+        this.upstream = Disposables.swap();
+        this.closed = false;
+    }
+
+
+    /**
+     * Subscribes to the given {@code upstream} request (unless the stream is already closed).
+     * The subscription is not tied to any viewer's request.
+     *
+     * @param upstream The {@link Mono} that sends the request upstream,
+     *                 writing the response into a {@link SharedStreamResponse} of this stream.
+     */
+    /* package */ void open(final Mono<Void> upstream) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        this.upstream.update(upstream.subscribe(null, this::fail, this::complete));
+    }
+
+    /**
+     * Adds the given {@code viewer} to the stream, so it receives the events from now on.
+     *
+     * @param viewer The viewer.
+     * @return {@code true} if the viewer joined, or {@code false} if the stream is already closed.
+     */
+    /* package */ synchronized boolean join(final UnicastProcessor<byte[]> viewer) {
+        if (closed) {
+            return false;
+        }
+        viewers.put(viewer, MonoProcessor.create());
+        return true;
+    }
+
+    /**
+     * Writes the stream into the given {@code response}, with the events received by the given {@code viewer}
+     * (which must have joined the stream). Headers already set in the given response (e.g the CORS ones) are kept.
+     * The viewer leaves the stream once the returned {@link Mono} terminates or is cancelled.
+     *
+     * @param response  The {@link ServerHttpResponse} of the viewer's request.
+     * @param viewer    The viewer.
+     * @param onDropped Called if the viewer falls too far behind, and is disconnected.
+     * @return A {@link Mono} that completes once the stream is written.
+     */
+    /* package */ Mono<Void> writeTo(
+            final ServerHttpResponse response,
+            final UnicastProcessor<byte[]> viewer,
+            final Runnable onDropped) {
+        final var droppedSignal = viewers.get(viewer);
+        final Mono<Void> dropped = droppedSignal == null ? Mono.never() : droppedSignal;
+        final var droppedOnce = new AtomicBoolean(false);
+        final Runnable drop = () -> {
+            if (droppedOnce.compareAndSet(false, true)) {
+                onDropped.run();
+            }
+        };
+        return head
+                .flatMap(received -> {
+                    response.setStatusCode(received.status);
+                    final var responseHeaders = response.getHeaders();
+                    received.headers.forEach((name, values) -> {
+                        if (!responseHeaders.containsKey(name)) {
+                            responseHeaders.addAll(name, values);
+                        }
+                    });
+                    // Ending the response of a slow viewer makes it reconnect (at the current event)
+                    final var events = viewer
+                            .takeUntilOther(dropped.doOnTerminate(drop))
+                            .onErrorResume(Exceptions::isOverflow, ignored -> {
+                                drop.run();
+                                return Flux.empty();
+                            });
+                    return response.writeAndFlushWith(
+                            events.map(event -> Mono.just(response.bufferFactory().wrap(event)))
+                    );
+                })
+                .doFinally(ignored -> leave(viewer));
+    }
+
+    /**
+     * Sets the upstream response's status and headers.
+     *
+     * @param status  The response's status.
+     * @param headers The response's headers (read only).
+     */
+    /* package */ void head(final HttpStatus status, final HttpHeaders headers) {
+        if (!head.isTerminated()) {
+            head.onNext(new Head(status, headers));
+        }
+    }
+
+    /**
+     * Multicasts the events completed by the given {@code bytes} of the upstream body.
+     *
+     * @param bytes The received bytes.
+     */
+    /* package */ void publish(final byte[] bytes) {
+        for (final var event : splitter.split(bytes)) {
+            emit(event);
+        }
+    }
+
+
+    /**
+     * Removes the given {@code viewer} from the stream, closing it if it was the last one.
+     *
+     * @param viewer The viewer.
+     */
+    private void leave(final UnicastProcessor<byte[]> viewer) {
+        synchronized (this) {
+            if (viewers.remove(viewer) == null || !viewers.isEmpty() || closed) {
+                return;
+            }
+            closed = true;
+        }
+        onClose.accept(this);
+        upstream.dispose();
+    }
+
+    /**
+     * Sends the given {@code event} to all the viewers.
+     *
+     * @param event The event.
+     */
+    private void emit(final byte[] event) {
+        viewers.forEach((viewer, dropped) -> {
+            viewer.onNext(event);
+            // An overflowed viewer only gets the error once it consumes its queue, so it is dropped right away
+            // (otherwise, a viewer whose client stopped reading would never leave)
+            if (viewer.hasError()) {
+                dropped.onComplete();
+                leave(viewer);
+            }
+        });
+    }
+
+    /**
+     * Completes the stream once the upstream response completed, sending the remaining bytes (if any) first.
+     */
+    private void complete() {
+        final var remaining = splitter.remaining();
+        if (remaining.length > 0) {
+            emit(remaining);
+        }
+        terminate(null);
+    }
+
+    /**
+     * Completes the stream once the upstream request failed.
+     *
+     * @param error The error.
+     */
+    private void fail(final Throwable error) {
+        terminate(error);
+    }
+
+    /**
+     * Closes the stream, completing its viewers. If the upstream response was not received,
+     * the viewers' requests fail with the given {@code error}, or complete empty if there is none.
+     *
+     * @param error The error with which the upstream request failed, or {@code null} if it completed.
+     */
+    private void terminate(final Throwable error) {
+        final boolean wasClosed;
+        synchronized (this) {
+            wasClosed = closed;
+            closed = true;
+        }
+        if (!wasClosed) {
+            onClose.accept(this);
+        }
+        if (!head.isTerminated()) {
+            if (error == null) {
+                head.onComplete();
+            } else {
+                head.onError(error);
+            }
+        }
+        viewers.keySet().forEach(UnicastProcessor::onComplete);
+        viewers.clear();
+    }
+
+
+    /**
+     * The status and headers of the upstream response.
+     */
+    private static final class Head {
+
+        /**
+         * The response's status.
+         */
+        private final HttpStatus status;
+        /**
+         * The response's headers (read only).
+         */
+        private final HttpHeaders headers;
+
+
+        /**
+         * Constructor.
+         *
+         * @param status  The response's status.
+         * @param headers The response's headers (read only).
+         */
+        private Head(final HttpStatus status, final HttpHeaders headers) {
+            this.status = status;
+            this.headers = headers;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+/**
+ * The response of a request sent upstream for a {@link SharedStream}.
+ * <p>
+ * It is not written to any client: once committed, its status and headers are set as the stream's ones
+ * (i.e as received from upstream, plus the ones added by the filters of the upstream request),
+ * and its body is copied and published into the stream.
+ */
+/* package */ final class SharedStreamResponse extends AbstractServerHttpResponse {
+
+    /**
+     * The response of the client that opened the stream (whose buffer factory and native response are used).
+     */
+    private final ServerHttpResponse clientResponse;
+    /**
+     * The {@link SharedStream} into which the response is written.
+     */
+    private final SharedStream stream;
+
+
+    /**
+     * Constructor.
+     *
+     * @param clientResponse The response of the client that opened the stream.
+     * @param stream         The {@link SharedStream} into which the response is written.
+     */
+    /* package */ SharedStreamResponse(final ServerHttpResponse clientResponse, final SharedStream stream) {
+        super(clientResponse.bufferFactory());
+        this.clientResponse = clientResponse;
+        this.stream = stream;
+    }
+
+
+    /**
+     * Returns the native response of the client that opened the stream
+     * (for the filters that inspect the server's response, as this one is never written to the connection),
+     * unwrapping its decorators.
+     *
+     * @param <T> The type of the native response.
+     * @return The native response.
+     */
+    @Override
+    public <T> T getNativeResponse() {
+        var response = clientResponse;
+        while (response instanceof ServerHttpResponseDecorator) {
+            response = ((ServerHttpResponseDecorator) response).getDelegate();
+        }
+        if (!(response instanceof AbstractServerHttpResponse)) {
+            throw new IllegalStateException("The response of the client has no native response");
+        }
+        return ((AbstractServerHttpResponse) response).getNativeResponse();
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(final Publisher<? extends DataBuffer> body) {
+        return Flux.from(body).doOnNext(this::publish).then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(final Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        return Flux.<Publisher<? extends DataBuffer>>from(body)
+                .concatMap(buffers -> buffers)
+                .doOnNext(this::publish)
+                .then();
+    }
+
+    @Override
+    protected void applyStatusCode() {
+        // The status is set with the headers
+    }
+
+    @Override
+    protected void applyHeaders() {
+        stream.head(
+                Optional.ofNullable(getStatusCode()).orElse(HttpStatus.OK),
+                HttpHeaders.readOnlyHttpHeaders(getHeaders())
+        );
+    }
+
+    @Override
+    protected void applyCookies() {
+        // Upstream cookies are received as headers
+    }
+
+
+    /**
+     * Publishes the given {@code buffer} of the body into the stream, releasing it.
+     *
+     * @param buffer The {@link DataBuffer} being written.
+     */
+    private void publish(final DataBuffer buffer) {
+        try {
+            final var bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            stream.publish(bytes);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sends the requests of a route with h2c, keeping an {@link H2cConnectionPool} for each instance of its service.
+ * Pools are closed once they have no active streams nor waiting requests for the configured idle timeout
+ * (i.e a long stream, such as a large download, keeps its pool open no matter how long it lasts).
+ * Idle pools are looked for periodically, in one of the event loops of the {@link Bootstrap}.
+ * <p>
+ * The amount of open connections and of requests waiting for a stream are reported as gauges,
+ * and the amount of streams in a connection each time one is acquired is reported as a distribution summary.
+ */
+/* package */ final class H2cClient {
+
+    /**
+     * The {@link Bootstrap} used to open connections (without a handler, as it is set by each pool).
+     */
+    private final Bootstrap bootstrap;
+    /**
+     * The maximum amount of connections opened to each instance.
+     */
+    private final int maxConnections;
+    /**
+     * The maximum amount of concurrent streams in each connection.
+     */
+    private final int maxConcurrentStreams;
+    /**
+     * The maximum amount of requests waiting for a stream to an instance.
+     */
+    private final int maxPendingAcquires;
+    /**
+     * The maximum time a request waits for a stream.
+     */
+    private final Duration pendingAcquireTimeout;
+    /**
+     * The amount of time, in nanoseconds, a pool is kept after it was last used.
+     */
+    private final long idleNanos;
+    /**
+     * The {@link H2cConnectionPool}s, keyed by the instance's host and port.
+     */
+    private final Map<String, H2cConnectionPool> pools;
+    /**
+     * The periodic task that closes the idle pools.
+     */
+    private final ScheduledFuture<?> idlePoolsEviction;
+    /**
+     * The {@link DistributionSummary} of streams per connection.
+     */
+    private final DistributionSummary streamsPerConnection;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routeId               The id of the route.
+     * @param bootstrap             The {@link Bootstrap} used to open connections.
+     * @param maxConnections        The maximum amount of connections opened to each instance.
+     * @param maxConcurrentStreams  The maximum amount of concurrent streams in each connection.
+     * @param maxPendingAcquires    The maximum amount of requests waiting for a stream to an instance.
+     * @param pendingAcquireTimeout The maximum time a request waits for a stream.
+     * @param idleTimeout           The amount of time the pool of an instance is kept after it was last used
+     *                              (i.e since its last stream was released).
+     * @param meterRegistry         The {@link MeterRegistry} to which the pools statistics are reported.
+     * @throws IllegalArgumentException If any of the values is not valid.
+     */
+    /* package */ H2cClient(
+            final String routeId,
+            final Bootstrap bootstrap,
+            final int maxConnections,
+            final int maxConcurrentStreams,
+            final int maxPendingAcquires,
+            final Duration pendingAcquireTimeout,
+            final Duration idleTimeout,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(maxConnections > 0, "The max amount of connections must be positive");
+        Assert.isTrue(maxConcurrentStreams > 0, "The max amount of concurrent streams must be positive");
+        Assert.isTrue(maxPendingAcquires >= 0, "The max amount of pending acquires must not be negative");
+        Assert.isTrue(!pendingAcquireTimeout.isNegative() && !pendingAcquireTimeout.isZero(),
+                "The pending acquire timeout must be positive");
+        Assert.isTrue(!idleTimeout.isNegative() && !idleTimeout.isZero(), "The idle timeout must be positive");
+        this.bootstrap = bootstrap;
+        this.maxConnections = maxConnections;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxPendingAcquires = maxPendingAcquires;
+        this.pendingAcquireTimeout = pendingAcquireTimeout;
+        this.idleNanos = idleTimeout.toNanos();
+        this.pools = new ConcurrentHashMap<>();
+        this.idlePoolsEviction = bootstrap.config().group().scheduleAtFixedRate(
+                () -> evictIdle(System.nanoTime()),
+                idleNanos,
+                idleNanos,
+                TimeUnit.NANOSECONDS
+        );
+        this.streamsPerConnection = DistributionSummary.builder("gateway.http2.upstream.streams-per-connection")
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.http2.upstream.connections", this,
+                client -> client.sum(H2cConnectionPool::connections))
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.http2.upstream.pending-acquires", this,
+                client -> client.sum(H2cConnectionPool::pendingAcquires))
+                .tag("route", routeId)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Acquires a stream to the instance of the given {@code url}.
+     *
+     * @param url The URL of the request (whose host and port are the instance's ones).
+     * @return A {@link Mono} that emits the {@link H2cStream},
+     * or fails with a {@link java.util.concurrent.TimeoutException} if no stream is released in time.
+     */
+    /* package */ Mono<H2cStream> acquire(final URI url) {
+        final var host = url.getHost();
+        final var port = url.getPort() == -1 ? 80 : url.getPort();
+        return Mono.defer(() -> pools
+                .computeIfAbsent(host + ":" + port, ignored ->
+                        new H2cConnectionPool(this, InetSocketAddress.createUnresolved(host, port), bootstrap))
+                .acquire())
+                // The pool was closed for being idle right after it was taken, so a new one is created
+                .retry(error -> error instanceof H2cConnectionPool.IdlePoolClosedException)
+                .timeout(pendingAcquireTimeout);
+    }
+
+    /**
+     * Closes the pools that have been idle for the idle timeout (i.e with no active streams nor waiting requests),
+     * removing them.
+     * A pool is removed while it is being closed, so requests that arrive meanwhile create a new one.
+     *
+     * @param now The current instant (in {@link System#nanoTime()} terms).
+     */
+    /* package */ void evictIdle(final long now) {
+        pools.keySet().forEach(key -> pools.computeIfPresent(key, (ignored, pool) ->
+                pool.closeIfIdle(now, idleNanos) ? null : pool
+        ));
+    }
+
+    /**
+     * Closes all the pools.
+     */
+    /* package */ void close() {
+        idlePoolsEviction.cancel(false);
+        pools.values().forEach(H2cConnectionPool::close);
+        pools.clear();
+    }
+
+
+    /**
+     * @return The maximum amount of connections opened to each instance.
+     */
+    /* package */ int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return The maximum amount of concurrent streams in each connection.
+     */
+    /* package */ int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * @return The maximum amount of requests waiting for a stream to an instance.
+     */
+    /* package */ int getMaxPendingAcquires() {
+        return maxPendingAcquires;
+    }
+
+    /**
+     * Records the amount of streams in a connection once one of them was acquired.
+     *
+     * @param streams The amount of streams.
+     */
+    /* package */ void recordStreams(final int streams) {
+        streamsPerConnection.record(streams);
+    }
+
+
+    /**
+     * Sums the given {@code value} of all the pools.
+     *
+     * @param value A function that takes the value from a pool.
+     * @return The sum.
+     */
+    private int sum(final ToIntFunction<H2cConnectionPool> value) {
+        return pools.values().stream().mapToInt(value).sum();
+    }
+}
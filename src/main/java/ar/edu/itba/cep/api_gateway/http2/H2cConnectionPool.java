@@ -0,0 +1,563 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of h2c connections to a single upstream instance, in which requests are multiplexed.
+ * <p>
+ * Each request acquires a stream in the least loaded connection that has not reached its maximum amount of
+ * concurrent streams (the configured one, or the one announced by the instance, whichever is lower).
+ * A new connection is opened only when all the connections are full and the maximum amount of connections
+ * was not reached yet; otherwise, requests wait (in order) for a stream to be released.
+ * Connections that receive a GOAWAY frame are removed from the pool right away (so they are not used for new streams,
+ * nor count towards the maximum amount of connections), and are closed once their active streams are released.
+ * Once the pool has no active streams nor waiting requests for the idle timeout, its client closes it.
+ * The state of the pool is guarded by its lock, which is never held while calling into Netty or Reactor.
+ */
+/* package */ final class H2cConnectionPool {
+
+    /**
+     * The handler of the streams opened by the instance, which does nothing, as pushed streams are disabled
+     * (it must be sharable, as it is the same for all the connections).
+     */
+    private static final ChannelHandler PUSHED_STREAMS_HANDLER = new PushedStreamsHandler();
+
+
+    /**
+     * The {@link H2cClient} to which this pool belongs (i.e the one of the route).
+     */
+    private final H2cClient client;
+    /**
+     * The address of the instance.
+     */
+    private final InetSocketAddress address;
+    /**
+     * The {@link Bootstrap} used to open connections to the instance.
+     */
+    private final Bootstrap bootstrap;
+    /**
+     * The open {@link Connection}s.
+     */
+    private final List<Connection> connections;
+    /**
+     * The requests waiting for a stream, in order of arrival.
+     */
+    private final Deque<Acquisition> pending;
+    /**
+     * The amount of connections being opened.
+     */
+    private int connecting;
+    /**
+     * The amount of streams being used (or being opened) in all the connections,
+     * including those that are going away.
+     */
+    private int activeStreams;
+    /**
+     * The instant in which the pool was last used (i.e a stream was requested or released),
+     * in {@link System#nanoTime()} terms.
+     */
+    private long lastUsed;
+    /**
+     * Whether the pool was closed.
+     */
+    private boolean closed;
+    /**
+     * Whether the pool was closed for being idle.
+     */
+    private boolean idleClosed;
+
+
+    /**
+     * Constructor.
+     *
+     * @param client    The {@link H2cClient} to which this pool belongs.
+     * @param address   The address of the instance.
+     * @param bootstrap The {@link Bootstrap} used to open connections (without a handler, as it is set by the pool).
+     */
+    /* package */ H2cConnectionPool(
+            final H2cClient client,
+            final InetSocketAddress address,
+            final Bootstrap bootstrap) {
+        this.client = client;
+        this.address = address;
+        this.bootstrap = bootstrap;
+        this.connections = new ArrayList<>();
+        this.pending = new ArrayDeque<>();
+        this.connecting = 0;
+        this.activeStreams = 0;
+        this.lastUsed = System.nanoTime();
+        this.closed = false;
+        this.idleClosed = false;
+    }
+
+
+    /**
+     * Acquires a stream to the instance, waiting for one if all the connections are full.
+     *
+     * @return A {@link Mono} that emits the {@link H2cStream}, or fails if there are too many waiting requests,
+     * if a connection can not be opened, or with an {@link IdlePoolClosedException} if the pool was closed
+     * for being idle.
+     */
+    /* package */ Mono<H2cStream> acquire() {
+        return Mono.create(sink -> {
+            final var acquisition = new Acquisition(sink);
+            synchronized (this) {
+                if (closed) {
+                    sink.error(idleClosed
+                            ? new IdlePoolClosedException(address)
+                            : new IOException("The connection pool to " + address + " is closed"));
+                    return;
+                }
+                lastUsed = System.nanoTime();
+                if (pending.size() >= client.getMaxPendingAcquires()) {
+                    sink.error(new PendingAcquiresExceededException(address));
+                    return;
+                }
+                pending.add(acquisition);
+            }
+            sink.onCancel(() -> {
+                synchronized (this) {
+                    acquisition.cancelled = true;
+                    pending.remove(acquisition);
+                }
+            });
+            drain();
+        });
+    }
+
+    /**
+     * Closes the pool (i.e all its connections), failing the waiting requests.
+     */
+    /* package */ void close() {
+        final List<Connection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(connections);
+        }
+        toClose.forEach(connection -> connection.channel.close());
+        failPending(new IOException("The connection pool to " + address + " is closed"));
+    }
+
+    /**
+     * Closes the pool if it has no active streams nor waiting requests, and was not used for the given time.
+     *
+     * @param now       The current instant (in {@link System#nanoTime()} terms).
+     * @param idleNanos For how long, in nanoseconds, the pool must not have been used.
+     * @return {@code true} if the pool was closed, or {@code false} otherwise.
+     */
+    /* package */ boolean closeIfIdle(final long now, final long idleNanos) {
+        synchronized (this) {
+            if (closed || activeStreams > 0 || !pending.isEmpty() || connecting > 0 || now - lastUsed < idleNanos) {
+                return false;
+            }
+            idleClosed = true;
+        }
+        close();
+        return true;
+    }
+
+    /**
+     * @return The amount of open connections.
+     */
+    /* package */ synchronized int connections() {
+        return connections.size();
+    }
+
+    /**
+     * @return The amount of requests waiting for a stream.
+     */
+    /* package */ synchronized int pendingAcquires() {
+        return pending.size();
+    }
+
+
+    /**
+     * Assigns streams of the available connections to the waiting requests,
+     * opening a new connection if there are still requests waiting and the maximum was not reached yet.
+     */
+    private void drain() {
+        final var assignments = new ArrayList<Map.Entry<Connection, Acquisition>>();
+        var connect = false;
+        synchronized (this) {
+            Connection connection;
+            while (!pending.isEmpty() && (connection = leastLoaded()) != null) {
+                final var acquisition = pending.poll();
+                connection.activeStreams++;
+                activeStreams++;
+                client.recordStreams(connection.activeStreams);
+                assignments.add(Map.entry(connection, acquisition));
+            }
+            if (!closed && !pending.isEmpty() && connections.size() + connecting < client.getMaxConnections()) {
+                connecting++;
+                connect = true;
+            }
+        }
+        assignments.forEach(assignment -> openStream(assignment.getKey(), assignment.getValue()));
+        if (connect) {
+            connect();
+        }
+    }
+
+    /**
+     * Returns the least loaded connection that can take one more stream (must be called holding the lock).
+     *
+     * @return The {@link Connection}, or {@code null} if there is none.
+     */
+    private Connection leastLoaded() {
+        Connection leastLoaded = null;
+        for (final var connection : connections) {
+            if (!connection.goingAway
+                    && connection.activeStreams < connection.maxConcurrentStreams
+                    && (leastLoaded == null || connection.activeStreams < leastLoaded.activeStreams)) {
+                leastLoaded = connection;
+            }
+        }
+        return leastLoaded;
+    }
+
+    /**
+     * Opens a stream in the given {@code connection} (in which it was already counted),
+     * and hands it to the given {@code acquisition}.
+     *
+     * @param connection  The {@link Connection}.
+     * @param acquisition The {@link Acquisition}.
+     */
+    private void openStream(final Connection connection, final Acquisition acquisition) {
+        new Http2StreamChannelBootstrap(connection.channel)
+                .option(ChannelOption.AUTO_READ, false)
+                .open()
+                .addListener((Future<Http2StreamChannel> future) -> {
+                    if (!future.isSuccess()) {
+                        release(connection);
+                        acquisition.sink.error(future.cause());
+                        return;
+                    }
+                    final var channel = future.getNow();
+                    final var stream = new H2cStream(channel);
+                    channel.pipeline().addLast(stream);
+                    channel.closeFuture().addListener(ignored -> release(connection));
+                    if (acquisition.cancelled) {
+                        channel.close();
+                    } else {
+                        acquisition.sink.success(stream);
+                    }
+                });
+    }
+
+    /**
+     * Releases a stream of the given {@code connection}, handing it to a waiting request, if any.
+     *
+     * @param connection The {@link Connection}.
+     */
+    private void release(final Connection connection) {
+        final boolean closeNow;
+        synchronized (this) {
+            connection.activeStreams--;
+            activeStreams--;
+            lastUsed = System.nanoTime();
+            closeNow = connection.goingAway && connection.activeStreams == 0;
+        }
+        if (closeNow) {
+            connection.channel.close();
+        }
+        drain();
+    }
+
+    /**
+     * Opens a new connection to the instance (which was already counted as {@link #connecting}).
+     */
+    private void connect() {
+        final var connection = new Connection(client.getMaxConcurrentStreams());
+        bootstrap.clone()
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(final Channel channel) {
+                        channel.pipeline().addLast(
+                                Http2MultiplexCodecBuilder
+                                        .forClient(PUSHED_STREAMS_HANDLER)
+                                        .initialSettings(Http2Settings.defaultSettings().pushEnabled(false))
+                                        .build(),
+                                new ConnectionHandler(connection)
+                        );
+                    }
+                })
+                .connect(address)
+                .addListener((ChannelFuture future) -> {
+                    if (!future.isSuccess()) {
+                        synchronized (this) {
+                            connecting--;
+                        }
+                        failPendingIfNoConnections(future.cause());
+                    }
+                });
+    }
+
+    /**
+     * Adds the given {@code connection} to the pool once it is active
+     * (i.e once the connection preface was sent, so streams can be opened in it).
+     *
+     * @param connection The {@link Connection}.
+     * @param channel    The connection's {@link Channel}.
+     */
+    private void onActive(final Connection connection, final Channel channel) {
+        connection.channel = channel;
+        channel.closeFuture().addListener(ignored -> {
+            synchronized (this) {
+                connections.remove(connection);
+            }
+            drain();
+        });
+        final boolean closeNow;
+        synchronized (this) {
+            connecting--;
+            closeNow = closed;
+            if (!closed) {
+                connections.add(connection);
+            }
+        }
+        if (closeNow) {
+            channel.close();
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * Fails the waiting requests with the given {@code error} if there are no connections (being) opened,
+     * as no stream would be released for them.
+     *
+     * @param error The error.
+     */
+    private void failPendingIfNoConnections(final Throwable error) {
+        synchronized (this) {
+            if (!connections.isEmpty() || connecting > 0) {
+                return;
+            }
+        }
+        failPending(error);
+    }
+
+    /**
+     * Fails all the waiting requests with the given {@code error}.
+     *
+     * @param error The error.
+     */
+    private void failPending(final Throwable error) {
+        final List<Acquisition> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(pending);
+            pending.clear();
+        }
+        failed.forEach(acquisition -> acquisition.sink.error(error));
+    }
+
+    /**
+     * Updates the maximum amount of concurrent streams of the given {@code connection}
+     * (i.e the instance announced it in its settings).
+     *
+     * @param connection           The {@link Connection}.
+     * @param maxConcurrentStreams The maximum amount of concurrent streams announced by the instance.
+     */
+    private void onSettings(final Connection connection, final long maxConcurrentStreams) {
+        synchronized (this) {
+            connection.maxConcurrentStreams =
+                    (int) Math.min(client.getMaxConcurrentStreams(), Math.max(maxConcurrentStreams, 0));
+        }
+        drain();
+    }
+
+    /**
+     * Removes the given {@code connection} from the pool (i.e the instance is shutting it down),
+     * closing it if it has no active streams (otherwise, it is closed once they are released).
+     * Waiting requests can then open a new connection in its place.
+     *
+     * @param connection The {@link Connection}.
+     */
+    private void onGoAway(final Connection connection) {
+        final boolean closeNow;
+        synchronized (this) {
+            connection.goingAway = true;
+            connections.remove(connection);
+            closeNow = connection.activeStreams == 0;
+        }
+        if (closeNow) {
+            connection.channel.close();
+        }
+        drain();
+    }
+
+
+    /**
+     * A connection to the instance (whose state is guarded by the pool's lock).
+     */
+    private static final class Connection {
+
+        /**
+         * The connection's {@link Channel} (set once connected).
+         */
+        private Channel channel;
+        /**
+         * The amount of streams being used (or being opened).
+         */
+        private int activeStreams;
+        /**
+         * The maximum amount of concurrent streams.
+         */
+        private int maxConcurrentStreams;
+        /**
+         * Whether a GOAWAY frame was received.
+         */
+        private boolean goingAway;
+
+
+        /**
+         * Constructor.
+         *
+         * @param maxConcurrentStreams The maximum amount of concurrent streams (until the instance announces its own).
+         */
+        private Connection(final int maxConcurrentStreams) {
+            this.channel = null;
+            this.activeStreams = 0;
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            this.goingAway = false;
+        }
+    }
+
+    /**
+     * A request waiting for a stream.
+     */
+    private static final class Acquisition {
+
+        /**
+         * The {@link MonoSink} to which the stream is emitted.
+         */
+        private final MonoSink<H2cStream> sink;
+        /**
+         * Whether the request was cancelled (e.g it timed out).
+         */
+        private volatile boolean cancelled;
+
+
+        /**
+         * Constructor.
+         *
+         * @param sink The {@link MonoSink} to which the stream is emitted.
+         */
+        private Acquisition(final MonoSink<H2cStream> sink) {
+            this.sink = sink;
+            this.cancelled = false;
+        }
+    }
+
+    /**
+     * Handles the connection level frames (i.e settings and GOAWAY) of a {@link Connection}.
+     */
+    private final class ConnectionHandler extends ChannelInboundHandlerAdapter {
+
+        /**
+         * The {@link Connection}.
+         */
+        private final Connection connection;
+
+
+        /**
+         * Constructor.
+         *
+         * @param connection The {@link Connection}.
+         */
+        private ConnectionHandler(final Connection connection) {
+            this.connection = connection;
+        }
+
+
+        @Override
+        public void channelActive(final ChannelHandlerContext ctx) {
+            ctx.fireChannelActive();
+            onActive(connection, ctx.channel());
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+            try {
+                if (msg instanceof Http2SettingsFrame) {
+                    final var maxConcurrentStreams = ((Http2SettingsFrame) msg).settings().maxConcurrentStreams();
+                    if (maxConcurrentStreams != null) {
+                        onSettings(connection, maxConcurrentStreams);
+                    }
+                } else if (msg instanceof Http2GoAwayFrame) {
+                    onGoAway(connection);
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+            ctx.close();
+        }
+    }
+
+    /**
+     * The handler of the streams opened by the instance.
+     */
+    @ChannelHandler.Sharable
+    private static final class PushedStreamsHandler extends ChannelInboundHandlerAdapter {
+    }
+
+    /**
+     * Indicates that a stream was requested to a pool that was already closed for being idle
+     * (so it must be requested to a new pool).
+     */
+    /* package */ static final class IdlePoolClosedException extends IOException {
+
+        /**
+         * Constructor.
+         *
+         * @param address The address of the instance.
+         */
+        private IdlePoolClosedException(final InetSocketAddress address) {
+            super("The connection pool to " + address + " was closed for being idle");
+        }
+    }
+
+    /**
+     * Indicates that a request was rejected because too many requests were already waiting for a stream.
+     */
+    /* package */ static final class PendingAcquiresExceededException extends IOException {
+
+        /**
+         * Constructor.
+         *
+         * @param address The address of the instance.
+         */
+        private PendingAcquiresExceededException(final InetSocketAddress address) {
+            super("Too many requests waiting for a stream to " + address);
+        }
+    }
+}
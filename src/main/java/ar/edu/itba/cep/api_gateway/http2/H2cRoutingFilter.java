@@ -0,0 +1,197 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import ar.edu.itba.cep.api_gateway.metrics.UpstreamTimingFilter;
+import ar.edu.itba.cep.api_gateway.websocket.WebSocketRequests;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2Headers;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link GlobalFilter} that sends the requests of the configured routes with h2c (through their {@link H2cClient}),
+ * instead of the {@link NettyRoutingFilter} (which then skips them, as they are already routed).
+ * <p>
+ * It completes once the response headers are received (like the {@link NettyRoutingFilter}),
+ * leaving the {@link H2cStream} in the exchange so the {@link H2cWriteResponseFilter} streams the response body.
+ * It runs after the {@link UpstreamTimingFilter}, so the call is measured as any other one.
+ * WebSocket handshakes are never sent with h2c.
+ */
+/* package */ class H2cRoutingFilter implements GlobalFilter, Ordered, DisposableBean {
+
+    /**
+     * The name of the exchange attribute that holds the {@link H2cStream} of the request.
+     */
+    /* package */ static final String STREAM_ATTRIBUTE = H2cRoutingFilter.class.getName() + ".stream";
+
+    /**
+     * Request headers that must not be sent with HTTP/2 (i.e connection specific headers),
+     * plus the {@code Host} header, which is sent as the {@code :authority} pseudo header.
+     */
+    private static final Set<String> EXCLUDED_REQUEST_HEADERS = Set.of(
+            "connection",
+            "keep-alive",
+            "proxy-connection",
+            "transfer-encoding",
+            "upgrade",
+            "http2-settings",
+            "te",
+            "host"
+    );
+
+    /**
+     * The {@link H2cClient} of each configured route, keyed by route id.
+     */
+    private final Map<String, H2cClient> clients;
+    /**
+     * The maximum time to wait for the response headers once the request was sent.
+     */
+    private final Duration responseTimeout;
+    /**
+     * Provides the {@link HttpHeadersFilter}s applied to the request and response headers
+     * (the same ones the {@link NettyRoutingFilter} applies).
+     */
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+
+
+    /**
+     * Constructor.
+     *
+     * @param clients                The {@link H2cClient} of each configured route, keyed by route id.
+     * @param responseTimeout        The maximum time to wait for the response headers once the request was sent.
+     * @param headersFiltersProvider Provides the {@link HttpHeadersFilter}s applied to the headers.
+     */
+    /* package */ H2cRoutingFilter(
+            final Map<String, H2cClient> clients,
+            final Duration responseTimeout,
+            final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider) {
+        this.clients = Map.copyOf(clients);
+        this.responseTimeout = responseTimeout;
+        this.headersFiltersProvider = headersFiltersProvider;
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var client = route == null ? null : clients.get(route.getId());
+        if (client == null
+                || url == null
+                || !"http".equals(url.getScheme())
+                || WebSocketRequests.isHandshake(exchange.getRequest())
+                || ServerWebExchangeUtils.isAlreadyRouted(exchange)) {
+            return chain.filter(exchange);
+        }
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+
+        final var request = exchange.getRequest();
+        final var requestHeaders = requestHeaders(exchange, url);
+        // The body is always forwarded (like the NettyRoutingFilter does), as it can be sent without length headers
+        return client.acquire(url)
+                .flatMap(stream -> stream.send(requestHeaders, request.getBody())
+                        .then(stream.responseHeaders())
+                        .timeout(responseTimeout, Mono.error(
+                                new TimeoutException("Response took longer than timeout: " + responseTimeout)))
+                        .doOnError(ignored -> stream.dispose())
+                        .doOnCancel(stream::dispose)
+                        .doOnNext(responseHeaders -> {
+                            exchange.getAttributes().put(STREAM_ATTRIBUTE, stream);
+                            setResponse(exchange, responseHeaders);
+                        }))
+                .onErrorMap(TimeoutException.class,
+                        e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, e.getMessage(), e))
+                .onErrorMap(H2cConnectionPool.PendingAcquiresExceededException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e))
+                .then(Mono.defer(() -> chain.filter(exchange)));
+    }
+
+    @Override
+    public int getOrder() {
+        return UpstreamTimingFilter.ORDER + 2;
+    }
+
+    @Override
+    public void destroy() {
+        clients.values().forEach(H2cClient::close);
+    }
+
+
+    /**
+     * Builds the HTTP/2 request headers (including the pseudo headers) of the request in the given {@code exchange}.
+     *
+     * @param exchange The {@link ServerWebExchange} with the request.
+     * @param url      The URL to which the request is sent.
+     * @return The {@link Http2Headers}.
+     */
+    private Http2Headers requestHeaders(final ServerWebExchange exchange, final URI url) {
+        final var request = exchange.getRequest();
+        final var path = (url.getRawPath() == null || url.getRawPath().isEmpty() ? "/" : url.getRawPath())
+                + (url.getRawQuery() == null ? "" : "?" + url.getRawQuery());
+        final var preserveHost = exchange
+                .getAttributeOrDefault(ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE, false);
+        final var authority = preserveHost && request.getHeaders().getFirst(HttpHeaders.HOST) != null
+                ? request.getHeaders().getFirst(HttpHeaders.HOST)
+                : url.getPort() == -1 ? url.getHost() : url.getHost() + ":" + url.getPort();
+        final var headers = new DefaultHttp2Headers()
+                .method(request.getMethodValue())
+                .path(path)
+                .scheme(url.getScheme())
+                .authority(authority);
+        HttpHeadersFilter.filterRequest(headersFiltersProvider.getIfAvailable(List::of), exchange)
+                .forEach((name, values) -> {
+                    final var lowerCaseName = name.toLowerCase();
+                    if (!EXCLUDED_REQUEST_HEADERS.contains(lowerCaseName)) {
+                        headers.add(lowerCaseName, values);
+                    }
+                });
+        return headers;
+    }
+
+    /**
+     * Sets the status and headers of the response in the given {@code exchange} from the received ones.
+     *
+     * @param exchange        The {@link ServerWebExchange} with the response.
+     * @param responseHeaders The received {@link Http2Headers}.
+     */
+    private void setResponse(final ServerWebExchange exchange, final Http2Headers responseHeaders) {
+        final var headers = new HttpHeaders();
+        responseHeaders.forEach(header -> {
+            final var name = header.getKey().toString();
+            if (!name.startsWith(":")) {
+                headers.add(name, header.getValue().toString());
+            }
+        });
+        final var contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            exchange.getAttributes().put(ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR, contentType);
+        }
+        final var status = HttpStatus.resolve(Integer.parseInt(responseHeaders.status().toString()));
+        final var response = exchange.getResponse();
+        response.setStatusCode(status == null ? HttpStatus.BAD_GATEWAY : status);
+        response.getHeaders().putAll(HttpHeadersFilter.filter(
+                headersFiltersProvider.getIfAvailable(List::of),
+                headers,
+                exchange,
+                HttpHeadersFilter.Type.RESPONSE
+        ));
+    }
+}
@@ -0,0 +1,330 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2ResetFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * An HTTP/2 stream to an upstream instance, carrying a single request and its response.
+ * <p>
+ * It is the handler of an {@link Http2StreamChannel} whose auto read is disabled, so frames are only read
+ * when the response headers are awaited, and when the subscriber of the response body requests more data
+ * (i.e the HTTP/2 flow control window is only updated as fast as the client consumes the body).
+ * Inbound frames are only handled in the channel's event loop (as is the response body subscriber).
+ */
+/* package */ final class H2cStream extends ChannelInboundHandlerAdapter {
+
+    /**
+     * The stream's channel.
+     */
+    private final Http2StreamChannel channel;
+    /**
+     * Emits the response headers (i.e the first non informational headers frame).
+     */
+    private final MonoProcessor<Http2Headers> responseHeaders;
+    /**
+     * Data frames received before the response body subscriber requested them.
+     */
+    private final Queue<Http2DataFrame> pendingData;
+    /**
+     * The {@link FluxSink} of the response body subscriber ({@code null} until subscribed).
+     */
+    private FluxSink<DataBuffer> bodySink;
+    /**
+     * The {@link DataBufferFactory} with which the response body is emitted.
+     */
+    private DataBufferFactory bufferFactory;
+    /**
+     * Whether the response body subscriber was already completed (or failed).
+     */
+    private boolean bodyTerminated;
+    /**
+     * Whether the upstream ended the stream (i.e the response is complete).
+     */
+    private boolean ended;
+    /**
+     * Whether frames are being read, in which case more frames are only requested once the read completes
+     * (as a read requested while reading does not deliver the frames already buffered by the channel).
+     */
+    private boolean reading;
+    /**
+     * The error with which the stream failed, if any.
+     */
+    private Throwable failure;
+
+
+    /**
+     * Constructor.
+     *
+     * @param channel The stream's channel (in whose pipeline this handler must be added).
+     */
+    /* package */ H2cStream(final Http2StreamChannel channel) {
+        this.channel = channel;
+        this.responseHeaders = MonoProcessor.create();
+        this.pendingData = new ArrayDeque<>();
+    }
+
+
+    /**
+     * Sends the request (i.e its headers and its body), and starts reading the response.
+     * Each data frame is written once the previous one was (i.e the body is read as fast as the upstream
+     * flow control window allows), and the stream is ended with an empty data frame once the body completes.
+     *
+     * @param headers The request headers (including the pseudo headers).
+     * @param body    The request body (which might be empty).
+     * @return A {@link Mono} that completes once the request is sent.
+     */
+    /* package */ Mono<Void> send(final Http2Headers headers, final Flux<DataBuffer> body) {
+        final var request = write(new DefaultHttp2HeadersFrame(headers, false))
+                .thenMany(body.concatMap(buffer -> write(new DefaultHttp2DataFrame(toByteBuf(buffer), false))))
+                .then(Mono.defer(() -> write(new DefaultHttp2DataFrame(true))));
+        return request.doOnSuccess(ignored -> channel.eventLoop().execute(this::readIfNeeded));
+    }
+
+    /**
+     * @return A {@link Mono} that emits the response headers (including the {@code :status} pseudo header).
+     */
+    /* package */ Mono<Http2Headers> responseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * Returns the response body, which can only be subscribed once.
+     *
+     * @param bufferFactory The {@link DataBufferFactory} with which the body is emitted.
+     * @return A {@link Flux} that emits the response body.
+     */
+    /* package */ Flux<DataBuffer> body(final DataBufferFactory bufferFactory) {
+        return Flux.create(sink -> channel.eventLoop().execute(() -> subscribe(sink, bufferFactory)));
+    }
+
+    /**
+     * Disposes the stream, resetting it if the response is not complete yet.
+     */
+    /* package */ void dispose() {
+        channel.eventLoop().execute(() -> {
+            if (!ended) {
+                fail(new IOException("The stream was cancelled"));
+            }
+            channel.close();
+        });
+    }
+
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        reading = true;
+        if (msg instanceof Http2HeadersFrame) {
+            final var frame = (Http2HeadersFrame) msg;
+            if (!responseHeaders.isTerminated()) {
+                final var status = frame.headers().status();
+                if (status != null && HttpResponseStatus.parseLine(status).code() / 100 == 1) {
+                    return; // Informational responses are ignored (e.g 100 Continue)
+                }
+                responseHeaders.onNext(frame.headers());
+            }
+            if (frame.isEndStream()) {
+                end();
+            }
+        } else if (msg instanceof Http2DataFrame) {
+            final var frame = (Http2DataFrame) msg;
+            if (frame.content().isReadable()) {
+                pendingData.add(frame);
+            } else {
+                frame.release();
+            }
+            if (frame.isEndStream()) {
+                end();
+            }
+            drainBody();
+        } else if (msg instanceof Http2ResetFrame) {
+            fail(new IOException("The stream was reset by the upstream (error code "
+                    + ((Http2ResetFrame) msg).errorCode() + ")"));
+        } else {
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+        reading = false;
+        readIfNeeded();
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) {
+        if (!ended) {
+            fail(new IOException("The stream was closed before the response was complete"));
+        }
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+        fail(cause);
+        ctx.close();
+    }
+
+
+    /**
+     * Writes (and flushes) the given {@code frame}.
+     *
+     * @param frame The frame to be written.
+     * @return A {@link Mono} that completes once the frame is written.
+     */
+    private Mono<Void> write(final Object frame) {
+        return Mono.create(sink -> channel.writeAndFlush(frame).addListener((ChannelFuture future) -> {
+            if (future.isSuccess()) {
+                sink.success();
+            } else {
+                sink.error(future.cause());
+            }
+        }));
+    }
+
+    /**
+     * Subscribes the response body (in the channel's event loop).
+     *
+     * @param sink          The {@link FluxSink} of the subscriber.
+     * @param bufferFactory The {@link DataBufferFactory} with which the body is emitted.
+     */
+    private void subscribe(final FluxSink<DataBuffer> sink, final DataBufferFactory bufferFactory) {
+        if (bodySink != null) {
+            sink.error(new IllegalStateException("The response body can only be subscribed once"));
+            return;
+        }
+        this.bodySink = sink;
+        this.bufferFactory = bufferFactory;
+        sink.onRequest(ignored -> channel.eventLoop().execute(this::drainBody));
+        sink.onCancel(this::dispose);
+        drainBody();
+    }
+
+    /**
+     * Emits the pending data frames while there is demand, completing the body once they are all emitted
+     * (if the stream ended), or reading more frames otherwise.
+     */
+    private void drainBody() {
+        if (bodySink == null || bodyTerminated) {
+            return;
+        }
+        while (!pendingData.isEmpty() && bodySink.requestedFromDownstream() > 0) {
+            bodySink.next(toDataBuffer(pendingData.poll()));
+        }
+        if (!pendingData.isEmpty()) {
+            return;
+        }
+        if (failure != null) {
+            bodyTerminated = true;
+            bodySink.error(failure);
+        } else if (ended) {
+            bodyTerminated = true;
+            bodySink.complete();
+        } else {
+            readIfNeeded();
+        }
+    }
+
+    /**
+     * Reads more frames if the response headers are awaited, or if the body subscriber has pending demand
+     * (unless frames are being read, as they are read once the read completes).
+     */
+    private void readIfNeeded() {
+        if (ended || failure != null || reading) {
+            return;
+        }
+        if (!responseHeaders.isTerminated()
+                || (bodySink != null && pendingData.isEmpty() && bodySink.requestedFromDownstream() > 0)) {
+            channel.read();
+        }
+    }
+
+    /**
+     * Records that the upstream ended the stream.
+     */
+    private void end() {
+        ended = true;
+        if (!responseHeaders.isTerminated()) {
+            responseHeaders.onError(new IOException("The stream ended without response headers"));
+        }
+        drainBody();
+    }
+
+    /**
+     * Fails the stream with the given {@code error}, releasing the pending data, and closing the channel
+     * (which resets the stream if it is still open).
+     *
+     * @param error The error.
+     */
+    private void fail(final Throwable error) {
+        if (ended || failure != null) {
+            return;
+        }
+        failure = error;
+        pendingData.forEach(ReferenceCountUtil::release);
+        pendingData.clear();
+        if (!responseHeaders.isTerminated()) {
+            responseHeaders.onError(error);
+        }
+        drainBody();
+        channel.close();
+    }
+
+    /**
+     * Converts a {@link DataBuffer} of the request body into a {@link ByteBuf} (without copying, if possible),
+     * transferring its ownership.
+     *
+     * @param buffer The {@link DataBuffer}.
+     * @return The {@link ByteBuf}.
+     */
+    private static ByteBuf toByteBuf(final DataBuffer buffer) {
+        if (buffer instanceof NettyDataBuffer) {
+            return ((NettyDataBuffer) buffer).getNativeBuffer();
+        }
+        final var byteBuf = Unpooled.copiedBuffer(buffer.asByteBuffer());
+        DataBufferUtils.release(buffer);
+        return byteBuf;
+    }
+
+    /**
+     * Converts a data frame of the response body into a {@link DataBuffer} (without copying, if possible),
+     * transferring its ownership.
+     *
+     * @param frame The {@link Http2DataFrame}.
+     * @return The {@link DataBuffer}.
+     */
+    private DataBuffer toDataBuffer(final Http2DataFrame frame) {
+        if (bufferFactory instanceof NettyDataBufferFactory) {
+            return ((NettyDataBufferFactory) bufferFactory).wrap(frame.content());
+        }
+        try {
+            return bufferFactory.wrap(ByteBufUtil.getBytes(frame.content()));
+        } finally {
+            frame.release();
+        }
+    }
+}
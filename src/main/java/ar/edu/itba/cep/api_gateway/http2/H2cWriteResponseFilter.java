@@ -0,0 +1,40 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link GlobalFilter} that writes the response body of requests sent by the {@link H2cRoutingFilter}
+ * (i.e the counterpart of the {@link NettyWriteResponseFilter}, which skips them).
+ * The {@link H2cStream} is disposed once the body is written, or if the exchange fails or is cancelled.
+ */
+/* package */ class H2cWriteResponseFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        return chain.filter(exchange)
+                .then(Mono.defer(() -> {
+                    final H2cStream stream = exchange.getAttribute(H2cRoutingFilter.STREAM_ATTRIBUTE);
+                    if (stream == null) {
+                        return Mono.empty();
+                    }
+                    final var response = exchange.getResponse();
+                    return response.writeWith(stream.body(response.bufferFactory()));
+                }))
+                .doFinally(ignored -> {
+                    final H2cStream stream = exchange.getAttribute(H2cRoutingFilter.STREAM_ATTRIBUTE);
+                    if (stream != null) {
+                        stream.dispose();
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+}
@@ -0,0 +1,80 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import reactor.netty.http.HttpResources;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Configuration class for sending the requests of some routes to the services with h2c,
+ * multiplexing them over a few connections per instance.
+ * Only enabled if the {@code http2.upstream.enabled} property is {@code true} (the default is {@code false}).
+ */
+@Configuration
+@EnableConfigurationProperties(Http2Properties.class)
+@ConditionalOnProperty(prefix = "http2.upstream", name = "enabled", havingValue = "true")
+public class Http2Config {
+
+    /**
+     * Creates the {@link H2cRoutingFilter}, with the {@link H2cClient} of each configured route.
+     * Connections are handled by the same event loops as the gateway's HTTP/1.1 client.
+     *
+     * @param http2Properties        The {@link Http2Properties} from where configuration values are taken.
+     * @param headersFiltersProvider Provides the gateway's {@link HttpHeadersFilter}s.
+     * @param meterRegistry          The {@link MeterRegistry} to which the pools statistics are reported.
+     * @return The {@link H2cRoutingFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ H2cRoutingFilter h2cRoutingFilter(
+            final Http2Properties http2Properties,
+            final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var upstreamProperties = http2Properties.getUpstream();
+        final var connectTimeout = upstreamProperties.getConnectTimeout();
+        Assert.isTrue(!connectTimeout.isNegative() && !connectTimeout.isZero(), "The connect timeout must be positive");
+        final var bootstrap = new Bootstrap()
+                .group(HttpResources.get().onClient(false))
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.TCP_NODELAY, true);
+        final var clients = new HashMap<String, H2cClient>();
+        upstreamProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            clients.put(routeId, new H2cClient(
+                    routeId,
+                    bootstrap,
+                    routeProperties.getMaxConnections(),
+                    routeProperties.getMaxConcurrentStreams(),
+                    upstreamProperties.getMaxPendingAcquires(),
+                    upstreamProperties.getPendingAcquireTimeout(),
+                    upstreamProperties.getIdleTimeout(),
+                    meterRegistry
+            ));
+        });
+        return new H2cRoutingFilter(clients, upstreamProperties.getResponseTimeout(), headersFiltersProvider);
+    }
+
+    /**
+     * Creates the {@link H2cWriteResponseFilter}, which writes the response bodies received by the
+     * {@link H2cRoutingFilter}.
+     *
+     * @return The {@link H2cWriteResponseFilter} bean.
+     */
+    @Bean
+    /* package */ H2cWriteResponseFilter h2cWriteResponseFilter() {
+        return new H2cWriteResponseFilter();
+    }
+}
@@ -0,0 +1,84 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties for configuring HTTP/2 between the gateway and the services behind it.
+ * Note that HTTP/2 between clients and the gateway is configured with the {@code server.http2.enabled} property.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "http2")
+/* package */ class Http2Properties {
+
+    /**
+     * The upstream properties.
+     */
+    @NestedConfigurationProperty
+    private UpstreamProperties upstream = new UpstreamProperties();
+
+
+    /**
+     * Properties for sending requests to the services with HTTP/2 over cleartext (h2c, with prior knowledge).
+     */
+    @Getter
+    @Setter
+    /* package */ static final class UpstreamProperties {
+
+        /**
+         * Whether requests of the configured {@link #routes} are sent with h2c
+         * (the other routes always use HTTP/1.1).
+         */
+        private boolean enabled = false;
+        /**
+         * The maximum time to establish a connection with an instance.
+         */
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        /**
+         * The maximum time to wait for the response headers once the request was sent.
+         */
+        private Duration responseTimeout = Duration.ofMinutes(1);
+        /**
+         * The maximum time a request waits for a stream when all the connections to an instance are full.
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        /**
+         * The maximum amount of requests waiting for a stream to an instance (any other is rejected right away).
+         */
+        private int maxPendingAcquires = 1000;
+        /**
+         * The amount of time the connections to an instance are kept after it was last used
+         * (i.e since its last stream was released).
+         */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+        /**
+         * The properties of the routes whose requests are sent with h2c, keyed by route id.
+         */
+        private Map<String, RouteProperties> routes = new HashMap<>();
+    }
+
+    /**
+     * Properties for sending a route's requests with h2c.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The maximum amount of connections opened to each instance of the route's service.
+         */
+        private int maxConnections = 2;
+        /**
+         * The maximum amount of concurrent streams (i.e requests) in each connection
+         * (or less, if the instance allows less).
+         */
+        private int maxConcurrentStreams = 100;
+    }
+}
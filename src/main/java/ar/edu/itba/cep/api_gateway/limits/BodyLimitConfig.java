@@ -0,0 +1,52 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+
+/**
+ * Configuration class for limiting the size of request bodies.
+ * Only enabled if the {@code body-limit.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(BodyLimitProperties.class)
+@ConditionalOnProperty(prefix = "body-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class BodyLimitConfig {
+
+    /**
+     * Creates the {@link BodyLimitFilter}, with a {@link BodyLimitFilter.RouteLimit} for each route
+     * in {@link RoutesConfig#ROUTE_PATHS} (using the default properties for routes without specific ones).
+     *
+     * @param bodyLimitProperties The {@link BodyLimitProperties} from where configuration values are taken.
+     * @param meterRegistry       The {@link MeterRegistry} to which rejected requests are reported.
+     * @return The {@link BodyLimitFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ BodyLimitFilter bodyLimitFilter(
+            final BodyLimitProperties bodyLimitProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        bodyLimitProperties.getRoutes().keySet().forEach(routeId ->
+                Assert.isTrue(
+                        RoutesConfig.ROUTE_PATHS.containsKey(routeId),
+                        "There is no route with id '" + routeId + "'"
+                )
+        );
+        final var limits = new HashMap<String, BodyLimitFilter.RouteLimit>();
+        RoutesConfig.ROUTE_PATHS.keySet().forEach(routeId -> {
+            final var maxRequestSize = bodyLimitProperties.getRoutes()
+                    .getOrDefault(routeId, bodyLimitProperties.getDefaultRoute())
+                    .getMaxRequestSize()
+                    .toBytes();
+            Assert.isTrue(maxRequestSize >= 0, "The maximum request size must not be negative");
+            limits.put(routeId, new BodyLimitFilter.RouteLimit(routeId, maxRequestSize, meterRegistry));
+        });
+        return new BodyLimitFilter(limits);
+    }
+}
@@ -0,0 +1,142 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * A {@link GlobalFilter} that limits the size of the request bodies of each route, while they are streamed upstream.
+ * <p>
+ * Requests declaring a larger {@code Content-Length} are rejected right away, and the body of the others
+ * (including chunked uploads, and HTTP/2 ones, whose declared length is not enforced by the server) is counted
+ * as it is sent: once it crosses the limit, the upstream request is aborted, and the request is rejected
+ * (if the response was not committed yet).
+ * Rejected requests get a 413 Payload Too Large response, and their connection is closed
+ * (so the rest of the body is not read). Bodies are never aggregated.
+ * It runs right before an instance is chosen, so rejected requests do not count as calls to any instance
+ * (nor as failures of the route).
+ */
+/* package */ class BodyLimitFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The {@link RouteLimit} of each route, keyed by route id.
+     */
+    private final Map<String, RouteLimit> limits;
+
+
+    /**
+     * Constructor.
+     *
+     * @param limits The {@link RouteLimit} of each route, keyed by route id.
+     */
+    /* package */ BodyLimitFilter(final Map<String, RouteLimit> limits) {
+        this.limits = Map.copyOf(limits);
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var limit = route == null ? null : limits.get(route.getId());
+        if (limit == null) {
+            return chain.filter(exchange);
+        }
+        final var contentLength = exchange.getRequest().getHeaders().getContentLength();
+        if (contentLength > limit.maxRequestSize) {
+            limit.declaredRejections.increment();
+            RequestBodies.markTooLarge(exchange);
+            return reject(exchange);
+        }
+        final var request = new LimitedRequest(
+                exchange.getRequest(),
+                limit.maxRequestSize,
+                () -> RequestBodies.markTooLarge(exchange)
+        );
+        return chain.filter(exchange.mutate().request(request).build())
+                .onErrorResume(
+                        ignored -> RequestBodies.isTooLarge(exchange) && !exchange.getResponse().isCommitted(),
+                        ignored -> {
+                            limit.streamedRejections.increment();
+                            return reject(exchange);
+                        }
+                );
+    }
+
+    @Override
+    public int getOrder() {
+        return LoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER - 1;
+    }
+
+
+    /**
+     * Rejects the request in the given {@code exchange} with a 413 Payload Too Large response,
+     * closing the connection once it is sent.
+     *
+     * @param exchange The {@link ServerWebExchange} with the rejected request.
+     * @return A {@link Mono} that completes once the response is sent.
+     */
+    private static Mono<Void> reject(final ServerWebExchange exchange) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+        response.getHeaders().set(HttpHeaders.CONNECTION, "close");
+        return response.setComplete();
+    }
+
+
+    /**
+     * The request body limit and meters of a route.
+     */
+    /* package */ static final class RouteLimit {
+
+        /**
+         * The maximum size of a request body.
+         */
+        private final long maxRequestSize;
+        /**
+         * The {@link Counter} of requests rejected because of their declared length.
+         */
+        private final Counter declaredRejections;
+        /**
+         * The {@link Counter} of requests rejected while their body was being streamed.
+         */
+        private final Counter streamedRejections;
+
+
+        /**
+         * Constructor.
+         *
+         * @param routeId        The route id.
+         * @param maxRequestSize The maximum size of a request body.
+         * @param meterRegistry  The {@link MeterRegistry} to which rejected requests are reported.
+         */
+        /* package */ RouteLimit(final String routeId, final long maxRequestSize, final MeterRegistry meterRegistry) {
+            this.maxRequestSize = maxRequestSize;
+            this.declaredRejections = counter(meterRegistry, routeId, "declared");
+            this.streamedRejections = counter(meterRegistry, routeId, "streamed");
+        }
+
+
+        /**
+         * Registers the {@link Counter} of rejected requests of a route, with the given {@code reason}.
+         *
+         * @param meterRegistry The {@link MeterRegistry} in which the counter is registered.
+         * @param routeId       The route id.
+         * @param reason        Why the requests were rejected.
+         * @return The {@link Counter}.
+         */
+        private static Counter counter(final MeterRegistry meterRegistry, final String routeId, final String reason) {
+            return meterRegistry.counter("gateway.body-limit.rejections", "route", routeId, "reason", reason);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties for configuring the maximum size of the request bodies of the routes.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "body-limit")
+/* package */ class BodyLimitProperties {
+
+    /**
+     * Whether the size of request bodies is limited.
+     */
+    private boolean enabled = true;
+    /**
+     * The properties applied to the routes not included in the {@link #routes}.
+     */
+    @NestedConfigurationProperty
+    private RouteProperties defaultRoute = new RouteProperties();
+    /**
+     * The properties of specific routes, keyed by route id (they replace the {@link #defaultRoute} ones).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for limiting the request bodies of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The maximum size of a request body (larger requests are rejected with a 413 Payload Too Large response).
+         */
+        private DataSize maxRequestSize = DataSize.ofMegabytes(1);
+    }
+}
@@ -0,0 +1,61 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ServerHttpRequestDecorator} that counts the bytes of the body as they are streamed,
+ * failing it as soon as it becomes larger than the maximum size (so it is never buffered).
+ */
+/* package */ final class LimitedRequest extends ServerHttpRequestDecorator {
+
+    /**
+     * The maximum size of the body.
+     */
+    private final long maxSize;
+    /**
+     * Called once the body becomes too large.
+     */
+    private final Runnable onTooLarge;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate   The decorated {@link ServerHttpRequest}.
+     * @param maxSize    The maximum size of the body.
+     * @param onTooLarge Called once the body becomes too large.
+     */
+    /* package */ LimitedRequest(final ServerHttpRequest delegate, final long maxSize, final Runnable onTooLarge) {
+        super(delegate);
+        this.maxSize = maxSize;
+        this.onTooLarge = onTooLarge;
+    }
+
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return Flux.defer(() -> {
+            final var received = new AtomicLong(0);
+            return super.getBody().handle((buffer, sink) -> {
+                if (received.addAndGet(buffer.readableByteCount()) <= maxSize) {
+                    sink.next(buffer);
+                    return;
+                }
+                DataBufferUtils.release(buffer);
+                onTooLarge.run();
+                sink.error(new ResponseStatusException(
+                        HttpStatus.PAYLOAD_TOO_LARGE,
+                        "The request body is larger than " + maxSize + " bytes"
+                ));
+            });
+        });
+    }
+}
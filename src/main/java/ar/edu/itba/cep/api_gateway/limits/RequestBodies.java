@@ -0,0 +1,42 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Helper class for request bodies.
+ */
+public final class RequestBodies {
+
+    /**
+     * The name of the exchange attribute set when the request body is rejected for being too large.
+     */
+    private static final String TOO_LARGE_ATTRIBUTE = RequestBodies.class.getName() + ".tooLarge";
+
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private RequestBodies() {
+    }
+
+
+    /**
+     * Checks whether the body of the request in the given {@code exchange} was rejected for being too large
+     * (i.e the request failed because of the client, so it says nothing about the service).
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @return {@code true} if the request body was too large, or {@code false} otherwise.
+     */
+    public static boolean isTooLarge(final ServerWebExchange exchange) {
+        return exchange.getAttributeOrDefault(TOO_LARGE_ATTRIBUTE, false);
+    }
+
+    /**
+     * Marks the body of the request in the given {@code exchange} as too large.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     */
+    /* package */ static void markTooLarge(final ServerWebExchange exchange) {
+        exchange.getAttributes().put(TOO_LARGE_ATTRIBUTE, true);
+    }
+}
@@ -0,0 +1,179 @@
+package ar.edu.itba.cep.api_gateway.loadbalancing;
+
+import ar.edu.itba.cep.api_gateway.limits.RequestBodies;
+import ar.edu.itba.cep.api_gateway.websocket.WebSocketRequests;
+import com.netflix.loadbalancer.ILoadBalancer;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.netflix.ribbon.RibbonLoadBalancerClient;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link LoadBalancerClientFilter} that chooses the instance to which each request is sent with the
+ * {@link RouteBalancer} of its route (instead of Ribbon's round-robin selection),
+ * among the servers Ribbon considers reachable.
+ * <p>
+ * The outcome of each call is recorded in the chosen instance once the rest of the chain completes
+ * (i.e once the response status and headers are received, as the body is written afterwards):
+ * a 5xx status (or an error) is a failure, and the time until then is the instance's latency.
+ * The outcome of WebSocket handshakes is recorded once the response is committed instead
+ * (as the chain only completes once the session is closed). Requests rejected for having a too large body
+ * are not recorded, like cancelled ones.
+ * Services without a {@link RouteBalancer} are still load balanced by Ribbon.
+ */
+/* package */ class LatencyAwareLoadBalancerClientFilter extends LoadBalancerClientFilter {
+
+    /**
+     * The name of the exchange attribute holding the {@link Call} to the chosen instance.
+     */
+    private static final String CALL_ATTRIBUTE = LatencyAwareLoadBalancerClientFilter.class.getName() + ".call";
+
+
+    /**
+     * The {@link SpringClientFactory} from where the Ribbon {@link ILoadBalancer} of each service is taken.
+     */
+    private final SpringClientFactory clientFactory;
+    /**
+     * The {@link RouteBalancer} of each service, keyed by service id.
+     */
+    private final Map<String, RouteBalancer> balancers;
+    /**
+     * The Ribbon {@link ILoadBalancer} of each service (i.e their servers), keyed by service id,
+     * which are looked up the first time a service is called.
+     */
+    private final Map<String, ILoadBalancer> loadBalancers;
+
+
+    /**
+     * Constructor.
+     *
+     * @param loadBalancer  The {@link LoadBalancerClient} used to build the request URL
+     *                      (and to choose instances of services without a {@link RouteBalancer}).
+     * @param properties    The gateway's {@link LoadBalancerProperties}.
+     * @param clientFactory The {@link SpringClientFactory} from where the Ribbon {@link ILoadBalancer}
+     *                      of each service is taken.
+     * @param balancers     The {@link RouteBalancer} of each service, keyed by service id.
+     */
+    /* package */ LatencyAwareLoadBalancerClientFilter(
+            final LoadBalancerClient loadBalancer,
+            final LoadBalancerProperties properties,
+            final SpringClientFactory clientFactory,
+            final Map<String, RouteBalancer> balancers) {
+        super(loadBalancer, properties);
+        this.clientFactory = clientFactory;
+        this.balancers = Map.copyOf(balancers);
+        this.loadBalancers = new ConcurrentHashMap<>();
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var response = exchange.getResponse();
+        if (WebSocketRequests.isHandshake(exchange.getRequest())) {
+            response.beforeCommit(() -> {
+                final Call call = exchange.getAttribute(CALL_ATTRIBUTE);
+                if (call != null) {
+                    final var status = response.getStatusCode();
+                    call.complete(SignalType.ON_COMPLETE, status != null && status.is5xxServerError());
+                }
+                return Mono.empty();
+            });
+        }
+        return Mono.defer(() -> super.filter(exchange, chain))
+                .doFinally(signal -> {
+                    final Call call = exchange.getAttribute(CALL_ATTRIBUTE);
+                    if (call != null) {
+                        final var status = response.getStatusCode();
+                        // A too large request body says nothing about the instance, like a cancelled call
+                        call.complete(
+                                RequestBodies.isTooLarge(exchange) ? SignalType.CANCEL : signal,
+                                status != null && status.is5xxServerError()
+                        );
+                    }
+                });
+    }
+
+    @Override
+    protected ServiceInstance choose(final ServerWebExchange exchange) {
+        final URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        final var serviceId = url == null ? null : url.getHost();
+        final var balancer = serviceId == null ? null : balancers.get(serviceId);
+        if (balancer == null) {
+            return super.choose(exchange);
+        }
+        final var servers = loadBalancers.computeIfAbsent(serviceId, clientFactory::getLoadBalancer)
+                .getReachableServers();
+        final var now = System.nanoTime();
+        final var instance = balancer.choose(servers, now);
+        if (instance == null) {
+            return null;
+        }
+        exchange.getAttributes().put(CALL_ATTRIBUTE, new Call(instance, now));
+        return new RibbonLoadBalancerClient.RibbonServer(serviceId, instance.getServer());
+    }
+
+
+    /**
+     * A call to a chosen instance.
+     */
+    private static final class Call {
+
+        /**
+         * The chosen {@link RouteBalancer.Instance}.
+         */
+        private final RouteBalancer.Instance instance;
+        /**
+         * The instant in which the instance was chosen (in {@link System#nanoTime()} terms).
+         */
+        private final long start;
+        /**
+         * Whether the call was already completed.
+         */
+        private final AtomicBoolean completed;
+
+
+        /**
+         * Constructor. Records that a request is being sent to the given {@code instance}.
+         *
+         * @param instance The chosen {@link RouteBalancer.Instance}.
+         * @param start    The instant in which the instance was chosen (in {@link System#nanoTime()} terms).
+         */
+        private Call(final RouteBalancer.Instance instance, final long start) {
+            this.instance = instance;
+            this.start = start;
+            this.completed = new AtomicBoolean(false);
+            instance.start();
+        }
+
+
+        /**
+         * Completes the call, recording its outcome (unless it was cancelled, which says nothing about the instance).
+         * Only the first completion is taken into account.
+         *
+         * @param signal      The {@link SignalType} with which the call completed.
+         * @param errorStatus Whether the response has a 5xx status.
+         */
+        private void complete(final SignalType signal, final boolean errorStatus) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            instance.complete();
+            if (signal != SignalType.CANCEL) {
+                final var now = System.nanoTime();
+                instance.onResult(signal == SignalType.ON_ERROR || errorStatus, now - start, now);
+            }
+        }
+    }
+}
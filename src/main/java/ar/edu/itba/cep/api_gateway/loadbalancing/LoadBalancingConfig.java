@@ -0,0 +1,64 @@
+package ar.edu.itba.cep.api_gateway.loadbalancing;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.gateway.config.LoadBalancerProperties;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.netflix.ribbon.SpringClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+
+/**
+ * Configuration class for choosing the instances to which requests are sent by their latency and in-flight requests.
+ * It replaces the gateway's {@link LoadBalancerClientFilter} (i.e Ribbon's round-robin selection).
+ * Only enabled if the {@code load-balancing.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(LoadBalancingProperties.class)
+@ConditionalOnProperty(prefix = "load-balancing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LoadBalancingConfig {
+
+    /**
+     * Creates the {@link LatencyAwareLoadBalancerClientFilter}, with a {@link RouteBalancer} for each route
+     * in {@link RoutesConfig#ROUTE_PATHS}.
+     *
+     * @param loadBalancerClient      The {@link LoadBalancerClient} used to build the request URLs.
+     * @param loadBalancerProperties  The gateway's {@link LoadBalancerProperties}.
+     * @param clientFactory           The {@link SpringClientFactory} from where the servers of each service are taken.
+     * @param loadBalancingProperties The {@link LoadBalancingProperties} from where configuration values are taken.
+     * @param meterRegistry           The {@link MeterRegistry} to which the balancers statistics are reported.
+     * @return The {@link LatencyAwareLoadBalancerClientFilter} bean.
+     * @throws IllegalArgumentException If the properties are not valid.
+     */
+    @Bean
+    /* package */ LoadBalancerClientFilter latencyAwareLoadBalancerClientFilter(
+            final LoadBalancerClient loadBalancerClient,
+            final LoadBalancerProperties loadBalancerProperties,
+            final SpringClientFactory clientFactory,
+            final LoadBalancingProperties loadBalancingProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var ejectionProperties = loadBalancingProperties.getEjection();
+        final var balancers = new HashMap<String, RouteBalancer>();
+        RoutesConfig.ROUTE_PATHS.keySet().forEach(routeId -> balancers.put(routeId, new RouteBalancer(
+                routeId,
+                loadBalancingProperties.getDecayTime(),
+                loadBalancingProperties.getIdleTimeout(),
+                ejectionProperties.getConsecutiveFailures(),
+                ejectionProperties.getBaseTime(),
+                ejectionProperties.getMaxTime(),
+                ejectionProperties.getHealthyTime(),
+                meterRegistry
+        )));
+        return new LatencyAwareLoadBalancerClientFilter(
+                loadBalancerClient,
+                loadBalancerProperties,
+                clientFactory,
+                balancers
+        );
+    }
+}
@@ -0,0 +1,66 @@
+package ar.edu.itba.cep.api_gateway.loadbalancing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+
+/**
+ * Properties for configuring the latency-aware load balancing of the routes.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "load-balancing")
+/* package */ class LoadBalancingProperties {
+
+    /**
+     * Whether instances are chosen by latency and in-flight requests
+     * (otherwise, Ribbon's round-robin selection is used).
+     */
+    private boolean enabled = true;
+    /**
+     * The time it takes for the latency of an instance to decay to about a third of its value
+     * (the greater the value, the longer a latency peak is remembered).
+     */
+    private Duration decayTime = Duration.ofSeconds(10);
+    /**
+     * The amount of time the statistics of an instance are kept after it was last chosen.
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    /**
+     * The ejection properties.
+     */
+    @NestedConfigurationProperty
+    private EjectionProperties ejection = new EjectionProperties();
+
+
+    /**
+     * Properties for ejecting failing instances.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class EjectionProperties {
+
+        /**
+         * The amount of consecutive failed calls (i.e with a 5xx status, or that could not be sent)
+         * after which an instance is ejected.
+         */
+        private int consecutiveFailures = 5;
+        /**
+         * For how long an instance is ejected the first time (it is doubled each time the instance is ejected again
+         * without having been healthy in between).
+         */
+        private Duration baseTime = Duration.ofSeconds(30);
+        /**
+         * The maximum amount of time an instance is ejected.
+         */
+        private Duration maxTime = Duration.ofMinutes(5);
+        /**
+         * For how long an ejected instance must answer without failures to be considered healthy again
+         * (i.e for its next ejection to last the base time).
+         */
+        private Duration healthyTime = Duration.ofMinutes(2);
+    }
+}
@@ -0,0 +1,348 @@
+package ar.edu.itba.cep.api_gateway.loadbalancing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.netflix.loadbalancer.Server;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the instance of a route's service to which each request is sent,
+ * using the power of two choices over the peak-EWMA cost of the instances.
+ * <p>
+ * The cost of an instance is its latency (an exponentially weighted moving average of the latency of its responses,
+ * which jumps to any greater latency right away, and decays with time) multiplied by its amount of in-flight
+ * requests plus one. Two distinct instances are picked at random, and the cheaper one is chosen,
+ * so slow (or overloaded) instances get less traffic, without every request going to the same instance.
+ * <p>
+ * Instances are passively ejected once they fail several consecutive calls, and not chosen until the ejection expires
+ * (unless every candidate is ejected). Each time an instance is ejected again without having been healthy
+ * in between (i.e answering without failures for the healthy time), the ejection lasts twice as long.
+ */
+/* package */ final class RouteBalancer {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteBalancer.class);
+
+    /**
+     * The cost of an instance whose latency is still unknown, and already has in-flight requests
+     * (so it gets one request at a time until its latency is known).
+     */
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    /**
+     * The value of {@link Instance#ejectedUntil} for instances that are not ejected.
+     */
+    private static final long NOT_EJECTED = Long.MIN_VALUE;
+
+    /**
+     * The value of {@link Instance#healthySince} for instances that failed since their last successful call.
+     */
+    private static final long NOT_HEALTHY = Long.MIN_VALUE;
+
+
+    /**
+     * The id of the route.
+     */
+    private final String routeId;
+    /**
+     * The time, in nanoseconds, it takes for the latency of an instance to decay to 1/e of its value.
+     */
+    private final double decayNanos;
+    /**
+     * The amount of consecutive failed calls after which an instance is ejected.
+     */
+    private final int consecutiveFailures;
+    /**
+     * For how long, in nanoseconds, an instance is ejected the first time.
+     */
+    private final long baseEjectionNanos;
+    /**
+     * The maximum amount of time, in nanoseconds, an instance is ejected.
+     */
+    private final long maxEjectionNanos;
+    /**
+     * For how long, in nanoseconds, an ejected instance must answer without failures
+     * before its ejection time goes back to the base one.
+     */
+    private final long healthyNanos;
+    /**
+     * The {@link Instance}s of the route, keyed by server id (i.e host and port).
+     */
+    private final Cache<String, Instance> instances;
+    /**
+     * The {@link Counter} of ejections.
+     */
+    private final Counter ejections;
+
+
+    /**
+     * Constructor.
+     * Registers the amount of currently ejected instances of the route as a gauge.
+     *
+     * @param routeId             The id of the route.
+     * @param decayTime           The time it takes for the latency of an instance to decay to 1/e of its value.
+     * @param idleTimeout         The amount of time an {@link Instance} is kept after it was last chosen.
+     * @param consecutiveFailures The amount of consecutive failed calls after which an instance is ejected.
+     * @param baseEjectionTime    For how long an instance is ejected the first time.
+     * @param maxEjectionTime     The maximum amount of time an instance is ejected.
+     * @param healthyTime         For how long an ejected instance must answer without failures
+     *                            before its ejection time goes back to the base one.
+     * @param meterRegistry       The {@link MeterRegistry} to which the balancer statistics are reported.
+     * @throws IllegalArgumentException If any of the values is not valid.
+     */
+    /* package */ RouteBalancer(
+            final String routeId,
+            final Duration decayTime,
+            final Duration idleTimeout,
+            final int consecutiveFailures,
+            final Duration baseEjectionTime,
+            final Duration maxEjectionTime,
+            final Duration healthyTime,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(!decayTime.isNegative() && !decayTime.isZero(), "The decay time must be positive");
+        Assert.isTrue(!idleTimeout.isNegative() && !idleTimeout.isZero(), "The idle timeout must be positive");
+        Assert.isTrue(consecutiveFailures > 0, "The amount of consecutive failures must be positive");
+        Assert.isTrue(!baseEjectionTime.isNegative(), "The base ejection time must not be negative");
+        Assert.isTrue(maxEjectionTime.compareTo(baseEjectionTime) >= 0,
+                "The max ejection time must not be shorter than the base ejection time");
+        Assert.isTrue(!healthyTime.isNegative(), "The healthy time must not be negative");
+        this.routeId = routeId;
+        this.decayNanos = decayTime.toNanos();
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseEjectionNanos = baseEjectionTime.toNanos();
+        this.maxEjectionNanos = maxEjectionTime.toNanos();
+        this.healthyNanos = healthyTime.toNanos();
+        this.instances = Caffeine.newBuilder()
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.ejections = meterRegistry.counter("gateway.load-balancer.ejections", "route", routeId);
+        Gauge.builder("gateway.load-balancer.ejected", this, RouteBalancer::ejected)
+                .tag("route", routeId)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Chooses the {@link Instance} to which a request is sent.
+     *
+     * @param servers The {@link Server}s of the route's service that can be chosen.
+     * @param now     The current instant (in {@link System#nanoTime()} terms).
+     * @return The chosen {@link Instance}, or {@code null} if there are no servers.
+     */
+    /* package */ Instance choose(final List<Server> servers, final long now) {
+        final var size = servers.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return instance(servers.get(0));
+        }
+        final var random = ThreadLocalRandom.current();
+        final var firstIndex = random.nextInt(size);
+        final var secondIndex = (firstIndex + 1 + random.nextInt(size - 1)) % size;
+        final var first = instance(servers.get(firstIndex));
+        final var second = instance(servers.get(secondIndex));
+        final var firstEjected = first.isEjected(now);
+        if (firstEjected != second.isEjected(now)) {
+            return firstEjected ? second : first;
+        }
+        if (firstEjected) {
+            // Both are ejected, so any available instance is better (if there is none, ejections are ignored)
+            for (var i = 1; i < size; i++) {
+                final var candidate = instance(servers.get((secondIndex + i) % size));
+                if (!candidate.isEjected(now)) {
+                    return candidate;
+                }
+            }
+        }
+        return first.cost(now) <= second.cost(now) ? first : second;
+    }
+
+
+    /**
+     * Returns the {@link Instance} of the given {@code server}, creating it if it does not exist yet.
+     *
+     * @param server The {@link Server}.
+     * @return The {@link Instance}.
+     */
+    private Instance instance(final Server server) {
+        return instances.get(server.getId(), ignored -> new Instance(server));
+    }
+
+    /**
+     * Returns the amount of currently ejected instances.
+     *
+     * @return The amount of instances.
+     */
+    private long ejected() {
+        final var now = System.nanoTime();
+        return instances.asMap().values().stream().filter(instance -> instance.isEjected(now)).count();
+    }
+
+
+    /**
+     * An instance of the route's service, with its latency, in-flight requests and failures.
+     * The cost is calculated without locking, while results are recorded under the instance's lock.
+     */
+    /* package */ final class Instance {
+
+        /**
+         * The instance's {@link Server}.
+         */
+        private final Server server;
+        /**
+         * The amount of requests sent to the instance that are not completed yet.
+         */
+        private final AtomicInteger inFlight;
+        /**
+         * The peak-EWMA latency, in nanoseconds (zero if no response has been received yet).
+         */
+        private volatile double latency;
+        /**
+         * The instant in which the {@link #latency} was last updated (in {@link System#nanoTime()} terms).
+         */
+        private volatile long latencyUpdatedAt;
+        /**
+         * The instant until which the instance is ejected (in {@link System#nanoTime()} terms),
+         * or {@link #NOT_EJECTED}.
+         */
+        private volatile long ejectedUntil;
+        /**
+         * The amount of consecutive failed calls (guarded by this instance's lock).
+         */
+        private int failures;
+        /**
+         * The amount of times the instance has been ejected since it was last healthy
+         * (guarded by this instance's lock).
+         */
+        private int timesEjected;
+        /**
+         * The instant since which the instance answers without failures (in {@link System#nanoTime()} terms),
+         * or {@link #NOT_HEALTHY} (guarded by this instance's lock).
+         */
+        private long healthySince;
+
+
+        /**
+         * Constructor.
+         *
+         * @param server The instance's {@link Server}.
+         */
+        private Instance(final Server server) {
+            this.server = server;
+            this.inFlight = new AtomicInteger(0);
+            this.latency = 0;
+            this.latencyUpdatedAt = 0;
+            this.ejectedUntil = NOT_EJECTED;
+            this.failures = 0;
+            this.timesEjected = 0;
+            this.healthySince = NOT_HEALTHY;
+        }
+
+
+        /**
+         * @return The instance's {@link Server}.
+         */
+        /* package */ Server getServer() {
+            return server;
+        }
+
+        /**
+         * Records that a request was sent to the instance
+         * (which must be followed by a call to {@link #complete()} once the request is completed).
+         */
+        /* package */ void start() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Records that a request sent to the instance was completed.
+         */
+        /* package */ void complete() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * Records the result of a call to the instance.
+         * The latency of failed calls is not recorded (but the instance is ejected after enough of them).
+         * The ejection time goes back to the base one only once the instance answered without failures
+         * for the healthy time (i.e a single successful call of a flapping instance does not reset it).
+         *
+         * @param failed       Whether the call failed.
+         * @param latencyNanos The time, in nanoseconds, the instance took to start answering.
+         * @param now          The current instant (in {@link System#nanoTime()} terms).
+         */
+        /* package */ synchronized void onResult(final boolean failed, final long latencyNanos, final long now) {
+            if (!failed) {
+                failures = 0;
+                if (healthySince == NOT_HEALTHY) {
+                    healthySince = now;
+                } else if (now - healthySince >= healthyNanos) {
+                    timesEjected = 0;
+                }
+                final var current = latency;
+                if (latencyNanos > current) {
+                    latency = latencyNanos;
+                } else {
+                    final var weight = Math.exp(-Math.max(now - latencyUpdatedAt, 0) / decayNanos);
+                    latency = current * weight + latencyNanos * (1 - weight);
+                }
+                latencyUpdatedAt = now;
+                return;
+            }
+            healthySince = NOT_HEALTHY;
+            // Failures of calls that were already in flight when the instance was ejected do not count
+            if (isEjected(now) || ++failures < consecutiveFailures) {
+                return;
+            }
+            final var ejectionNanos = (long) Math.min(baseEjectionNanos * Math.pow(2, timesEjected), maxEjectionNanos);
+            failures = 0;
+            timesEjected++;
+            ejectedUntil = now + ejectionNanos;
+            ejections.increment();
+            LOGGER.warn("Ejected instance {} of route {} for {} ms after {} consecutive failures",
+                    server.getId(), routeId, ejectionNanos / 1_000_000, consecutiveFailures);
+        }
+
+
+        /**
+         * Indicates whether the instance is currently ejected.
+         *
+         * @param now The current instant (in {@link System#nanoTime()} terms).
+         * @return {@code true} if it is ejected, or {@code false} otherwise.
+         */
+        private boolean isEjected(final long now) {
+            final var until = ejectedUntil;
+            return until != NOT_EJECTED && until - now > 0;
+        }
+
+        /**
+         * Calculates the cost of sending a request to the instance (i.e its decayed latency multiplied by
+         * its amount of in-flight requests plus one).
+         *
+         * @param now The current instant (in {@link System#nanoTime()} terms).
+         * @return The cost.
+         */
+        private double cost(final long now) {
+            final var pending = inFlight.get();
+            final var current = latency;
+            if (current == 0) {
+                return pending == 0 ? 0 : PENALTY + pending;
+            }
+            final var decayed = current * Math.exp(-Math.max(now - latencyUpdatedAt, 0) / decayNanos);
+            return decayed * (pending + 1);
+        }
+    }
+}
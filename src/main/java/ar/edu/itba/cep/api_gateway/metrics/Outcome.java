@@ -0,0 +1,48 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+/**
+ * The authentication outcome of a request.
+ */
+public enum Outcome {
+    /**
+     * The request was authenticated with a valid token.
+     */
+    OK("ok"),
+    /**
+     * The request included a token that could not be decoded.
+     */
+    DECODE_FAILURE("decode-failure"),
+    /**
+     * The request included a revoked token.
+     */
+    BLACKLISTED("blacklisted"),
+    /**
+     * The request did not include a token.
+     */
+    ANONYMOUS("anonymous"),
+    ;
+
+
+    /**
+     * The value with which the outcome is tagged.
+     */
+    private final String tag;
+
+
+    /**
+     * Constructor.
+     *
+     * @param tag The value with which the outcome is tagged.
+     */
+    Outcome(final String tag) {
+        this.tag = tag;
+    }
+
+
+    /**
+     * @return The value with which the outcome is tagged.
+     */
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,188 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the {@link StageTimings} of each request in a {@link MeterRegistry}:
+ * a {@link #STAGE_TIMER} timer (with a percentiles histogram) tagged by route, stage and outcome,
+ * and a {@link #REQUESTS_COUNTER} counter tagged by route and outcome.
+ * <p>
+ * Meters are created the first time they are needed, and then kept in arrays indexed by {@link Stage}
+ * and {@link Outcome} ordinals, so recording a request does not allocate.
+ */
+@Component
+public class PipelineMetrics {
+
+    /**
+     * The name of the timer with the latency of each stage.
+     */
+    public static final String STAGE_TIMER = "gateway.pipeline.stage";
+
+    /**
+     * The name of the counter with the amount of requests.
+     */
+    public static final String REQUESTS_COUNTER = "gateway.pipeline.requests";
+
+    /**
+     * The route id with which requests that were not routed (e.g preflight or rejected requests) are tagged.
+     */
+    public static final String NO_ROUTE = "none";
+
+    /**
+     * The minimum latency tracked by the histograms.
+     */
+    private static final Duration MINIMUM_EXPECTED_VALUE = Duration.ofNanos(500);
+
+    /**
+     * The maximum latency tracked by the histograms.
+     */
+    private static final Duration MAXIMUM_EXPECTED_VALUE = Duration.ofSeconds(30);
+
+    /**
+     * The {@link Stage}s (cached, as {@link Stage#values()} creates a new array each time).
+     */
+    private static final Stage[] STAGES = Stage.values();
+
+    /**
+     * The {@link Outcome}s (cached, as {@link Outcome#values()} creates a new array each time).
+     */
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+
+    /**
+     * The {@link MeterRegistry} in which meters are registered.
+     */
+    private final MeterRegistry meterRegistry;
+    /**
+     * The {@link RouteMeters} of each route, keyed by route id.
+     */
+    private final Map<String, RouteMeters> routes;
+
+
+    /**
+     * Constructor.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which meters are registered.
+     */
+    @Autowired
+    public PipelineMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.routes = new ConcurrentHashMap<>();
+    }
+
+
+    /**
+     * Records the given {@code timings} of a request.
+     *
+     * @param routeId The id of the route that handled the request (or {@link #NO_ROUTE} if it was not routed).
+     * @param timings The request's {@link StageTimings}.
+     */
+    public void record(final String routeId, final StageTimings timings) {
+        var meters = routes.get(routeId);
+        if (meters == null) {
+            meters = routes.computeIfAbsent(routeId, RouteMeters::new);
+        }
+        meters.record(timings);
+    }
+
+
+    /**
+     * The meters of a route.
+     */
+    private final class RouteMeters {
+
+        /**
+         * The route id.
+         */
+        private final String routeId;
+        /**
+         * The stage {@link Timer}s, indexed by {@link Stage} and {@link Outcome} ordinals
+         * (lazily created; a race might register the same meter twice, which returns the same instance).
+         */
+        private final Timer[][] timers;
+        /**
+         * The requests {@link Counter}s, indexed by {@link Outcome} ordinal (lazily created).
+         */
+        private final Counter[] counters;
+
+
+        /**
+         * Constructor.
+         *
+         * @param routeId The route id.
+         */
+        private RouteMeters(final String routeId) {
+            this.routeId = routeId;
+            this.timers = new Timer[STAGES.length][OUTCOMES.length];
+            this.counters = new Counter[OUTCOMES.length];
+        }
+
+
+        /**
+         * Records the given {@code timings} of a request.
+         *
+         * @param timings The request's {@link StageTimings}.
+         */
+        private void record(final StageTimings timings) {
+            final var outcome = timings.getOutcome();
+            for (final var stage : STAGES) {
+                if (timings.isExecuted(stage)) {
+                    timer(stage, outcome).record(timings.getNanos(stage), TimeUnit.NANOSECONDS);
+                }
+            }
+            counter(outcome).increment();
+        }
+
+        /**
+         * Returns the {@link Timer} of the given {@code stage} and {@code outcome}, creating it if needed.
+         *
+         * @param stage   The {@link Stage}.
+         * @param outcome The {@link Outcome}.
+         * @return The {@link Timer}.
+         */
+        private Timer timer(final Stage stage, final Outcome outcome) {
+            var timer = timers[stage.ordinal()][outcome.ordinal()];
+            if (timer == null) {
+                timer = Timer.builder(STAGE_TIMER)
+                        .description("Latency of each stage a request goes through in the gateway")
+                        .tag("route", routeId)
+                        .tag("stage", stage.getTag())
+                        .tag("outcome", outcome.getTag())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MINIMUM_EXPECTED_VALUE)
+                        .maximumExpectedValue(MAXIMUM_EXPECTED_VALUE)
+                        .register(meterRegistry);
+                timers[stage.ordinal()][outcome.ordinal()] = timer;
+            }
+            return timer;
+        }
+
+        /**
+         * Returns the requests {@link Counter} of the given {@code outcome}, creating it if needed.
+         *
+         * @param outcome The {@link Outcome}.
+         * @return The {@link Counter}.
+         */
+        private Counter counter(final Outcome outcome) {
+            var counter = counters[outcome.ordinal()];
+            if (counter == null) {
+                counter = Counter.builder(REQUESTS_COUNTER)
+                        .description("Amount of requests handled by the gateway")
+                        .tag("route", routeId)
+                        .tag("outcome", outcome.getTag())
+                        .register(meterRegistry);
+                counters[outcome.ordinal()] = counter;
+            }
+            return counter;
+        }
+    }
+}
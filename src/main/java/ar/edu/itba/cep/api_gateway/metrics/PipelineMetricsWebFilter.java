@@ -0,0 +1,67 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Optional;
+
+/**
+ * A {@link WebFilter} that creates the {@link StageTimings} of each request, and records them with the
+ * {@link PipelineMetrics} once the request is completed (when the route that handled it is known).
+ * It runs before any other filter (including the security ones).
+ */
+@Component
+public class PipelineMetricsWebFilter implements WebFilter, Ordered {
+
+    /**
+     * The {@link PipelineMetrics} in which requests are recorded.
+     */
+    private final PipelineMetrics pipelineMetrics;
+
+
+    /**
+     * Constructor.
+     *
+     * @param pipelineMetrics The {@link PipelineMetrics} in which requests are recorded.
+     */
+    @Autowired
+    public PipelineMetricsWebFilter(final PipelineMetrics pipelineMetrics) {
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var timings = new StageTimings();
+        exchange.getAttributes().put(StageTimings.ATTRIBUTE, timings);
+        return chain.filter(exchange)
+                .subscriberContext(Context.of(StageTimings.class, timings))
+                .doFinally(ignored -> pipelineMetrics.record(routeId(exchange), timings));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+
+    /**
+     * Returns the id of the route that handled the request in the given {@code exchange}.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @return The route id, or {@link PipelineMetrics#NO_ROUTE} if the request was not routed.
+     */
+    private static String routeId(final ServerWebExchange exchange) {
+        return Optional.ofNullable(exchange.<Route>getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR))
+                .map(Route::getId)
+                .orElse(PipelineMetrics.NO_ROUTE);
+    }
+}
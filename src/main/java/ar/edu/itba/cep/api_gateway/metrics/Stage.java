@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+/**
+ * The stages a request goes through in the gateway, whose latency is measured.
+ */
+public enum Stage {
+    /**
+     * Extraction of the bearer token from the request.
+     */
+    EXTRACTION("extraction"),
+    /**
+     * Decoding (and signature verification) of the external token.
+     */
+    DECODING("decoding"),
+    /**
+     * Check of whether the token was revoked.
+     */
+    REVOCATION_CHECK("revocation-check"),
+    /**
+     * Encoding (and signing) of the internal token.
+     */
+    ENCODING("encoding"),
+    /**
+     * CORS processing.
+     */
+    CORS("cors"),
+    /**
+     * Call to the service behind the gateway (until the response headers are received).
+     */
+    UPSTREAM("upstream"),
+    ;
+
+
+    /**
+     * The value with which the stage is tagged.
+     */
+    private final String tag;
+
+
+    /**
+     * Constructor.
+     *
+     * @param tag The value with which the stage is tagged.
+     */
+    Stage(final String tag) {
+        this.tag = tag;
+    }
+
+
+    /**
+     * @return The value with which the stage is tagged.
+     */
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,166 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Holds the time spent by a request in each {@link Stage}, together with its {@link Outcome}.
+ * An instance is created for each request by the {@link PipelineMetricsWebFilter}, which makes it available
+ * both as an exchange attribute (see {@link #of(ServerWebExchange)}) and in the subscriber context
+ * (see {@link #timed(Stage, Mono)}), and records it once the request is completed.
+ * <p>
+ * Stages of a request run one after the other, so no synchronization is needed.
+ */
+public final class StageTimings {
+
+    /**
+     * The exchange attribute in which the {@link StageTimings} of a request is stored.
+     */
+    /* package */ static final String ATTRIBUTE = StageTimings.class.getName();
+
+    /**
+     * A {@link StageTimings} to be used when a request is not being measured (ignores all the measurements).
+     */
+    private static final StageTimings NONE = new StageTimings();
+
+
+    /**
+     * The time spent in each {@link Stage}, in nanoseconds (indexed by ordinal).
+     */
+    private final long[] nanos;
+    /**
+     * A bit mask with the {@link Stage}s the request went through (i.e the bit of each stage's ordinal is set).
+     */
+    private int executed;
+    /**
+     * The request's {@link Outcome}.
+     */
+    private Outcome outcome;
+
+
+    /**
+     * Constructor.
+     */
+    /* package */ StageTimings() {
+        this.nanos = new long[Stage.values().length];
+        this.executed = 0;
+        this.outcome = Outcome.OK;
+    }
+
+
+    /**
+     * Adds the given amount of time to the given {@code stage}.
+     *
+     * @param stage        The {@link Stage}.
+     * @param elapsedNanos The amount of time, in nanoseconds.
+     */
+    public void add(final Stage stage, final long elapsedNanos) {
+        if (this == NONE) {
+            return;
+        }
+        nanos[stage.ordinal()] += elapsedNanos;
+        executed |= 1 << stage.ordinal();
+    }
+
+    /**
+     * Sets the request's {@link Outcome}.
+     *
+     * @param outcome The {@link Outcome}.
+     */
+    public void setOutcome(final Outcome outcome) {
+        if (this == NONE) {
+            return;
+        }
+        this.outcome = outcome;
+    }
+
+    /**
+     * Measures the time from the subscription to the given {@code mono} until it terminates,
+     * adding it to the given {@code stage}. The time is added before the termination is propagated downstream,
+     * so it is not affected by (and it is already recorded when) the rest of the pipeline runs.
+     *
+     * @param stage The {@link Stage}.
+     * @param mono  The {@link Mono} to be measured.
+     * @param <T>   The type of element emitted by the {@link Mono}.
+     * @return A {@link Mono} that behaves like the given one, but measures it.
+     */
+    public <T> Mono<T> time(final Stage stage, final Mono<T> mono) {
+        if (this == NONE) {
+            return mono;
+        }
+        return Mono.defer(() -> {
+            final var startTime = System.nanoTime();
+            return mono
+                    .doOnSuccess(ignored -> add(stage, System.nanoTime() - startTime))
+                    .doOnError(ignored -> add(stage, System.nanoTime() - startTime));
+        });
+    }
+
+    /**
+     * Indicates whether the request went through the given {@code stage}.
+     *
+     * @param stage The {@link Stage}.
+     * @return {@code true} if the request went through the stage, or {@code false} otherwise.
+     */
+    /* package */ boolean isExecuted(final Stage stage) {
+        return (executed & (1 << stage.ordinal())) != 0;
+    }
+
+    /**
+     * @param stage The {@link Stage}.
+     * @return The time spent in the given {@code stage}, in nanoseconds.
+     */
+    /* package */ long getNanos(final Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    /**
+     * @return The request's {@link Outcome}.
+     */
+    /* package */ Outcome getOutcome() {
+        return outcome;
+    }
+
+
+    /**
+     * Returns the {@link StageTimings} of the request in the given {@code exchange}.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @return The {@link StageTimings}, or one that ignores all measurements if the request is not being measured.
+     */
+    public static StageTimings of(final ServerWebExchange exchange) {
+        return exchange.getAttributeOrDefault(ATTRIBUTE, NONE);
+    }
+
+    /**
+     * Measures the given {@code mono} (see {@link #time(Stage, Mono)}), using the {@link StageTimings}
+     * in the subscriber context (for components that have no access to the exchange).
+     *
+     * @param stage The {@link Stage}.
+     * @param mono  The {@link Mono} to be measured.
+     * @param <T>   The type of element emitted by the {@link Mono}.
+     * @return A {@link Mono} that behaves like the given one, but measures it.
+     */
+    public static <T> Mono<T> timed(final Stage stage, final Mono<T> mono) {
+        return fromContext().flatMap(timings -> timings.time(stage, mono));
+    }
+
+    /**
+     * Sets the given {@code outcome} to the {@link StageTimings} in the subscriber context
+     * (for components that have no access to the exchange).
+     *
+     * @param outcome The {@link Outcome}.
+     * @return A {@link Mono} that completes once the outcome is set.
+     */
+    public static Mono<Void> outcome(final Outcome outcome) {
+        return fromContext().doOnNext(timings -> timings.setOutcome(outcome)).then();
+    }
+
+    /**
+     * @return A {@link Mono} with the {@link StageTimings} in the subscriber context
+     * (or one that ignores all measurements if the request is not being measured).
+     */
+    private static Mono<StageTimings> fromContext() {
+        return Mono.subscriberContext().map(context -> context.getOrDefault(StageTimings.class, NONE));
+    }
+}
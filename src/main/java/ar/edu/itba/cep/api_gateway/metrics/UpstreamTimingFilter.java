@@ -0,0 +1,39 @@
+package ar.edu.itba.cep.api_gateway.metrics;
+
+import ar.edu.itba.cep.api_gateway.websocket.WebSocketRequests;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link GlobalFilter} that measures the {@link Stage#UPSTREAM} stage.
+ * It runs right before the routing filters (i.e the {@link NettyRoutingFilter}, and the h2c one, if enabled),
+ * which complete once the response headers are received (the response body is streamed afterwards).
+ * WebSocket handshakes are not measured, as their chain completes once the session is closed.
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The order of this filter (right before the routing filters, which run at the lowest precedences).
+     */
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 3;
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        if (WebSocketRequests.isHandshake(exchange.getRequest())) {
+            return chain.filter(exchange);
+        }
+        return StageTimings.of(exchange).time(Stage.UPSTREAM, chain.filter(exchange));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,85 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+
+/**
+ * Configuration class for rate limiting requests.
+ * Only enabled if the {@code rate-limit.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(prefix = "rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    /**
+     * Creates the {@link RateLimitFilter}, with the {@link TokenBuckets} of each configured route.
+     *
+     * @param rateLimitProperties The {@link RateLimitProperties} from where configuration values are taken.
+     * @param meterRegistry       The {@link MeterRegistry} to which the rate limiting statistics are reported.
+     * @return The {@link RateLimitFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its limits are not valid,
+     *                                  or the amount of trusted proxies is negative.
+     */
+    @Bean
+    /* package */ RateLimitFilter rateLimitFilter(
+            final RateLimitProperties rateLimitProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var buckets = new HashMap<String, TokenBuckets>();
+        rateLimitProperties.getRoutes().forEach((routeId, limitProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            buckets.put(routeId, new TokenBuckets(
+                    "rate-limit." + routeId,
+                    limitProperties.getBurstCapacity(),
+                    limitProperties.getReplenishRate(),
+                    limitProperties.getReplenishPeriod(),
+                    rateLimitProperties.getIdleTimeout(),
+                    rateLimitProperties.getMaximumKeys(),
+                    meterRegistry
+            ));
+        });
+        final var trustedProxies = rateLimitProperties.getTrustedProxies();
+        Assert.isTrue(trustedProxies >= 0, "The amount of trusted proxies must not be negative");
+        final RemoteAddressResolver remoteAddressResolver = trustedProxies == 0
+                ? new RemoteAddressResolver() { /* Uses the address of the connection */ }
+                : XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies);
+        return new RateLimitFilter(buckets, remoteAddressResolver, meterRegistry);
+    }
+
+    /**
+     * Creates the {@link ReplicaCountMonitor} that shares the limits between the gateway replicas.
+     * Only created if the {@code rate-limit.cluster.enabled} property is {@code true},
+     * in which case it is always created on startup (so the replicas are counted before the first request).
+     *
+     * @param discoveryClient     The {@link DiscoveryClient} used to find the replicas.
+     * @param rateLimitFilter     The {@link RateLimitFilter} whose limits are shared.
+     * @param rateLimitProperties The {@link RateLimitProperties} from where configuration values are taken.
+     * @return The {@link ReplicaCountMonitor} bean.
+     */
+    @Bean
+    @Lazy(false)
+    @ConditionalOnProperty(prefix = "rate-limit.cluster", name = "enabled", havingValue = "true")
+    /* package */ ReplicaCountMonitor replicaCountMonitor(
+            final DiscoveryClient discoveryClient,
+            final RateLimitFilter rateLimitFilter,
+            final RateLimitProperties rateLimitProperties) {
+        final var clusterProperties = rateLimitProperties.getCluster();
+        return new ReplicaCountMonitor(
+                discoveryClient,
+                clusterProperties.getServiceId(),
+                clusterProperties.getRefreshInterval(),
+                rateLimitFilter
+        );
+    }
+}
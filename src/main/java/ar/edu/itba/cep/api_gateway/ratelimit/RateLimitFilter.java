@@ -0,0 +1,179 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link GlobalFilter} that limits the rate of requests of each user (or each client address, for anonymous
+ * requests) to the routes with configured limits, using the {@link TokenBuckets} of each route.
+ * The client address is taken through a {@link RemoteAddressResolver}, so the address forwarded by a trusted proxy
+ * (e.g the load balancer in front of the gateway) can be used instead of the proxy's own address.
+ * Rejected requests get a 429 Too Many Requests response, with a 'Retry-After' header.
+ * It runs before any other global filter, so rejected requests do not pay for them (e.g the token encoding).
+ */
+/* package */ class RateLimitFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The key used for anonymous requests whose client address is not known.
+     */
+    private static final Object UNKNOWN_ADDRESS = new Object();
+
+
+    /**
+     * The {@link RouteLimiter} of each rate limited route, keyed by route id.
+     */
+    private final Map<String, RouteLimiter> limiters;
+    /**
+     * The {@link RemoteAddressResolver} used to get the client address of anonymous requests.
+     */
+    private final RemoteAddressResolver remoteAddressResolver;
+
+
+    /**
+     * Constructor.
+     *
+     * @param buckets               The {@link TokenBuckets} of each rate limited route, keyed by route id.
+     * @param remoteAddressResolver The {@link RemoteAddressResolver} used to get the client address
+     *                              of anonymous requests.
+     * @param meterRegistry         The {@link MeterRegistry} to which rejected requests are reported.
+     */
+    /* package */ RateLimitFilter(
+            final Map<String, TokenBuckets> buckets,
+            final RemoteAddressResolver remoteAddressResolver,
+            final MeterRegistry meterRegistry) {
+        this.remoteAddressResolver = remoteAddressResolver;
+        this.limiters = buckets.entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey,
+                        entry -> new RouteLimiter(
+                                entry.getValue(),
+                                meterRegistry.counter("gateway.rate-limit.rejected", "route", entry.getKey())
+                        )
+                ));
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var limiter = route == null ? null : limiters.get(route.getId());
+        if (limiter == null) {
+            return chain.filter(exchange);
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(BearerTokenAuthentication.class::isInstance)
+                .map(authentication -> (Object) ((BearerTokenAuthentication) authentication).getUsername())
+                .switchIfEmpty(Mono.fromSupplier(() -> clientAddress(exchange)))
+                .flatMap(key -> {
+                    final var wait = limiter.buckets.tryAcquire(key);
+                    return wait == 0 ? chain.filter(exchange) : reject(exchange, limiter, wait);
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    /**
+     * Sets the amount of replicas sharing the limits (see {@link TokenBuckets#setReplicas(int)}).
+     *
+     * @param replicas The amount of replicas.
+     */
+    /* package */ void setReplicas(final int replicas) {
+        limiters.values().forEach(limiter -> limiter.buckets.setReplicas(replicas));
+    }
+
+
+    /**
+     * Rejects the request in the given {@code exchange} with a 429 Too Many Requests response.
+     *
+     * @param exchange  The {@link ServerWebExchange} with the rejected request.
+     * @param limiter   The {@link RouteLimiter} that rejected the request.
+     * @param waitNanos The amount of nanoseconds until a token is available.
+     * @return A {@link Mono} that completes once the response is sent.
+     */
+    private static Mono<Void> reject(
+            final ServerWebExchange exchange,
+            final RouteLimiter limiter,
+            final long waitNanos) {
+        limiter.rejected.increment();
+        final var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds(waitNanos)));
+        return response.setComplete();
+    }
+
+    /**
+     * Returns the value of the 'Retry-After' header for the given wait, rounded up,
+     * as the header only accepts seconds (so clients never retry before a token is available).
+     *
+     * @param waitNanos The amount of nanoseconds until a token is available.
+     * @return The amount of seconds.
+     */
+    /* package */ static long retryAfterSeconds(final long waitNanos) {
+        return (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns the client address of the request in the given {@code exchange}, used as key for anonymous requests.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @return The client address (as a string), or {@link #UNKNOWN_ADDRESS} if it is not known.
+     */
+    private Object clientAddress(final ServerWebExchange exchange) {
+        return Optional.ofNullable(remoteAddressResolver.resolve(exchange))
+                .map(InetSocketAddress::getHostString)
+                .<Object>map(address -> address)
+                .orElse(UNKNOWN_ADDRESS);
+    }
+
+
+    /**
+     * The rate limiting state of a route.
+     */
+    private static final class RouteLimiter {
+
+        /**
+         * The route's {@link TokenBuckets}.
+         */
+        private final TokenBuckets buckets;
+        /**
+         * The {@link Counter} of rejected requests.
+         */
+        private final Counter rejected;
+
+
+        /**
+         * Constructor.
+         *
+         * @param buckets  The route's {@link TokenBuckets}.
+         * @param rejected The {@link Counter} of rejected requests.
+         */
+        private RouteLimiter(final TokenBuckets buckets, final Counter rejected) {
+            this.buckets = buckets;
+            this.rejected = rejected;
+        }
+    }
+}
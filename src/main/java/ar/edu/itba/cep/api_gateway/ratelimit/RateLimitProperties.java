@@ -0,0 +1,92 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties for configuring the rate limiting of requests.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "rate-limit")
+/* package */ class RateLimitProperties {
+
+    /**
+     * Whether requests are rate limited.
+     */
+    private boolean enabled = true;
+    /**
+     * The amount of time a key (i.e a user or a client address) is kept after its last request
+     * (it is kept at least until its bucket is full again, so evicting it does not change the limits).
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    /**
+     * The maximum amount of keys held for each route (if exceeded, the least used ones are evicted).
+     */
+    private long maximumKeys = 1_000_000;
+    /**
+     * The amount of trusted proxies in front of the gateway (e.g the load balancer), which append the address
+     * they received the request from to the 'X-Forwarded-For' header. The client address of anonymous requests is
+     * taken from that header, skipping the addresses appended by them ({@code 0} to use the connection's address).
+     * Only the addresses appended by trusted proxies are used, so clients can not choose their own key.
+     */
+    private int trustedProxies = 0;
+    /**
+     * The limits of each route, keyed by route id (routes without limits are not rate limited).
+     */
+    private Map<String, LimitProperties> routes = new HashMap<>();
+    /**
+     * The cluster properties.
+     */
+    @NestedConfigurationProperty
+    private ClusterProperties cluster = new ClusterProperties();
+
+
+    /**
+     * Properties for the limits of a route (i.e a token bucket for each key).
+     */
+    @Getter
+    @Setter
+    /* package */ static final class LimitProperties {
+
+        /**
+         * The maximum amount of requests a key can perform in a burst (i.e the bucket capacity).
+         */
+        private int burstCapacity = 10;
+        /**
+         * The amount of requests a key is allowed to perform in each replenish period.
+         */
+        private int replenishRate = 1;
+        /**
+         * The period in which the replenish rate is given.
+         */
+        private Duration replenishPeriod = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Properties for sharing the limits between the gateway replicas.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class ClusterProperties {
+
+        /**
+         * Whether the limits are shared between the replicas (i.e each replica enforces its share of the limits).
+         */
+        private boolean enabled = false;
+        /**
+         * The service id with which the replicas are registered in the discovery service.
+         */
+        private String serviceId = "api-gateway";
+        /**
+         * How often the amount of replicas is checked.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(30);
+    }
+}
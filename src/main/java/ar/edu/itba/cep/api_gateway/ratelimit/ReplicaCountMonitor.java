@@ -0,0 +1,77 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Periodically checks (using a {@link DiscoveryClient}) how many gateway replicas are running,
+ * so the {@link RateLimitFilter} enforces this replica's share of the limits.
+ * <p>
+ * This approximates cluster wide limits without any communication between replicas,
+ * assuming requests are evenly balanced between them.
+ */
+/* package */ class ReplicaCountMonitor implements InitializingBean, DisposableBean {
+
+    /**
+     * The {@link DiscoveryClient} used to find the replicas.
+     */
+    private final DiscoveryClient discoveryClient;
+    /**
+     * The service id with which the replicas are registered.
+     */
+    private final String serviceId;
+    /**
+     * How often the amount of replicas is checked.
+     */
+    private final Duration refreshInterval;
+    /**
+     * The {@link RateLimitFilter} whose limits are shared.
+     */
+    private final RateLimitFilter rateLimitFilter;
+    /**
+     * The periodic task, once started.
+     */
+    private Disposable task;
+
+
+    /**
+     * Constructor.
+     *
+     * @param discoveryClient The {@link DiscoveryClient} used to find the replicas.
+     * @param serviceId       The service id with which the replicas are registered.
+     * @param refreshInterval How often the amount of replicas is checked.
+     * @param rateLimitFilter The {@link RateLimitFilter} whose limits are shared.
+     */
+    /* package */ ReplicaCountMonitor(
+            final DiscoveryClient discoveryClient,
+            final String serviceId,
+            final Duration refreshInterval,
+            final RateLimitFilter rateLimitFilter) {
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+        this.refreshInterval = refreshInterval;
+        this.rateLimitFilter = rateLimitFilter;
+    }
+
+
+    @Override
+    public void afterPropertiesSet() {
+        this.task = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(ignored -> Mono.fromCallable(() -> discoveryClient.getInstances(serviceId).size())
+                        .onErrorResume(error -> Mono.empty())) // Keep the last known amount
+                .distinctUntilChanged()
+                .subscribe(rateLimitFilter::setReplicas);
+    }
+
+    @Override
+    public void destroy() {
+        task.dispose();
+    }
+}
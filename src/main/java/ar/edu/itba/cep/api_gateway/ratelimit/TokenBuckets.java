@@ -0,0 +1,171 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The token buckets of a route, one for each key (i.e a user or a client address).
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the instant in which the bucket will be full again
+ * (i.e the generic cell rate algorithm), which is updated with a compare-and-set, so acquiring a token is lock-free
+ * and does not allocate (besides creating the bucket the first time a key is seen).
+ * Buckets are held in a {@link Cache} that evicts them once they are idle for the idle timeout,
+ * which is never shorter than the time needed to fill a bucket, so an evicted bucket is always a full one.
+ */
+/* package */ final class TokenBuckets {
+
+    /**
+     * The value of a bucket that has never been used (i.e it is full).
+     */
+    private static final long FULL = Long.MIN_VALUE;
+
+    /**
+     * The {@link Function} used to create the bucket of a new key.
+     */
+    private static final Function<Object, AtomicLong> NEW_BUCKET = ignored -> new AtomicLong(FULL);
+
+
+    /**
+     * The maximum amount of requests a key can perform in a burst.
+     */
+    private final int burstCapacity;
+    /**
+     * The time, in nanoseconds, that takes to replenish one token.
+     */
+    private final long emissionIntervalNanos;
+    /**
+     * The {@link Limit} currently enforced (i.e this replica's share of the route limits).
+     */
+    private volatile Limit limit;
+    /**
+     * The buckets, keyed by user or client address.
+     */
+    private final Cache<Object, AtomicLong> buckets;
+
+
+    /**
+     * Constructor.
+     *
+     * @param name            The name of the buckets (used to report metrics).
+     * @param burstCapacity   The maximum amount of requests a key can perform in a burst.
+     * @param replenishRate   The amount of requests a key is allowed to perform in each replenish period.
+     * @param replenishPeriod The period in which the replenish rate is given.
+     * @param idleTimeout     The amount of time a key is kept after its last request.
+     * @param maximumKeys     The maximum amount of keys held.
+     * @param meterRegistry   The {@link MeterRegistry} to which the buckets statistics are reported.
+     * @throws IllegalArgumentException If the limits are not valid.
+     */
+    /* package */ TokenBuckets(
+            final String name,
+            final int burstCapacity,
+            final int replenishRate,
+            final Duration replenishPeriod,
+            final Duration idleTimeout,
+            final long maximumKeys,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        Assert.isTrue(burstCapacity > 0, "The burst capacity must be positive");
+        Assert.isTrue(replenishRate > 0, "The replenish rate must be positive");
+        Assert.isTrue(!replenishPeriod.isNegative() && !replenishPeriod.isZero(),
+                "The replenish period must be positive");
+        this.burstCapacity = burstCapacity;
+        this.emissionIntervalNanos = Math.max(replenishPeriod.toNanos() / replenishRate, 1);
+        this.limit = new Limit(emissionIntervalNanos, burstCapacity);
+        final var fillTime = Duration.ofNanos(emissionIntervalNanos * burstCapacity);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(idleTimeout.compareTo(fillTime) >= 0 ? idleTimeout : fillTime)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, name);
+    }
+
+
+    /**
+     * Tries to acquire a token from the bucket of the given {@code key}.
+     *
+     * @param key The key (i.e a user or a client address).
+     * @return Zero if the token was acquired, or the amount of nanoseconds to wait until a token is available.
+     */
+    /* package */ long tryAcquire(final Object key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    /**
+     * Tries to acquire a token from the bucket of the given {@code key}, at the given instant.
+     *
+     * @param key The key (i.e a user or a client address).
+     * @param now The current instant, as given by {@link System#nanoTime()}.
+     * @return Zero if the token was acquired, or the amount of nanoseconds to wait until a token is available.
+     */
+    /* package */ long tryAcquire(final Object key, final long now) {
+        final var bucket = buckets.get(key, NEW_BUCKET);
+        final var limit = this.limit;
+        while (true) {
+            final var fullAt = bucket.get();
+            final var start = fullAt == FULL || fullAt - now < 0 ? now : fullAt;
+            final var newFullAt = start + limit.emissionIntervalNanos;
+            final var wait = newFullAt - now - limit.toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Sets the amount of replicas sharing the limits, so this replica enforces its share
+     * (i.e the replenish rate and the burst capacity are divided by the amount of replicas).
+     *
+     * @param replicas The amount of replicas.
+     */
+    /* package */ void setReplicas(final int replicas) {
+        final var share = Math.max(replicas, 1);
+        this.limit = new Limit(emissionIntervalNanos * share, Math.max(burstCapacity / share, 1));
+    }
+
+    /**
+     * Returns the amount of keys currently held.
+     *
+     * @return The amount of keys.
+     */
+    /* package */ long size() {
+        return buckets.estimatedSize();
+    }
+
+
+    /**
+     * The limit enforced by the buckets.
+     */
+    private static final class Limit {
+
+        /**
+         * The time, in nanoseconds, that takes to replenish one token.
+         */
+        private final long emissionIntervalNanos;
+        /**
+         * How far in the future, in nanoseconds, a bucket can be full again (i.e the time to fill an empty bucket).
+         */
+        private final long toleranceNanos;
+
+
+        /**
+         * Constructor.
+         *
+         * @param emissionIntervalNanos The time, in nanoseconds, that takes to replenish one token.
+         * @param burstCapacity         The maximum amount of requests in a burst.
+         */
+        private Limit(final long emissionIntervalNanos, final int burstCapacity) {
+            this.emissionIntervalNanos = emissionIntervalNanos;
+            this.toleranceNanos = emissionIntervalNanos * burstCapacity;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bulkhead that caps the amount of concurrent requests to a route, so a slow upstream service
+ * can not pile up requests in the gateway and starve the other routes.
+ * Acquiring and releasing a permit is lock-free.
+ */
+/* package */ final class Bulkhead {
+
+    /**
+     * The maximum amount of concurrent requests.
+     */
+    private final int maxConcurrentRequests;
+    /**
+     * The amount of requests currently in flight.
+     */
+    private final AtomicInteger inFlight;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxConcurrentRequests The maximum amount of concurrent requests.
+     * @throws IllegalArgumentException If the maximum amount of concurrent requests is not positive.
+     */
+    /* package */ Bulkhead(final int maxConcurrentRequests) throws IllegalArgumentException {
+        Assert.isTrue(maxConcurrentRequests > 0, "The maximum amount of concurrent requests must be positive");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.inFlight = new AtomicInteger(0);
+    }
+
+
+    /**
+     * Tries to acquire a permit for a request.
+     *
+     * @return {@code true} if the permit was acquired (and must be released with {@link #release()}),
+     * or {@code false} if the bulkhead is full.
+     */
+    /* package */ boolean tryAcquire() {
+        while (true) {
+            final var current = inFlight.get();
+            if (current >= maxConcurrentRequests) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit acquired with {@link #tryAcquire()}.
+     */
+    /* package */ void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Returns the amount of requests currently in flight.
+     *
+     * @return The amount of requests.
+     */
+    /* package */ int inFlight() {
+        return inFlight.get();
+    }
+}
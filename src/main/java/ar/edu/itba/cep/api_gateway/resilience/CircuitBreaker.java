@@ -0,0 +1,355 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * A circuit breaker that opens when the failure rate or the slow call rate of the recorded calls
+ * exceed their thresholds, failing fast until the open duration elapses.
+ * Then it becomes half-open, letting a few probe calls through, whose rates decide
+ * whether it is closed again, or opened again.
+ * <p>
+ * While closed, outcomes are recorded in a count based sliding window.
+ * Each transition starts a new epoch, and outcomes are only recorded if the call was permitted in the current one,
+ * so calls that were in flight during a transition do not affect the new state.
+ * Checking whether a call is permitted while closed does not lock (only recording outcomes and transitions do).
+ */
+/* package */ final class CircuitBreaker {
+
+    /**
+     * The value returned by {@link #tryAcquire(long)} when a call is not permitted.
+     */
+    /* package */ static final long REJECTED = -1;
+
+    /**
+     * Outcome flag of a failed call.
+     */
+    private static final byte FAILURE = 1;
+    /**
+     * Outcome flag of a slow call.
+     */
+    private static final byte SLOW = 2;
+
+
+    /**
+     * The amount of calls in the sliding window.
+     */
+    private final int slidingWindowSize;
+    /**
+     * The minimum amount of recorded calls before the rates are calculated.
+     */
+    private final int minimumCalls;
+    /**
+     * The failure rate (in percentage) from which the circuit is opened.
+     */
+    private final float failureRateThreshold;
+    /**
+     * The slow call rate (in percentage) from which the circuit is opened.
+     */
+    private final float slowCallRateThreshold;
+    /**
+     * The amount of nanoseconds from which a call is considered slow.
+     */
+    private final long slowCallNanos;
+    /**
+     * The amount of nanoseconds the circuit stays open.
+     */
+    private final long openNanos;
+    /**
+     * The amount of probe calls permitted while half-open.
+     */
+    private final int halfOpenCalls;
+
+    /**
+     * The outcomes of the calls in the sliding window (a ring buffer of outcome flags).
+     */
+    private final byte[] window;
+    /**
+     * The position in the {@link #window} in which the next outcome is recorded.
+     */
+    private int windowIndex;
+    /**
+     * The amount of calls recorded (in the sliding window while closed, or the probe calls while half-open).
+     */
+    private int calls;
+    /**
+     * The amount of failed calls recorded.
+     */
+    private int failures;
+    /**
+     * The amount of slow calls recorded.
+     */
+    private int slowCalls;
+    /**
+     * The amount of probe calls permitted in the current half-open epoch.
+     */
+    private int permittedProbes;
+    /**
+     * The instant (in {@link System#nanoTime()} terms) in which the circuit can become half-open.
+     */
+    private long openUntil;
+
+    /**
+     * The current {@link State}.
+     */
+    private volatile State state;
+    /**
+     * The current epoch (incremented with each transition).
+     */
+    private volatile long epoch;
+
+
+    /**
+     * Constructor.
+     *
+     * @param slidingWindowSize     The amount of calls in the sliding window.
+     * @param minimumCalls          The minimum amount of recorded calls before the rates are calculated.
+     * @param failureRateThreshold  The failure rate (in percentage) from which the circuit is opened.
+     * @param slowCallRateThreshold The slow call rate (in percentage) from which the circuit is opened.
+     * @param slowCallDuration      The duration from which a call is considered slow.
+     * @param openDuration          The amount of time the circuit stays open.
+     * @param halfOpenCalls         The amount of probe calls permitted while half-open.
+     * @throws IllegalArgumentException If any of the values is not valid.
+     */
+    /* package */ CircuitBreaker(
+            final int slidingWindowSize,
+            final int minimumCalls,
+            final float failureRateThreshold,
+            final float slowCallRateThreshold,
+            final Duration slowCallDuration,
+            final Duration openDuration,
+            final int halfOpenCalls) throws IllegalArgumentException {
+        Assert.isTrue(slidingWindowSize > 0, "The sliding window size must be positive");
+        Assert.isTrue(minimumCalls > 0 && minimumCalls <= slidingWindowSize,
+                "The minimum amount of calls must be positive, and not greater than the sliding window size");
+        Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100,
+                "The failure rate threshold must be in the (0, 100] range");
+        Assert.isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+                "The slow call rate threshold must be in the (0, 100] range");
+        Assert.isTrue(!slowCallDuration.isNegative() && !slowCallDuration.isZero(),
+                "The slow call duration must be positive");
+        Assert.isTrue(!openDuration.isNegative() && !openDuration.isZero(), "The open duration must be positive");
+        Assert.isTrue(halfOpenCalls > 0, "The amount of half-open calls must be positive");
+        this.slidingWindowSize = slidingWindowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallDuration.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.window = new byte[slidingWindowSize];
+        this.state = State.CLOSED;
+        this.epoch = 0;
+    }
+
+
+    /**
+     * Returns the current {@link State}.
+     *
+     * @return The state.
+     */
+    /* package */ State getState() {
+        return state;
+    }
+
+    /**
+     * Tries to acquire a permission to perform a call.
+     *
+     * @param now The current instant (in {@link System#nanoTime()} terms).
+     * @return The epoch in which the call is permitted (to be used when recording its outcome),
+     * or {@link #REJECTED} if the call is not permitted.
+     */
+    /* package */ long tryAcquire(final long now) {
+        final var currentEpoch = this.epoch; // Read before the state, so a transition in between is detected
+        if (state == State.CLOSED) {
+            return currentEpoch;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (openUntil - now > 0) {
+                    return REJECTED;
+                }
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (permittedProbes >= halfOpenCalls) {
+                    return REJECTED;
+                }
+                permittedProbes++;
+            }
+            return epoch;
+        }
+    }
+
+    /**
+     * Returns the amount of nanoseconds until the circuit can become half-open.
+     *
+     * @param now The current instant (in {@link System#nanoTime()} terms).
+     * @return The amount of nanoseconds (zero if the circuit is not open, or it can already become half-open).
+     */
+    /* package */ synchronized long remainingOpenNanos(final long now) {
+        return state == State.OPEN ? Math.max(openUntil - now, 0) : 0;
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param callEpoch The epoch in which the call was permitted.
+     * @param failed    Whether the call failed.
+     * @param nanos     The duration of the call, in nanoseconds.
+     * @param now       The current instant (in {@link System#nanoTime()} terms).
+     */
+    /* package */ synchronized void onResult(
+            final long callEpoch,
+            final boolean failed,
+            final long nanos,
+            final long now) {
+        if (callEpoch != epoch || state == State.OPEN) {
+            return;
+        }
+        final var outcome = (byte) ((failed ? FAILURE : 0) | (nanos >= slowCallNanos ? SLOW : 0));
+        if (state == State.CLOSED) {
+            if (calls == slidingWindowSize) {
+                forget(window[windowIndex]);
+            } else {
+                calls++;
+            }
+            window[windowIndex] = outcome;
+            windowIndex = (windowIndex + 1) % slidingWindowSize;
+            count(outcome);
+            if (calls >= minimumCalls && exceedsThresholds()) {
+                open(now);
+            }
+            return;
+        }
+        calls++;
+        count(outcome);
+        if (calls >= halfOpenCalls) {
+            if (exceedsThresholds()) {
+                open(now);
+            } else {
+                transitionTo(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Releases the permission of a call that completed without an outcome (e.g it was cancelled),
+     * so another probe call can be let through if half-open.
+     *
+     * @param callEpoch The epoch in which the call was permitted.
+     */
+    /* package */ synchronized void onCancel(final long callEpoch) {
+        if (callEpoch == epoch && state == State.HALF_OPEN && permittedProbes > 0) {
+            permittedProbes--;
+        }
+    }
+
+
+    /**
+     * Opens the circuit.
+     *
+     * @param now The current instant (in {@link System#nanoTime()} terms).
+     */
+    private void open(final long now) {
+        this.openUntil = now + openNanos;
+        transitionTo(State.OPEN);
+    }
+
+    /**
+     * Transitions to the given {@code newState}, starting a new epoch with no recorded calls.
+     *
+     * @param newState The new {@link State}.
+     */
+    private void transitionTo(final State newState) {
+        this.windowIndex = 0;
+        this.calls = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+        this.permittedProbes = 0;
+        this.state = newState;
+        this.epoch = epoch + 1;
+    }
+
+    /**
+     * Checks whether the failure rate or the slow call rate of the recorded calls exceed their thresholds.
+     *
+     * @return {@code true} if any of the thresholds is exceeded, or {@code false} otherwise.
+     */
+    private boolean exceedsThresholds() {
+        return failures * 100f / calls >= failureRateThreshold || slowCalls * 100f / calls >= slowCallRateThreshold;
+    }
+
+    /**
+     * Counts the given {@code outcome}.
+     *
+     * @param outcome The outcome flags.
+     */
+    private void count(final byte outcome) {
+        if ((outcome & FAILURE) != 0) {
+            failures++;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls++;
+        }
+    }
+
+    /**
+     * Forgets the given {@code outcome} (i.e it leaves the sliding window).
+     *
+     * @param outcome The outcome flags.
+     */
+    private void forget(final byte outcome) {
+        if ((outcome & FAILURE) != 0) {
+            failures--;
+        }
+        if ((outcome & SLOW) != 0) {
+            slowCalls--;
+        }
+    }
+
+
+    /**
+     * The states of a circuit breaker.
+     */
+    /* package */ enum State {
+        /**
+         * Calls are permitted, and their outcomes recorded.
+         */
+        CLOSED("closed"),
+        /**
+         * Calls are rejected.
+         */
+        OPEN("open"),
+        /**
+         * A few probe calls are permitted, whose outcomes decide the next state.
+         */
+        HALF_OPEN("half-open"),
+        ;
+
+
+        /**
+         * The value with which the state is tagged.
+         */
+        private final String tag;
+
+
+        /**
+         * Constructor.
+         *
+         * @param tag The value with which the state is tagged.
+         */
+        State(final String tag) {
+            this.tag = tag;
+        }
+
+
+        /**
+         * @return The value with which the state is tagged.
+         */
+        /* package */ String getTag() {
+            return tag;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+
+/**
+ * Configuration class for protecting the routes with bulkheads and circuit breakers.
+ * Only enabled if the {@code resilience.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+@ConditionalOnProperty(prefix = "resilience", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ResilienceConfig {
+
+    /**
+     * Creates the {@link ResilienceFilter}, with a {@link ResilienceFilter.RouteGuard} for each route
+     * in {@link RoutesConfig#ROUTE_PATHS} (using the default properties for routes without specific ones).
+     *
+     * @param resilienceProperties The {@link ResilienceProperties} from where configuration values are taken.
+     * @param meterRegistry        The {@link MeterRegistry} to which the routes statistics are reported.
+     * @return The {@link ResilienceFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ ResilienceFilter resilienceFilter(
+            final ResilienceProperties resilienceProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        resilienceProperties.getRoutes().keySet().forEach(routeId ->
+                Assert.isTrue(
+                        RoutesConfig.ROUTE_PATHS.containsKey(routeId),
+                        "There is no route with id '" + routeId + "'"
+                )
+        );
+        final var guards = new HashMap<String, ResilienceFilter.RouteGuard>();
+        RoutesConfig.ROUTE_PATHS.keySet().forEach(routeId -> {
+            final var routeProperties = resilienceProperties.getRoutes()
+                    .getOrDefault(routeId, resilienceProperties.getDefaultRoute());
+            final var circuitBreakerProperties = routeProperties.getCircuitBreaker();
+            guards.put(routeId, new ResilienceFilter.RouteGuard(
+                    routeId,
+                    new Bulkhead(routeProperties.getBulkhead().getMaxConcurrentRequests()),
+                    new CircuitBreaker(
+                            circuitBreakerProperties.getSlidingWindowSize(),
+                            circuitBreakerProperties.getMinimumCalls(),
+                            circuitBreakerProperties.getFailureRateThreshold(),
+                            circuitBreakerProperties.getSlowCallRateThreshold(),
+                            circuitBreakerProperties.getSlowCallDuration(),
+                            circuitBreakerProperties.getOpenDuration(),
+                            circuitBreakerProperties.getHalfOpenCalls()
+                    ),
+                    meterRegistry
+            ));
+        });
+        return new ResilienceFilter(guards);
+    }
+}
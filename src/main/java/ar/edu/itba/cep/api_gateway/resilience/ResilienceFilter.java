@@ -0,0 +1,204 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import ar.edu.itba.cep.api_gateway.fanout.FanOutFilter;
+import ar.edu.itba.cep.api_gateway.limits.RequestBodies;
+import ar.edu.itba.cep.api_gateway.websocket.WebSocketRequests;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link GlobalFilter} that protects each route with a {@link Bulkhead} and a {@link CircuitBreaker}.
+ * <p>
+ * Requests rejected by any of them get a 503 Service Unavailable response right away
+ * (with a 'Retry-After' header if the circuit is open). The outcome of the other requests is recorded
+ * once their response is committed: a 5xx status (or an error before committing) is a failure,
+ * and the time until then decides whether the call was slow.
+ * It runs after the response cache, the coalescing and the event stream fan-out, so cached and coalesced requests
+ * are still served (and do not take a bulkhead permit, nor do clients joining a shared event stream),
+ * and before the token translation, so rejected requests do not pay for it.
+ * WebSocket handshakes do not take a bulkhead permit either, as they would hold it for the whole session
+ * (sessions are limited by the WebSocket relay instead), but their outcome is still recorded.
+ * Requests rejected for having a too large body are not recorded, as they say nothing about the service.
+ */
+/* package */ class ResilienceFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The order of this filter.
+     */
+    /* package */ static final int ORDER = FanOutFilter.ORDER + 1;
+
+
+    /**
+     * The {@link RouteGuard} of each route, keyed by route id.
+     */
+    private final Map<String, RouteGuard> guards;
+
+
+    /**
+     * Constructor.
+     *
+     * @param guards The {@link RouteGuard} of each route, keyed by route id.
+     */
+    /* package */ ResilienceFilter(final Map<String, RouteGuard> guards) {
+        this.guards = Map.copyOf(guards);
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var guard = route == null ? null : guards.get(route.getId());
+        if (guard == null) {
+            return chain.filter(exchange);
+        }
+        final var start = System.nanoTime();
+        final var epoch = guard.circuitBreaker.tryAcquire(start);
+        if (epoch == CircuitBreaker.REJECTED) {
+            guard.circuitBreakerRejections.increment();
+            return reject(exchange, guard.circuitBreaker.remainingOpenNanos(start));
+        }
+        final var bulkheaded = !WebSocketRequests.isHandshake(exchange.getRequest());
+        if (bulkheaded && !guard.bulkhead.tryAcquire()) {
+            guard.circuitBreaker.onCancel(epoch);
+            guard.bulkheadRejections.increment();
+            return reject(exchange, 0);
+        }
+        final var recorded = new AtomicBoolean(false);
+        final var response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            if (recorded.compareAndSet(false, true)) {
+                if (RequestBodies.isTooLarge(exchange)) {
+                    guard.circuitBreaker.onCancel(epoch);
+                } else {
+                    final var status = response.getStatusCode();
+                    record(guard, epoch, status != null && status.is5xxServerError(), start);
+                }
+            }
+            return Mono.empty();
+        });
+        return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (bulkheaded) {
+                        guard.bulkhead.release();
+                    }
+                    if (recorded.compareAndSet(false, true)) {
+                        if (signal == SignalType.CANCEL || RequestBodies.isTooLarge(exchange)) {
+                            guard.circuitBreaker.onCancel(epoch);
+                        } else {
+                            record(guard, epoch, signal == SignalType.ON_ERROR, start);
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+
+    /**
+     * Records the outcome of a call in the circuit breaker of the given {@code guard}.
+     *
+     * @param guard  The {@link RouteGuard} of the call's route.
+     * @param epoch  The epoch in which the call was permitted.
+     * @param failed Whether the call failed.
+     * @param start  The instant in which the call started (in {@link System#nanoTime()} terms).
+     */
+    private static void record(final RouteGuard guard, final long epoch, final boolean failed, final long start) {
+        final var now = System.nanoTime();
+        guard.circuitBreaker.onResult(epoch, failed, now - start, now);
+    }
+
+    /**
+     * Rejects the request in the given {@code exchange} with a 503 Service Unavailable response.
+     *
+     * @param exchange   The {@link ServerWebExchange} with the rejected request.
+     * @param retryNanos The amount of nanoseconds after which the request can be retried
+     *                   (zero if it can be retried at any time).
+     * @return A {@link Mono} that completes once the response is sent.
+     */
+    private static Mono<Void> reject(final ServerWebExchange exchange, final long retryNanos) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        if (retryNanos > 0) {
+            // Rounded up, as the header only accepts seconds
+            final var retryAfter = (retryNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        }
+        return response.setComplete();
+    }
+
+
+    /**
+     * The {@link Bulkhead}, the {@link CircuitBreaker} and the meters of a route.
+     */
+    /* package */ static final class RouteGuard {
+
+        /**
+         * The route's {@link Bulkhead}.
+         */
+        private final Bulkhead bulkhead;
+        /**
+         * The route's {@link CircuitBreaker}.
+         */
+        private final CircuitBreaker circuitBreaker;
+        /**
+         * The {@link Counter} of requests rejected by the bulkhead.
+         */
+        private final Counter bulkheadRejections;
+        /**
+         * The {@link Counter} of requests rejected by the circuit breaker.
+         */
+        private final Counter circuitBreakerRejections;
+
+
+        /**
+         * Constructor.
+         * Registers the in-flight requests and the circuit breaker state of the route as gauges.
+         *
+         * @param routeId        The route id.
+         * @param bulkhead       The route's {@link Bulkhead}.
+         * @param circuitBreaker The route's {@link CircuitBreaker}.
+         * @param meterRegistry  The {@link MeterRegistry} to which the route statistics are reported.
+         */
+        /* package */ RouteGuard(
+                final String routeId,
+                final Bulkhead bulkhead,
+                final CircuitBreaker circuitBreaker,
+                final MeterRegistry meterRegistry) {
+            this.bulkhead = bulkhead;
+            this.circuitBreaker = circuitBreaker;
+            this.bulkheadRejections = meterRegistry.counter("gateway.bulkhead.rejected", "route", routeId);
+            this.circuitBreakerRejections = meterRegistry.counter("gateway.circuit-breaker.rejected", "route", routeId);
+            Gauge.builder("gateway.bulkhead.in-flight", bulkhead, Bulkhead::inFlight)
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+            for (final var state : CircuitBreaker.State.values()) {
+                Gauge.builder(
+                        "gateway.circuit-breaker.state",
+                        circuitBreaker,
+                        breaker -> breaker.getState() == state ? 1 : 0
+                )
+                        .tag("route", routeId)
+                        .tag("state", state.getTag())
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Properties for configuring the bulkheads and circuit breakers of the routes.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "resilience")
+/* package */ class ResilienceProperties {
+
+    /**
+     * Whether routes are protected with bulkheads and circuit breakers.
+     */
+    private boolean enabled = true;
+    /**
+     * The properties applied to the routes not included in the {@link #routes}.
+     */
+    @NestedConfigurationProperty
+    private RouteProperties defaultRoute = new RouteProperties();
+    /**
+     * The properties of specific routes, keyed by route id (they replace the {@link #defaultRoute} ones).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for protecting a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The bulkhead properties.
+         */
+        @NestedConfigurationProperty
+        private BulkheadProperties bulkhead = new BulkheadProperties();
+        /**
+         * The circuit breaker properties.
+         */
+        @NestedConfigurationProperty
+        private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+    }
+
+    /**
+     * Properties for the bulkhead of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class BulkheadProperties {
+
+        /**
+         * The maximum amount of requests to the route being handled at the same time
+         * (further requests are rejected until one of them completes).
+         */
+        private int maxConcurrentRequests = 256;
+    }
+
+    /**
+     * Properties for the circuit breaker of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class CircuitBreakerProperties {
+
+        /**
+         * The amount of calls recorded while closed, used to calculate the failure and slow call rates.
+         */
+        private int slidingWindowSize = 100;
+        /**
+         * The minimum amount of recorded calls before the rates are calculated.
+         */
+        private int minimumCalls = 20;
+        /**
+         * The percentage of failed calls (i.e with a 5xx status, or that could not be sent)
+         * from which the circuit is opened.
+         */
+        private float failureRateThreshold = 50;
+        /**
+         * The percentage of slow calls from which the circuit is opened.
+         */
+        private float slowCallRateThreshold = 80;
+        /**
+         * The duration from which a call is considered slow (measured until its response starts being written).
+         */
+        private Duration slowCallDuration = Duration.ofSeconds(5);
+        /**
+         * The amount of time the circuit stays open (i.e failing fast) before letting probe calls through.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+        /**
+         * The amount of probe calls let through while half-open, whose rates decide whether the circuit is
+         * closed again or opened again.
+         */
+        private int halfOpenCalls = 5;
+    }
+}
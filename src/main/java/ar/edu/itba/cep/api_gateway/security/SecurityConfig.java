@@ -4,9 +4,8 @@ import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthenticationConv
 import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthenticationFailureHandler;
 import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthenticationManager;
 import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthenticationWebFilter;
-import ar.edu.itba.cep.api_gateway.security.cors.CustomCorsFilter;
-import ar.edu.itba.cep.api_gateway.security.cors.CustomCorsProcessor;
-import ar.edu.itba.cep.api_gateway.security.cors.EverythingAllowedCorsConfigurationSource;
+import ar.edu.itba.cep.api_gateway.security.cors.CorsPolicies;
+import ar.edu.itba.cep.api_gateway.security.cors.CorsPolicyWebFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
@@ -42,10 +41,8 @@ public class SecurityConfig {
      *                                                {@link BearerTokenAuthenticationWebFilter}.
      * @param bearerTokenAuthenticationFailureHandler A {@link BearerTokenAuthenticationFailureHandler} used to create a
      *                                                {@link BearerTokenAuthenticationWebFilter}.
-     * @param corsConfigSource                        An {@link EverythingAllowedCorsConfigurationSource}
-     *                                                used to create a {@link CustomCorsFilter}.
-     * @param corsProcessor                           An {@link CustomCorsProcessor}
-     *                                                used to create a {@link CustomCorsFilter}.
+     * @param corsPolicies                            The {@link CorsPolicies}
+     *                                                used to create a {@link CorsPolicyWebFilter}.
      * @return The created {@link SecurityWebFilterChain} bean.
      */
     @Bean
@@ -54,15 +51,14 @@ public class SecurityConfig {
             final BearerTokenAuthenticationManager bearerTokenAuthenticationManager,
             final BearerTokenAuthenticationConverter bearerTokenAuthenticationConverter,
             final BearerTokenAuthenticationFailureHandler bearerTokenAuthenticationFailureHandler,
-            final EverythingAllowedCorsConfigurationSource corsConfigSource,
-            final CustomCorsProcessor corsProcessor) {
+            final CorsPolicies corsPolicies) {
 
         final var bearerTokenAuthenticationWebFilter = new BearerTokenAuthenticationWebFilter(
                 bearerTokenAuthenticationManager,
                 bearerTokenAuthenticationConverter,
                 bearerTokenAuthenticationFailureHandler
         );
-        final var corsFilter = new CustomCorsFilter(corsConfigSource, corsProcessor);
+        final var corsFilter = new CorsPolicyWebFilter(corsPolicies);
 
         return http
                 .csrf()
@@ -1,6 +1,10 @@
 package ar.edu.itba.cep.api_gateway.security.bearer;
 
+import ar.edu.itba.cep.api_gateway.metrics.Outcome;
+import ar.edu.itba.cep.api_gateway.metrics.Stage;
+import ar.edu.itba.cep.api_gateway.metrics.StageTimings;
 import ar.edu.itba.cep.api_gateway.security.AnonymousAccess;
+import ar.edu.itba.cep.api_gateway.websocket.WebSocketRequests;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.core.Authentication;
@@ -23,10 +27,14 @@ public class BearerTokenAuthenticationConverter implements ServerAuthenticationC
 
     @Override
     public Mono<Authentication> convert(final ServerWebExchange exchange) {
-        return extractJwtToken(exchange)
+        final var timings = StageTimings.of(exchange);
+        return timings.time(Stage.EXTRACTION, extractJwtToken(exchange))
                 .map(PreAuthenticatedBearerToken::new)
                 .cast(Authentication.class)
-                .defaultIfEmpty(AnonymousAccess.getInstance())
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    timings.setOutcome(Outcome.ANONYMOUS);
+                    return AnonymousAccess.getInstance();
+                }))
                 ;
     }
 
@@ -39,6 +47,8 @@ public class BearerTokenAuthenticationConverter implements ServerAuthenticationC
      * @implNote This method searches for the {@link Constants#BEARER_SCHEME} header in the {@code request}
      * in the given {@code exchange}, which should contain the token with the following format:
      * Bearer&lt;space&gt;&lt;token&gt;.
+     * If there is no such header, and the request is a WebSocket handshake,
+     * the token is taken from the {@link WebSocketRequests#ACCESS_TOKEN_PARAMETER} query parameter.
      */
     private static Mono<String> extractJwtToken(final ServerWebExchange exchange) {
         Assert.notNull(exchange, "The exchange must not be null");
@@ -54,6 +64,24 @@ public class BearerTokenAuthenticationConverter implements ServerAuthenticationC
                 .filter(splitted -> splitted.length == 2)
                 .filter(splitted -> Constants.BEARER_SCHEME.equals(splitted[0]))
                 .map(splitted -> splitted[1])
+                .switchIfEmpty(Mono.defer(() -> extractWebSocketToken(exchange.getRequest())))
+                ;
+    }
+
+    /**
+     * Extracts a JWT token from the {@link WebSocketRequests#ACCESS_TOKEN_PARAMETER} query parameter
+     * of the given {@code request}, if it is a WebSocket handshake (as browsers can not set its headers).
+     *
+     * @param request The {@link ServerHttpRequest} from where the token will be extracted.
+     * @return A {@link Mono} containing the JWT if the request is a WebSocket handshake with the said parameter,
+     * or empty otherwise.
+     */
+    private static Mono<String> extractWebSocketToken(final ServerHttpRequest request) {
+        if (!WebSocketRequests.isHandshake(request)) {
+            return Mono.empty();
+        }
+        return Mono.justOrEmpty(request.getQueryParams().getFirst(WebSocketRequests.ACCESS_TOKEN_PARAMETER))
+                .filter(StringUtils::hasText)
                 ;
     }
 }
@@ -1,5 +1,8 @@
 package ar.edu.itba.cep.api_gateway.security.bearer;
 
+import ar.edu.itba.cep.api_gateway.metrics.Outcome;
+import ar.edu.itba.cep.api_gateway.metrics.Stage;
+import ar.edu.itba.cep.api_gateway.metrics.StageTimings;
 import ar.edu.itba.cep.api_gateway.security.AnonymousAccess;
 import ar.edu.itba.cep.api_gateway.services.InvalidatedBearerTokenChecker;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,10 +54,12 @@ public class BearerTokenAuthenticationManager implements ReactiveAuthenticationM
         if (ClassUtils.isAssignable(PreAuthenticatedBearerToken.class, authentication.getClass())) {
             final var preAuthenticatedAuthenticationToken = (PreAuthenticatedBearerToken) authentication;
             final var rawToken = preAuthenticatedAuthenticationToken.getRawToken();
-            return tokenDecoder.decode(rawToken)
-                    .switchIfEmpty(DECODING_ERROR)
-                    .filterWhen(token -> invalidTokenChecker.isInvalid(token.getTokenId()).map(flag -> !flag))
-                    .switchIfEmpty(BLACKLISTED_ERROR)
+            return StageTimings.timed(Stage.DECODING, tokenDecoder.decode(rawToken))
+                    .switchIfEmpty(StageTimings.outcome(Outcome.DECODE_FAILURE).then(DECODING_ERROR))
+                    .filterWhen(token -> StageTimings
+                            .timed(Stage.REVOCATION_CHECK, invalidTokenChecker.isInvalid(token.getTokenId()))
+                            .map(flag -> !flag))
+                    .switchIfEmpty(StageTimings.outcome(Outcome.BLACKLISTED).then(BLACKLISTED_ERROR))
                     .doOnNext(BearerTokenAuthentication::authenticate)
                     .cast(Authentication.class)
                     ;
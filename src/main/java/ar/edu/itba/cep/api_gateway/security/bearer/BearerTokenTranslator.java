@@ -1,8 +1,12 @@
 package ar.edu.itba.cep.api_gateway.security.bearer;
 
+import ar.edu.itba.cep.api_gateway.metrics.Stage;
+import ar.edu.itba.cep.api_gateway.metrics.StageTimings;
+import ar.edu.itba.cep.api_gateway.metrics.UpstreamTimingFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
@@ -14,9 +18,19 @@ import reactor.core.publisher.Mono;
 
 /**
  * A {@link GlobalFilter} that changes the external bearer token to an internal bearer token.
+ * It runs right before the call to the service is measured (see {@link UpstreamTimingFilter}),
+ * so the encoding is not measured as part of the said call.
+ * Requests whose exchange already carries an internal token (in the {@link #INTERNAL_TOKEN_ATTRIBUTE})
+ * are sent with it instead (e.g the requests of a batch, which share the token encoded for the batch).
  */
 @Component
-public class BearerTokenTranslator implements GlobalFilter {
+public class BearerTokenTranslator implements GlobalFilter, Ordered {
+
+    /**
+     * The name of the exchange attribute with an already encoded internal token.
+     */
+    public static final String INTERNAL_TOKEN_ATTRIBUTE = BearerTokenTranslator.class.getName() + ".internalToken";
+
 
     /**
      * The {@link TokenEncoder} used to create a raw token from a {@link BearerTokenAuthentication}.
@@ -37,11 +51,16 @@ public class BearerTokenTranslator implements GlobalFilter {
 
     @Override
     public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final String internalToken = exchange.getAttribute(INTERNAL_TOKEN_ATTRIBUTE);
+        if (internalToken != null) {
+            return chain.filter(setRequest(exchange, setAuthorization(exchange.getRequest(), internalToken)));
+        }
         return ReactiveSecurityContextHolder.getContext()
                 .map(SecurityContext::getAuthentication)
                 .filter(a -> ClassUtils.isAssignable(BearerTokenAuthentication.class, a.getClass()))
                 .cast(BearerTokenAuthentication.class)
-                .flatMap(tokenEncoder::encode)
+                .flatMap(authentication -> StageTimings.of(exchange)
+                        .time(Stage.ENCODING, tokenEncoder.encode(authentication)))
                 .map(rawToken -> setAuthorization(exchange.getRequest(), rawToken))
                 .map(request -> setRequest(exchange, request))
                 .defaultIfEmpty(exchange)
@@ -49,6 +68,11 @@ public class BearerTokenTranslator implements GlobalFilter {
                 ;
     }
 
+    @Override
+    public int getOrder() {
+        return UpstreamTimingFilter.ORDER - 1;
+    }
+
 
     /**
      * Sets or replaces the {@link HttpHeaders#AUTHORIZATION} header in the given {@code request}
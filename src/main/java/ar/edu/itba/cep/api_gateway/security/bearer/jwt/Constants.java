@@ -1,7 +1,5 @@
 package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
 
-import io.jsonwebtoken.SignatureAlgorithm;
-
 /**
  * Class containing constants to be used by the JWT module.
  */
@@ -17,9 +15,4 @@ import io.jsonwebtoken.SignatureAlgorithm;
      * Claims name for the roles in a JWT.
      */
     /* package */ static final String ROLES_CLAIM = "roles";
-
-    /**
-     * Signature algorithm used to sign JWT tokens.
-     */
-    /* package */ static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.RS512;
 }
@@ -0,0 +1,17 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import io.jsonwebtoken.JwtBuilder;
+
+/**
+ * Defines behaviour for an object that can sign internal tokens (i.e tokens sent to the services behind the gateway).
+ */
+/* package */ interface InternalTokenSigner {
+
+    /**
+     * Signs the token being built by the given {@code builder}.
+     *
+     * @param builder The {@link JwtBuilder} with the token's claims already set.
+     * @return The signed token, in compact form.
+     */
+    String sign(final JwtBuilder builder);
+}
@@ -1,16 +1,19 @@
 package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
 
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
 import org.springframework.util.Base64Utils;
 
 import java.security.Key;
 import java.security.KeyFactory;
-import java.security.PrivateKey;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
@@ -70,20 +73,56 @@ public class JwtConfig {
     }
 
     /**
-     * Creates a {@link PrivateKey} from the {@link KeyFactory} and the {@link JwtProperties}.
+     * Creates the {@link InternalTokenSigner} from the {@link JwtProperties}.
+     * HMAC based algorithms use the configured secret, while RSA and ECDSA based algorithms
+     * use the configured private key.
      *
-     * @return The {@link PrivateKey}.
+     * @return The {@link InternalTokenSigner}.
+     * @throws IllegalStateException If the key or secret for the configured algorithm is not set or is invalid.
      */
     @Bean
-    public PrivateKey privateKey() {
+    public InternalTokenSigner internalTokenSigner() throws IllegalStateException {
+        final var internalProperties = jwtProperties.getInternal();
+        final var algorithm = internalProperties.getAlgorithm();
+        return new KeyInternalTokenSigner(signingKey(algorithm), algorithm, internalProperties.getKeyId());
+    }
+
+
+    /**
+     * Creates the {@link Key} used to sign internal tokens with the given {@code algorithm}.
+     *
+     * @param algorithm The {@link SignatureAlgorithm} used to sign internal tokens.
+     * @return The {@link Key}.
+     * @throws IllegalStateException If the key or secret for the given algorithm is not set or is invalid.
+     */
+    private Key signingKey(final SignatureAlgorithm algorithm) throws IllegalStateException {
+        final var internalProperties = jwtProperties.getInternal();
+        if (algorithm.isHmac()) {
+            Assert.state(internalProperties.getSecret() != null, "A secret must be set to use " + algorithm);
+            return Keys.hmacShaKeyFor(Base64Utils.decodeFromString(internalProperties.getSecret()));
+        }
+        Assert.state(internalProperties.getPrivateKey() != null, "A private key must be set to use " + algorithm);
         return generateKey(
-                keyFactory,
-                jwtProperties.getInternal().getPrivateKey(),
+                algorithm.isEllipticCurve() ? ecKeyFactory() : keyFactory,
+                internalProperties.getPrivateKey(),
                 PKCS8EncodedKeySpec::new,
                 KeyFactory::generatePrivate
         );
     }
 
+    /**
+     * Creates a {@link KeyFactory} for elliptic curve keys.
+     *
+     * @return The {@link KeyFactory}.
+     * @throws IllegalStateException If elliptic curve keys are not supported.
+     */
+    private static KeyFactory ecKeyFactory() throws IllegalStateException {
+        try {
+            return KeyFactory.getInstance("EC");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Elliptic curve keys are not supported", e);
+        }
+    }
 
     /**
      * Generates a {@link Key} of type {@code K} from the given {@link KeySpec} of type {@code S},
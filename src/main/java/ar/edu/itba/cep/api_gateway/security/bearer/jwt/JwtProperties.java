@@ -1,10 +1,13 @@
 package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
 
+import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
+import java.time.Duration;
+
 /**
  * Properties for configuring encoding/decoding of JWT tokens.
  */
@@ -33,9 +36,34 @@ import org.springframework.boot.context.properties.NestedConfigurationProperty;
     /* package */ static final class InternalTokensProperties {
 
         /**
-         * The private key used to sign internal tokens.
+         * The algorithm used to sign internal tokens.
+         * HMAC based algorithms (i.e {@code HS*}) are cheaper, but services must share the secret to verify tokens.
+         */
+        private SignatureAlgorithm algorithm = SignatureAlgorithm.RS512;
+        /**
+         * The id of the key used to sign internal tokens (optional).
+         * If set, it is included in the tokens' {@code kid} header, so services can select the verification key.
+         */
+        private String keyId;
+        /**
+         * The private key used to sign internal tokens (base64 encoded, PKCS#8),
+         * used with RSA and ECDSA based algorithms.
          */
         private String privateKey;
+        /**
+         * The secret used to sign internal tokens (base64 encoded), used with HMAC based algorithms.
+         */
+        private String secret;
+        /**
+         * The amount of time an internal token is valid after being issued.
+         */
+        private Duration validity = Duration.ofMinutes(10);
+        /**
+         * The signed internal tokens cache properties.
+         * Note that the time to live must be shorter than the internal tokens validity.
+         */
+        @NestedConfigurationProperty
+        private TokensCacheProperties cache = new TokensCacheProperties();
     }
 
     /**
@@ -49,5 +77,28 @@ import org.springframework.boot.context.properties.NestedConfigurationProperty;
          * The public key used to verify external tokens.
          */
         private String publicKey;
+        /**
+         * The verified tokens cache properties.
+         */
+        @NestedConfigurationProperty
+        private TokensCacheProperties cache = new TokensCacheProperties();
+    }
+
+    /**
+     * Properties for a tokens cache.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class TokensCacheProperties {
+
+        /**
+         * The maximum amount of tokens to be kept in the cache.
+         */
+        private long maximumSize = 10_000;
+        /**
+         * The maximum amount of time a token is kept in the cache
+         * (it might be evicted before if the token expires before this time).
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
     }
 }
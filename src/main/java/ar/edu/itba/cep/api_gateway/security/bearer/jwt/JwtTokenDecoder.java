@@ -2,7 +2,12 @@ package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
 
 import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
 import ar.edu.itba.cep.api_gateway.security.bearer.TokenDecoder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +16,14 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -26,6 +37,28 @@ import static ar.edu.itba.cep.api_gateway.security.bearer.jwt.Constants.ROLES_CL
 @Component
 public class JwtTokenDecoder implements TokenDecoder {
 
+    /**
+     * The name of the verified tokens cache (used to report metrics).
+     */
+    private static final String VERIFIED_TOKENS_CACHE_NAME = "jwt.verified-tokens";
+
+    /**
+     * The digest algorithm used to create the verified tokens cache keys from raw tokens.
+     */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * Holds a {@link MessageDigest} per thread, as they are not thread safe.
+     */
+    private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Missing " + DIGEST_ALGORITHM + " message digest", e);
+        }
+    });
+
+
     /**
      * The {@link PublicKey} used to verify external tokens.
      */
@@ -34,30 +67,67 @@ public class JwtTokenDecoder implements TokenDecoder {
      * A {@link JwtHandlerAdapter} used to handle the decoding process.
      */
     private final CustomJwtHandlerAdapter jwtHandlerAdapter;
+    /**
+     * A {@link Cache} holding the {@link CustomBody} of already verified tokens,
+     * keyed by the digest of the raw token. Avoids repeating the signature verification for the same token.
+     */
+    private final Cache<ByteBuffer, CustomBody> verifiedTokens;
 
 
     /**
      * Constructor.
      *
-     * @param publicKey The {@link PublicKey} used to verify external tokens.
+     * @param publicKey     The {@link PublicKey} used to verify external tokens.
+     * @param jwtProperties The {@link JwtProperties} from where the verified tokens cache configuration is taken.
+     * @param meterRegistry The {@link MeterRegistry} to which the verified tokens cache statistics are reported.
      */
     @Autowired
-    public JwtTokenDecoder(final PublicKey publicKey) {
+    public JwtTokenDecoder(
+            final PublicKey publicKey,
+            final JwtProperties jwtProperties,
+            final MeterRegistry meterRegistry) {
         this.publicKey = publicKey;
         this.jwtHandlerAdapter = new CustomJwtHandlerAdapter();
+        final var cacheProperties = jwtProperties.getExternal().getCache();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfter(new CustomBodyExpiry(cacheProperties.getTimeToLive()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, VERIFIED_TOKENS_CACHE_NAME);
     }
 
     @Override
     public Mono<BearerTokenAuthentication> decode(final String rawToken) {
         Assert.hasText(rawToken, "The token must not be null or empty");
         return Mono.defer(
-                () -> Mono.just(rawToken)
-                        .flatMap(this::parseToken)
-                        .map(Jws::getBody)
-                        .flatMap(JwtTokenDecoder::buildFromClaims)
+                () -> {
+                    final var key = digest(rawToken);
+                    return Mono.justOrEmpty(verifiedTokens.getIfPresent(key))
+                            .switchIfEmpty(
+                                    Mono.defer(
+                                            () -> parseToken(rawToken)
+                                                    .map(Jws::getBody)
+                                                    .doOnNext(body -> verifiedTokens.put(key, body))
+                                    )
+                            )
+                            .flatMap(JwtTokenDecoder::buildFromClaims);
+                }
         );
     }
 
+    /**
+     * Creates the verified tokens cache key for the given {@code rawToken}.
+     *
+     * @param rawToken The raw token.
+     * @return A {@link ByteBuffer} wrapping the digest of the given {@code rawToken}.
+     * @implNote A {@link ByteBuffer} is used as its {@link ByteBuffer#equals(Object)}
+     * and {@link ByteBuffer#hashCode()} methods depend on the content.
+     */
+    private static ByteBuffer digest(final String rawToken) {
+        return ByteBuffer.wrap(MESSAGE_DIGEST.get().digest(rawToken.getBytes(StandardCharsets.US_ASCII)));
+    }
+
     /**
      * Parses the given {@code token}.
      *
@@ -103,7 +173,8 @@ public class JwtTokenDecoder implements TokenDecoder {
             final var body = new CustomBody(
                     extractId(jws),
                     extractUsername(jws),
-                    extractRoles(jws)
+                    extractRoles(jws),
+                    extractExpiration(jws)
             );
 
             return new CustomJws(jws.getHeader(), body, jws.getSignature());
@@ -165,6 +236,74 @@ public class JwtTokenDecoder implements TokenDecoder {
                     .map(String.class::cast)
                     .collect(Collectors.toSet());
         }
+
+        /**
+         * Extracts the expiration from the given {@code jws}, as milliseconds since the epoch.
+         *
+         * @param jws The {@link Jws} from where the expiration will be taken.
+         * @return The expiration, or {@link Long#MAX_VALUE} if the token does not expire.
+         * @implNote This method checks the {@link Claims#EXPIRATION} claim in order to get the expiration.
+         */
+        private static long extractExpiration(final Jws<Claims> jws) {
+            return Optional.ofNullable(jws.getBody().getExpiration())
+                    .map(Date::getTime)
+                    .orElse(Long.MAX_VALUE);
+        }
+    }
+
+
+    /**
+     * An {@link Expiry} for the verified tokens cache that makes entries expire after the configured time to live,
+     * or when the token expires, whatever happens first.
+     */
+    private static final class CustomBodyExpiry implements Expiry<ByteBuffer, CustomBody> {
+
+        /**
+         * The maximum time an entry is kept in the cache, in nanoseconds.
+         */
+        private final long timeToLiveNanos;
+
+
+        /**
+         * Constructor.
+         *
+         * @param timeToLive The maximum time an entry is kept in the cache.
+         */
+        private CustomBodyExpiry(final Duration timeToLive) {
+            this.timeToLiveNanos = timeToLive.toNanos();
+        }
+
+
+        @Override
+        public long expireAfterCreate(final ByteBuffer key, final CustomBody body, final long currentTime) {
+            final var untilExpiration = body.getExpiration() - System.currentTimeMillis();
+            if (untilExpiration <= 0) {
+                return 0;
+            }
+            // Avoid overflowing when converting to nanoseconds (i.e tokens with no expiration)
+            if (untilExpiration >= Duration.ofNanos(timeToLiveNanos).toMillis()) {
+                return timeToLiveNanos;
+            }
+            return Duration.ofMillis(untilExpiration).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(
+                final ByteBuffer key,
+                final CustomBody body,
+                final long currentTime,
+                final long currentDuration) {
+            return expireAfterCreate(key, body, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(
+                final ByteBuffer key,
+                final CustomBody body,
+                final long currentTime,
+                final long currentDuration) {
+            return currentDuration;
+        }
     }
 
 
@@ -206,8 +345,8 @@ public class JwtTokenDecoder implements TokenDecoder {
 
 
     /**
-     * A custom jwt body that only includes the token's id, the username (i.e the subject), and the roles assigned in
-     * the token.
+     * A custom jwt body that only includes the token's id, the username (i.e the subject), the roles assigned in
+     * the token, and its expiration.
      */
     @Getter
     @AllArgsConstructor
@@ -224,5 +363,9 @@ public class JwtTokenDecoder implements TokenDecoder {
          * The roles assigned in the token (this is a custom claim).
          */
         private final Set<String> roles;
+        /**
+         * The token's expiration, as milliseconds since the epoch ({@link Long#MAX_VALUE} if it does not expire).
+         */
+        private final long expiration;
     }
 }
@@ -2,36 +2,81 @@ package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
 
 import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
 import ar.edu.itba.cep.api_gateway.security.bearer.TokenEncoder;
+import ar.edu.itba.cep.api_gateway.services.BearerTokenInvalidationListener;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
-import java.security.PrivateKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * An implementation of a {@link TokenEncoder} using the JWT specification.
+ * Signed tokens are reused (for a bounded amount of time) when encoding the same token id, username and roles.
  */
 @Component
-public class JwtTokenEncoder implements TokenEncoder {
+public class JwtTokenEncoder implements TokenEncoder, BearerTokenInvalidationListener {
 
     /**
-     * The {@link PrivateKey} used to sign internal tokens.
+     * The name of the internal tokens cache (used to report metrics).
      */
-    private final PrivateKey privateKey;
+    private static final String INTERNAL_TOKENS_CACHE_NAME = "jwt.internal-tokens";
+
+
+    /**
+     * The {@link InternalTokenSigner} used to sign internal tokens.
+     */
+    private final InternalTokenSigner signer;
+    /**
+     * The amount of time an internal token is valid after being issued.
+     */
+    private final Duration validity;
+    /**
+     * A {@link Cache} holding the already signed internal tokens, keyed by the token id.
+     */
+    private final Cache<UUID, SignedToken> signedTokens;
 
 
     /**
      * Constructor.
      *
-     * @param privateKey The {@link PrivateKey} used to sign internal tokens.
+     * @param signer        The {@link InternalTokenSigner} used to sign internal tokens.
+     * @param jwtProperties The {@link JwtProperties} from where the internal tokens configuration is taken.
+     * @param meterRegistry The {@link MeterRegistry} to which the internal tokens cache statistics are reported.
+     * @throws IllegalArgumentException If the internal tokens cache time to live is not shorter than
+     *                                  the internal tokens validity.
      */
     @Autowired
-    public JwtTokenEncoder(final PrivateKey privateKey) {
-        this.privateKey = privateKey;
+    public JwtTokenEncoder(
+            final InternalTokenSigner signer,
+            final JwtProperties jwtProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var internalProperties = jwtProperties.getInternal();
+        final var cacheProperties = internalProperties.getCache();
+        Assert.isTrue(
+                cacheProperties.getTimeToLive().compareTo(internalProperties.getValidity()) < 0,
+                "The internal tokens cache time to live must be shorter than the internal tokens validity"
+        );
+        this.signer = signer;
+        this.validity = internalProperties.getValidity();
+        this.signedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getTimeToLive())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, signedTokens, INTERNAL_TOKENS_CACHE_NAME);
     }
 
 
@@ -41,23 +86,82 @@ public class JwtTokenEncoder implements TokenEncoder {
         return Mono.defer(() ->
                 Mono.just(bearerTokenAuthentication)
                         .map(auth -> {
-                                    final var id = auth.getTokenId().toString();
+                                    final var id = auth.getTokenId();
                                     final var username = auth.getUsername();
                                     final var roles = auth.getAuthorities()
                                             .stream()
                                             .map(GrantedAuthority::getAuthority)
                                             .collect(Collectors.toList());
 
-                                    return Jwts.builder()
-                                            .setId(id)
-                                            .setSubject(username)
-                                            .claim(Constants.ROLES_CLAIM, roles)
-                                            .signWith(privateKey, Constants.SIGNATURE_ALGORITHM)
-                                            .compact()
-                                            ;
+                                    final var cached = signedTokens.getIfPresent(id);
+                                    if (cached != null && cached.matches(username, roles)) {
+                                        return cached.getRawToken();
+                                    }
+                                    final var signed = new SignedToken(username, roles, sign(id, username, roles));
+                                    signedTokens.put(id, signed);
+                                    return signed.getRawToken();
                                 }
                         )
         );
     }
 
+    @Override
+    public void onTokenInvalidated(final UUID tokenId) {
+        signedTokens.invalidate(tokenId);
+    }
+
+
+    /**
+     * Creates and signs an internal token with the given data, expiring after the configured validity.
+     *
+     * @param id       The token's id.
+     * @param username The username (i.e the subject).
+     * @param roles    The roles to be included in the token (encoded as a JSON array, in their original order,
+     *                 as services expect them).
+     * @return The signed token, in compact form.
+     */
+    private String sign(final UUID id, final String username, final List<String> roles) {
+        final var now = System.currentTimeMillis();
+        return signer.sign(
+                Jwts.builder()
+                        .setId(id.toString())
+                        .setSubject(username)
+                        .claim(Constants.ROLES_CLAIM, roles)
+                        .setIssuedAt(new Date(now))
+                        .setExpiration(new Date(now + validity.toMillis()))
+        );
+    }
+
+
+    /**
+     * An already signed internal token, together with the data that was used to create it.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class SignedToken {
+        /**
+         * The username (i.e the subject).
+         */
+        private final String username;
+        /**
+         * The roles included in the token.
+         */
+        private final List<String> roles;
+        /**
+         * The signed token, in compact form.
+         */
+        private final String rawToken;
+
+
+        /**
+         * Indicates whether this token was created with the given {@code username} and {@code roles}.
+         *
+         * @param username The username to be checked.
+         * @param roles    The roles to be checked.
+         * @return {@code true} if this token can be reused for the given data, or {@code false} otherwise.
+         */
+        private boolean matches(final String username, final List<String> roles) {
+            return this.username.equals(username) && this.roles.equals(roles);
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package ar.edu.itba.cep.api_gateway.security.bearer.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.InvalidKeyException;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.security.Key;
+
+/**
+ * An {@link InternalTokenSigner} that signs tokens with a {@link Key}, using a given {@link SignatureAlgorithm}
+ * (either HMAC, RSA or ECDSA based). If a key id is set, it is included in the token's header
+ * (i.e the {@link JwsHeader#KEY_ID} header), so the services can select the verification key,
+ * which allows keys to be rotated without downtime.
+ */
+/* package */ final class KeyInternalTokenSigner implements InternalTokenSigner {
+
+    /**
+     * The {@link Key} used to sign tokens.
+     */
+    private final Key key;
+    /**
+     * The {@link SignatureAlgorithm} used to sign tokens.
+     */
+    private final SignatureAlgorithm algorithm;
+    /**
+     * The key id to be included in the token's header (might be {@code null}).
+     */
+    private final String keyId;
+
+
+    /**
+     * Constructor.
+     *
+     * @param key       The {@link Key} used to sign tokens.
+     * @param algorithm The {@link SignatureAlgorithm} used to sign tokens.
+     * @param keyId     The key id to be included in the token's header (might be {@code null}).
+     * @throws IllegalArgumentException If the algorithm is {@link SignatureAlgorithm#NONE},
+     *                                  or if the key can not be used with the given algorithm.
+     */
+    /* package */ KeyInternalTokenSigner(final Key key, final SignatureAlgorithm algorithm, final String keyId)
+            throws IllegalArgumentException {
+        Assert.notNull(key, "The key must not be null");
+        Assert.isTrue(algorithm != SignatureAlgorithm.NONE, "Internal tokens must be signed");
+        try {
+            algorithm.assertValidSigningKey(key);
+        } catch (final InvalidKeyException e) {
+            throw new IllegalArgumentException("The key can not be used with " + algorithm, e);
+        }
+        this.key = key;
+        this.algorithm = algorithm;
+        this.keyId = StringUtils.hasText(keyId) ? keyId : null;
+    }
+
+
+    @Override
+    public String sign(final JwtBuilder builder) {
+        if (keyId != null) {
+            builder.setHeaderParam(JwsHeader.KEY_ID, keyId);
+        }
+        return builder.signWith(key, algorithm).compact();
+    }
+}
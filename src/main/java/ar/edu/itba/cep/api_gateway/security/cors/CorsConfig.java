@@ -0,0 +1,56 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for the handling of CORS requests.
+ */
+@Configuration
+@EnableConfigurationProperties(CorsProperties.class)
+public class CorsConfig {
+
+    /**
+     * Creates the {@link CorsPolicies}, compiling the configured policies.
+     *
+     * @param corsProperties The {@link CorsProperties} from where the policies are taken.
+     * @return The {@link CorsPolicies} bean.
+     * @throws IllegalArgumentException If any of the policies is not valid.
+     */
+    @Bean
+    public CorsPolicies corsPolicies(final CorsProperties corsProperties) throws IllegalArgumentException {
+        return CorsPolicies.compile(corsProperties);
+    }
+
+    /**
+     * Creates the {@link PreflightCacheWebFilter} that answers preflight requests from a cache.
+     * Only created if the {@code cors.preflight-cache.enabled} property is {@code true} (the default).
+     *
+     * @param corsPolicies   The {@link CorsPolicies} used to select the policy applied to each request.
+     * @param corsProperties The {@link CorsProperties} from where configuration values are taken.
+     * @param meterRegistry  The {@link MeterRegistry} to which the cache statistics are reported.
+     * @return The {@link PreflightCacheWebFilter} bean.
+     */
+    @Bean
+    @ConditionalOnProperty(
+            prefix = "cors.preflight-cache",
+            name = "enabled",
+            havingValue = "true",
+            matchIfMissing = true
+    )
+    /* package */ PreflightCacheWebFilter preflightCacheWebFilter(
+            final CorsPolicies corsPolicies,
+            final CorsProperties corsProperties,
+            final MeterRegistry meterRegistry) {
+        final var cacheProperties = corsProperties.getPreflightCache();
+        return new PreflightCacheWebFilter(
+                corsPolicies,
+                cacheProperties.getMaximumSize(),
+                cacheProperties.getTimeToLive(),
+                meterRegistry
+        );
+    }
+}
@@ -0,0 +1,70 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The compiled CORS policies, which select the {@link CorsPolicy} applied to each request according to its path.
+ * Note that CORS requests are handled before they are routed, so policies are selected by path
+ * (using the same prefixes with which routes are defined).
+ */
+public final class CorsPolicies {
+
+    /**
+     * The {@link CorsPolicy}s applied to specific paths (checked in order).
+     */
+    private final List<CorsPolicy> policies;
+    /**
+     * The {@link CorsPolicy} applied when no other policy covers a path.
+     */
+    private final CorsPolicy defaultPolicy;
+
+
+    /**
+     * Constructor.
+     *
+     * @param policies      The {@link CorsPolicy}s applied to specific paths (checked in order).
+     * @param defaultPolicy The {@link CorsPolicy} applied when no other policy covers a path.
+     */
+    /* package */ CorsPolicies(final List<CorsPolicy> policies, final CorsPolicy defaultPolicy) {
+        this.policies = List.copyOf(policies);
+        this.defaultPolicy = defaultPolicy;
+    }
+
+
+    /**
+     * Returns the {@link CorsPolicy} to be applied to requests with the given {@code path}.
+     *
+     * @param path The request's path.
+     * @return The first {@link CorsPolicy} that covers the path, or the default one if there is none.
+     */
+    /* package */ CorsPolicy policyFor(final String path) {
+        for (final var policy : policies) {
+            if (policy.covers(path)) {
+                return policy;
+            }
+        }
+        return defaultPolicy;
+    }
+
+
+    /**
+     * Compiles the policies in the given {@code corsProperties}.
+     *
+     * @param corsProperties The {@link CorsProperties} with the policies to be compiled.
+     * @return The compiled {@link CorsPolicies}.
+     * @throws IllegalArgumentException If any of the policies is not valid.
+     */
+    /* package */ static CorsPolicies compile(final CorsProperties corsProperties) throws IllegalArgumentException {
+        final var policies = corsProperties.getPolicies()
+                .stream()
+                .map(policy -> {
+                    Assert.notEmpty(policy.getPathPrefixes(), "CORS policies must include path prefixes");
+                    return CorsPolicy.compile(policy);
+                })
+                .collect(Collectors.toList());
+        return new CorsPolicies(policies, CorsPolicy.compile(corsProperties.getDefaultPolicy()));
+    }
+}
@@ -0,0 +1,247 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.springframework.http.HttpHeaders.*;
+
+/**
+ * An immutable CORS policy, compiled at startup from a {@link CorsProperties.PolicyProperties}.
+ * <p>
+ * Origins are checked with an {@link OriginMatcher}, and the values of the response headers that do not depend
+ * on the request are rendered when compiling, so applying the policy to an actual (i.e non preflight) request
+ * does not allocate anything beyond what writing the response headers needs.
+ * Note that the headers of actual requests are not checked (browsers check them with the preflight request).
+ */
+/* package */ final class CorsPolicy {
+
+    /**
+     * The {@link List} of headers to be set in the 'Vary' header in a CORS request.
+     */
+    private static final List<String> VARY_HEADERS = List.of(
+            ORIGIN,
+            ACCESS_CONTROL_REQUEST_METHOD,
+            ACCESS_CONTROL_REQUEST_HEADERS
+    );
+
+
+    /**
+     * The path prefixes to which this policy is applied.
+     */
+    private final List<String> pathPrefixes;
+    /**
+     * The {@link OriginMatcher} that checks the allowed origins.
+     */
+    private final OriginMatcher origins;
+    /**
+     * The allowed {@link HttpMethod}s ({@code null} if any method is allowed).
+     */
+    private final Set<HttpMethod> allowedMethods;
+    /**
+     * The rendered 'Access-Control-Allow-Methods' header ({@code null} if any method is allowed).
+     */
+    private final String allowMethodsValue;
+    /**
+     * The allowed headers, lower cased ({@code null} if any header is allowed).
+     */
+    private final Set<String> allowedHeaders;
+    /**
+     * Whether credentials are allowed.
+     */
+    private final boolean allowCredentials;
+    /**
+     * The rendered 'Access-Control-Max-Age' header.
+     */
+    private final String maxAgeValue;
+    /**
+     * The rendered 'Access-Control-Expose-Headers' header ({@code null} if no header is exposed).
+     */
+    private final String exposeHeadersValue;
+
+
+    /**
+     * Constructor.
+     *
+     * @param pathPrefixes       The path prefixes to which this policy is applied.
+     * @param origins            The {@link OriginMatcher} that checks the allowed origins.
+     * @param allowedMethods     The allowed {@link HttpMethod}s ({@code null} if any method is allowed).
+     * @param allowedHeaders     The allowed headers, lower cased ({@code null} if any header is allowed).
+     * @param allowCredentials   Whether credentials are allowed.
+     * @param maxAgeValue        The rendered 'Access-Control-Max-Age' header.
+     * @param exposeHeadersValue The rendered 'Access-Control-Expose-Headers' header
+     *                           ({@code null} if no header is exposed).
+     */
+    private CorsPolicy(
+            final List<String> pathPrefixes,
+            final OriginMatcher origins,
+            final Set<HttpMethod> allowedMethods,
+            final Set<String> allowedHeaders,
+            final boolean allowCredentials,
+            final String maxAgeValue,
+            final String exposeHeadersValue) {
+        this.pathPrefixes = pathPrefixes;
+        this.origins = origins;
+        this.allowedMethods = allowedMethods;
+        this.allowMethodsValue = allowedMethods == null ? null : allowedMethods.stream()
+                .map(HttpMethod::name)
+                .collect(Collectors.joining(", "));
+        this.allowedHeaders = allowedHeaders;
+        this.allowCredentials = allowCredentials;
+        this.maxAgeValue = maxAgeValue;
+        this.exposeHeadersValue = exposeHeadersValue;
+    }
+
+
+    /**
+     * Checks whether this policy is applied to the given {@code path}
+     * (i.e the path is one of the prefixes, or it is under one of them).
+     *
+     * @param path The path to be checked.
+     * @return {@code true} if this policy is applied to the path, or {@code false} otherwise.
+     */
+    /* package */ boolean covers(final String path) {
+        for (final var prefix : pathPrefixes) {
+            if (path.startsWith(prefix)
+                    && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies this policy to the CORS request in the given {@code exchange}, writing the CORS response headers,
+     * or setting a 403 Forbidden status if the request is rejected.
+     *
+     * @param exchange  The {@link ServerWebExchange} with the CORS request.
+     * @param preflight Whether the request is a preflight request.
+     * @return {@code true} if the request is valid, or {@code false} if it was rejected.
+     */
+    /* package */ boolean apply(final ServerWebExchange exchange, final boolean preflight) {
+        final var request = exchange.getRequest();
+        final var requestHeaders = request.getHeaders();
+        final var response = exchange.getResponse();
+        final var responseHeaders = response.getHeaders();
+        responseHeaders.addAll(VARY, VARY_HEADERS);
+
+        final var origin = requestHeaders.getOrigin();
+        final var method = preflight ? requestHeaders.getAccessControlRequestMethod() : request.getMethod();
+        if (origin == null || !origins.matches(origin)
+                || method == null || (allowedMethods != null && !allowedMethods.contains(method))) {
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+        if (preflight) {
+            final var requestedHeaders = requestHeaders.getAccessControlRequestHeaders();
+            if (!areAllowedHeaders(requestedHeaders)) {
+                response.setStatusCode(HttpStatus.FORBIDDEN);
+                return false;
+            }
+            responseHeaders.set(
+                    ACCESS_CONTROL_ALLOW_METHODS,
+                    allowMethodsValue == null ? method.name() : allowMethodsValue
+            );
+            if (!requestedHeaders.isEmpty()) {
+                responseHeaders.setAccessControlAllowHeaders(requestedHeaders);
+            }
+            responseHeaders.set(ACCESS_CONTROL_MAX_AGE, maxAgeValue);
+        }
+        // With credentials, the origin must be echoed (the wildcard is not accepted by browsers)
+        responseHeaders.set(ACCESS_CONTROL_ALLOW_ORIGIN,
+                origins.isAllowAll() && !allowCredentials ? CorsProperties.ALL : origin);
+        if (allowCredentials) {
+            responseHeaders.set(ACCESS_CONTROL_ALLOW_CREDENTIALS, Boolean.TRUE.toString());
+        }
+        if (exposeHeadersValue != null) {
+            responseHeaders.set(ACCESS_CONTROL_EXPOSE_HEADERS, exposeHeadersValue);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether all the given {@code requestedHeaders} are allowed.
+     *
+     * @param requestedHeaders The headers requested in a preflight request.
+     * @return {@code true} if all of them are allowed, or {@code false} otherwise.
+     */
+    private boolean areAllowedHeaders(final List<String> requestedHeaders) {
+        return allowedHeaders == null || requestedHeaders.stream()
+                .map(header -> header.trim().toLowerCase(Locale.ROOT))
+                .allMatch(allowedHeaders::contains);
+    }
+
+
+    /**
+     * Compiles the given {@code policyProperties} into a {@link CorsPolicy}.
+     *
+     * @param policyProperties The {@link CorsProperties.PolicyProperties} to be compiled.
+     * @return The compiled {@link CorsPolicy}.
+     * @throws IllegalArgumentException If any of the properties is not valid.
+     */
+    /* package */ static CorsPolicy compile(final CorsProperties.PolicyProperties policyProperties)
+            throws IllegalArgumentException {
+        final var pathPrefixes = new ArrayList<String>();
+        for (final var pathPrefix : policyProperties.getPathPrefixes()) {
+            Assert.isTrue(pathPrefix.startsWith("/"), "The path prefix '" + pathPrefix + "' must start with '/'");
+            pathPrefixes.add(pathPrefix.endsWith("/") ? pathPrefix.substring(0, pathPrefix.length() - 1) : pathPrefix);
+        }
+        final var exposedHeaders = policyProperties.getExposedHeaders()
+                .stream()
+                .map(String::trim)
+                .distinct()
+                .collect(Collectors.joining(", "));
+        return new CorsPolicy(
+                List.copyOf(pathPrefixes),
+                OriginMatcher.compile(policyProperties.getAllowedOrigins()),
+                compileMethods(policyProperties.getAllowedMethods()),
+                compileHeaders(policyProperties.getAllowedHeaders()),
+                policyProperties.isAllowCredentials(),
+                Long.toString(policyProperties.getMaxAge().getSeconds()),
+                exposedHeaders.isEmpty() ? null : exposedHeaders
+        );
+    }
+
+    /**
+     * Compiles the given {@code allowedMethods}.
+     *
+     * @param allowedMethods The allowed methods, or {@code *} to allow any method.
+     * @return The allowed {@link HttpMethod}s, or {@code null} if any method is allowed.
+     * @throws IllegalArgumentException If any of the methods is not valid.
+     */
+    private static Set<HttpMethod> compileMethods(final List<String> allowedMethods) throws IllegalArgumentException {
+        if (allowedMethods.contains(CorsProperties.ALL)) {
+            return null;
+        }
+        final var methods = EnumSet.noneOf(HttpMethod.class);
+        for (final var allowedMethod : allowedMethods) {
+            final var method = HttpMethod.resolve(allowedMethod.trim().toUpperCase(Locale.ROOT));
+            Assert.notNull(method, "The allowed method '" + allowedMethod + "' is not valid");
+            methods.add(method);
+        }
+        return methods;
+    }
+
+    /**
+     * Compiles the given {@code allowedHeaders}.
+     *
+     * @param allowedHeaders The allowed headers, or {@code *} to allow any header.
+     * @return The allowed headers (lower cased), or {@code null} if any header is allowed.
+     */
+    private static Set<String> compileHeaders(final List<String> allowedHeaders) {
+        if (allowedHeaders.contains(CorsProperties.ALL)) {
+            return null;
+        }
+        return allowedHeaders.stream()
+                .map(header -> header.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,106 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import ar.edu.itba.cep.api_gateway.metrics.Stage;
+import ar.edu.itba.cep.api_gateway.metrics.StageTimings;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.cors.reactive.CorsUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * A {@link WebFilter} that handles CORS requests applying the {@link CorsPolicy} selected by the
+ * {@link CorsPolicies} for the request's path. Preflight and rejected requests are not passed to the chain.
+ */
+public class CorsPolicyWebFilter implements WebFilter {
+
+    /**
+     * The separator between the scheme and the host in an origin.
+     */
+    private static final String SCHEME_SEPARATOR = "://";
+
+
+    /**
+     * The {@link CorsPolicies} from where the {@link CorsPolicy} to be applied is taken.
+     */
+    private final CorsPolicies corsPolicies;
+
+
+    /**
+     * Constructor.
+     *
+     * @param corsPolicies The {@link CorsPolicies} from where the {@link CorsPolicy} to be applied is taken.
+     */
+    public CorsPolicyWebFilter(final CorsPolicies corsPolicies) {
+        this.corsPolicies = corsPolicies;
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (!CorsUtils.isCorsRequest(request)) {
+            return chain.filter(exchange);
+        }
+        final var startTime = System.nanoTime();
+        final var preflight = CorsUtils.isPreFlightRequest(request);
+        final var valid = exchange.getResponse().getHeaders().getAccessControlAllowOrigin() != null
+                || isSameOrigin(request.getHeaders().getOrigin(), request.getURI())
+                || corsPolicies.policyFor(request.getPath().pathWithinApplication().value()).apply(exchange, preflight);
+        StageTimings.of(exchange).add(Stage.CORS, System.nanoTime() - startTime);
+        return valid && !preflight ? chain.filter(exchange) : Mono.empty();
+    }
+
+
+    /**
+     * Checks whether the given {@code origin} is the same as the one of the given {@code uri}
+     * (i.e same scheme, host and port), without allocating.
+     *
+     * @param origin The value of the {@link HttpHeaders#ORIGIN} header.
+     * @param uri    The request's {@link URI}.
+     * @return {@code true} if both are the same origin, or {@code false} otherwise.
+     */
+    private static boolean isSameOrigin(final String origin, final URI uri) {
+        final var scheme = uri.getScheme();
+        final var host = uri.getHost();
+        final var schemeEnd = origin.indexOf(SCHEME_SEPARATOR);
+        if (scheme == null || host == null || schemeEnd != scheme.length()
+                || !origin.regionMatches(true, 0, scheme, 0, schemeEnd)) {
+            return false;
+        }
+        final var hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+        final var portSeparator = origin.lastIndexOf(':');
+        final var hostEnd = portSeparator > origin.lastIndexOf(']') && portSeparator >= hostStart
+                ? portSeparator
+                : origin.length();
+        if (hostEnd - hostStart != host.length() || !origin.regionMatches(true, hostStart, host, 0, host.length())) {
+            return false;
+        }
+        try {
+            final var originPort = hostEnd == origin.length()
+                    ? -1
+                    : Integer.parseInt(origin, hostEnd + 1, origin.length(), 10);
+            return normalizePort(scheme, originPort) == normalizePort(scheme, uri.getPort());
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Normalizes the given {@code port}, replacing the default port of the given {@code scheme} with {@code -1}.
+     *
+     * @param scheme The scheme.
+     * @param port   The port (or {@code -1} if not specified).
+     * @return The normalized port.
+     */
+    private static int normalizePort(final String scheme, final int port) {
+        if (("http".equalsIgnoreCase(scheme) || "ws".equalsIgnoreCase(scheme)) && port == 80
+                || ("https".equalsIgnoreCase(scheme) || "wss".equalsIgnoreCase(scheme)) && port == 443) {
+            return -1;
+        }
+        return port;
+    }
+}
@@ -0,0 +1,147 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import ar.edu.itba.cep.api_gateway.tracing.RequestIdFilter;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Properties for configuring how CORS requests are handled.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "cors")
+/* package */ class CorsProperties {
+
+    /**
+     * The policy applied to requests whose path is not covered by any of the {@link #policies}.
+     */
+    @NestedConfigurationProperty
+    private PolicyProperties defaultPolicy = new PolicyProperties();
+    /**
+     * The policies applied to specific paths (checked in order, the first one covering the path is applied).
+     */
+    private List<PolicyProperties> policies = new ArrayList<>();
+    /**
+     * The preflight responses cache properties.
+     */
+    @NestedConfigurationProperty
+    private PreflightCacheProperties preflightCache = new PreflightCacheProperties();
+
+
+    /**
+     * Properties for the cache of preflight responses.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class PreflightCacheProperties {
+
+        /**
+         * Whether preflight requests are answered from the cache, before the security filters.
+         */
+        private boolean enabled = true;
+        /**
+         * The maximum amount of preflight responses held in the cache.
+         */
+        private long maximumSize = 1_000;
+        /**
+         * The amount of time a preflight response is held in the cache.
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+
+
+    /**
+     * Properties for a CORS policy.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class PolicyProperties {
+
+        /**
+         * The path prefixes to which the policy is applied (e.g {@code /exams} covers {@code /exams}
+         * and everything under {@code /exams/}). Ignored in the default policy.
+         */
+        private List<String> pathPrefixes = new ArrayList<>();
+        /**
+         * The allowed origins. Each one is either an exact origin (e.g {@code https://cep.itba.edu.ar}),
+         * a wildcard domain (e.g {@code https://*.itba.edu.ar}, which covers any of its subdomains),
+         * or {@code *} to allow any origin.
+         */
+        private List<String> allowedOrigins = new ArrayList<>(List.of(ALL));
+        /**
+         * The allowed methods, or {@code *} to allow any method.
+         */
+        private List<String> allowedMethods = new ArrayList<>(List.of(ALL));
+        /**
+         * The headers that can be included in requests, or {@code *} to allow any header.
+         */
+        private List<String> allowedHeaders = new ArrayList<>(List.of(ALL));
+        /**
+         * The response headers exposed to the client.
+         */
+        private List<String> exposedHeaders = new ArrayList<>(DEFAULT_EXPOSED_HEADERS);
+        /**
+         * Whether credentials are allowed.
+         */
+        private boolean allowCredentials = true;
+        /**
+         * How long preflight responses can be cached by clients.
+         */
+        private Duration maxAge = Duration.ofHours(1);
+    }
+
+
+    /**
+     * Value that allows any origin, method or header.
+     */
+    /* package */ static final String ALL = "*";
+
+    /**
+     * The response headers exposed by default.
+     */
+    private static final List<String> DEFAULT_EXPOSED_HEADERS = List.of(
+            HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,
+            HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS,
+            HttpHeaders.ACCESS_CONTROL_MAX_AGE,
+            HttpHeaders.ACCEPT_RANGES,
+            HttpHeaders.AGE,
+            HttpHeaders.ALLOW,
+            HttpHeaders.CONNECTION,
+            HttpHeaders.CONTENT_DISPOSITION,
+            HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_LOCATION,
+            HttpHeaders.CONTENT_RANGE,
+            HttpHeaders.DATE,
+            HttpHeaders.ETAG,
+            HttpHeaders.LINK,
+            HttpHeaders.LOCATION,
+            HttpHeaders.PROXY_AUTHENTICATE,
+            HttpHeaders.RETRY_AFTER,
+            HttpHeaders.SERVER,
+            HttpHeaders.TRANSFER_ENCODING,
+            HttpHeaders.UPGRADE,
+            HttpHeaders.VARY,
+            HttpHeaders.VIA,
+            HttpHeaders.WARNING,
+            HttpHeaders.WWW_AUTHENTICATE,
+
+            // Spring Security headers
+            "X-Content-Type-Options",
+            "X-Frame-Options",
+            "Strict-Transport-Security",
+            "X-XSS-Protection",
+
+            RequestIdFilter.REQUEST_ID_HEADER
+    );
+}
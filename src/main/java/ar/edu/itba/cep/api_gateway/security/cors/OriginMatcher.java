@@ -0,0 +1,228 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An immutable matcher of origins, compiled from a {@link List} of allowed origins.
+ * <p>
+ * Exact origins (e.g {@code https://cep.itba.edu.ar}) are held in a hash set. Wildcard domains
+ * (e.g {@code https://*.itba.edu.ar}) are held in a suffix trie (i.e a trie of the reversed domains),
+ * which is walked from the end of the origin, so matching an origin does not allocate
+ * (as long as the origin is lower cased, which is how browsers send it).
+ */
+/* package */ final class OriginMatcher {
+
+    /**
+     * The separator between the scheme and the host in an origin.
+     */
+    private static final String SCHEME_SEPARATOR = "://";
+
+    /**
+     * The prefix of the host in a wildcard domain.
+     */
+    private static final String WILDCARD_PREFIX = "*.";
+
+
+    /**
+     * Whether any origin is allowed.
+     */
+    private final boolean allowAll;
+    /**
+     * The allowed exact origins (lower cased).
+     */
+    private final Set<String> exactOrigins;
+    /**
+     * The root of the suffix trie holding the allowed wildcard domains.
+     */
+    private final Node wildcardDomains;
+
+
+    /**
+     * Constructor.
+     *
+     * @param allowAll        Whether any origin is allowed.
+     * @param exactOrigins    The allowed exact origins (lower cased).
+     * @param wildcardDomains The root of the suffix trie holding the allowed wildcard domains.
+     */
+    private OriginMatcher(final boolean allowAll, final Set<String> exactOrigins, final Node wildcardDomains) {
+        this.allowAll = allowAll;
+        this.exactOrigins = exactOrigins;
+        this.wildcardDomains = wildcardDomains;
+    }
+
+
+    /**
+     * Indicates whether any origin is allowed.
+     *
+     * @return {@code true} if any origin is allowed, or {@code false} otherwise.
+     */
+    /* package */ boolean isAllowAll() {
+        return allowAll;
+    }
+
+    /**
+     * Checks whether the given {@code origin} is allowed.
+     *
+     * @param origin The origin to be checked.
+     * @return {@code true} if the origin is allowed, or {@code false} otherwise.
+     */
+    /* package */ boolean matches(final String origin) {
+        return allowAll || exactOrigins.contains(origin.toLowerCase(Locale.ROOT)) || matchesWildcardDomain(origin);
+    }
+
+    /**
+     * Checks whether the given {@code origin} is a subdomain of an allowed wildcard domain (with the same scheme),
+     * walking the suffix trie from the end of the origin.
+     *
+     * @param origin The origin to be checked.
+     * @return {@code true} if the origin is allowed by a wildcard domain, or {@code false} otherwise.
+     */
+    private boolean matchesWildcardDomain(final String origin) {
+        final var schemeEnd = origin.indexOf(SCHEME_SEPARATOR);
+        if (schemeEnd <= 0) {
+            return false;
+        }
+        final var hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+        var node = wildcardDomains;
+        for (var i = origin.length() - 1; i > hostStart; i--) {
+            node = node.child(Character.toLowerCase(origin.charAt(i)));
+            if (node == null) {
+                return false;
+            }
+            // At this point, at least one character (i.e the subdomain) remains before the matched suffix
+            if (node.hasScheme(origin, hostStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Compiles the given {@code allowedOrigins} into an {@link OriginMatcher}.
+     *
+     * @param allowedOrigins The allowed origins. Each one is either an exact origin, a wildcard domain
+     *                       (e.g {@code https://*.itba.edu.ar}), or {@code *} to allow any origin.
+     * @return The compiled {@link OriginMatcher}.
+     * @throws IllegalArgumentException If an allowed origin is not valid.
+     */
+    /* package */ static OriginMatcher compile(final List<String> allowedOrigins) throws IllegalArgumentException {
+        var allowAll = false;
+        final var exactOrigins = new HashSet<String>();
+        final var wildcardDomains = new Node();
+        for (final var allowedOrigin : allowedOrigins) {
+            final var origin = allowedOrigin.trim().toLowerCase(Locale.ROOT);
+            if (CorsProperties.ALL.equals(origin)) {
+                allowAll = true;
+                continue;
+            }
+            final var schemeEnd = origin.indexOf(SCHEME_SEPARATOR);
+            Assert.isTrue(schemeEnd > 0, "The allowed origin '" + allowedOrigin + "' does not include a scheme");
+            final var hostStart = schemeEnd + SCHEME_SEPARATOR.length();
+            if (origin.startsWith(WILDCARD_PREFIX, hostStart)) {
+                // Store the suffix (including the dot) reversed, marking the last node with the scheme
+                final var suffix = origin.substring(hostStart + 1);
+                Assert.isTrue(suffix.length() > 1 && suffix.indexOf('*') < 0,
+                        "The allowed origin '" + allowedOrigin + "' is not a valid wildcard domain");
+                var node = wildcardDomains;
+                for (var i = suffix.length() - 1; i >= 0; i--) {
+                    node = node.childOrCreate(suffix.charAt(i));
+                }
+                node.addScheme(origin.substring(0, hostStart));
+            } else {
+                Assert.isTrue(origin.indexOf('*') < 0,
+                        "Wildcards in allowed origins are only supported as a subdomain (e.g https://*.itba.edu.ar)");
+                exactOrigins.add(origin.endsWith("/") ? origin.substring(0, origin.length() - 1) : origin);
+            }
+        }
+        return new OriginMatcher(allowAll, Set.copyOf(exactOrigins), wildcardDomains);
+    }
+
+
+    /**
+     * A node of the suffix trie. Nodes are only modified while compiling.
+     */
+    private static final class Node {
+
+        /**
+         * The characters that lead to each child.
+         */
+        private char[] keys = new char[0];
+        /**
+         * The children (the one in each position is reached with the character in the same position of the keys).
+         */
+        private Node[] children = new Node[0];
+        /**
+         * The schemes (including the separator) of the wildcard domains ending in this node, if any.
+         */
+        private String[] schemes = new String[0];
+
+
+        /**
+         * Returns the child reached with the given {@code key}.
+         *
+         * @param key The character.
+         * @return The child, or {@code null} if there is none.
+         */
+        private Node child(final char key) {
+            for (var i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child reached with the given {@code key}, creating it if it does not exist.
+         *
+         * @param key The character.
+         * @return The child.
+         */
+        private Node childOrCreate(final char key) {
+            final var existing = child(key);
+            if (existing != null) {
+                return existing;
+            }
+            final var created = new Node();
+            this.keys = Arrays.copyOf(keys, keys.length + 1);
+            this.children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = created;
+            return created;
+        }
+
+        /**
+         * Adds a scheme of a wildcard domain ending in this node.
+         *
+         * @param scheme The scheme (including the separator).
+         */
+        private void addScheme(final String scheme) {
+            this.schemes = Arrays.copyOf(schemes, schemes.length + 1);
+            schemes[schemes.length - 1] = scheme;
+        }
+
+        /**
+         * Checks whether the given {@code origin} starts with any of the schemes of the wildcard domains
+         * ending in this node.
+         *
+         * @param origin    The origin to be checked.
+         * @param hostStart The position in which the host starts in the origin.
+         * @return {@code true} if the origin's scheme is one of this node's schemes, or {@code false} otherwise.
+         */
+        private boolean hasScheme(final String origin, final int hostStart) {
+            for (final var scheme : schemes) {
+                if (scheme.length() == hostStart && origin.regionMatches(true, 0, scheme, 0, hostStart)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
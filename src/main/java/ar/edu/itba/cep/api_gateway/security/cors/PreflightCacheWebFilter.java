@@ -0,0 +1,241 @@
+package ar.edu.itba.cep.api_gateway.security.cors;
+
+import ar.edu.itba.cep.api_gateway.metrics.Stage;
+import ar.edu.itba.cep.api_gateway.metrics.StageTimings;
+import ar.edu.itba.cep.api_gateway.tracing.RequestIdFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.cors.reactive.CorsUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link WebFilter} that answers CORS preflight requests from a cache of already built responses,
+ * before the security filters are executed.
+ * <p>
+ * Responses are keyed by the {@link CorsPolicy} applied to the request's path, the origin, the requested method
+ * and the requested headers (lower cased, sorted and without duplicates).
+ * When a preflight request is not in the cache, it goes through the whole filter chain
+ * (i.e the security filters, including the {@link CorsPolicyWebFilter}), and the resulting response is stored
+ * once it is committed, so the cached responses are exactly the ones the chain would build.
+ * Responses without CORS headers (i.e same origin requests) are not cached,
+ * and the request id is not stored (it is set again for each request).
+ */
+/* package */ class PreflightCacheWebFilter implements WebFilter, Ordered {
+
+    /**
+     * The order of this filter (right after the one that creates the request id).
+     */
+    /* package */ static final int ORDER = RequestIdFilter.ORDER + 1;
+
+    /**
+     * The name of the preflight responses cache (used to report metrics).
+     */
+    private static final String PREFLIGHT_RESPONSES_CACHE_NAME = "cors.preflight-responses";
+
+
+    /**
+     * The {@link CorsPolicies} used to select the {@link CorsPolicy} applied to each request.
+     */
+    private final CorsPolicies corsPolicies;
+    /**
+     * A {@link Cache} holding the already built {@link PreflightResponse}s.
+     */
+    private final Cache<PreflightKey, PreflightResponse> preflightResponses;
+
+
+    /**
+     * Constructor.
+     *
+     * @param corsPolicies  The {@link CorsPolicies} used to select the {@link CorsPolicy} applied to each request.
+     * @param maximumSize   The maximum amount of preflight responses held in the cache.
+     * @param timeToLive    The amount of time a preflight response is held in the cache.
+     * @param meterRegistry The {@link MeterRegistry} to which the cache statistics are reported.
+     */
+    /* package */ PreflightCacheWebFilter(
+            final CorsPolicies corsPolicies,
+            final long maximumSize,
+            final Duration timeToLive,
+            final MeterRegistry meterRegistry) {
+        this.corsPolicies = corsPolicies;
+        this.preflightResponses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, preflightResponses, PREFLIGHT_RESPONSES_CACHE_NAME);
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var request = exchange.getRequest();
+        if (!CorsUtils.isPreFlightRequest(request)) {
+            return chain.filter(exchange);
+        }
+        final var startTime = System.nanoTime();
+        final var key = new PreflightKey(
+                corsPolicies.policyFor(request.getPath().pathWithinApplication().value()),
+                normalize(request.getHeaders())
+        );
+        final var cached = preflightResponses.getIfPresent(key);
+        if (cached != null) {
+            cached.writeTo(exchange.getResponse());
+            StageTimings.of(exchange).add(Stage.CORS, System.nanoTime() - startTime);
+            return exchange.getResponse().setComplete();
+        }
+        // Commit the response here (instead of letting the server do it), so that headers added
+        // right before committing (e.g by the security filters) are included in the cached response.
+        return chain.filter(exchange)
+                .then(Mono.defer(() -> exchange.getResponse().setComplete()))
+                .then(Mono.fromRunnable(() -> PreflightResponse.from(exchange.getResponse())
+                        .ifPresent(response -> preflightResponses.put(key, response))));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+
+    /**
+     * Normalizes the CORS headers of a preflight request with the given {@code headers} into a {@link String}.
+     *
+     * @param headers The preflight request {@link HttpHeaders}.
+     * @return The normalized CORS headers.
+     */
+    private static String normalize(final HttpHeaders headers) {
+        final var requestedHeaders = headers.getAccessControlRequestHeaders()
+                .stream()
+                .map(header -> header.trim().toLowerCase(Locale.ROOT))
+                .filter(header -> !header.isEmpty())
+                .sorted()
+                .distinct()
+                .collect(Collectors.joining(","));
+        return headers.getOrigin() + '\n'
+                + headers.getFirst(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD) + '\n'
+                + requestedHeaders;
+    }
+
+
+    /**
+     * The key of a preflight response in the cache.
+     */
+    private static final class PreflightKey {
+
+        /**
+         * The {@link CorsPolicy} applied to the preflight request.
+         */
+        private final CorsPolicy policy;
+        /**
+         * The normalized CORS headers of the preflight request.
+         */
+        private final String corsHeaders;
+
+
+        /**
+         * Constructor.
+         *
+         * @param policy      The {@link CorsPolicy} applied to the preflight request.
+         * @param corsHeaders The normalized CORS headers of the preflight request.
+         */
+        private PreflightKey(final CorsPolicy policy, final String corsHeaders) {
+            this.policy = policy;
+            this.corsHeaders = corsHeaders;
+        }
+
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PreflightKey)) {
+                return false;
+            }
+            final var that = (PreflightKey) o;
+            return policy == that.policy && corsHeaders.equals(that.corsHeaders);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(policy) + corsHeaders.hashCode();
+        }
+    }
+
+
+    /**
+     * A fully built preflight response (i.e its status and its headers).
+     */
+    private static final class PreflightResponse {
+
+        /**
+         * The response's status.
+         */
+        private final HttpStatus status;
+        /**
+         * The response's headers (read only).
+         */
+        private final HttpHeaders headers;
+
+
+        /**
+         * Constructor.
+         *
+         * @param status  The response's status.
+         * @param headers The response's headers (read only).
+         */
+        private PreflightResponse(final HttpStatus status, final HttpHeaders headers) {
+            this.status = status;
+            this.headers = headers;
+        }
+
+
+        /**
+         * Writes this preflight response's status and headers into the given {@code response}.
+         *
+         * @param response The {@link ServerHttpResponse} to be written.
+         */
+        private void writeTo(final ServerHttpResponse response) {
+            response.setStatusCode(status);
+            response.getHeaders().putAll(headers);
+        }
+
+        /**
+         * Creates a {@link PreflightResponse} from the given (committed) {@code response}.
+         *
+         * @param response The {@link ServerHttpResponse} from where the status and headers are taken.
+         * @return An {@link Optional} containing the {@link PreflightResponse},
+         * or empty if the response must not be cached (i.e it is not a CORS response).
+         */
+        private static Optional<PreflightResponse> from(final ServerHttpResponse response) {
+            final var status = Optional.ofNullable(response.getStatusCode()).orElse(HttpStatus.OK);
+            final var headers = response.getHeaders();
+            if (status == HttpStatus.OK && !headers.containsKey(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)) {
+                return Optional.empty();
+            }
+            if (status != HttpStatus.OK && status != HttpStatus.FORBIDDEN) {
+                return Optional.empty(); // Not a preflight response (e.g an error); do not cache it
+            }
+            final var copy = new LinkedMultiValueMap<String, String>(headers.size());
+            headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+            copy.remove(RequestIdFilter.REQUEST_ID_HEADER);
+            return Optional.of(new PreflightResponse(status, HttpHeaders.readOnlyHttpHeaders(new HttpHeaders(copy))));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import java.util.UUID;
+
+/**
+ * Defines behaviour for an object that must be notified when a bearer token is invalidated.
+ */
+public interface BearerTokenInvalidationListener {
+
+    /**
+     * Notifies that the token with the given {@code tokenId} has been invalidated.
+     *
+     * @param tokenId The token's id.
+     */
+    void onTokenInvalidated(final UUID tokenId);
+}
@@ -1,5 +1,6 @@
 package ar.edu.itba.cep.api_gateway.services;
 
+import java.time.Instant;
 import java.util.UUID;
 
 /**
@@ -13,4 +14,13 @@ public interface BearerTokenInvalidator {
      * @param tokenId The token's id.
      */
     void invalidateToken(final UUID tokenId);
+
+    /**
+     * Blacklists the token with the given {@code tokenId} until the given {@code expiration}
+     * (i.e the instant from which the token is not valid anymore, so there is no need to keep record of it).
+     *
+     * @param tokenId    The token's id.
+     * @param expiration The instant in which the token expires.
+     */
+    void invalidateToken(final UUID tokenId, final Instant expiration);
 }
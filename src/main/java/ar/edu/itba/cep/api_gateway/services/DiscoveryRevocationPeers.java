@@ -0,0 +1,97 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link RevocationPeers} that lists the other replicas using a {@link DiscoveryClient}
+ * (i.e the instances registered with the same service id, except this one).
+ * Replicas are reached in the port of their revocation cluster listener, taken from the
+ * {@value #CLUSTER_PORT_METADATA} metadata of each instance (or the local one, if not registered).
+ */
+/* package */ class DiscoveryRevocationPeers implements RevocationPeers {
+
+    /**
+     * The instance metadata key with the port of the revocation cluster listener.
+     */
+    /* package */ static final String CLUSTER_PORT_METADATA = "revocation-cluster-port";
+
+
+    /**
+     * The {@link DiscoveryClient} used to find the replicas.
+     */
+    private final DiscoveryClient discoveryClient;
+    /**
+     * The service id with which the replicas are registered.
+     */
+    private final String serviceId;
+    /**
+     * The {@link Registration} of this replica, used to exclude it (if registered).
+     */
+    private final Optional<Registration> registration;
+    /**
+     * The port of the revocation cluster listener of the replicas that do not report it.
+     */
+    private final int defaultClusterPort;
+
+
+    /**
+     * Constructor.
+     *
+     * @param discoveryClient    The {@link DiscoveryClient} used to find the replicas.
+     * @param serviceId          The service id with which the replicas are registered.
+     * @param registration       The {@link Registration} of this replica, used to exclude it (if registered).
+     * @param defaultClusterPort The port of the revocation cluster listener of the replicas that do not report it.
+     */
+    /* package */ DiscoveryRevocationPeers(
+            final DiscoveryClient discoveryClient,
+            final String serviceId,
+            final Optional<Registration> registration,
+            final int defaultClusterPort) {
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+        this.registration = registration;
+        this.defaultClusterPort = defaultClusterPort;
+    }
+
+
+    @Override
+    public List<URI> getPeers() {
+        return discoveryClient.getInstances(serviceId)
+                .stream()
+                .filter(instance -> registration.map(self -> !isSameInstance(self, instance)).orElse(true))
+                .map(this::clusterUri)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the base {@link URI} of the revocation cluster listener of the given {@link ServiceInstance}.
+     *
+     * @param instance The {@link ServiceInstance}.
+     * @return The base {@link URI}.
+     */
+    private URI clusterUri(final ServiceInstance instance) {
+        final var port = Optional.ofNullable(instance.getMetadata())
+                .map(metadata -> metadata.get(CLUSTER_PORT_METADATA))
+                .map(Integer::valueOf)
+                .orElse(defaultClusterPort);
+        return URI.create("http://" + instance.getHost() + ":" + port);
+    }
+
+    /**
+     * Checks whether the given {@link ServiceInstance}s are the same instance.
+     *
+     * @param self     This replica's {@link Registration}.
+     * @param instance The {@link ServiceInstance} to be checked.
+     * @return {@code true} if both are the same instance, or {@code false} otherwise.
+     */
+    private static boolean isSameInstance(final Registration self, final ServiceInstance instance) {
+        return self.getHost().equalsIgnoreCase(instance.getHost()) && self.getPort() == instance.getPort();
+    }
+}
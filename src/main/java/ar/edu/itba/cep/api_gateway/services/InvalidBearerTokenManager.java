@@ -1,24 +1,155 @@
 package ar.edu.itba.cep.api_gateway.services;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * A manager in charge of keeping record of invalidated bearer tokens.
+ * Invalidated tokens are kept in memory (in a {@link RevokedTokensTable}) until they expire,
+ * and expired entries are periodically purged in background.
+ * If a {@link RevocationPropagator} is available, tokens invalidated through this manager are propagated
+ * to the other replicas, and if a {@link RevocationJournal} is available, they are also persisted in it.
+ * It is always created on startup (even if beans are lazily initialized), so the purging starts right away.
  */
 @Component
-public class InvalidBearerTokenManager implements InvalidatedBearerTokenChecker, BearerTokenInvalidator {
+@Lazy(false)
+public class InvalidBearerTokenManager
+        implements InvalidatedBearerTokenChecker, BearerTokenInvalidator, InitializingBean, DisposableBean {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvalidBearerTokenManager.class);
+
+    /**
+     * A {@link Mono} to be returned when a token is invalid (reused in order to avoid allocations).
+     */
+    private static final Mono<Boolean> INVALID = Mono.just(true);
+
+    /**
+     * A {@link Mono} to be returned when a token is not invalid (reused in order to avoid allocations).
+     */
+    private static final Mono<Boolean> NOT_INVALID = Mono.just(false);
+
+
+    /**
+     * The {@link RevokedTokensTable} in which invalidated tokens are stored.
+     */
+    private final RevokedTokensTable revokedTokens;
+    /**
+     * The amount of time an invalidated token is kept when its expiration is not known.
+     */
+    private final Duration retention;
+    /**
+     * How often expired tokens are purged.
+     */
+    private final Duration purgeInterval;
+    /**
+     * The {@link BearerTokenInvalidationListener}s to be notified when a token is invalidated.
+     */
+    private final List<BearerTokenInvalidationListener> invalidationListeners;
+    /**
+     * The {@link RevocationPropagator} used to propagate invalidated tokens to the other replicas, if any.
+     */
+    private final Optional<RevocationPropagator> propagator;
+    /**
+     * The {@link RevocationJournal} in which invalidated tokens are persisted, if any.
+     */
+    private final Optional<RevocationJournal> journal;
+    /**
+     * The {@link Scheduler} in which the purging task runs.
+     */
+    private final Scheduler purgeScheduler;
+    /**
+     * The {@link Disposable} of the purging task (set when initialized).
+     */
+    private Disposable purgeTask;
+
+
+    /**
+     * Constructor.
+     *
+     * @param revocationProperties  The {@link RevocationProperties} from where configuration values are taken.
+     * @param revokedTokens         The {@link RevokedTokensTable} in which invalidated tokens are stored.
+     * @param invalidationListeners The {@link BearerTokenInvalidationListener}s to be notified
+     *                              when a token is invalidated.
+     * @param propagator            The {@link RevocationPropagator} used to propagate invalidated tokens
+     *                              to the other replicas, if any.
+     * @param journal               The {@link RevocationJournal} in which invalidated tokens are persisted, if any.
+     */
+    @Autowired
+    public InvalidBearerTokenManager(
+            final RevocationProperties revocationProperties,
+            final RevokedTokensTable revokedTokens,
+            final List<BearerTokenInvalidationListener> invalidationListeners,
+            final Optional<RevocationPropagator> propagator,
+            final Optional<RevocationJournal> journal) {
+        this.revokedTokens = revokedTokens;
+        this.retention = revocationProperties.getRetention();
+        this.purgeInterval = revocationProperties.getPurgeInterval();
+        this.invalidationListeners = invalidationListeners;
+        this.propagator = propagator;
+        this.journal = journal;
+        this.purgeScheduler = Schedulers.newSingle("revoked-tokens-purge", true);
+    }
+
+
+    @Override
+    public void afterPropertiesSet() {
+        this.purgeTask = Flux.interval(purgeInterval, purgeScheduler)
+                .map(ignored -> revokedTokens.purge(System.currentTimeMillis()))
+                .filter(purged -> purged > 0)
+                .subscribe(purged -> LOGGER.debug("Purged {} expired revoked tokens", purged));
+    }
+
+    @Override
+    public void destroy() {
+        purgeTask.dispose();
+        purgeScheduler.dispose();
+    }
+
 
     @Override
     public Mono<Boolean> isInvalid(final UUID tokenId) {
-        // TODO: implement
-        return Mono.just(false);
+        final var invalid = revokedTokens.contains(
+                tokenId.getMostSignificantBits(),
+                tokenId.getLeastSignificantBits(),
+                System.currentTimeMillis()
+        );
+        return invalid ? INVALID : NOT_INVALID;
     }
 
     @Override
     public void invalidateToken(final UUID tokenId) {
-        // TODO: implement
+        invalidateToken(tokenId, Instant.now().plus(retention));
+    }
+
+    @Override
+    public void invalidateToken(final UUID tokenId, final Instant expiration) {
+        final var mostSignificantBits = tokenId.getMostSignificantBits();
+        final var leastSignificantBits = tokenId.getLeastSignificantBits();
+        final var expirationMillis = expiration.toEpochMilli();
+        final var now = System.currentTimeMillis();
+        if (revokedTokens.add(mostSignificantBits, leastSignificantBits, expirationMillis, now)) {
+            journal.ifPresent(j -> j.append(mostSignificantBits, leastSignificantBits, expirationMillis));
+            propagator.ifPresent(p -> p.enqueue(mostSignificantBits, leastSignificantBits, expirationMillis));
+        }
+        invalidationListeners.forEach(listener -> listener.onTokenInvalidated(tokenId));
     }
 }
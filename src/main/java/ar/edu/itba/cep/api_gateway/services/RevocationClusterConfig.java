@@ -0,0 +1,164 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+
+/**
+ * Configuration class for propagating revoked tokens between the gateway replicas.
+ * Only enabled if the {@code authentication.revocation.cluster.enabled} property is {@code true}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "authentication.revocation.cluster", name = "enabled", havingValue = "true")
+public class RevocationClusterConfig {
+
+    /**
+     * Creates a {@link RevocationPeers} that finds the other replicas using the {@link DiscoveryClient}.
+     *
+     * @param discoveryClient      The {@link DiscoveryClient} used to find the other replicas.
+     * @param revocationProperties The {@link RevocationProperties} from where configuration values are taken.
+     * @param registration         The {@link Registration} of this replica, if registered.
+     * @return The {@link RevocationPeers} bean.
+     */
+    @Bean
+    public RevocationPeers revocationPeers(
+            final DiscoveryClient discoveryClient,
+            final RevocationProperties revocationProperties,
+            final Optional<Registration> registration) {
+        return new DiscoveryRevocationPeers(
+                discoveryClient,
+                revocationProperties.getCluster().getServiceId(),
+                registration,
+                revocationProperties.getCluster().getPort()
+        );
+    }
+
+    /**
+     * Creates the {@link RevocationPropagator}.
+     * It is always created on startup, so the first anti-entropy pull does not wait for the first request.
+     *
+     * @param revokedTokens         The {@link RevokedTokensTable} in which revoked tokens are stored.
+     * @param invalidationListeners The {@link BearerTokenInvalidationListener}s to be notified
+     *                              when a token revoked by another replica arrives.
+     * @param journal               The {@link RevocationJournal} in which tokens revoked by other replicas
+     *                              are persisted, if any.
+     * @param revocationPeers       The {@link RevocationPeers} used to find the other replicas.
+     * @param webClientBuilder      A {@link WebClient.Builder} used to create the {@link WebClient}
+     *                              used to communicate with the other replicas.
+     * @param revocationProperties  The {@link RevocationProperties} from where configuration values are taken.
+     * @param meterRegistry         The {@link MeterRegistry} to which the transferred bytes are reported.
+     * @return The {@link RevocationPropagator} bean.
+     * @throws IllegalArgumentException If no cluster secret is configured.
+     */
+    @Bean
+    @Lazy(false)
+    /* package */ RevocationPropagator revocationPropagator(
+            final RevokedTokensTable revokedTokens,
+            final List<BearerTokenInvalidationListener> invalidationListeners,
+            final Optional<RevocationJournal> journal,
+            final RevocationPeers revocationPeers,
+            final WebClient.Builder webClientBuilder,
+            final RevocationProperties revocationProperties,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var clusterProperties = revocationProperties.getCluster();
+        Assert.hasText(clusterProperties.getSecret(), "A cluster secret must be set to propagate revoked tokens");
+        return new RevocationPropagator(
+                revokedTokens,
+                invalidationListeners,
+                journal,
+                revocationPeers,
+                webClientBuilder.build(),
+                clusterProperties,
+                meterRegistry
+        );
+    }
+
+    /**
+     * Creates the {@link RevocationClusterServer} in which the other replicas push and pull revoked tokens
+     * (i.e the cluster routes are not served in the public port).
+     *
+     * @param propagator           The {@link RevocationPropagator} that handles the requests.
+     * @param revocationProperties The {@link RevocationProperties} from where configuration values are taken.
+     * @return The {@link RevocationClusterServer} bean.
+     */
+    @Bean
+    @Lazy(false)
+    /* package */ RevocationClusterServer revocationClusterServer(
+            final RevocationPropagator propagator,
+            final RevocationProperties revocationProperties) {
+        final var clusterProperties = revocationProperties.getCluster();
+        return new RevocationClusterServer(
+                revocationClusterRoutes(propagator),
+                Optional.ofNullable(clusterProperties.getAddress()).filter(address -> !address.isBlank()),
+                clusterProperties.getPort()
+        );
+    }
+
+    /**
+     * Creates the {@link RouterFunction} used by the other replicas to push and pull revoked tokens.
+     * All requests must include the cluster secret, or a 403 Forbidden response is returned.
+     * The whole set of revoked tokens is streamed in chunks (see {@link RevocationPropagator#snapshot()}).
+     *
+     * @param propagator The {@link RevocationPropagator} that handles the requests.
+     * @return The {@link RouterFunction}.
+     */
+    /* package */ static RouterFunction<ServerResponse> revocationClusterRoutes(final RevocationPropagator propagator) {
+        return RouterFunctions
+                .route(
+                        POST(RevocationPropagator.REVOCATIONS_PATH),
+                        request -> request.bodyToMono(byte[].class)
+                                .map(propagator::merge)
+                                .then(ServerResponse.noContent().build())
+                )
+                .andRoute(
+                        GET(RevocationPropagator.REVOCATIONS_PATH),
+                        request -> ServerResponse.ok()
+                                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                                // Chunks are encoded outside the event loop, as they iterate over the table
+                                .body(propagator.snapshot().subscribeOn(Schedulers.parallel()), byte[].class)
+                )
+                .andRoute(
+                        GET(RevocationPropagator.DIGEST_PATH),
+                        request -> binaryResponse(propagator::digest)
+                )
+                .filter((request, next) ->
+                        propagator.isValidSecret(request.headers().asHttpHeaders()
+                                .getFirst(RevocationPropagator.SECRET_HEADER))
+                                ? next.handle(request)
+                                : ServerResponse.status(HttpStatus.FORBIDDEN).build()
+                );
+    }
+
+    /**
+     * Creates an OK {@link ServerResponse} with the binary body supplied by the given {@code bodySupplier},
+     * which is executed outside the event loop (as it might iterate over all the revoked tokens).
+     *
+     * @param bodySupplier A {@link Supplier} of the body.
+     * @return A {@link Mono} with the {@link ServerResponse}.
+     */
+    private static Mono<ServerResponse> binaryResponse(final Supplier<byte[]> bodySupplier) {
+        return Mono.fromSupplier(bodySupplier)
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(body -> ServerResponse.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).syncBody(body));
+    }
+}
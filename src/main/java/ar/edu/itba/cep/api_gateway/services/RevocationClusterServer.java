@@ -0,0 +1,89 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.Optional;
+
+/**
+ * The internal listener in which the gateway replicas exchange revoked tokens.
+ * It is separated from the public server (i.e the cluster routes are never served in the public port),
+ * so it can be bound to the cluster network interface, or be firewalled from outside the cluster.
+ */
+/* package */ class RevocationClusterServer implements InitializingBean, DisposableBean {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationClusterServer.class);
+
+
+    /**
+     * The {@link RouterFunction} with the cluster routes.
+     */
+    private final RouterFunction<ServerResponse> routes;
+    /**
+     * The address to which the listener is bound, if any (i.e otherwise it is bound to every interface).
+     */
+    private final Optional<String> address;
+    /**
+     * The port of the listener ({@code 0} to use a random one).
+     */
+    private final int port;
+
+    /**
+     * The running server (set once started).
+     */
+    private DisposableServer server;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routes  The {@link RouterFunction} with the cluster routes.
+     * @param address The address to which the listener is bound, if any.
+     * @param port    The port of the listener ({@code 0} to use a random one).
+     */
+    /* package */ RevocationClusterServer(
+            final RouterFunction<ServerResponse> routes,
+            final Optional<String> address,
+            final int port) {
+        this.routes = routes;
+        this.address = address;
+        this.port = port;
+    }
+
+
+    @Override
+    public void afterPropertiesSet() {
+        final var httpServer = HttpServer.create();
+        this.server = address.map(httpServer::host).orElse(httpServer)
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+                .bindNow();
+        LOGGER.info("Revocation cluster listener started on {}", server.address());
+    }
+
+    @Override
+    public void destroy() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+
+    /**
+     * @return The port in which the listener is bound.
+     */
+    /* package */ int getPort() {
+        return server.port();
+    }
+}
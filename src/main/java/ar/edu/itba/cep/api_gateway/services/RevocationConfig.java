@@ -0,0 +1,52 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.nio.file.Paths;
+
+/**
+ * Configuration class for the record of invalidated bearer tokens.
+ */
+@Configuration
+@EnableConfigurationProperties(RevocationProperties.class)
+public class RevocationConfig {
+
+    /**
+     * Creates the {@link RevokedTokensTable} in which invalidated tokens are stored.
+     *
+     * @param revocationProperties The {@link RevocationProperties} from where configuration values are taken.
+     * @return The {@link RevokedTokensTable} bean.
+     */
+    @Bean
+    /* package */ RevokedTokensTable revokedTokensTable(final RevocationProperties revocationProperties) {
+        return new RevokedTokensTable(revocationProperties.getExpectedTokens());
+    }
+
+    /**
+     * Creates the {@link RevocationJournal} in which revoked tokens are persisted.
+     * Only created if the {@code authentication.revocation.journal.enabled} property is {@code true},
+     * in which case it is always created (and replayed) on startup.
+     *
+     * @param revocationProperties The {@link RevocationProperties} from where configuration values are taken.
+     * @param revokedTokens        The {@link RevokedTokensTable} into which the journal is replayed.
+     * @return The {@link RevocationJournal} bean.
+     */
+    @Bean
+    @Lazy(false)
+    @ConditionalOnProperty(prefix = "authentication.revocation.journal", name = "enabled", havingValue = "true")
+    /* package */ RevocationJournal revocationJournal(
+            final RevocationProperties revocationProperties,
+            final RevokedTokensTable revokedTokens) {
+        final var journalProperties = revocationProperties.getJournal();
+        return new RevocationJournal(
+                Paths.get(journalProperties.getPath()),
+                revokedTokens,
+                journalProperties.getCompactionInterval(),
+                revocationProperties.getExpectedTokens()
+        );
+    }
+}
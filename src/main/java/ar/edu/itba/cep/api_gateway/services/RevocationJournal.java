@@ -0,0 +1,499 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A journal of revoked tokens stored in a local file, which allows a replica to keep revoked tokens after a restart.
+ * <p>
+ * The file is accessed through memory-mapped I/O. It starts with a header (a magic number and the format version),
+ * followed by fixed-size records made of three {@code long}s: the most significant bits and least significant bits
+ * of the token id, and the expiration in milliseconds since the epoch. The file is pre-allocated (and zero filled),
+ * so the first record with a zero expiration marks the end of the journal.
+ * <p>
+ * When started, the journal is replayed into the {@link RevokedTokensTable} in one sequential pass.
+ * It is periodically compacted by rewriting it with the entries in the {@link RevokedTokensTable}
+ * that are not expired. Superseded mappings (i.e after growing or compacting) are released right away.
+ * Note that writes are only forced to the storage device when compacting or closing,
+ * so the journal survives process restarts, but not necessarily operating system crashes.
+ */
+/* package */ class RevocationJournal implements InitializingBean, DisposableBean {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationJournal.class);
+
+    /**
+     * Magic number at the beginning of a journal file.
+     */
+    private static final long MAGIC = 0x43455052564A524EL; // "CEPRVJRN"
+
+    /**
+     * The journal format version.
+     */
+    private static final long VERSION = 1L;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_BYTES = 2 * Long.BYTES;
+
+    /**
+     * The size of a record, in bytes.
+     */
+    private static final int RECORD_BYTES = 3 * Long.BYTES;
+
+    /**
+     * The {@link MethodHandle} used to release superseded mappings, or {@code null} if not available.
+     */
+    private static final MethodHandle INVOKE_CLEANER = lookupInvokeCleaner();
+
+
+    /**
+     * The path of the journal file.
+     */
+    private final Path path;
+    /**
+     * The {@link RevokedTokensTable} into which the journal is replayed, and from where it is compacted.
+     */
+    private final RevokedTokensTable revokedTokens;
+    /**
+     * How often the journal is compacted.
+     */
+    private final Duration compactionInterval;
+    /**
+     * The minimum amount of records the file can hold.
+     */
+    private final int minimumRecords;
+    /**
+     * The {@link Scheduler} in which compaction runs.
+     */
+    private final Scheduler compactionScheduler;
+
+    /**
+     * The {@link FileChannel} of the journal file (guarded by {@code this}).
+     */
+    private FileChannel channel;
+    /**
+     * The {@link MappedByteBuffer} mapping the whole journal file (guarded by {@code this}),
+     * or {@code null} if a compaction could not reopen it.
+     */
+    private MappedByteBuffer buffer;
+    /**
+     * The position in which the next record will be written (guarded by {@code this}).
+     */
+    private int position;
+    /**
+     * The {@link Disposable} of the compaction task (set when initialized).
+     */
+    private Disposable compactionTask;
+
+
+    /**
+     * Constructor.
+     *
+     * @param path               The path of the journal file.
+     * @param revokedTokens      The {@link RevokedTokensTable} into which the journal is replayed,
+     *                           and from where it is compacted.
+     * @param compactionInterval How often the journal is compacted.
+     * @param minimumRecords     The minimum amount of records the file can hold (used to pre-allocate it).
+     */
+    /* package */ RevocationJournal(
+            final Path path,
+            final RevokedTokensTable revokedTokens,
+            final Duration compactionInterval,
+            final int minimumRecords) {
+        this.path = path;
+        this.revokedTokens = revokedTokens;
+        this.compactionInterval = compactionInterval;
+        this.minimumRecords = minimumRecords;
+        this.compactionScheduler = Schedulers.newSingle("revocation-journal-compaction", true);
+    }
+
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        final var startTime = System.nanoTime();
+        final var replayed = replay();
+        LOGGER.info(
+                "Replayed {} revoked tokens from {} in {} ms",
+                replayed,
+                path,
+                Duration.ofNanos(System.nanoTime() - startTime).toMillis()
+        );
+        this.compactionTask = Flux.interval(compactionInterval, compactionScheduler)
+                .subscribe(ignored -> {
+                    try {
+                        compact();
+                    } catch (final IOException | UncheckedIOException e) {
+                        LOGGER.error("Could not compact the revoked tokens journal", e);
+                    }
+                });
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        Optional.ofNullable(compactionTask).ifPresent(Disposable::dispose);
+        compactionScheduler.dispose();
+        if (buffer != null) {
+            buffer.force();
+            unmap(buffer);
+            this.buffer = null;
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Opens the journal file (creating it if it does not exist), and replays it into the {@link RevokedTokensTable}
+     * in one sequential pass, skipping expired records.
+     *
+     * @return The amount of records that were replayed.
+     * @throws IOException If an I/O error occurs.
+     */
+    /* package */ synchronized int replay() throws IOException {
+        Optional.ofNullable(path.getParent()).ifPresent(this::createDirectories);
+        openAndMap(Math.max(Files.exists(path) ? Files.size(path) : 0, sizeFor(minimumRecords)));
+        if (buffer.getLong(0) == 0L) {
+            writeHeader(buffer);
+        } else if (buffer.getLong(0) != MAGIC || buffer.getLong(Long.BYTES) != VERSION) {
+            throw new IOException("The file " + path + " is not a revoked tokens journal");
+        }
+        final var now = System.currentTimeMillis();
+        final var limit = buffer.capacity() - RECORD_BYTES;
+        var replayed = 0;
+        var actual = HEADER_BYTES;
+        while (actual <= limit) {
+            final var expiration = buffer.getLong(actual + 2 * Long.BYTES);
+            if (expiration == 0L) {
+                break;
+            }
+            revokedTokens.add(buffer.getLong(actual), buffer.getLong(actual + Long.BYTES), expiration, now);
+            replayed++;
+            actual += RECORD_BYTES;
+        }
+        this.position = actual;
+        return replayed;
+    }
+
+    /**
+     * Appends a record to the journal, growing the file if needed
+     * (and reopening it if a previous compaction could not do it).
+     *
+     * @param mostSignificantBits  The most significant bits of the token's id.
+     * @param leastSignificantBits The least significant bits of the token's id.
+     * @param expiration           The instant in which the revocation expires, in milliseconds since the epoch.
+     */
+    /* package */ synchronized void append(
+            final long mostSignificantBits,
+            final long leastSignificantBits,
+            final long expiration) {
+        try {
+            if (position + RECORD_BYTES > mapped().capacity()) {
+                openAndMap(2L * buffer.capacity());
+            }
+            buffer.putLong(position, mostSignificantBits);
+            buffer.putLong(position + Long.BYTES, leastSignificantBits);
+            buffer.putLong(position + 2 * Long.BYTES, expiration); // Written last, as it marks the record as used
+            position += RECORD_BYTES;
+        } catch (final IOException e) {
+            // The token is still revoked in memory
+            LOGGER.error("Could not append a revoked token to the journal", e);
+        }
+    }
+
+    /**
+     * Compacts the journal, rewriting it with the non expired entries in the {@link RevokedTokensTable}.
+     * The new journal is written to a temporary file (growing it as needed, so every entry is written),
+     * which then atomically replaces the actual one. If the entries can not be written, or the temporary file
+     * can not replace the actual one, the actual journal is kept (and reopened).
+     *
+     * @return The amount of records in the compacted journal.
+     * @throws IOException If an I/O error occurs, or the entries do not fit in a journal.
+     */
+    /* package */ synchronized int compact() throws IOException {
+        final var now = System.currentTimeMillis();
+        final var temporary = path.resolveSibling(path.getFileName() + ".compacting");
+        final int records;
+        try (final var temporaryChannel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Leave room for at least as many records as there are now, so growing is not needed right away
+            final var writer = new CompactedJournal(
+                    temporaryChannel,
+                    sizeFor(Math.max(minimumRecords, 2 * revokedTokens.size()))
+            );
+            try {
+                revokedTokens.forEach(now, writer::write);
+                writer.force();
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                writer.release();
+            }
+            records = writer.getRecords();
+        } catch (final IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        // The actual journal is closed before being replaced, as some platforms can not replace open files
+        mapped().force();
+        unmap(buffer);
+        this.buffer = null;
+        channel.close();
+        try {
+            replace(temporary);
+        } catch (final IOException e) {
+            try {
+                Files.deleteIfExists(temporary);
+                mapped();
+            } catch (final IOException reopenError) {
+                e.addSuppressed(reopenError); // Reopened by the next append
+            }
+            throw e;
+        }
+        this.position = HEADER_BYTES + records * RECORD_BYTES;
+        mapped(); // If it fails, the error is reported, and the compacted journal is reopened by the next append
+        LOGGER.debug("Compacted the revoked tokens journal to {} records", records);
+        return records;
+    }
+
+
+    /**
+     * Atomically replaces the journal file with the given compacted one.
+     *
+     * @param compacted The path of the compacted journal file.
+     * @throws IOException If an I/O error occurs.
+     */
+    /* package */ void replace(final Path compacted) throws IOException {
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the mapping of the whole journal file, opening and mapping it if it is not (i.e after a compaction
+     * that could not reopen it).
+     *
+     * @return The {@link MappedByteBuffer}.
+     * @throws IOException If an I/O error occurs.
+     */
+    private MappedByteBuffer mapped() throws IOException {
+        if (buffer == null) {
+            openAndMap(Math.max(Files.size(path), sizeFor(minimumRecords)));
+        }
+        return buffer;
+    }
+
+    /**
+     * Opens the journal file and maps it with the given size (growing the file if needed),
+     * releasing the superseded mapping (if any).
+     *
+     * @param size The size of the mapping.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void openAndMap(final long size) throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The revoked tokens journal is too big");
+        }
+        final var superseded = buffer;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (superseded != null) {
+            unmap(superseded);
+        }
+    }
+
+    /**
+     * Creates the given directory (and its parents) if it does not exist.
+     *
+     * @param directory The directory to be created.
+     * @throws UncheckedIOException If an I/O error occurs.
+     */
+    private void createDirectories(final Path directory) throws UncheckedIOException {
+        try {
+            Files.createDirectories(directory);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the journal header in the given {@code buffer}.
+     *
+     * @param buffer The {@link MappedByteBuffer} in which the header is written.
+     */
+    private static void writeHeader(final MappedByteBuffer buffer) {
+        buffer.putLong(0, MAGIC);
+        buffer.putLong(Long.BYTES, VERSION);
+    }
+
+    /**
+     * Releases the given mapping right away (instead of waiting for it to be garbage collected,
+     * which might take long for the large journal mappings), if possible.
+     * The buffer must not be accessed after calling this method.
+     *
+     * @param mapping The {@link MappedByteBuffer} to be released.
+     */
+    private static void unmap(final MappedByteBuffer mapping) {
+        if (INVOKE_CLEANER == null) {
+            return; // Released once garbage collected
+        }
+        try {
+            INVOKE_CLEANER.invoke(mapping);
+        } catch (final Throwable e) {
+            LOGGER.debug("Could not release a revoked tokens journal mapping", e);
+        }
+    }
+
+    /**
+     * Looks up the JDK's {@code Unsafe.invokeCleaner(ByteBuffer)}, which releases a mapping.
+     *
+     * @return The {@link MethodHandle} (bound to the {@code Unsafe} instance), or {@code null} if not available.
+     */
+    private static MethodHandle lookupInvokeCleaner() {
+        try {
+            final var unsafeClass = Class.forName("sun.misc.Unsafe");
+            final var theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Superseded revoked tokens journal mappings will be released when garbage collected");
+            return null;
+        }
+    }
+
+    /**
+     * Calculates the size of a file holding the given amount of records.
+     *
+     * @param records The amount of records.
+     * @return The size, in bytes.
+     */
+    private static long sizeFor(final int records) {
+        return HEADER_BYTES + (long) records * RECORD_BYTES;
+    }
+
+
+    /**
+     * A compacted journal being written, which grows (i.e is remapped) as needed so every entry fits.
+     */
+    private static final class CompactedJournal {
+
+        /**
+         * The {@link FileChannel} of the compacted journal file.
+         */
+        private final FileChannel channel;
+        /**
+         * The actual mapping of the compacted journal file.
+         */
+        private MappedByteBuffer mapping;
+        /**
+         * The amount of written records.
+         */
+        private int records;
+
+
+        /**
+         * Constructor.
+         *
+         * @param channel     The {@link FileChannel} of the compacted journal file.
+         * @param initialSize The initial size of the file.
+         * @throws IOException If an I/O error occurs.
+         */
+        private CompactedJournal(final FileChannel channel, final long initialSize) throws IOException {
+            this.channel = channel;
+            this.mapping = map(initialSize);
+            this.records = 0;
+            writeHeader(mapping);
+        }
+
+
+        /**
+         * Writes a record, growing the file if it does not fit.
+         *
+         * @param mostSignificantBits  The most significant bits of the token's id.
+         * @param leastSignificantBits The least significant bits of the token's id.
+         * @param expiration           The expiration.
+         * @throws UncheckedIOException If the file can not be grown.
+         */
+        private void write(final long mostSignificantBits, final long leastSignificantBits, final long expiration)
+                throws UncheckedIOException {
+            final var offset = HEADER_BYTES + records * RECORD_BYTES;
+            if (offset + RECORD_BYTES > mapping.capacity()) {
+                try {
+                    final var superseded = mapping;
+                    superseded.force();
+                    this.mapping = map(2L * superseded.capacity());
+                    unmap(superseded);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            mapping.putLong(offset, mostSignificantBits);
+            mapping.putLong(offset + Long.BYTES, leastSignificantBits);
+            mapping.putLong(offset + 2 * Long.BYTES, expiration);
+            records++;
+        }
+
+        /**
+         * Forces the written records to the storage device.
+         */
+        private void force() {
+            mapping.force();
+        }
+
+        /**
+         * Releases the mapping. The journal must not be written after calling this method.
+         */
+        private void release() {
+            unmap(mapping);
+        }
+
+        /**
+         * @return The amount of written records.
+         */
+        private int getRecords() {
+            return records;
+        }
+
+        /**
+         * Maps the compacted journal file with the given size (growing the file).
+         *
+         * @param size The size of the mapping.
+         * @return The {@link MappedByteBuffer}.
+         * @throws IOException If an I/O error occurs, or the size exceeds the maximum size of a journal.
+         */
+        private MappedByteBuffer map(final long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The revoked tokens do not fit in a journal");
+            }
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Defines behaviour for an object that can list the other gateway replicas
+ * to which revoked tokens must be propagated.
+ */
+@FunctionalInterface
+public interface RevocationPeers {
+
+    /**
+     * Lists the other replicas.
+     *
+     * @return A {@link List} with the base {@link URI} of each of the other replicas (excluding this one).
+     */
+    List<URI> getPeers();
+}
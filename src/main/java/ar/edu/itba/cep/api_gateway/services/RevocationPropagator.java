@@ -0,0 +1,521 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Component in charge of propagating revoked tokens between the gateway replicas.
+ * <p>
+ * Locally revoked tokens are buffered and periodically pushed (in batches) to every other replica.
+ * In addition, an anti-entropy process periodically compares a digest of the revoked tokens with a random replica,
+ * pulling its whole set of revoked tokens if they differ. This allows replicas that were down (or that missed a push)
+ * to catch up. Merging is an union in which the latest expiration wins, so replicas always converge.
+ * <p>
+ * Revoked tokens are transferred in a compact binary format: each entry is made of three big-endian {@code long}s
+ * (most significant bits and least significant bits of the token id, and the expiration in milliseconds).
+ */
+/* package */ class RevocationPropagator implements InitializingBean, DisposableBean {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationPropagator.class);
+
+    /**
+     * The path in which replicas receive pushed revoked tokens and serve their whole set of revoked tokens.
+     */
+    /* package */ static final String REVOCATIONS_PATH = "/cluster/revocations";
+
+    /**
+     * The path in which replicas serve the digest of their revoked tokens.
+     */
+    /* package */ static final String DIGEST_PATH = REVOCATIONS_PATH + "/digest";
+
+    /**
+     * The header in which the cluster secret is sent.
+     */
+    /* package */ static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    /**
+     * Amount of {@code long}s in an entry.
+     */
+    private static final int ENTRY_LONGS = 3;
+
+    /**
+     * Amount of bytes in an encoded entry.
+     */
+    private static final int ENTRY_BYTES = ENTRY_LONGS * Long.BYTES;
+
+
+    /**
+     * The {@link RevokedTokensTable} in which revoked tokens are stored.
+     */
+    private final RevokedTokensTable revokedTokens;
+    /**
+     * The {@link BearerTokenInvalidationListener}s to be notified when a token revoked by another replica arrives.
+     */
+    private final List<BearerTokenInvalidationListener> invalidationListeners;
+    /**
+     * The {@link RevocationJournal} in which tokens revoked by other replicas are persisted, if any.
+     */
+    private final Optional<RevocationJournal> journal;
+    /**
+     * The {@link RevocationPeers} used to find the other replicas.
+     */
+    private final RevocationPeers peers;
+    /**
+     * The {@link WebClient} used to communicate with the other replicas.
+     */
+    private final WebClient webClient;
+    /**
+     * The secret shared by all the replicas.
+     */
+    private final String secret;
+    /**
+     * How often locally revoked tokens are pushed.
+     */
+    private final Duration flushInterval;
+    /**
+     * How often the anti-entropy process runs.
+     */
+    private final Duration antiEntropyInterval;
+    /**
+     * The maximum amount of entries in a push request.
+     */
+    private final int maxBatchSize;
+    /**
+     * The timeout for requests sent to other replicas.
+     */
+    private final Duration requestTimeout;
+    /**
+     * {@link Counter} of bytes sent to other replicas.
+     */
+    private final Counter sentBytes;
+    /**
+     * {@link Counter} of bytes received from other replicas.
+     */
+    private final Counter receivedBytes;
+    /**
+     * The {@link Scheduler} in which the periodic tasks run.
+     */
+    private final Scheduler scheduler;
+    /**
+     * Holds the periodic tasks.
+     */
+    private final Disposable.Composite tasks;
+
+    /**
+     * Entries revoked locally that were not pushed yet (guarded by {@code this}).
+     */
+    private long[] pending;
+    /**
+     * Amount of {@code long}s used in {@link #pending} (guarded by {@code this}).
+     */
+    private int pendingSize;
+
+
+    /**
+     * Constructor.
+     *
+     * @param revokedTokens         The {@link RevokedTokensTable} in which revoked tokens are stored.
+     * @param invalidationListeners The {@link BearerTokenInvalidationListener}s to be notified
+     *                              when a token revoked by another replica arrives.
+     * @param journal               The {@link RevocationJournal} in which tokens revoked by other replicas
+     *                              are persisted, if any.
+     * @param peers                 The {@link RevocationPeers} used to find the other replicas.
+     * @param webClient             The {@link WebClient} used to communicate with the other replicas.
+     * @param properties            The {@link RevocationProperties.ClusterProperties}
+     *                              from where configuration values are taken.
+     * @param meterRegistry         The {@link MeterRegistry} to which the transferred bytes are reported.
+     */
+    /* package */ RevocationPropagator(
+            final RevokedTokensTable revokedTokens,
+            final List<BearerTokenInvalidationListener> invalidationListeners,
+            final Optional<RevocationJournal> journal,
+            final RevocationPeers peers,
+            final WebClient webClient,
+            final RevocationProperties.ClusterProperties properties,
+            final MeterRegistry meterRegistry) {
+        this.revokedTokens = revokedTokens;
+        this.invalidationListeners = invalidationListeners;
+        this.journal = journal;
+        this.peers = peers;
+        this.webClient = webClient;
+        this.secret = properties.getSecret();
+        this.flushInterval = properties.getFlushInterval();
+        this.antiEntropyInterval = properties.getAntiEntropyInterval();
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.requestTimeout = properties.getRequestTimeout();
+        this.sentBytes = meterRegistry.counter("revocation.propagation.bytes", "direction", "sent");
+        this.receivedBytes = meterRegistry.counter("revocation.propagation.bytes", "direction", "received");
+        this.scheduler = Schedulers.newSingle("revocation-propagation", true);
+        this.tasks = Disposables.composite();
+        this.pending = new long[ENTRY_LONGS * 64];
+        this.pendingSize = 0;
+    }
+
+
+    @Override
+    public void afterPropertiesSet() {
+        tasks.add(
+                Flux.interval(flushInterval, scheduler)
+                        .onBackpressureDrop()
+                        .concatMap(ignored -> flush())
+                        .subscribe()
+        );
+        tasks.add(
+                Flux.interval(Duration.ZERO, antiEntropyInterval, scheduler)
+                        .onBackpressureDrop()
+                        .concatMap(ignored -> antiEntropy())
+                        .subscribe()
+        );
+    }
+
+    @Override
+    public void destroy() {
+        tasks.dispose();
+        scheduler.dispose();
+    }
+
+
+    /**
+     * Enqueues a locally revoked token in order to be pushed to the other replicas.
+     *
+     * @param mostSignificantBits  The most significant bits of the token's id.
+     * @param leastSignificantBits The least significant bits of the token's id.
+     * @param expiration           The instant in which the revocation expires, in milliseconds since the epoch.
+     */
+    /* package */ synchronized void enqueue(
+            final long mostSignificantBits,
+            final long leastSignificantBits,
+            final long expiration) {
+        if (pendingSize + ENTRY_LONGS > pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+        pending[pendingSize++] = mostSignificantBits;
+        pending[pendingSize++] = leastSignificantBits;
+        pending[pendingSize++] = expiration;
+    }
+
+    /**
+     * Pushes the pending entries to every other replica.
+     *
+     * @return A {@link Mono} that completes when the entries were pushed (it never fails).
+     */
+    /* package */ Mono<Void> flush() {
+        return Mono.defer(() -> {
+            final var entries = drain();
+            if (entries.length == 0) {
+                return Mono.empty();
+            }
+            final var targets = peers.getPeers();
+            return Flux.range(0, (entries.length / ENTRY_LONGS + maxBatchSize - 1) / maxBatchSize)
+                    .map(batch -> encode(entries, batch * maxBatchSize, maxBatchSize))
+                    .concatMap(body -> Flux.fromIterable(targets).flatMap(peer -> push(peer, body)))
+                    .then();
+        });
+    }
+
+    /**
+     * Compares the digest of the revoked tokens with a random replica, pulling its revoked tokens if they differ.
+     *
+     * @return A {@link Mono} that completes when the process finishes (it never fails).
+     */
+    /* package */ Mono<Void> antiEntropy() {
+        return Mono.defer(() -> {
+            final var targets = peers.getPeers();
+            if (targets.isEmpty()) {
+                return Mono.empty();
+            }
+            final var peer = targets.get(ThreadLocalRandom.current().nextInt(targets.size()));
+            return get(peer, DIGEST_PATH)
+                    .filter(digest -> !Arrays.equals(digest, digest()))
+                    .flatMap(ignored -> pull(peer))
+                    .doOnNext(merged -> LOGGER.debug("Merged {} revoked tokens from {}", merged, peer))
+                    .onErrorResume(e -> {
+                        LOGGER.debug("Could not compare revoked tokens with {}", peer, e);
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Merges the given encoded entries (pushed or pulled from another replica) into the local revoked tokens.
+     * Listeners are notified for each token that was not already revoked locally.
+     *
+     * @param body The encoded entries.
+     * @return The amount of entries that changed the local revoked tokens.
+     */
+    /* package */ int merge(final byte[] body) {
+        receivedBytes.increment(body.length);
+        final var buffer = ByteBuffer.wrap(body);
+        final var now = System.currentTimeMillis();
+        var changed = 0;
+        while (buffer.remaining() >= ENTRY_BYTES) {
+            final var mostSignificantBits = buffer.getLong();
+            final var leastSignificantBits = buffer.getLong();
+            final var expiration = buffer.getLong();
+            if (revokedTokens.add(mostSignificantBits, leastSignificantBits, expiration, now)) {
+                changed++;
+                journal.ifPresent(j -> j.append(mostSignificantBits, leastSignificantBits, expiration));
+                final var tokenId = new UUID(mostSignificantBits, leastSignificantBits);
+                invalidationListeners.forEach(listener -> listener.onTokenInvalidated(tokenId));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Encodes all the local revoked tokens that are not expired, in chunks of up to the maximum batch size,
+     * so the whole set of revoked tokens is never held in memory (nor sent) at once.
+     * Each chunk is encoded on demand (i.e as the replica pulling the tokens consumes the previous ones).
+     *
+     * @return A {@link Flux} with the encoded chunks.
+     */
+    /* package */ Flux<byte[]> snapshot() {
+        return Flux.defer(() -> {
+            final var cursor = revokedTokens.cursor(System.currentTimeMillis());
+            return Flux.<byte[]>generate(sink -> {
+                final var buffer = new BufferedEntries(maxBatchSize);
+                if (cursor.forEach(maxBatchSize, buffer::add) == 0) {
+                    sink.complete();
+                    return;
+                }
+                sink.next(buffer.toByteArray());
+            });
+        });
+    }
+
+    /**
+     * Computes a digest of the local revoked tokens that are not expired,
+     * which does not depend on the order in which they were stored.
+     *
+     * @return The digest (the amount of entries and the sum of their hashes).
+     */
+    /* package */ byte[] digest() {
+        final var now = System.currentTimeMillis();
+        final var accumulator = new long[2];
+        revokedTokens.forEach(now, (mostSignificantBits, leastSignificantBits, expiration) -> {
+            accumulator[0]++;
+            accumulator[1] += (mostSignificantBits * 31 + leastSignificantBits) * 31 + expiration;
+        });
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(accumulator[0]).putLong(accumulator[1]).array();
+    }
+
+    /**
+     * Checks whether the given {@code secret} is the cluster secret.
+     *
+     * @param secret The secret to be checked.
+     * @return {@code true} if it matches the cluster secret, or {@code false} otherwise.
+     */
+    /* package */ boolean isValidSecret(final String secret) {
+        return secret != null && MessageDigest.isEqual(
+                this.secret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+
+    /**
+     * Takes all the pending entries, leaving the pending buffer empty.
+     *
+     * @return The pending entries.
+     */
+    private synchronized long[] drain() {
+        final var entries = Arrays.copyOf(pending, pendingSize);
+        pendingSize = 0;
+        return entries;
+    }
+
+    /**
+     * Pushes the given encoded entries to the given {@code peer}.
+     *
+     * @param peer The replica's base {@link URI}.
+     * @param body The encoded entries.
+     * @return A {@link Mono} that completes when the entries were pushed (it never fails).
+     */
+    private Mono<Void> push(final URI peer, final byte[] body) {
+        return webClient.post()
+                .uri(peer.resolve(REVOCATIONS_PATH))
+                .header(SECRET_HEADER, secret)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .syncBody(body)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(requestTimeout)
+                .doOnSuccess(ignored -> sentBytes.increment(body.length))
+                .onErrorResume(e -> {
+                    // The anti-entropy process will eventually send these entries to the peer.
+                    LOGGER.debug("Could not push revoked tokens to {}", peer, e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Pulls the whole set of revoked tokens of the given {@code peer}, merging them as they arrive.
+     *
+     * @param peer The replica's base {@link URI}.
+     * @return A {@link Mono} with the amount of entries that changed the local revoked tokens.
+     */
+    private Mono<Integer> pull(final URI peer) {
+        return Mono.defer(() -> {
+            final var assembler = new EntryAssembler();
+            return webClient.get()
+                    .uri(peer.resolve(REVOCATIONS_PATH))
+                    .header(SECRET_HEADER, secret)
+                    .retrieve()
+                    .bodyToFlux(byte[].class)
+                    .timeout(requestTimeout) // Between chunks, as a large snapshot takes a while
+                    .map(assembler::complete)
+                    .map(this::merge)
+                    .reduce(0, Integer::sum);
+        });
+    }
+
+    /**
+     * Performs a GET request to the given {@code peer} in the given {@code path}.
+     *
+     * @param peer The replica's base {@link URI}.
+     * @param path The path.
+     * @return A {@link Mono} with the response body.
+     */
+    private Mono<byte[]> get(final URI peer, final String path) {
+        return webClient.get()
+                .uri(peer.resolve(path))
+                .header(SECRET_HEADER, secret)
+                .retrieve()
+                .bodyToMono(byte[].class)
+                .timeout(requestTimeout);
+    }
+
+    /**
+     * Encodes up to {@code maxEntries} entries from the given array, starting at the given entry.
+     *
+     * @param entries    The entries, as consecutive triplets of {@code long}s.
+     * @param from       The index of the first entry to be encoded.
+     * @param maxEntries The maximum amount of entries to be encoded.
+     * @return The encoded entries.
+     */
+    private static byte[] encode(final long[] entries, final int from, final int maxEntries) {
+        final var amount = Math.min(maxEntries, entries.length / ENTRY_LONGS - from);
+        final var buffer = ByteBuffer.allocate(amount * ENTRY_BYTES);
+        buffer.asLongBuffer().put(entries, from * ENTRY_LONGS, amount * ENTRY_LONGS);
+        return buffer.array();
+    }
+
+
+    /**
+     * A growable buffer of entries.
+     */
+    private static final class BufferedEntries {
+
+        /**
+         * The entries, as consecutive triplets of {@code long}s.
+         */
+        private long[] entries;
+        /**
+         * Amount of {@code long}s used in {@link #entries}.
+         */
+        private int size;
+
+
+        /**
+         * Constructor.
+         *
+         * @param expectedEntries The amount of entries expected to be added.
+         */
+        private BufferedEntries(final int expectedEntries) {
+            this.entries = new long[Math.max(1, expectedEntries) * ENTRY_LONGS];
+            this.size = 0;
+        }
+
+
+        /**
+         * Adds an entry.
+         *
+         * @param mostSignificantBits  The most significant bits of the token's id.
+         * @param leastSignificantBits The least significant bits of the token's id.
+         * @param expiration           The expiration.
+         */
+        private void add(final long mostSignificantBits, final long leastSignificantBits, final long expiration) {
+            if (size + ENTRY_LONGS > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[size++] = mostSignificantBits;
+            entries[size++] = leastSignificantBits;
+            entries[size++] = expiration;
+        }
+
+        /**
+         * @return The encoded entries.
+         */
+        private byte[] toByteArray() {
+            return encode(entries, 0, size / ENTRY_LONGS);
+        }
+    }
+
+
+    /**
+     * Reassembles the entries of an encoded stream whose chunks might not end at an entry boundary.
+     */
+    private static final class EntryAssembler {
+
+        /**
+         * The bytes of the last (incomplete) entry of the previous chunk.
+         */
+        private byte[] remainder = new byte[0];
+
+
+        /**
+         * Takes the next chunk of the stream, returning the entries it completes.
+         * The bytes of a trailing incomplete entry are kept until the next chunk.
+         *
+         * @param chunk The next chunk.
+         * @return The encoded complete entries.
+         */
+        private byte[] complete(final byte[] chunk) {
+            final var available = remainder.length + chunk.length;
+            final var completeBytes = available - available % ENTRY_BYTES;
+            final var entries = new byte[completeBytes];
+            final var fromRemainder = Math.min(remainder.length, completeBytes);
+            System.arraycopy(remainder, 0, entries, 0, fromRemainder);
+            System.arraycopy(chunk, 0, entries, fromRemainder, completeBytes - fromRemainder);
+            final var newRemainder = new byte[available - completeBytes];
+            final var remainderFromOld = remainder.length - fromRemainder;
+            System.arraycopy(remainder, fromRemainder, newRemainder, 0, remainderFromOld);
+            System.arraycopy(
+                    chunk,
+                    completeBytes - fromRemainder,
+                    newRemainder,
+                    remainderFromOld,
+                    newRemainder.length - remainderFromOld
+            );
+            remainder = newRemainder;
+            return entries;
+        }
+    }
+}
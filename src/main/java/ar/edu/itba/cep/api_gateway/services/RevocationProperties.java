@@ -0,0 +1,110 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+
+/**
+ * Properties for configuring the record of invalidated bearer tokens.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "authentication.revocation")
+/* package */ class RevocationProperties {
+
+    /**
+     * The amount of revoked tokens expected to be held at the same time (used to pre-size the storage).
+     */
+    private int expectedTokens = 65_536;
+    /**
+     * The amount of time a revoked token is kept when its expiration is not known
+     * (should be at least as long as the external tokens lifetime).
+     */
+    private Duration retention = Duration.ofDays(1);
+    /**
+     * How often expired revoked tokens are purged.
+     */
+    private Duration purgeInterval = Duration.ofMinutes(1);
+    /**
+     * The cluster propagation properties.
+     */
+    @NestedConfigurationProperty
+    private ClusterProperties cluster = new ClusterProperties();
+    /**
+     * The journal properties.
+     */
+    @NestedConfigurationProperty
+    private JournalProperties journal = new JournalProperties();
+
+
+    /**
+     * Properties for propagating revoked tokens between the gateway replicas.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class ClusterProperties {
+
+        /**
+         * Whether revoked tokens are propagated to the other replicas.
+         */
+        private boolean enabled = false;
+        /**
+         * The service id with which the replicas are registered in the discovery service.
+         */
+        private String serviceId = "api-gateway";
+        /**
+         * A secret shared by all the replicas, used to authenticate propagation requests.
+         */
+        private String secret;
+        /**
+         * The port of the internal listener in which replicas exchange revoked tokens
+         * (separated from the public port, so it can be reached only from the cluster network).
+         */
+        private int port = 8081;
+        /**
+         * The address to which the internal listener is bound (e.g the cluster network interface),
+         * or {@code null} to bind it to every interface.
+         */
+        private String address;
+        /**
+         * How often locally revoked tokens are pushed to the other replicas.
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+        /**
+         * How often the revoked tokens are compared with (and pulled from) a random replica.
+         */
+        private Duration antiEntropyInterval = Duration.ofSeconds(30);
+        /**
+         * The maximum amount of revoked tokens to be sent in a single push request.
+         */
+        private int maxBatchSize = 10_000;
+        /**
+         * The timeout for requests sent to other replicas.
+         */
+        private Duration requestTimeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Properties for the local journal of revoked tokens.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class JournalProperties {
+
+        /**
+         * Whether revoked tokens are written to (and restored from) a local journal.
+         */
+        private boolean enabled = false;
+        /**
+         * The path of the journal file.
+         */
+        private String path = "revoked-tokens.journal";
+        /**
+         * How often the journal is compacted (i.e expired entries are removed from it).
+         */
+        private Duration compactionInterval = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,404 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.springframework.util.Assert;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.UUID;
+
+/**
+ * An open-addressing hash table that stores revoked token ids (i.e {@link UUID}s) together with an expiration,
+ * using only primitive {@code long}s (i.e no boxing and a predictable memory footprint of
+ * {@value #SLOT_BYTES} bytes per slot).
+ * <p>
+ * Lookups are lock-free: a slot is published by writing its expiration last (with release semantics),
+ * and a slot's token id never changes once set in a given table. Writes are serialized,
+ * and growing or purging expired entries creates a new table which is then published through a volatile field.
+ */
+/* package */ final class RevokedTokensTable {
+
+    /**
+     * Amount of {@code long}s used by each slot (most significant bits, least significant bits and expiration).
+     */
+    private static final int STRIDE = 3;
+
+    /**
+     * Amount of bytes used by each slot.
+     */
+    /* package */ static final int SLOT_BYTES = STRIDE * Long.BYTES;
+
+    /**
+     * Expiration value used to indicate that a slot is empty.
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * The maximum load factor before growing the table (low in order to keep probe sequences short).
+     */
+    private static final int MAX_LOAD_PERCENTAGE = 50;
+
+    /**
+     * The maximum capacity of a table.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 28;
+
+    /**
+     * A {@link VarHandle} used to access the slots array with acquire/release semantics.
+     */
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+
+    /**
+     * The minimum capacity of this table (i.e it will never shrink below this capacity when purging).
+     */
+    private final int minimumCapacity;
+
+    /**
+     * The actual table. Replaced when growing or purging.
+     */
+    private volatile Table table;
+
+
+    /**
+     * Constructor.
+     *
+     * @param expectedEntries The amount of entries this table is expected to hold (used to pre-size it).
+     * @throws IllegalArgumentException If the expected entries is not positive.
+     */
+    /* package */ RevokedTokensTable(final int expectedEntries) throws IllegalArgumentException {
+        Assert.isTrue(expectedEntries > 0, "The expected entries must be positive");
+        this.minimumCapacity = capacityFor(expectedEntries);
+        this.table = new Table(minimumCapacity);
+    }
+
+
+    /**
+     * Indicates whether the token with the given id is revoked at the given instant.
+     *
+     * @param mostSignificantBits  The most significant bits of the token's id.
+     * @param leastSignificantBits The least significant bits of the token's id.
+     * @param now                  The actual instant, in milliseconds since the epoch.
+     * @return {@code true} if the token is revoked and its revocation has not expired yet, or {@code false} otherwise.
+     */
+    /* package */ boolean contains(final long mostSignificantBits, final long leastSignificantBits, final long now) {
+        final var actual = table;
+        final var slots = actual.slots;
+        final var mask = actual.mask;
+        var index = hash(mostSignificantBits, leastSignificantBits) & mask;
+        // The load factor ensures there is always an empty slot, so this loop always terminates.
+        while (true) {
+            final var base = index * STRIDE;
+            final var expiration = (long) SLOTS.getAcquire(slots, base + 2);
+            if (expiration == EMPTY) {
+                return false;
+            }
+            if (slots[base] == mostSignificantBits && slots[base + 1] == leastSignificantBits) {
+                return expiration > now;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds the token with the given id, with the given expiration.
+     * If the token is already in the table, the expiration is extended (if the given one is later).
+     *
+     * @param mostSignificantBits  The most significant bits of the token's id.
+     * @param leastSignificantBits The least significant bits of the token's id.
+     * @param expiration           The instant in which the revocation expires, in milliseconds since the epoch.
+     * @param now                  The actual instant, in milliseconds since the epoch.
+     * @return {@code true} if the table changed, or {@code false} otherwise.
+     */
+    /* package */ synchronized boolean add(
+            final long mostSignificantBits,
+            final long leastSignificantBits,
+            final long expiration,
+            final long now) {
+        if (expiration <= now) {
+            return false;
+        }
+        var actual = table;
+        if ((actual.size + 1) * 100L > (long) actual.capacity() * MAX_LOAD_PERCENTAGE) {
+            actual = rebuild(actual, now, Math.max(minimumCapacity, capacityFor(actual.size + 1)));
+            table = actual;
+        }
+        return actual.put(mostSignificantBits, leastSignificantBits, expiration);
+    }
+
+    /**
+     * Removes the expired entries, shrinking the table if possible.
+     *
+     * @param now The actual instant, in milliseconds since the epoch.
+     * @return The amount of removed entries.
+     */
+    /* package */ synchronized int purge(final long now) {
+        final var actual = table;
+        final var live = actual.countLive(now);
+        if (live == actual.size) {
+            return 0;
+        }
+        table = rebuild(actual, now, Math.max(minimumCapacity, capacityFor(live)));
+        return actual.size - live;
+    }
+
+    /**
+     * Performs the given {@code action} for each entry in this table that is not expired at the given instant.
+     *
+     * @param now    The actual instant, in milliseconds since the epoch.
+     * @param action The {@link EntryConsumer} to be called with each entry.
+     */
+    /* package */ void forEach(final long now, final EntryConsumer action) {
+        final var slots = table.slots;
+        for (var base = 0; base < slots.length; base += STRIDE) {
+            final var expiration = (long) SLOTS.getAcquire(slots, base + 2);
+            if (expiration > now) {
+                action.accept(slots[base], slots[base + 1], expiration);
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link Cursor} over the entries of this table that are not expired at the given instant,
+     * which allows iterating them in chunks (e.g in order to stream them).
+     * The cursor iterates the table as it is when it is created: entries added after growing or purging
+     * might be missed.
+     *
+     * @param now The actual instant, in milliseconds since the epoch.
+     * @return The {@link Cursor}.
+     */
+    /* package */ Cursor cursor(final long now) {
+        return new Cursor(table, now);
+    }
+
+    /**
+     * @return The amount of entries in this table (including the expired ones that were not purged yet).
+     */
+    /* package */ int size() {
+        return table.size;
+    }
+
+    /**
+     * @return The amount of slots of this table.
+     */
+    /* package */ int capacity() {
+        return table.capacity();
+    }
+
+
+    /**
+     * Creates a new {@link Table} with the given {@code capacity}, containing the entries in the given {@code table}
+     * that are not expired at the given instant.
+     *
+     * @param table    The {@link Table} from where entries are taken.
+     * @param now      The actual instant, in milliseconds since the epoch.
+     * @param capacity The capacity of the new {@link Table}.
+     * @return The new {@link Table}.
+     */
+    private static Table rebuild(final Table table, final long now, final int capacity) {
+        final var newTable = new Table(capacity);
+        final var slots = table.slots;
+        for (var base = 0; base < slots.length; base += STRIDE) {
+            final var expiration = slots[base + 2];
+            if (expiration > now) {
+                newTable.put(slots[base], slots[base + 1], expiration);
+            }
+        }
+        return newTable;
+    }
+
+    /**
+     * Calculates the capacity (a power of two) needed to hold the given amount of entries
+     * without exceeding the maximum load factor.
+     *
+     * @param entries The amount of entries.
+     * @return The capacity.
+     * @throws IllegalStateException If the needed capacity exceeds the maximum capacity.
+     */
+    private static int capacityFor(final int entries) throws IllegalStateException {
+        final var needed = Math.max(2L, entries * 100L / MAX_LOAD_PERCENTAGE + 1);
+        if (needed > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Too many revoked tokens");
+        }
+        return Integer.highestOneBit((int) (needed - 1)) << 1;
+    }
+
+    /**
+     * Spreads the bits of a token id into a hash code.
+     *
+     * @param mostSignificantBits  The most significant bits of the token's id.
+     * @param leastSignificantBits The least significant bits of the token's id.
+     * @return The hash code.
+     * @implNote Uses the MurmurHash3 64 bits finalizer.
+     */
+    /* package */ static int hash(final long mostSignificantBits, final long leastSignificantBits) {
+        var h = mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+
+    /**
+     * The actual storage of a {@link RevokedTokensTable}.
+     */
+    private static final class Table {
+
+        /**
+         * The slots, laid out as consecutive (most significant bits, least significant bits, expiration) triplets.
+         */
+        private final long[] slots;
+        /**
+         * Mask used to compute indexes (i.e capacity - 1).
+         */
+        private final int mask;
+        /**
+         * The amount of used slots (only modified while holding the {@link RevokedTokensTable} lock).
+         */
+        private volatile int size;
+
+
+        /**
+         * Constructor.
+         *
+         * @param capacity The amount of slots (must be a power of two).
+         */
+        private Table(final int capacity) {
+            this.slots = new long[capacity * STRIDE];
+            this.mask = capacity - 1;
+            this.size = 0;
+        }
+
+
+        /**
+         * @return The amount of slots.
+         */
+        private int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Puts the given entry in this table, extending the expiration if the id is already present.
+         * Must be called while holding the {@link RevokedTokensTable} lock (or before publishing this table).
+         *
+         * @param mostSignificantBits  The most significant bits of the token's id.
+         * @param leastSignificantBits The least significant bits of the token's id.
+         * @param expiration           The expiration.
+         * @return {@code true} if the table changed, or {@code false} otherwise.
+         */
+        private boolean put(final long mostSignificantBits, final long leastSignificantBits, final long expiration) {
+            var index = hash(mostSignificantBits, leastSignificantBits) & mask;
+            while (true) {
+                final var base = index * STRIDE;
+                final var actualExpiration = slots[base + 2];
+                if (actualExpiration == EMPTY) {
+                    slots[base] = mostSignificantBits;
+                    slots[base + 1] = leastSignificantBits;
+                    SLOTS.setRelease(slots, base + 2, expiration); // Publishes the slot
+                    size++;
+                    return true;
+                }
+                if (slots[base] == mostSignificantBits && slots[base + 1] == leastSignificantBits) {
+                    if (expiration <= actualExpiration) {
+                        return false;
+                    }
+                    SLOTS.setRelease(slots, base + 2, expiration);
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        /**
+         * Counts the entries that are not expired at the given instant.
+         *
+         * @param now The actual instant, in milliseconds since the epoch.
+         * @return The amount of live entries.
+         */
+        private int countLive(final long now) {
+            var live = 0;
+            for (var base = 2; base < slots.length; base += STRIDE) {
+                if (slots[base] > now) {
+                    live++;
+                }
+            }
+            return live;
+        }
+    }
+
+
+    /**
+     * Iterates, in chunks, the entries of a {@link RevokedTokensTable} that are not expired at a given instant.
+     * Not thread-safe.
+     */
+    /* package */ static final class Cursor {
+
+        /**
+         * The {@link Table} being iterated.
+         */
+        private final Table table;
+        /**
+         * The instant at which entries must not be expired, in milliseconds since the epoch.
+         */
+        private final long now;
+        /**
+         * The index (in the slots array) of the next slot to be visited.
+         */
+        private int next;
+
+
+        /**
+         * Constructor.
+         *
+         * @param table The {@link Table} being iterated.
+         * @param now   The instant at which entries must not be expired, in milliseconds since the epoch.
+         */
+        private Cursor(final Table table, final long now) {
+            this.table = table;
+            this.now = now;
+            this.next = 0;
+        }
+
+
+        /**
+         * Performs the given {@code action} for up to {@code maxEntries} of the next entries.
+         *
+         * @param maxEntries The maximum amount of entries to be visited.
+         * @param action     The {@link EntryConsumer} to be called with each entry.
+         * @return The amount of visited entries ({@code 0} once all the entries were visited).
+         */
+        /* package */ int forEach(final int maxEntries, final EntryConsumer action) {
+            final var slots = table.slots;
+            var visited = 0;
+            while (visited < maxEntries && next < slots.length) {
+                final var base = next;
+                next += STRIDE;
+                final var expiration = (long) SLOTS.getAcquire(slots, base + 2);
+                if (expiration > now) {
+                    action.accept(slots[base], slots[base + 1], expiration);
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+
+
+    /**
+     * Defines behaviour for an object that can consume the entries of a {@link RevokedTokensTable}.
+     */
+    @FunctionalInterface
+    /* package */ interface EntryConsumer {
+
+        /**
+         * Consumes an entry.
+         *
+         * @param mostSignificantBits  The most significant bits of the token's id.
+         * @param leastSignificantBits The least significant bits of the token's id.
+         * @param expiration           The instant in which the revocation expires, in milliseconds since the epoch.
+         */
+        void accept(final long mostSignificantBits, final long leastSignificantBits, final long expiration);
+    }
+}
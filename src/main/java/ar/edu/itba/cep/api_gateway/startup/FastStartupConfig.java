@@ -0,0 +1,40 @@
+package ar.edu.itba.cep.api_gateway.startup;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for starting the gateway faster (i.e when scaling out).
+ */
+@Configuration
+@EnableConfigurationProperties(FastStartupProperties.class)
+public class FastStartupConfig {
+
+    /**
+     * Creates the {@link LazyInitializationPostProcessor} that makes beans be created the first time they are needed.
+     * Only created if the {@code fast-startup.lazy-initialization} property is {@code true}.
+     * Note that the method is static, as the post processor must be created before any other bean.
+     *
+     * @return The {@link LazyInitializationPostProcessor} bean.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "fast-startup", name = "lazy-initialization", havingValue = "true")
+    /* package */ static LazyInitializationPostProcessor lazyInitializationPostProcessor() {
+        return new LazyInitializationPostProcessor();
+    }
+
+    /**
+     * Creates the {@link StartupTrainingRun} that sends a request to each route once the gateway is ready, and exits.
+     * Only created if the {@code fast-startup.training.enabled} property is {@code true}.
+     *
+     * @param fastStartupProperties The {@link FastStartupProperties} from where configuration values are taken.
+     * @return The {@link StartupTrainingRun} bean.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "fast-startup.training", name = "enabled", havingValue = "true")
+    /* package */ StartupTrainingRun startupTrainingRun(final FastStartupProperties fastStartupProperties) {
+        return new StartupTrainingRun(fastStartupProperties.getTraining().getTimeout());
+    }
+}
@@ -0,0 +1,46 @@
+package ar.edu.itba.cep.api_gateway.startup;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+
+/**
+ * Properties for configuring how the gateway starts.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "fast-startup")
+/* package */ class FastStartupProperties {
+
+    /**
+     * Whether beans are lazily initialized (i.e created the first time they are needed instead of on startup).
+     */
+    private boolean lazyInitialization = false;
+    /**
+     * The training properties.
+     */
+    @NestedConfigurationProperty
+    private TrainingProperties training = new TrainingProperties();
+
+
+    /**
+     * Properties for the training run, which starts the gateway, sends a request to each route, and exits
+     * (used to record the classes loaded by a real startup, in order to create a class data sharing archive).
+     */
+    @Getter
+    @Setter
+    /* package */ static final class TrainingProperties {
+
+        /**
+         * Whether the gateway makes a training run instead of serving requests.
+         */
+        private boolean enabled = false;
+        /**
+         * For how long the training run waits for the responses before exiting.
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+}
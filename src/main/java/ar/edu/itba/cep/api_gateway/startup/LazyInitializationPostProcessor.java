@@ -0,0 +1,127 @@
+package ar.edu.itba.cep.api_gateway.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.cloud.netflix.archaius.ConfigurableEnvironmentConfiguration;
+import org.springframework.context.Lifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+
+/**
+ * A {@link BeanFactoryPostProcessor} that marks singleton beans as lazily initialized,
+ * so they are created the first time they are needed instead of on startup
+ * (i.e beans that are not used to serve requests, like most of the actuator ones, are not created until they are used).
+ * <p>
+ * Beans are left as they are (i.e they are eagerly initialized) when:
+ * <ul>
+ * <li>Their definition is annotated with {@link Lazy} (so {@code @Lazy(false)} keeps beans with background tasks
+ * eager).</li>
+ * <li>They are infrastructure beans.</li>
+ * <li>Their declared type is one whose callbacks are only invoked on beans created on startup
+ * (i.e {@link SmartInitializingSingleton} and {@link Lifecycle}), or it can not be resolved.</li>
+ * <li>Their declared type is {@link ConfigurableEnvironmentConfiguration}, as creating it is what makes the
+ * environment's properties visible to Archaius (i.e Ribbon would not see the servers and settings of the routes
+ * until something else needed it).</li>
+ * </ul>
+ */
+/* package */ class LazyInitializationPostProcessor implements BeanFactoryPostProcessor {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyInitializationPostProcessor.class);
+
+    /**
+     * Types of beans that must be created on startup.
+     */
+    private static final List<Class<?>> EAGER_TYPES = List.of(
+            SmartInitializingSingleton.class,
+            Lifecycle.class,
+            ConfigurableEnvironmentConfiguration.class
+    );
+
+
+    @Override
+    public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        final var classLoader = beanFactory.getBeanClassLoader();
+        final var names = beanFactory.getBeanDefinitionNames();
+        var lazy = 0;
+        for (final var name : names) {
+            final var definition = beanFactory.getBeanDefinition(name);
+            if (canBeLazy(definition, classLoader)) {
+                definition.setLazyInit(true);
+                lazy++;
+            }
+        }
+        LOGGER.info("Lazily initializing {} of {} beans", lazy, names.length);
+    }
+
+
+    /**
+     * Indicates whether the bean with the given {@code definition} can be lazily initialized.
+     *
+     * @param definition  The {@link BeanDefinition}.
+     * @param classLoader The {@link ClassLoader} with which the bean's type is resolved.
+     * @return {@code true} if the bean can be marked as lazily initialized, or {@code false} otherwise.
+     */
+    private static boolean canBeLazy(final BeanDefinition definition, final ClassLoader classLoader) {
+        if (definition.isLazyInit()
+                || !definition.isSingleton()
+                || definition.isAbstract()
+                || definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE
+                || isAnnotatedWithLazy(definition)) {
+            return false;
+        }
+        final var type = declaredType(definition, classLoader);
+        return type != null && EAGER_TYPES.stream().noneMatch(eagerType -> eagerType.isAssignableFrom(type));
+    }
+
+    /**
+     * Indicates whether the given {@code definition} is annotated with {@link Lazy}
+     * (i.e its factory method, or its class if it is not created by a factory method).
+     *
+     * @param definition The {@link BeanDefinition}.
+     * @return {@code true} if it is annotated, or {@code false} otherwise.
+     */
+    private static boolean isAnnotatedWithLazy(final BeanDefinition definition) {
+        if (!(definition instanceof AnnotatedBeanDefinition)) {
+            return false;
+        }
+        final var annotated = (AnnotatedBeanDefinition) definition;
+        final var factoryMethod = annotated.getFactoryMethodMetadata();
+        return factoryMethod != null
+                ? factoryMethod.isAnnotated(Lazy.class.getName())
+                : annotated.getMetadata().isAnnotated(Lazy.class.getName());
+    }
+
+    /**
+     * Resolves the declared type of the bean with the given {@code definition}
+     * (i.e the return type of its factory method, or its class).
+     *
+     * @param definition  The {@link BeanDefinition}.
+     * @param classLoader The {@link ClassLoader} with which the type is resolved.
+     * @return The type, or {@code null} if it can not be resolved.
+     */
+    private static Class<?> declaredType(final BeanDefinition definition, final ClassLoader classLoader) {
+        final var factoryMethod = definition instanceof AnnotatedBeanDefinition
+                ? ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata()
+                : null;
+        final var typeName = factoryMethod != null ? factoryMethod.getReturnTypeName() : definition.getBeanClassName();
+        if (typeName == null) {
+            return null;
+        }
+        try {
+            return ClassUtils.forName(typeName, classLoader);
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ar.edu.itba.cep.api_gateway.startup;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * A training run of the gateway: once it is ready, a request is sent to each route (with and without a bearer token),
+ * and then the application exits.
+ * <p>
+ * Its purpose is to load the classes needed to start the gateway and to serve requests, so they can be recorded
+ * (e.g with {@code -XX:DumpLoadedClassList}) in order to create a class data sharing archive.
+ * The responses do not matter (i.e there is no need for the services to be running).
+ */
+/* package */ class StartupTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTrainingRun.class);
+
+
+    /**
+     * For how long the responses are waited before exiting.
+     */
+    private final Duration timeout;
+
+
+    /**
+     * Constructor.
+     *
+     * @param timeout For how long the responses are waited before exiting.
+     */
+    /* package */ StartupTrainingRun(final Duration timeout) {
+        this.timeout = timeout;
+    }
+
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        final var context = event.getApplicationContext();
+        final var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        final var client = WebClient.create("http://localhost:" + port);
+        LOGGER.info("Sending training requests to each route");
+        try {
+            Flux.fromIterable(RoutesConfig.ROUTE_PATHS.values())
+                    .map(paths -> paths.get(0).replace("/**", ""))
+                    .flatMap(path -> Flux.concat(send(client, path, null), send(client, path, "training")))
+                    .then()
+                    .block(timeout);
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Training requests did not complete", e);
+        }
+        LOGGER.info("Training run finished. Exiting...");
+        System.exit(SpringApplication.exit(context));
+    }
+
+
+    /**
+     * Sends a GET request to the given {@code path}, ignoring the response (or any error).
+     *
+     * @param client The {@link WebClient} used to send the request.
+     * @param path   The path.
+     * @param token  The bearer token sent in the request, or {@code null} if the request is anonymous.
+     * @return A {@link Mono} that completes once the response is received.
+     */
+    private static Mono<Void> send(final WebClient client, final String path, final String token) {
+        return client.get()
+                .uri(path)
+                .headers(headers -> {
+                    if (token != null) {
+                        headers.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+                    }
+                })
+                .exchange()
+                .flatMap(response -> response.bodyToMono(Void.class))
+                .onErrorResume(ignored -> Mono.empty());
+    }
+}
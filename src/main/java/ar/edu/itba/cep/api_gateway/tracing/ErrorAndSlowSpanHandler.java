@@ -0,0 +1,141 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import zipkin2.Endpoint;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A {@link FinishedSpanHandler} that exports the spans of requests that were not sampled,
+ * but that failed or were slow, so they are always kept.
+ * <p>
+ * Only the spans of requests that were not sampled, but that were recorded locally, are seen
+ * (see {@link LocalSamplingPropagationFactory}), so only a fraction of the failed or slow requests are kept.
+ * Spans of sampled requests are left to the default handling.
+ */
+/* package */ class ErrorAndSlowSpanHandler extends FinishedSpanHandler {
+
+    /**
+     * The tag in which errors are reported.
+     */
+    private static final String ERROR_TAG = "error";
+
+
+    /**
+     * The {@link Reporter} to which the kept spans are exported.
+     */
+    private final Reporter<Span> reporter;
+    /**
+     * The local service name (used when the span does not have one).
+     */
+    private final String localServiceName;
+    /**
+     * The duration from which spans are considered slow, in microseconds.
+     */
+    private final long slowThresholdMicros;
+    /**
+     * A {@link Counter} of the spans kept due to an error.
+     */
+    private final Counter errorSpans;
+    /**
+     * A {@link Counter} of the spans kept due to being slow.
+     */
+    private final Counter slowSpans;
+
+
+    /**
+     * Constructor.
+     *
+     * @param reporter         The {@link Reporter} to which the kept spans are exported.
+     * @param localServiceName The local service name (used when the span does not have one).
+     * @param slowThreshold    The duration from which spans are considered slow.
+     * @param meterRegistry    The {@link MeterRegistry} to which the amount of kept spans is reported.
+     */
+    /* package */ ErrorAndSlowSpanHandler(
+            final Reporter<Span> reporter,
+            final String localServiceName,
+            final Duration slowThreshold,
+            final MeterRegistry meterRegistry) {
+        this.reporter = reporter;
+        this.localServiceName = localServiceName;
+        this.slowThresholdMicros = slowThreshold.toNanos() / 1_000L;
+        this.errorSpans = keptSpansCounter(meterRegistry, "error");
+        this.slowSpans = keptSpansCounter(meterRegistry, "slow");
+    }
+
+
+    @Override
+    public boolean handle(final TraceContext context, final MutableSpan span) {
+        if (Boolean.TRUE.equals(context.sampled())) {
+            return true;
+        }
+        if (span.error() != null || span.tag(ERROR_TAG) != null) {
+            errorSpans.increment();
+            reporter.report(toZipkin(context, span));
+        } else if (span.finishTimestamp() - span.startTimestamp() >= slowThresholdMicros) {
+            slowSpans.increment();
+            reporter.report(toZipkin(context, span));
+        }
+        return true;
+    }
+
+
+    /**
+     * Converts the given {@link MutableSpan} into a Zipkin {@link Span}.
+     *
+     * @param context The span's {@link TraceContext}.
+     * @param span    The {@link MutableSpan} to be converted.
+     * @return The Zipkin {@link Span}.
+     */
+    private Span toZipkin(final TraceContext context, final MutableSpan span) {
+        final var builder = Span.newBuilder()
+                .traceId(context.traceIdString())
+                .parentId(context.parentIdString())
+                .id(context.spanIdString())
+                .name(span.name())
+                .timestamp(span.startTimestamp())
+                .duration(Math.max(1L, span.finishTimestamp() - span.startTimestamp()))
+                .shared(span.shared() ? true : null)
+                .localEndpoint(Endpoint.newBuilder()
+                        .serviceName(Optional.ofNullable(span.localServiceName()).orElse(localServiceName))
+                        .ip(span.localIp())
+                        .port(span.localPort())
+                        .build());
+        Optional.ofNullable(span.kind()).map(kind -> Span.Kind.valueOf(kind.name())).ifPresent(builder::kind);
+        if (span.remoteServiceName() != null || span.remoteIp() != null) {
+            builder.remoteEndpoint(Endpoint.newBuilder()
+                    .serviceName(span.remoteServiceName())
+                    .ip(span.remoteIp())
+                    .port(span.remotePort())
+                    .build());
+        }
+        span.forEachTag(Span.Builder::putTag, builder);
+        span.forEachAnnotation(Span.Builder::addAnnotation, builder);
+        if (span.error() != null && span.tag(ERROR_TAG) == null) {
+            builder.putTag(ERROR_TAG, Optional.ofNullable(span.error().getMessage())
+                    .orElseGet(() -> span.error().getClass().getSimpleName()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a {@link Counter} of the spans of requests that were not sampled, but that were kept.
+     *
+     * @param meterRegistry The {@link MeterRegistry} in which the {@link Counter} is registered.
+     * @param reason        The reason why spans were kept.
+     * @return The {@link Counter}.
+     */
+    private static Counter keptSpansCounter(final MeterRegistry meterRegistry, final String reason) {
+        return Counter.builder("tracing.spans.kept")
+                .description("Spans of requests that were not sampled, but were exported anyway")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,83 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import brave.propagation.Propagation;
+import brave.propagation.TraceContext;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Propagation.Factory} that marks a fraction of the traces that are not sampled to be recorded locally,
+ * so the {@link ErrorAndSlowSpanHandler} can export them if they fail or are slow.
+ * The rest of the traces that are not sampled are not recorded at all (i.e their spans are no-op).
+ * <p>
+ * The decision is taken from the trace id, so every span of a trace gets the same one
+ * (including those started from contexts extracted from other services).
+ * It does not change the sampling decision propagated to other services.
+ */
+/* package */ class LocalSamplingPropagationFactory extends Propagation.Factory {
+
+    /**
+     * The amount of buckets in which trace ids are split to apply the probability.
+     */
+    private static final int BUCKETS = 10_000;
+
+
+    /**
+     * The {@link Propagation.Factory} to which propagation is delegated.
+     */
+    private final Propagation.Factory delegate;
+    /**
+     * The amount of buckets (out of {@link #BUCKETS}) whose traces are recorded locally.
+     */
+    private final int recordedBuckets;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate    The {@link Propagation.Factory} to which propagation is delegated.
+     * @param probability The probability of recording a trace that is not sampled (from 0 to 1).
+     * @throws IllegalArgumentException If the probability is not between 0 and 1.
+     */
+    /* package */ LocalSamplingPropagationFactory(final Propagation.Factory delegate, final float probability)
+            throws IllegalArgumentException {
+        Assert.isTrue(probability >= 0 && probability <= 1, "The local sampling probability must be between 0 and 1");
+        this.delegate = delegate;
+        this.recordedBuckets = Math.round(probability * BUCKETS);
+    }
+
+
+    @Override
+    public <K> Propagation<K> create(final Propagation.KeyFactory<K> keyFactory) {
+        return delegate.create(keyFactory);
+    }
+
+    @Override
+    public boolean supportsJoin() {
+        return delegate.supportsJoin();
+    }
+
+    @Override
+    public boolean requires128BitTraceId() {
+        return delegate.requires128BitTraceId();
+    }
+
+    @Override
+    public TraceContext decorate(final TraceContext context) {
+        final var decorated = delegate.decorate(context);
+        if (Boolean.TRUE.equals(decorated.sampled()) || decorated.sampledLocal() || !isRecorded(decorated.traceId())) {
+            return decorated;
+        }
+        return decorated.toBuilder().sampledLocal(true).build();
+    }
+
+
+    /**
+     * Checks whether the trace with the given id must be recorded locally.
+     *
+     * @param traceId The (lower 64 bits of the) trace id.
+     * @return {@code true} if the trace must be recorded, or {@code false} otherwise.
+     */
+    /* package */ boolean isRecorded(final long traceId) {
+        return Math.abs(traceId % BUCKETS) < recordedBuckets;
+    }
+}
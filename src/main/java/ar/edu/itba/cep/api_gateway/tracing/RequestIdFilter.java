@@ -1,46 +1,68 @@
 package ar.edu.itba.cep.api_gateway.tracing;
 
-import brave.Span;
-import brave.Tracer;
-import brave.propagation.TraceContext;
-import lombok.AllArgsConstructor;
-import org.springframework.cloud.gateway.filter.GatewayFilterChain;
-import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
-import java.util.Optional;
-
 /**
- * Filter in charge of setting the request id in a response header.
- * The tracing id given by sleuth will be used as request id.
+ * Filter in charge of creating the request id of each request, and setting it in a response header.
+ * <p>
+ * The id is created at the beginning of the filter chain (i.e before the security filters), so any response
+ * (including the rejected, streamed or already committed ones) gets it, regardless of tracing.
+ * It is stored in the exchange (see {@link #REQUEST_ID_ATTRIBUTE}) so it can be propagated upstream
+ * and linked to the trace, and it is written to the response right before it is committed.
  */
 @Component
-@AllArgsConstructor
-public class RequestIdFilter implements GlobalFilter {
+public class RequestIdFilter implements WebFilter, Ordered {
 
     /**
      * The header in which the request id will be reported.
      */
     public static final String REQUEST_ID_HEADER = "X-Request-Id";
 
+    /**
+     * The name of the exchange attribute holding the request id.
+     */
+    public static final String REQUEST_ID_ATTRIBUTE = RequestIdFilter.class.getName() + ".REQUEST_ID";
+
+    /**
+     * The order of this filter (right after the one that creates the stage timings).
+     */
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 1;
+
 
     /**
-     * The {@link Tracer} used to get the tracing id (which will be used as request id).
+     * The {@link RequestIdGenerator} used to create request ids.
      */
-    private final Tracer tracer;
+    private final RequestIdGenerator requestIdGenerator;
+
 
+    /**
+     * Constructor.
+     */
+    public RequestIdFilter() {
+        this.requestIdGenerator = new RequestIdGenerator();
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final var requestId = requestIdGenerator.next();
+        exchange.getAttributes().put(REQUEST_ID_ATTRIBUTE, requestId);
+        final var response = exchange.getResponse();
+        response.beforeCommit(() -> {
+            // Replaces any id sent back by upstream services
+            response.getHeaders().set(REQUEST_ID_HEADER, requestId);
+            return Mono.empty();
+        });
+        return chain.filter(exchange);
+    }
 
     @Override
-    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
-        return chain.filter(exchange)
-                .then(Mono.fromRunnable(
-                        () -> Optional.ofNullable(tracer.currentSpan())
-                                .map(Span::context)
-                                .map(TraceContext::traceIdString)
-                                .ifPresent(id -> exchange.getResponse().getHeaders().add(REQUEST_ID_HEADER, id))
-                        )
-                );
+    public int getOrder() {
+        return ORDER;
     }
 }
@@ -0,0 +1,87 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates request ids that are unique across gateway nodes, without depending on tracing.
+ * <p>
+ * Each id is made of a node id (randomly chosen when the generator is created) followed by a monotonic counter,
+ * both encoded in base 32 (lower cased Crockford alphabet) into a fixed length string,
+ * so ids generated by the same node sort in the order in which they were generated.
+ * Generating an id only needs an atomic increment and the string itself.
+ */
+/* package */ final class RequestIdGenerator {
+
+    /**
+     * The characters used to encode ids (each one encodes 5 bits).
+     */
+    private static final byte[] ALPHABET = "0123456789abcdefghjkmnpqrstvwxyz".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The amount of characters of the node id (i.e 40 random bits).
+     */
+    private static final int NODE_ID_LENGTH = 8;
+
+    /**
+     * The amount of characters of the counter (i.e 60 bits).
+     */
+    private static final int COUNTER_LENGTH = 12;
+
+    /**
+     * The length of the generated ids.
+     */
+    /* package */ static final int LENGTH = NODE_ID_LENGTH + COUNTER_LENGTH;
+
+
+    /**
+     * The encoded node id.
+     */
+    private final byte[] nodeId;
+    /**
+     * The counter of generated ids.
+     */
+    private final AtomicLong counter;
+
+
+    /**
+     * Constructor.
+     */
+    /* package */ RequestIdGenerator() {
+        this.nodeId = new byte[NODE_ID_LENGTH];
+        encode(new SecureRandom().nextLong(), nodeId, 0, NODE_ID_LENGTH);
+        this.counter = new AtomicLong();
+    }
+
+
+    /**
+     * Generates a new request id.
+     *
+     * @return The generated request id.
+     */
+    /* package */ String next() {
+        final var id = new byte[LENGTH];
+        System.arraycopy(nodeId, 0, id, 0, NODE_ID_LENGTH);
+        encode(counter.getAndIncrement(), id, NODE_ID_LENGTH, COUNTER_LENGTH);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+
+
+    /**
+     * Encodes the lowest bits of the given {@code value} into the given {@code destination}
+     * (most significant character first).
+     *
+     * @param value       The value to be encoded.
+     * @param destination The array in which the encoded characters are written.
+     * @param offset      The position of the destination from where characters are written.
+     * @param length      The amount of characters to be written.
+     */
+    private static void encode(final long value, final byte[] destination, final int offset, final int length) {
+        var remaining = value;
+        for (var i = offset + length - 1; i >= offset; i--) {
+            destination[i] = ALPHABET[(int) (remaining & 0x1F)];
+            remaining >>>= 5;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link GlobalFilter} that propagates the request id (created by the {@link RequestIdFilter})
+ * to the upstream services, replacing any id sent by the client.
+ * <p>
+ * The request itself is mutated (instead of using a headers filter), as Sleuth's headers filter
+ * builds the upstream headers again from the exchange's request.
+ */
+@Component
+public class RequestIdPropagationFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final String requestId = exchange.getAttribute(RequestIdFilter.REQUEST_ID_ATTRIBUTE);
+        if (requestId == null) {
+            return chain.filter(exchange);
+        }
+        final var request = exchange.getRequest()
+                .mutate()
+                .headers(headers -> headers.set(RequestIdFilter.REQUEST_ID_HEADER, requestId))
+                .build();
+        return chain.filter(exchange.mutate().request(request).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+}
@@ -0,0 +1,41 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import brave.Span;
+import org.springframework.cloud.sleuth.instrument.web.TraceWebFilter;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link WebFilter} that links the request id (created by the {@link RequestIdFilter}) to the trace,
+ * by tagging the server span with it. It runs right after Sleuth's {@link TraceWebFilter},
+ * which puts the span in the subscriber context. Spans that are not recorded are not tagged.
+ */
+/* package */ class RequestIdSpanFilter implements WebFilter, Ordered {
+
+    /**
+     * The tag in which the request id is set.
+     */
+    /* package */ static final String REQUEST_ID_TAG = "request.id";
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        final String requestId = exchange.getAttribute(RequestIdFilter.REQUEST_ID_ATTRIBUTE);
+        if (requestId == null) {
+            return chain.filter(exchange);
+        }
+        return Mono.subscriberContext()
+                .doOnNext(context -> context.<Span>getOrEmpty(Span.class)
+                        .filter(span -> !span.isNoop())
+                        .ifPresent(span -> span.tag(REQUEST_ID_TAG, requestId)))
+                .then(chain.filter(exchange));
+    }
+
+    @Override
+    public int getOrder() {
+        return TraceWebFilter.ORDER + 1;
+    }
+}
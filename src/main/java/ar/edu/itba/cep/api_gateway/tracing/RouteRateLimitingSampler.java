@@ -0,0 +1,107 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import brave.http.HttpAdapter;
+import brave.http.HttpSampler;
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link HttpSampler} for incoming requests that samples with a given probability, and then limits the
+ * amount of traces sampled per second for each route, so the tracing cost does not grow with the load.
+ * <p>
+ * Requests are sampled before they are routed, so the route is found by matching the request's path against
+ * the path patterns of each route (which must be prefix patterns, like {@code /exams/**}).
+ * Requests not matching any route share their own limit.
+ */
+/* package */ class RouteRateLimitingSampler extends HttpSampler {
+
+    /**
+     * The suffix of a prefix path pattern.
+     */
+    private static final String PREFIX_PATTERN_SUFFIX = "/**";
+
+    /**
+     * The {@link Sampler} that applies the probability.
+     */
+    private final Sampler probabilitySampler;
+    /**
+     * The path prefixes of each route.
+     */
+    private final String[][] routePrefixes;
+    /**
+     * The {@link Sampler}s limiting the traces per second of each route
+     * (in the same position as the route's prefixes, followed by the one for requests not matching any route).
+     */
+    private final Sampler[] routeLimiters;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routePaths      The path patterns of each route, keyed by route id.
+     * @param probability     The probability of sampling a request (from 0 to 1).
+     * @param tracesPerSecond The maximum amount of traces sampled per second for each route.
+     * @throws IllegalArgumentException If any path pattern is not a prefix pattern,
+     *                                  or the probability or traces per second are not valid.
+     */
+    /* package */ RouteRateLimitingSampler(
+            final Map<String, List<String>> routePaths,
+            final float probability,
+            final int tracesPerSecond) throws IllegalArgumentException {
+        this.probabilitySampler = Sampler.create(probability);
+        this.routePrefixes = routePaths.values()
+                .stream()
+                .map(patterns -> patterns.stream().map(RouteRateLimitingSampler::toPrefix).toArray(String[]::new))
+                .toArray(String[][]::new);
+        this.routeLimiters = new Sampler[routePrefixes.length + 1];
+        for (var i = 0; i < routeLimiters.length; i++) {
+            routeLimiters[i] = RateLimitingSampler.create(tracesPerSecond);
+        }
+    }
+
+
+    @Override
+    public <Req> Boolean trySample(final HttpAdapter<Req, ?> adapter, final Req request) {
+        // The trace id is not used by any of the samplers
+        return probabilitySampler.isSampled(0L) && routeLimiters[routeIndex(adapter.path(request))].isSampled(0L);
+    }
+
+
+    /**
+     * Returns the index of the route that handles the given {@code path}.
+     *
+     * @param path The request's path (might be {@code null}).
+     * @return The route's index, or the index of the limiter for requests not matching any route.
+     */
+    private int routeIndex(final String path) {
+        if (path != null) {
+            for (var i = 0; i < routePrefixes.length; i++) {
+                for (final var prefix : routePrefixes[i]) {
+                    if (path.startsWith(prefix)
+                            && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return routePrefixes.length;
+    }
+
+    /**
+     * Converts the given prefix path pattern into the prefix it matches.
+     *
+     * @param pattern The path pattern (e.g {@code /exams/**}).
+     * @return The prefix (e.g {@code /exams}).
+     * @throws IllegalArgumentException If the pattern is not a prefix pattern.
+     */
+    private static String toPrefix(final String pattern) throws IllegalArgumentException {
+        if (!pattern.endsWith(PREFIX_PATTERN_SUFFIX)
+                || pattern.indexOf('*') < pattern.length() - PREFIX_PATTERN_SUFFIX.length() + 1) {
+            throw new IllegalArgumentException("The path pattern '" + pattern + "' is not a prefix pattern");
+        }
+        return pattern.substring(0, pattern.length() - PREFIX_PATTERN_SUFFIX.length());
+    }
+}
@@ -0,0 +1,249 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.CheckResult;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A {@link Sender} that wraps another one, and that holds the batches that could not be sent (i.e when the
+ * collector is unavailable) in a bounded local buffer, instead of losing them.
+ * Held batches are sent (oldest first) after the next successful send. When the buffer is full,
+ * the oldest batches are dropped.
+ * <p>
+ * After a failure, the collector is not contacted until the retry interval elapses, so the reporting thread
+ * does not wait for timeouts on every batch. Note that sending never blocks requests, as spans are queued
+ * by the reporter, which drops them when its queue is full.
+ */
+/* package */ class SpillingSender extends Sender {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingSender.class);
+
+
+    /**
+     * The wrapped {@link Sender}.
+     */
+    private final Sender delegate;
+    /**
+     * The maximum amount of bytes of batches held in the buffer.
+     */
+    private final long maxSpilledBytes;
+    /**
+     * How long to wait before retrying to send batches after a failure, in nanoseconds.
+     */
+    private final long retryIntervalNanos;
+    /**
+     * A {@link Counter} of the batches dropped due to the buffer being full.
+     */
+    private final Counter droppedBatches;
+
+    /**
+     * The batches held in the buffer, oldest first (guarded by {@code this}).
+     */
+    private final Deque<List<byte[]>> spilled;
+    /**
+     * The amount of bytes of the batches held in the buffer (only modified while holding {@code this}).
+     */
+    private volatile long spilledBytes;
+    /**
+     * The instant (in {@link System#nanoTime()} terms) before which the collector must not be contacted
+     * (guarded by {@code this}).
+     */
+    private long retryAt;
+    /**
+     * Whether the collector is considered unavailable (guarded by {@code this}).
+     */
+    private boolean unavailable;
+
+
+    /**
+     * Constructor.
+     *
+     * @param delegate        The wrapped {@link Sender}.
+     * @param maxSpilledBytes The maximum amount of bytes of batches held in the buffer.
+     * @param retryInterval   How long to wait before retrying to send batches after a failure.
+     * @param meterRegistry   The {@link MeterRegistry} to which the buffer statistics are reported.
+     */
+    /* package */ SpillingSender(
+            final Sender delegate,
+            final long maxSpilledBytes,
+            final Duration retryInterval,
+            final MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxSpilledBytes = maxSpilledBytes;
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.spilled = new ArrayDeque<>();
+        this.droppedBatches = Counter.builder("tracing.spill.dropped")
+                .description("Span batches dropped because the local buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("tracing.spill.bytes", this, SpillingSender::getSpilledBytes)
+                .description("Bytes of span batches held locally while the collector is unavailable")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+
+    @Override
+    public Encoding encoding() {
+        return delegate.encoding();
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return delegate.messageMaxBytes();
+    }
+
+    @Override
+    public int messageSizeInBytes(final List<byte[]> encodedSpans) {
+        return delegate.messageSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public int messageSizeInBytes(final int encodedSizeInBytes) {
+        return delegate.messageSizeInBytes(encodedSizeInBytes);
+    }
+
+    @Override
+    public Call<Void> sendSpans(final List<byte[]> encodedSpans) {
+        return new SpillingCall(encodedSpans);
+    }
+
+    @Override
+    public CheckResult check() {
+        return delegate.check();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+
+    /**
+     * Sends the given batch, followed by the held ones, or holds it if the collector is unavailable.
+     *
+     * @param encodedSpans The batch to be sent.
+     */
+    /* package */ synchronized void send(final List<byte[]> encodedSpans) {
+        if (unavailable && System.nanoTime() - retryAt < 0) {
+            spill(encodedSpans);
+            return;
+        }
+        if (!trySend(encodedSpans)) {
+            spill(encodedSpans);
+            return;
+        }
+        while (!spilled.isEmpty()) {
+            final var batch = spilled.peekFirst();
+            if (!trySend(batch)) {
+                return;
+            }
+            spilled.pollFirst();
+            spilledBytes -= messageSizeInBytes(batch);
+        }
+    }
+
+    /**
+     * Returns the amount of bytes of the batches held in the buffer.
+     *
+     * @return The amount of bytes.
+     */
+    /* package */ long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+
+    /**
+     * Tries to send the given batch with the wrapped {@link Sender}, updating the collector's availability.
+     *
+     * @param encodedSpans The batch to be sent.
+     * @return {@code true} if the batch was sent, or {@code false} otherwise.
+     */
+    private boolean trySend(final List<byte[]> encodedSpans) {
+        try {
+            delegate.sendSpans(encodedSpans).execute();
+            unavailable = false;
+            return true;
+        } catch (final IOException | RuntimeException e) {
+            if (!unavailable) {
+                LOGGER.warn("Could not send spans to the collector. Holding them locally", e);
+            }
+            unavailable = true;
+            retryAt = System.nanoTime() + retryIntervalNanos;
+            return false;
+        }
+    }
+
+    /**
+     * Holds the given batch in the buffer, dropping the oldest ones if it does not fit.
+     *
+     * @param encodedSpans The batch to be held.
+     */
+    private void spill(final List<byte[]> encodedSpans) {
+        final var size = messageSizeInBytes(encodedSpans);
+        if (size > maxSpilledBytes) {
+            droppedBatches.increment();
+            return;
+        }
+        while (spilledBytes + size > maxSpilledBytes) {
+            spilledBytes -= messageSizeInBytes(spilled.pollFirst());
+            droppedBatches.increment();
+        }
+        spilled.addLast(encodedSpans);
+        spilledBytes += size;
+    }
+
+
+    /**
+     * The {@link Call} returned by {@link #sendSpans(List)}. It never fails, as batches that cannot be sent are held.
+     */
+    private final class SpillingCall extends Call.Base<Void> {
+
+        /**
+         * The batch to be sent.
+         */
+        private final List<byte[]> encodedSpans;
+
+
+        /**
+         * Constructor.
+         *
+         * @param encodedSpans The batch to be sent.
+         */
+        private SpillingCall(final List<byte[]> encodedSpans) {
+            this.encodedSpans = encodedSpans;
+        }
+
+
+        @Override
+        protected Void doExecute() {
+            send(encodedSpans);
+            return null;
+        }
+
+        @Override
+        protected void doEnqueue(final Callback<Void> callback) {
+            callback.onSuccess(doExecute());
+        }
+
+        @Override
+        public Call<Void> clone() {
+            return new SpillingCall(encodedSpans);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import brave.handler.FinishedSpanHandler;
+import brave.http.HttpSampler;
+import brave.propagation.B3Propagation;
+import brave.propagation.Propagation;
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.sleuth.instrument.web.ServerSampler;
+import org.springframework.cloud.sleuth.zipkin2.ZipkinAutoConfiguration;
+import org.springframework.cloud.sleuth.zipkin2.ZipkinProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zipkin2.Span;
+import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.Reporter;
+import zipkin2.reporter.ReporterMetrics;
+import zipkin2.reporter.Sender;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration class for sampling and exporting traces.
+ */
+@Configuration
+@EnableConfigurationProperties(TracingProperties.class)
+@ConditionalOnProperty(value = "spring.sleuth.enabled", matchIfMissing = true)
+public class TracingConfig {
+
+    /**
+     * Creates the {@link HttpSampler} that decides whether incoming requests are sampled,
+     * limiting the sampled traces per second of each route.
+     *
+     * @param tracingProperties The {@link TracingProperties} from where configuration values are taken.
+     * @return The {@link HttpSampler} bean.
+     */
+    @Bean(ServerSampler.NAME)
+    /* package */ HttpSampler routeRateLimitingSampler(final TracingProperties tracingProperties) {
+        final var samplingProperties = tracingProperties.getSampling();
+        return new RouteRateLimitingSampler(
+                RoutesConfig.ROUTE_PATHS,
+                samplingProperties.getProbability(),
+                samplingProperties.getTracesPerSecond()
+        );
+    }
+
+    /**
+     * Creates the {@link Sampler} that decides whether traces that do not start with an incoming request
+     * (e.g scheduled work, or requests sent to other replicas) are sampled. It applies the same probability
+     * as the incoming requests, limited to the same traces per second (shared by all those traces).
+     * It replaces Sleuth's default sampler, so the {@code spring.sleuth.sampler.*} properties are not used.
+     *
+     * @param tracingProperties The {@link TracingProperties} from where configuration values are taken.
+     * @return The {@link Sampler} bean.
+     */
+    @Bean
+    /* package */ Sampler rateLimitingSampler(final TracingProperties tracingProperties) {
+        final var samplingProperties = tracingProperties.getSampling();
+        final var probabilitySampler = Sampler.create(samplingProperties.getProbability());
+        final var limiter = RateLimitingSampler.create(samplingProperties.getTracesPerSecond());
+        return new Sampler() {
+            @Override
+            public boolean isSampled(final long traceId) {
+                return probabilitySampler.isSampled(traceId) && limiter.isSampled(traceId);
+            }
+        };
+    }
+
+    /**
+     * Creates the {@link Propagation.Factory} that propagates traces with B3 headers, and marks a fraction
+     * of the traces that are not sampled to be recorded locally, so failed or slow ones can be exported.
+     * It replaces Sleuth's default factory (which is also B3, as no extra fields are propagated).
+     *
+     * @param tracingProperties The {@link TracingProperties} from where configuration values are taken.
+     * @return The {@link Propagation.Factory} bean.
+     */
+    @Bean
+    /* package */ Propagation.Factory localSamplingPropagationFactory(final TracingProperties tracingProperties) {
+        return new LocalSamplingPropagationFactory(
+                B3Propagation.FACTORY,
+                tracingProperties.getSampling().getLocalProbability()
+        );
+    }
+
+    /**
+     * Creates the {@link RequestIdSpanFilter} that links request ids to traces.
+     *
+     * @return The {@link RequestIdSpanFilter} bean.
+     */
+    @Bean
+    /* package */ RequestIdSpanFilter requestIdSpanFilter() {
+        return new RequestIdSpanFilter();
+    }
+
+    /**
+     * Creates the {@link FinishedSpanHandler} that exports spans of failed or slow requests that were not sampled.
+     *
+     * @param reporter          The {@link Reporter} to which spans are exported.
+     * @param serviceName       The name of this service.
+     * @param tracingProperties The {@link TracingProperties} from where configuration values are taken.
+     * @param meterRegistry     The {@link MeterRegistry} to which the amount of exported spans is reported.
+     * @return The {@link FinishedSpanHandler} bean.
+     */
+    @Bean
+    /* package */ FinishedSpanHandler errorAndSlowSpanHandler(
+            final Reporter<Span> reporter,
+            @Value("${spring.zipkin.service.name:${spring.application.name:default}}") final String serviceName,
+            final TracingProperties tracingProperties,
+            final MeterRegistry meterRegistry) {
+        return new ErrorAndSlowSpanHandler(
+                reporter,
+                serviceName,
+                tracingProperties.getSampling().getSlowThreshold(),
+                meterRegistry
+        );
+    }
+
+    /**
+     * Creates the {@link Reporter} that exports spans to the collector in bounded asynchronous batches,
+     * holding the batches locally while the collector is unavailable (replaces the one created by Sleuth).
+     *
+     * @param sender            The {@link Sender} created by Sleuth, used to send batches to the collector.
+     * @param reporterMetrics   The {@link ReporterMetrics} to which the reporter statistics are reported.
+     * @param zipkinProperties  The {@link ZipkinProperties} from where the encoder is taken.
+     * @param tracingProperties The {@link TracingProperties} from where configuration values are taken.
+     * @param meterRegistry     The {@link MeterRegistry} to which the local buffer statistics are reported.
+     * @return The {@link Reporter} bean.
+     */
+    @Bean(ZipkinAutoConfiguration.REPORTER_BEAN_NAME)
+    @ConditionalOnProperty(value = "spring.zipkin.enabled", matchIfMissing = true)
+    /* package */ Reporter<Span> zipkinReporter(
+            @Qualifier(ZipkinAutoConfiguration.SENDER_BEAN_NAME) final Sender sender,
+            final ReporterMetrics reporterMetrics,
+            final ZipkinProperties zipkinProperties,
+            final TracingProperties tracingProperties,
+            final MeterRegistry meterRegistry) {
+        final var exportProperties = tracingProperties.getExport();
+        final var spillingSender = new SpillingSender(
+                sender,
+                exportProperties.getSpillMaxBytes(),
+                exportProperties.getRetryInterval(),
+                meterRegistry
+        );
+        return AsyncReporter.builder(spillingSender)
+                .queuedMaxSpans(exportProperties.getQueuedMaxSpans())
+                .queuedMaxBytes(exportProperties.getQueuedMaxBytes())
+                .messageTimeout(exportProperties.getMessageTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                .metrics(reporterMetrics)
+                .build(zipkinProperties.getEncoder());
+    }
+}
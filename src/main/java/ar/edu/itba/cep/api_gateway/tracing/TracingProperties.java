@@ -0,0 +1,85 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+
+import java.time.Duration;
+
+/**
+ * Properties for configuring how traces are sampled and exported.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "tracing")
+/* package */ class TracingProperties {
+
+    /**
+     * The sampling properties.
+     */
+    @NestedConfigurationProperty
+    private SamplingProperties sampling = new SamplingProperties();
+    /**
+     * The export properties.
+     */
+    @NestedConfigurationProperty
+    private ExportProperties export = new ExportProperties();
+
+
+    /**
+     * Properties for sampling traces.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class SamplingProperties {
+
+        /**
+         * The probability of sampling a request (from 0 to 1), before the per route limit is applied.
+         */
+        private float probability = 1.0f;
+        /**
+         * The maximum amount of traces sampled per second for each route.
+         */
+        private int tracesPerSecond = 10;
+        /**
+         * The duration from which spans are considered slow (slow spans are exported even if not sampled).
+         */
+        private Duration slowThreshold = Duration.ofSeconds(1);
+        /**
+         * The probability of recording a trace that is not sampled (from 0 to 1), so it can be exported
+         * if it fails or is slow. Traces that are not recorded are never exported (i.e they cost almost nothing).
+         */
+        private float localProbability = 0.1f;
+    }
+
+    /**
+     * Properties for exporting spans to the collector.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class ExportProperties {
+
+        /**
+         * The maximum amount of spans waiting to be sent (when exceeded, spans are dropped).
+         */
+        private int queuedMaxSpans = 10_000;
+        /**
+         * The maximum amount of bytes of spans waiting to be sent (when exceeded, spans are dropped).
+         */
+        private int queuedMaxBytes = 5 * 1024 * 1024;
+        /**
+         * The maximum amount of time a span waits before being sent (i.e the maximum time to fill a batch).
+         */
+        private Duration messageTimeout = Duration.ofSeconds(1);
+        /**
+         * The maximum amount of bytes of batches held while the collector is unavailable.
+         */
+        private int spillMaxBytes = 16 * 1024 * 1024;
+        /**
+         * How long to wait before retrying to send batches to the collector after a failure
+         * (meanwhile, batches are held locally).
+         */
+        private Duration retryInterval = Duration.ofSeconds(10);
+    }
+}
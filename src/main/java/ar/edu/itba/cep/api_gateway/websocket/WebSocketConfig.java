@@ -0,0 +1,68 @@
+package ar.edu.itba.cep.api_gateway.websocket;
+
+import ar.edu.itba.cep.api_gateway.RoutesConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration class for relaying WebSocket sessions.
+ * Only enabled if the {@code websocket.enabled} property is {@code true} (the default).
+ */
+@Configuration
+@EnableConfigurationProperties(WebSocketProperties.class)
+@ConditionalOnProperty(prefix = "websocket", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class WebSocketConfig {
+
+    /**
+     * Creates the {@link WebSocketRelayFilter}, with the {@link WebSocketRelayFilter.RouteRelay}
+     * of each configured route.
+     *
+     * @param webSocketProperties    The {@link WebSocketProperties} from where configuration values are taken.
+     * @param webSocketService       The gateway's {@link WebSocketService}.
+     * @param webSocketClient        The gateway's {@link WebSocketClient}.
+     * @param headersFiltersProvider Provides the gateway's {@link HttpHeadersFilter}s.
+     * @param meterRegistry          The {@link MeterRegistry} to which the sessions statistics are reported.
+     * @return The {@link WebSocketRelayFilter} bean.
+     * @throws IllegalArgumentException If a configured route does not exist, or its properties are not valid.
+     */
+    @Bean
+    /* package */ WebSocketRelayFilter webSocketRelayFilter(
+            final WebSocketProperties webSocketProperties,
+            final WebSocketService webSocketService,
+            final WebSocketClient webSocketClient,
+            final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+            final MeterRegistry meterRegistry) throws IllegalArgumentException {
+        final var pathPatternParser = new PathPatternParser();
+        final var relays = new HashMap<String, WebSocketRelayFilter.RouteRelay>();
+        webSocketProperties.getRoutes().forEach((routeId, routeProperties) -> {
+            Assert.isTrue(RoutesConfig.ROUTE_PATHS.containsKey(routeId), "There is no route with id '" + routeId + "'");
+            Assert.isTrue(routeProperties.getMaxConnections() > 0, "The max amount of connections must be positive");
+            final var idleTimeout = routeProperties.getIdleTimeout();
+            Assert.isTrue(!idleTimeout.isNegative() && !idleTimeout.isZero(), "The idle timeout must be positive");
+            relays.put(routeId, new WebSocketRelayFilter.RouteRelay(
+                    routeId,
+                    routeProperties.getPaths()
+                            .stream()
+                            .map(pathPatternParser::parse)
+                            .collect(Collectors.toList()),
+                    routeProperties.getMaxConnections(),
+                    idleTimeout,
+                    meterRegistry
+            ));
+        });
+        return new WebSocketRelayFilter(relays, webSocketService, webSocketClient, headersFiltersProvider);
+    }
+}
@@ -0,0 +1,52 @@
+package ar.edu.itba.cep.api_gateway.websocket;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties for configuring the WebSocket routing.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "websocket")
+/* package */ class WebSocketProperties {
+
+    /**
+     * Whether WebSocket sessions are relayed by the gateway (with authentication, idle timeouts and metrics).
+     */
+    private boolean enabled = true;
+    /**
+     * The WebSocket properties of each route, keyed by route id
+     * (handshakes to routes or paths not included are rejected).
+     */
+    private Map<String, RouteProperties> routes = new HashMap<>();
+
+
+    /**
+     * Properties for relaying the WebSocket sessions of a route.
+     */
+    @Getter
+    @Setter
+    /* package */ static final class RouteProperties {
+
+        /**
+         * The path patterns in which WebSocket handshakes are accepted.
+         */
+        private List<String> paths = new ArrayList<>();
+        /**
+         * The maximum amount of concurrent sessions of the route (others are rejected).
+         */
+        private int maxConnections = 10000;
+        /**
+         * The amount of time after which a session in which no message was sent in any direction is closed.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(5);
+    }
+}
@@ -0,0 +1,402 @@
+package ar.edu.itba.cep.api_gateway.websocket;
+
+import ar.edu.itba.cep.api_gateway.metrics.UpstreamTimingFilter;
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenTranslator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.WebsocketRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import org.springframework.web.reactive.socket.client.WebSocketClient;
+import org.springframework.web.reactive.socket.server.WebSocketService;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GlobalFilter} that relays the WebSocket sessions of the configured routes and paths
+ * (instead of the gateway's {@link WebsocketRoutingFilter}, which then skips them, as they are already routed).
+ * <p>
+ * The handshake is authenticated once, like any other request (the bearer token can also be taken from the
+ * {@link WebSocketRequests#ACCESS_TOKEN_PARAMETER} query parameter, which is not sent to the service),
+ * and handshakes without a valid token get a 401 Unauthorized response. The handshake sent to the service carries
+ * the internal token set by the {@link BearerTokenTranslator}, and messages are then relayed in both directions
+ * without being authenticated again. Sessions in which no message is sent for the route's idle timeout are closed.
+ * Handshakes to other routes or paths get a 400 Bad Request response.
+ */
+/* package */ class WebSocketRelayFilter implements GlobalFilter, Ordered {
+
+    /**
+     * The {@link CloseStatus} with which idle sessions are closed.
+     */
+    private static final CloseStatus IDLE_TIMEOUT = CloseStatus.GOING_AWAY.withReason("Idle timeout");
+    /**
+     * The name of the header with the sub-protocols requested by the client
+     * (which {@link HttpHeaders} does not define).
+     */
+    private static final String SEC_WEBSOCKET_PROTOCOL = "Sec-WebSocket-Protocol";
+
+
+    /**
+     * The {@link RouteRelay} of each configured route, keyed by route id.
+     */
+    private final Map<String, RouteRelay> relays;
+    /**
+     * The {@link WebSocketService} that handles the handshakes of the clients.
+     */
+    private final WebSocketService webSocketService;
+    /**
+     * The {@link WebSocketClient} with which sessions to the services are opened.
+     */
+    private final WebSocketClient webSocketClient;
+    /**
+     * Provides the {@link HttpHeadersFilter}s applied to the handshake headers.
+     */
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+
+
+    /**
+     * Constructor.
+     *
+     * @param relays                 The {@link RouteRelay} of each configured route, keyed by route id.
+     * @param webSocketService       The {@link WebSocketService} that handles the handshakes of the clients.
+     * @param webSocketClient        The {@link WebSocketClient} with which sessions to the services are opened.
+     * @param headersFiltersProvider Provides the {@link HttpHeadersFilter}s applied to the handshake headers.
+     */
+    /* package */ WebSocketRelayFilter(
+            final Map<String, RouteRelay> relays,
+            final WebSocketService webSocketService,
+            final WebSocketClient webSocketClient,
+            final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider) {
+        this.relays = Map.copyOf(relays);
+        this.webSocketService = webSocketService;
+        this.webSocketClient = webSocketClient;
+        this.headersFiltersProvider = headersFiltersProvider;
+    }
+
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final GatewayFilterChain chain) {
+        final var request = exchange.getRequest();
+        final URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        if (!WebSocketRequests.isHandshake(request)
+                || url == null
+                || ServerWebExchangeUtils.isAlreadyRouted(exchange)) {
+            return chain.filter(exchange);
+        }
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+        final Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        final var relay = route == null ? null : relays.get(route.getId());
+        if (relay == null || !relay.matches(request)) {
+            return complete(exchange, HttpStatus.BAD_REQUEST);
+        }
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication instanceof BearerTokenAuthentication)
+                .hasElement()
+                .flatMap(authenticated -> {
+                    if (!authenticated) {
+                        return complete(exchange, HttpStatus.UNAUTHORIZED);
+                    }
+                    if (!relay.tryOpen()) {
+                        relay.rejections.increment();
+                        return complete(exchange, HttpStatus.SERVICE_UNAVAILABLE);
+                    }
+                    final var subProtocols = subProtocols(request);
+                    final var upstreamUrl = upstreamUrl(url);
+                    final var upstreamHeaders = upstreamHeaders(exchange);
+                    return webSocketService
+                            .handleRequest(exchange, handler(subProtocols, session -> webSocketClient
+                                    .execute(
+                                            upstreamUrl,
+                                            upstreamHeaders,
+                                            handler(subProtocols, upstream -> relay(relay, session, upstream))
+                                    )
+                                    // The service could not be reached, or it rejected the handshake
+                                    .onErrorResume(ignored -> session.close(CloseStatus.SERVER_ERROR))
+                            ))
+                            .doFinally(ignored -> relay.close());
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return UpstreamTimingFilter.ORDER + 1;
+    }
+
+
+    /**
+     * Relays messages between the given sessions until any of them is closed, or they are idle for too long.
+     * Then, both of them are closed.
+     *
+     * @param relay           The {@link RouteRelay} of the session's route.
+     * @param session         The client's {@link WebSocketSession}.
+     * @param upstreamSession The service's {@link WebSocketSession}.
+     * @return A {@link Mono} that completes once both sessions are closed.
+     */
+    private static Mono<Void> relay(
+            final RouteRelay relay,
+            final WebSocketSession session,
+            final WebSocketSession upstreamSession) {
+        final var lastActivity = new AtomicLong(System.nanoTime());
+        final var timedOut = new AtomicBoolean(false);
+        final Mono<Void> toUpstream = upstreamSession
+                .send(session.receive().doOnNext(message -> touch(lastActivity, message)));
+        final Mono<Void> toClient = session
+                .send(upstreamSession.receive().doOnNext(message -> touch(lastActivity, message)));
+        final Mono<Void> idle = idle(lastActivity, relay.idleTimeoutNanos)
+                .doOnSuccess(ignored -> {
+                    timedOut.set(true);
+                    relay.idleTimeouts.increment();
+                });
+        return Mono.first(toUpstream, toClient, idle)
+                .onErrorResume(ignored -> Mono.empty())
+                .then(Mono.defer(() -> {
+                    final var status = timedOut.get() ? IDLE_TIMEOUT : CloseStatus.NORMAL;
+                    return Mono.when(
+                            session.close(status).onErrorResume(ignored -> Mono.empty()),
+                            upstreamSession.close(status).onErrorResume(ignored -> Mono.empty())
+                    );
+                }));
+    }
+
+    /**
+     * Records activity in a session, retaining the given {@code message} so it can be sent to the other one.
+     *
+     * @param lastActivity The instant of the last activity in the session (in {@link System#nanoTime()} terms).
+     * @param message      The received {@link WebSocketMessage}.
+     */
+    private static void touch(final AtomicLong lastActivity, final WebSocketMessage message) {
+        lastActivity.set(System.nanoTime());
+        message.retain();
+    }
+
+    /**
+     * Returns a {@link Mono} that completes once there was no activity for the given amount of time.
+     *
+     * @param lastActivity The instant of the last activity in the session (in {@link System#nanoTime()} terms).
+     * @param timeoutNanos The idle timeout, in nanoseconds.
+     * @return The {@link Mono}.
+     */
+    private static Mono<Void> idle(final AtomicLong lastActivity, final long timeoutNanos) {
+        return Mono
+                .defer(() -> {
+                    final var remaining = timeoutNanos - (System.nanoTime() - lastActivity.get());
+                    return remaining <= 0
+                            ? Mono.just(true)
+                            : Mono.delay(Duration.ofNanos(remaining)).then(Mono.<Boolean>empty());
+                })
+                .repeatWhenEmpty(repeats -> repeats)
+                .then();
+    }
+
+    /**
+     * Creates a {@link WebSocketHandler} that supports the given sub-protocols.
+     *
+     * @param subProtocols The sub-protocols requested by the client.
+     * @param handler      The function that handles a session.
+     * @return The {@link WebSocketHandler}.
+     */
+    private static WebSocketHandler handler(
+            final List<String> subProtocols,
+            final WebSocketHandler handler) {
+        return new WebSocketHandler() {
+            @Override
+            public List<String> getSubProtocols() {
+                return subProtocols;
+            }
+
+            @Override
+            public Mono<Void> handle(final WebSocketSession session) {
+                return handler.handle(session);
+            }
+        };
+    }
+
+    /**
+     * Returns the sub-protocols requested by the client in the given {@code request}.
+     *
+     * @param request The {@link ServerHttpRequest} with the handshake.
+     * @return The sub-protocols.
+     */
+    private static List<String> subProtocols(final ServerHttpRequest request) {
+        return request.getHeaders().getValuesAsList(SEC_WEBSOCKET_PROTOCOL);
+    }
+
+    /**
+     * Builds the URL of the handshake sent to the service, from the given routed {@code url}
+     * (i.e with a WebSocket scheme, and without the {@link WebSocketRequests#ACCESS_TOKEN_PARAMETER}).
+     *
+     * @param url The URL to which the request was routed.
+     * @return The URL of the handshake.
+     */
+    private static URI upstreamUrl(final URI url) {
+        return UriComponentsBuilder.fromUri(url)
+                .scheme("https".equals(url.getScheme()) ? "wss" : "ws")
+                .replaceQueryParam(WebSocketRequests.ACCESS_TOKEN_PARAMETER)
+                .build(true)
+                .toUri();
+    }
+
+    /**
+     * Builds the headers of the handshake sent to the service (i.e the filtered request headers,
+     * without the ones set by the {@link WebSocketClient} for the handshake itself).
+     *
+     * @param exchange The {@link ServerWebExchange} with the client's handshake.
+     * @return The headers.
+     */
+    private HttpHeaders upstreamHeaders(final ServerWebExchange exchange) {
+        final var headers = new HttpHeaders();
+        HttpHeadersFilter.filterRequest(headersFiltersProvider.getIfAvailable(List::of), exchange)
+                .forEach((name, values) -> {
+                    final var lowerCaseName = name.toLowerCase(Locale.ROOT);
+                    if (!lowerCaseName.startsWith("sec-websocket-")
+                            && !lowerCaseName.equals("host")
+                            && !lowerCaseName.equals("upgrade")
+                            && !lowerCaseName.equals("connection")) {
+                        headers.addAll(name, values);
+                    }
+                });
+        return headers;
+    }
+
+    /**
+     * Completes the response in the given {@code exchange} with the given {@code status}.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @param status   The {@link HttpStatus}.
+     * @return A {@link Mono} that completes once the response is completed.
+     */
+    private static Mono<Void> complete(final ServerWebExchange exchange, final HttpStatus status) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(status);
+        return response.setComplete();
+    }
+
+
+    /**
+     * The WebSocket configuration, connections and meters of a route.
+     */
+    /* package */ static final class RouteRelay {
+
+        /**
+         * The {@link PathPattern}s in which handshakes are accepted.
+         */
+        private final List<PathPattern> paths;
+        /**
+         * The maximum amount of concurrent sessions.
+         */
+        private final int maxConnections;
+        /**
+         * The idle timeout, in nanoseconds.
+         */
+        private final long idleTimeoutNanos;
+        /**
+         * The amount of open sessions.
+         */
+        private final AtomicInteger connections;
+        /**
+         * The {@link Counter} of handshakes rejected because there were too many sessions.
+         */
+        private final Counter rejections;
+        /**
+         * The {@link Counter} of sessions closed because they were idle.
+         */
+        private final Counter idleTimeouts;
+
+
+        /**
+         * Constructor.
+         * Registers the amount of open sessions of the route as a gauge.
+         *
+         * @param routeId        The route id.
+         * @param paths          The {@link PathPattern}s in which handshakes are accepted.
+         * @param maxConnections The maximum amount of concurrent sessions.
+         * @param idleTimeout    The amount of time after which an idle session is closed.
+         * @param meterRegistry  The {@link MeterRegistry} to which the sessions statistics are reported.
+         */
+        /* package */ RouteRelay(
+                final String routeId,
+                final List<PathPattern> paths,
+                final int maxConnections,
+                final Duration idleTimeout,
+                final MeterRegistry meterRegistry) {
+            this.paths = List.copyOf(paths);
+            this.maxConnections = maxConnections;
+            this.idleTimeoutNanos = idleTimeout.toNanos();
+            this.connections = new AtomicInteger(0);
+            this.rejections = meterRegistry.counter("gateway.websocket.rejections", "route", routeId);
+            this.idleTimeouts = meterRegistry.counter("gateway.websocket.idle-timeouts", "route", routeId);
+            Gauge.builder("gateway.websocket.connections", connections, AtomicInteger::get)
+                    .tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+
+        /**
+         * Checks whether the given {@code request} is in a path in which handshakes are accepted.
+         *
+         * @param request The {@link ServerHttpRequest}.
+         * @return {@code true} if handshakes are accepted in the request's path, or {@code false} otherwise.
+         */
+        private boolean matches(final ServerHttpRequest request) {
+            final var path = request.getPath().pathWithinApplication();
+            for (final var pattern : paths) {
+                if (pattern.matches(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tries to count a new session.
+         *
+         * @return {@code true} if the session was counted, or {@code false} if there are too many sessions.
+         */
+        private boolean tryOpen() {
+            while (true) {
+                final var current = connections.get();
+                if (current >= maxConnections) {
+                    return false;
+                }
+                if (connections.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Stops counting a session.
+         */
+        private void close() {
+            connections.decrementAndGet();
+        }
+    }
+}
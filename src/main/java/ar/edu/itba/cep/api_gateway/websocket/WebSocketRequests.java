@@ -0,0 +1,36 @@
+package ar.edu.itba.cep.api_gateway.websocket;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+/**
+ * Helper class for recognizing WebSocket handshakes.
+ */
+public final class WebSocketRequests {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private WebSocketRequests() {
+    }
+
+
+    /**
+     * The query parameter from where the bearer token of a WebSocket handshake is taken
+     * when it has no {@code Authorization} header (as browsers can not set headers in handshakes).
+     * It is removed before the handshake is sent to the service.
+     */
+    public static final String ACCESS_TOKEN_PARAMETER = "access_token";
+
+
+    /**
+     * Checks whether the given {@code request} is a WebSocket handshake (i.e it asks to be upgraded to WebSocket).
+     * Note that the rest of the chain of such requests completes once the WebSocket session is closed
+     * (not when the response headers are received).
+     *
+     * @param request The {@link ServerHttpRequest}.
+     * @return {@code true} if the request is a WebSocket handshake, or {@code false} otherwise.
+     */
+    public static boolean isHandshake(final ServerHttpRequest request) {
+        return "websocket".equalsIgnoreCase(request.getHeaders().getUpgrade());
+    }
+}
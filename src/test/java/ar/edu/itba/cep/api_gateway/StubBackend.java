@@ -0,0 +1,82 @@
+package ar.edu.itba.cep.api_gateway;
+
+import com.netflix.config.ConfigurationManager;
+import org.reactivestreams.Publisher;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A stub backend for integration tests: an HTTP server to which a set of routes is pointed.
+ * It must be started before the application context (e.g from an
+ * {@link org.springframework.context.ApplicationContextInitializer}), so the routes already point to it,
+ * and stopped once the tests are done.
+ */
+public final class StubBackend {
+
+    /**
+     * The ids of the routes served by this backend.
+     */
+    private final List<String> routes;
+    /**
+     * The running server.
+     */
+    private final DisposableServer server;
+
+
+    /**
+     * Constructor.
+     *
+     * @param routes The ids of the routes served by this backend.
+     * @param server The running server.
+     */
+    private StubBackend(final List<String> routes, final DisposableServer server) {
+        this.routes = routes;
+        this.server = server;
+    }
+
+
+    /**
+     * Starts a stub backend on a random port, and points the given routes to it.
+     *
+     * @param routes  The ids of the routes served by the backend.
+     * @param handler The handler of the requests received by the backend.
+     * @return The started {@link StubBackend}.
+     */
+    public static StubBackend start(
+            final List<String> routes,
+            final BiFunction<? super HttpServerRequest, ? super HttpServerResponse, ? extends Publisher<Void>>
+                    handler) {
+        final var server = HttpServer.create()
+                .port(0)
+                .handle(handler)
+                .bindNow();
+        // Ribbon takes its configuration from Archaius, which is shared by every context in the JVM
+        routes.forEach(route -> ConfigurationManager.getConfigInstance()
+                .setProperty(listOfServers(route), "localhost:" + server.port()));
+        return new StubBackend(routes, server);
+    }
+
+    /**
+     * Stops the backend, removing it from the servers of its routes.
+     */
+    public void stop() {
+        routes.forEach(route -> ConfigurationManager.getConfigInstance().clearProperty(listOfServers(route)));
+        server.disposeNow();
+    }
+
+
+    /**
+     * Returns the name of the Ribbon property with the servers of the given route.
+     *
+     * @param routeId The route id.
+     * @return The property name.
+     */
+    private static String listOfServers(final String routeId) {
+        return routeId + ".ribbon.listOfServers";
+    }
+}
@@ -0,0 +1,440 @@
+package ar.edu.itba.cep.api_gateway.batch;
+
+import ar.edu.itba.cep.api_gateway.StubBackend;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests the batch endpoint against a stub backend: which requests can be batched,
+ * and that each request of a batch gets the item timeout, the response size cap, the rate limits
+ * and the internal token of the batch.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "eureka.client.enabled=false",
+                "spring.zipkin.enabled=false",
+                "coalescing.enabled=false",
+                "batch.item-timeout=500ms",
+                "batch.max-response-size=4KB",
+                "batch.routes.playground-service.paths[0]=/execution-requests/**",
+                "rate-limit.routes.playground-service.burst-capacity=" + BatchHandlerTest.BURST_CAPACITY,
+                "rate-limit.routes.playground-service.replenish-rate=1",
+                "rate-limit.routes.playground-service.replenish-period=1h",
+        }
+)
+@ContextConfiguration(initializers = BatchHandlerTest.BackendInitializer.class)
+class BatchHandlerTest {
+
+    /**
+     * The burst capacity of the playground-service route.
+     */
+    /* package */ static final int BURST_CAPACITY = 2;
+
+    /**
+     * The routes served by the stub backend.
+     */
+    private static final List<String> STUB_ROUTES = List.of("evaluations-service", "playground-service");
+
+    /**
+     * The delay of the stub backend responses to slow requests (longer than the item timeout).
+     */
+    private static final Duration SLOW_DELAY = Duration.ofSeconds(2);
+
+    /**
+     * The body of the large responses (larger than the batch response size cap).
+     */
+    private static final String LARGE_BODY = "large ".repeat(1024);
+
+    /**
+     * The 'Authorization' header received by the stub backend for each path (empty if there was none).
+     */
+    private static final Map<String, String> AUTHORIZATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link ObjectMapper} used to write batches and read their responses.
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * The key pair with which external tokens are signed (and internal tokens are verified).
+     */
+    private static KeyPair keyPair;
+
+    /**
+     * The stub backend (which serves every route).
+     */
+    private static StubBackend backend;
+    /**
+     * Whether the evaluations-service route has already been warmed up.
+     */
+    private static boolean warmedUp;
+
+
+    /**
+     * The gateway port.
+     */
+    @LocalServerPort
+    private int port;
+
+
+    /**
+     * Sends a first request through the evaluations-service route, so its (lazily created) load balancer
+     * does not make the first batched request to it exceed the item timeout.
+     * The playground-service route is not warmed up, as that would take a token of its rate limit.
+     */
+    @BeforeEach
+    void warmUp() {
+        if (warmedUp) {
+            return;
+        }
+        WebClient.create("http://localhost:" + port)
+                .get()
+                .uri("/exams/warm-up")
+                .exchange()
+                .flatMap(response -> response.bodyToMono(Void.class))
+                .block(Duration.ofSeconds(10));
+        warmedUp = true;
+    }
+
+    /**
+     * Stops the stub backend.
+     */
+    @AfterAll
+    static void stopBackend() {
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+
+    /**
+     * Tests that requests to paths that are routed, but not allowed to be batched, are rejected
+     * without reaching the service.
+     */
+    @Test
+    void testPathsOutsideTheAllowlistAreRejected() {
+        final var results = batch(
+                List.of(item("allowed", "/exams/allowed"), item("not-allowed", "/solutions/not-allowed")),
+                Optional.empty()
+        );
+
+        Assertions.assertEquals(200, status(results, "allowed"));
+        Assertions.assertEquals(404, status(results, "not-allowed"));
+        Assertions.assertFalse(
+                AUTHORIZATIONS.containsKey("/solutions/not-allowed"),
+                "A request that can not be batched was routed"
+        );
+    }
+
+    /**
+     * Tests that requests whose paths are not normalized (i.e that could escape the allowlist) are rejected
+     * without reaching the service.
+     */
+    @Test
+    void testPathsMustBeNormalized() {
+        final var results = batch(
+                List.of(
+                        item("dot-segments", "/exams/../solutions/dot-segments"),
+                        item("relative", "exams/relative")
+                ),
+                Optional.empty()
+        );
+
+        Assertions.assertEquals(400, status(results, "dot-segments"));
+        Assertions.assertEquals(400, status(results, "relative"));
+        Assertions.assertFalse(
+                AUTHORIZATIONS.containsKey("/solutions/dot-segments"),
+                "A request with dot segments was routed"
+        );
+    }
+
+    /**
+     * Tests that a slow request times out on its own, without delaying the other requests of the batch.
+     */
+    @Test
+    void testSlowRequestsTimeOut() {
+        final var results = batch(
+                List.of(item("slow", "/exams/slow"), item("fast", "/exams/fast")),
+                Optional.empty()
+        );
+
+        Assertions.assertEquals(504, status(results, "slow"));
+        Assertions.assertEquals(200, status(results, "fast"));
+    }
+
+    /**
+     * Tests that a response that does not fit in the batch response is reported as failed,
+     * while the space it took is given back to the other requests of the batch.
+     */
+    @Test
+    void testResponsesThatDoNotFitAreRejected() {
+        final var results = batch(
+                List.of(item("large", "/exercises/large"), item("small", "/exercises/small")),
+                Optional.empty()
+        );
+
+        Assertions.assertEquals(502, status(results, "large"));
+        Assertions.assertEquals(200, status(results, "small"));
+        Assertions.assertEquals("/exercises/small", results.get("small").path("body").path("path").asText());
+    }
+
+    /**
+     * Tests that each request of a batch takes a token from the rate limits of its route.
+     */
+    @Test
+    void testRequestsAreRateLimitedOneByOne() {
+        final var requests = 5;
+        final var results = batch(
+                Stream.iterate(0, i -> i + 1)
+                        .limit(requests)
+                        .map(i -> item("execution-" + i, "/execution-requests/" + i))
+                        .collect(Collectors.toList()),
+                Optional.empty()
+        );
+
+        final var statuses = results.values().stream()
+                .collect(Collectors.groupingBy(result -> result.path("status").asInt(), Collectors.counting()));
+        Assertions.assertEquals(
+                Map.of(200, (long) BURST_CAPACITY, 429, (long) requests - BURST_CAPACITY),
+                statuses,
+                "Only the requests that fit in the burst capacity must be routed"
+        );
+    }
+
+    /**
+     * Tests that every request of an authenticated batch is sent with the same internal token
+     * (for the batch's user), instead of the external one.
+     */
+    @Test
+    void testInternalTokenIsPropagated() {
+        final var externalToken = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("batcher")
+                .claim("roles", List.of("USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + Duration.ofMinutes(5).toMillis()))
+                .signWith(keyPair.getPrivate(), SignatureAlgorithm.RS512)
+                .compact();
+        final var results = batch(
+                List.of(item("exam", "/exams/internal-token"), item("exercise", "/exercises/internal-token")),
+                Optional.of(externalToken)
+        );
+
+        Assertions.assertEquals(200, status(results, "exam"));
+        Assertions.assertEquals(200, status(results, "exercise"));
+        final var authorization = AUTHORIZATIONS.get("/exams/internal-token");
+        Assertions.assertEquals(authorization, AUTHORIZATIONS.get("/exercises/internal-token"));
+        Assertions.assertTrue(authorization.startsWith("Bearer "), "The requests were not authenticated");
+        final var internalToken = authorization.substring("Bearer ".length());
+        Assertions.assertNotEquals(externalToken, internalToken, "The external token reached the service");
+        Assertions.assertEquals(
+                "batcher",
+                Jwts.parser().setSigningKey(keyPair.getPublic()).parseClaimsJws(internalToken).getBody().getSubject()
+        );
+    }
+
+    /**
+     * Tests that the requests of an anonymous batch can not set their own 'Authorization' header.
+     */
+    @Test
+    void testItemsCanNotSetAuthorization() {
+        final var item = new HashMap<>(item("forged", "/exams/forged-token"));
+        item.put("headers", Map.of(HttpHeaders.AUTHORIZATION, "Bearer forged"));
+        final var results = batch(List.of(item), Optional.empty());
+
+        Assertions.assertEquals(200, status(results, "forged"));
+        Assertions.assertEquals("", AUTHORIZATIONS.get("/exams/forged-token"), "A forged token reached the service");
+    }
+
+
+    /**
+     * Tests that the batch response is compressed with gzip according to the 'Accept-Encoding' header
+     * (with its quality values, and case insensitively).
+     */
+    @Test
+    void testGzipIsNegotiated() {
+        Assertions.assertEquals(List.of("gzip"), batchEncoding("GZIP;Q=0.5"));
+        Assertions.assertEquals(List.of("gzip"), batchEncoding("br, *;q=0.1"));
+        Assertions.assertEquals(List.of(), batchEncoding("gzip;q=0, *"), "gzip was used although it was refused");
+        Assertions.assertEquals(List.of(), batchEncoding("br"), "gzip was used although it was not accepted");
+    }
+
+
+    /**
+     * Creates a GET request of a batch.
+     *
+     * @param id   The request id.
+     * @param path The request path.
+     * @return The request.
+     */
+    private static Map<String, Object> item(final String id, final String path) {
+        return Map.of("id", id, "method", "GET", "path", path);
+    }
+
+    /**
+     * Sends a batch to the gateway.
+     *
+     * @param requests The requests of the batch.
+     * @param token    The bearer token with which the batch is authenticated, if any.
+     * @return The result of each request, keyed by request id.
+     */
+    private Map<String, JsonNode> batch(final List<Map<String, Object>> requests, final Optional<String> token) {
+        final String body;
+        try {
+            body = OBJECT_MAPPER.writeValueAsString(Map.of("requests", requests));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final var response = WebClient.create("http://localhost:" + port)
+                .post()
+                .uri("/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .headers(headers -> token.ifPresent(headers::setBearerAuth))
+                .syncBody(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .block(Duration.ofSeconds(10));
+        Assertions.assertNotNull(response);
+        final var results = response.lines()
+                .filter(line -> !line.isEmpty())
+                .map(BatchHandlerTest::readLine)
+                .collect(Collectors.toMap(result -> result.path("id").asText(), Function.identity()));
+        Assertions.assertEquals(requests.size(), results.size(), "Every request must have a result");
+        return results;
+    }
+
+    /**
+     * Sends an anonymous batch to the gateway with the given 'Accept-Encoding' header.
+     *
+     * @param acceptEncoding The value of the 'Accept-Encoding' header.
+     * @return The 'Content-Encoding' header values of the batch response.
+     */
+    private List<String> batchEncoding(final String acceptEncoding) {
+        final String body;
+        try {
+            body = OBJECT_MAPPER.writeValueAsString(Map.of("requests", List.of(item("exam", "/exams/encoding"))));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // The client does not decompress responses, so their 'Content-Encoding' header is kept
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:" + port)
+                .build()
+                .post()
+                .uri("/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding)
+                .syncBody(body)
+                .exchange()
+                .flatMap(response -> response.bodyToMono(byte[].class)
+                        .then(Mono.fromSupplier(() -> response.headers().header(HttpHeaders.CONTENT_ENCODING))))
+                .block(Duration.ofSeconds(10));
+    }
+
+    /**
+     * Reads a line of a batch response.
+     *
+     * @param line The line.
+     * @return The result.
+     */
+    private static JsonNode readLine(final String line) {
+        try {
+            return OBJECT_MAPPER.readTree(line);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the status of a request of a batch.
+     *
+     * @param results The results of the batch, keyed by request id.
+     * @param id      The request id.
+     * @return The status.
+     */
+    private static int status(final Map<String, JsonNode> results, final String id) {
+        return results.get(id).path("status").asInt();
+    }
+
+
+    /**
+     * An {@link ApplicationContextInitializer} that generates the token keys and starts the stub backend,
+     * routing every stubbed route to it (before the context, so the routes already point to it).
+     * The backend records the 'Authorization' header of each request, and answers with the request path as JSON,
+     * after the {@link #SLOW_DELAY} for slow requests, or with the {@link #LARGE_BODY} for large ones.
+     */
+    /* package */ static final class BackendInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(final ConfigurableApplicationContext context) {
+            try {
+                final var generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+                keyPair = generator.generateKeyPair();
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("RSA keys are not supported", e);
+            }
+            final var publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+            final var privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+            TestPropertyValues.of(
+                    "authentication.jwt.external.public-key=" + publicKey,
+                    "authentication.jwt.internal.private-key=" + privateKey
+            ).applyTo(context);
+
+            backend = StubBackend.start(STUB_ROUTES, (request, response) -> {
+                final var path = request.path().startsWith("/") ? request.path() : "/" + request.path();
+                AUTHORIZATIONS.put(path, request.requestHeaders().get(HttpHeaders.AUTHORIZATION, ""));
+                if (path.endsWith("/large")) {
+                    return response.status(200)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE)
+                            .sendString(Mono.just(LARGE_BODY))
+                            .then();
+                }
+                final var delay = path.endsWith("/slow") ? SLOW_DELAY : Duration.ZERO;
+                return Mono.delay(delay)
+                        .then(response.status(200)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.just("{\"path\":\"" + path + "\"}"))
+                                .then());
+            });
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ar.edu.itba.cep.api_gateway.caching;
+
+import ar.edu.itba.cep.api_gateway.StubBackend;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests that the response cache does not serve responses across clients when upstream varies on a header
+ * that is not part of the cache key, and that cached responses keep their 'Vary' header,
+ * using CORS requests (i.e with a 'Vary' header already set before routing) against a stub backend.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "eureka.client.enabled=false",
+                "spring.zipkin.enabled=false",
+                "coalescing.enabled=false",
+        }
+)
+@ContextConfiguration(initializers = ResponseCacheFilterTest.BackendInitializer.class)
+class ResponseCacheFilterTest {
+
+    /**
+     * The route served by the stub backend.
+     */
+    private static final String STUB_ROUTE = "evaluations-service";
+
+    /**
+     * The origin of the CORS requests.
+     */
+    private static final String ORIGIN = "https://app.example.com";
+
+    /**
+     * The body of the responses that do not depend on the user (large enough to be compressed).
+     */
+    private static final String SHARED_BODY = "shared ".repeat(1024);
+
+    /**
+     * The amount of requests received by the stub backend.
+     */
+    private static final AtomicInteger RECEIVED = new AtomicInteger();
+
+    /**
+     * The stub backend.
+     */
+    private static StubBackend backend;
+
+
+    /**
+     * The gateway port.
+     */
+    @LocalServerPort
+    private int port;
+
+
+    /**
+     * Stops the stub backend.
+     */
+    @AfterAll
+    static void stopBackend() {
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+
+    /**
+     * Tests that a cacheable response that varies on the 'Cookie' header is neither stored nor served
+     * to a client with another cookie, and that its 'Vary' header reaches the client.
+     */
+    @Test
+    void testResponseVaryingOnCookieIsNotShared() {
+        final var received = RECEIVED.get();
+        final var first = get("/exercises/per-user", "session=first", Optional.empty());
+        final var second = get("/exercises/per-user", "session=second", Optional.empty());
+
+        Assertions.assertEquals(received + 2, RECEIVED.get(), "Both requests must be sent upstream");
+        Assertions.assertEquals("session=first", new String(body(first), StandardCharsets.UTF_8));
+        Assertions.assertEquals(
+                "session=second",
+                new String(body(second), StandardCharsets.UTF_8),
+                "A response that varies on the cookie was served to another client"
+        );
+        Assertions.assertTrue(
+                second.getHeaders().getVary().contains(HttpHeaders.COOKIE),
+                "The upstream 'Vary' header was dropped"
+        );
+    }
+
+    /**
+     * Tests that a compressed response is served from the cache with the 'Vary' headers of upstream,
+     * of the compression, and of the CORS policy.
+     */
+    @Test
+    void testCachedResponseKeepsVary() throws IOException {
+        final var received = RECEIVED.get();
+        get("/exercises/shared", "session=first", Optional.of("gzip"));
+        final var hit = get("/exercises/shared", "session=second", Optional.of("gzip"));
+
+        Assertions.assertEquals(received + 1, RECEIVED.get(), "The response was not cached");
+        final var headers = hit.getHeaders();
+        Assertions.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertTrue(headers.getVary().contains(HttpHeaders.ACCEPT), "The upstream 'Vary' header was dropped");
+        Assertions.assertTrue(
+                headers.getVary().contains(HttpHeaders.ACCEPT_ENCODING),
+                "The compression 'Vary' header was dropped"
+        );
+        Assertions.assertTrue(headers.getVary().contains(HttpHeaders.ORIGIN), "The CORS 'Vary' header was dropped");
+        Assertions.assertEquals(ORIGIN, headers.getAccessControlAllowOrigin());
+        Assertions.assertEquals(SHARED_BODY, gunzip(body(hit)));
+    }
+
+
+    /**
+     * Performs a CORS GET request to the gateway.
+     *
+     * @param path           The request path.
+     * @param cookie         The 'Cookie' header.
+     * @param acceptEncoding The 'Accept-Encoding' header, if any.
+     * @return The {@link ResponseEntity}.
+     */
+    private ResponseEntity<byte[]> get(final String path, final String cookie, final Optional<String> acceptEncoding) {
+        // The client does not decompress responses, so their 'Content-Encoding' header is kept
+        final var response = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create()))
+                .baseUrl("http://localhost:" + port)
+                .build()
+                .get()
+                .uri(path)
+                .headers(headers -> {
+                    headers.setOrigin(ORIGIN);
+                    headers.set(HttpHeaders.COOKIE, cookie);
+                    acceptEncoding.ifPresent(coding -> headers.set(HttpHeaders.ACCEPT_ENCODING, coding));
+                })
+                .exchange()
+                .flatMap(clientResponse -> clientResponse.toEntity(byte[].class))
+                .block(Duration.ofSeconds(5));
+        Assertions.assertNotNull(response);
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response;
+    }
+
+    /**
+     * Returns the body of the given {@code response}.
+     *
+     * @param response The {@link ResponseEntity}.
+     * @return The body (empty if there is none).
+     */
+    private static byte[] body(final ResponseEntity<byte[]> response) {
+        return Optional.ofNullable(response.getBody()).orElse(new byte[0]);
+    }
+
+    /**
+     * Decompresses the given gzip {@code body}.
+     *
+     * @param body The compressed body.
+     * @return The decompressed body.
+     * @throws IOException If the body is not a valid gzip stream.
+     */
+    private static String gunzip(final byte[] body) throws IOException {
+        try (final var input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * An {@link ApplicationContextInitializer} that starts the stub backend, routing the stubbed route to it
+     * (before the context, so the route already points to it).
+     * The backend answers with cacheable responses: the per-user one echoes the 'Cookie' header
+     * and varies on it, while the shared one only varies on the 'Accept' header.
+     */
+    /* package */ static final class BackendInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(final ConfigurableApplicationContext context) {
+            backend = StubBackend.start(List.of(STUB_ROUTE), (request, response) -> {
+                RECEIVED.incrementAndGet();
+                final var perUser = request.uri().startsWith("/exercises/per-user");
+                final var body = perUser
+                        ? request.requestHeaders().get(HttpHeaders.COOKIE, "")
+                        : SHARED_BODY;
+                return response.status(200)
+                        .header(HttpHeaders.CONTENT_TYPE, "text/plain")
+                        .header(HttpHeaders.CACHE_CONTROL, "max-age=60")
+                        .header(HttpHeaders.ETAG, perUser ? "\"per-user\"" : "\"shared\"")
+                        .header(HttpHeaders.VARY, perUser ? HttpHeaders.COOKIE : HttpHeaders.ACCEPT)
+                        .sendString(Mono.just(body))
+                        .then();
+            });
+        }
+    }
+}
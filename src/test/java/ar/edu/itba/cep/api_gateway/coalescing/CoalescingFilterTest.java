@@ -0,0 +1,271 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tests the {@link CoalescingFilter} (i.e the leader, follower and fallback paths),
+ * with an upstream whose responses are released by the tests.
+ */
+class CoalescingFilterTest {
+
+    /**
+     * The id of the coalesced route.
+     */
+    private static final String ROUTE = "evaluations-service";
+
+    /**
+     * The path of the coalesced requests.
+     */
+    private static final String PATH = "/exams/1";
+
+    /**
+     * The body of the upstream responses.
+     */
+    private static final String BODY = "{\"id\":1}";
+
+
+    /**
+     * The {@link MeterRegistry} of the filter.
+     */
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /**
+     * The amount of requests sent upstream.
+     */
+    private final AtomicInteger sent = new AtomicInteger();
+    /**
+     * Completes once the upstream must respond.
+     */
+    private final MonoProcessor<Void> release = MonoProcessor.create();
+
+
+    /**
+     * Tests that an identical request that arrives while another one is sent upstream gets its response,
+     * without being sent upstream.
+     */
+    @Test
+    void testFollowerGetsLeaderResponse() {
+        final var filter = filter(Duration.ofSeconds(5));
+        final var leader = exchange(PATH);
+        final var follower = exchange(PATH);
+        final var leaderDone = filter.filter(leader, upstream()).toProcessor();
+        final var followerDone = filter.filter(follower, upstream()).toProcessor();
+        Assertions.assertEquals(1, sent.get(), "The follower was sent upstream");
+
+        release.onComplete();
+        leaderDone.block(Duration.ofSeconds(1));
+        followerDone.block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(1, sent.get(), "The follower was sent upstream");
+        Assertions.assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(HttpStatus.OK, follower.getResponse().getStatusCode());
+        Assertions.assertEquals("\"v1\"", follower.getResponse().getHeaders().getETag());
+        Assertions.assertEquals(BODY, leader.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(1, count("leader"));
+        Assertions.assertEquals(1, count("coalesced"));
+    }
+
+    /**
+     * Tests that once the response was shared, new identical requests are sent upstream (i.e it is not cached).
+     */
+    @Test
+    void testLandedFlightIsNotReused() {
+        final var filter = filter(Duration.ofSeconds(5));
+        release.onComplete();
+        filter.filter(exchange(PATH), upstream()).block(Duration.ofSeconds(1));
+        filter.filter(exchange(PATH), upstream()).block(Duration.ofSeconds(1));
+        Assertions.assertEquals(2, sent.get());
+        Assertions.assertEquals(2, count("leader"));
+    }
+
+    /**
+     * Tests that followers of a response that can not be shared (e.g it sets a cookie)
+     * are sent upstream by themselves.
+     */
+    @Test
+    void testUnshareableResponseFallsBack() {
+        final var filter = filter(Duration.ofSeconds(5));
+        final var follower = exchange(PATH);
+        final var leaderDone = filter.filter(exchange(PATH), upstream(headers ->
+                headers.add(HttpHeaders.SET_COOKIE, "session=secret"))).toProcessor();
+        final var followerDone = filter.filter(follower, upstream()).toProcessor();
+
+        release.onComplete();
+        leaderDone.block(Duration.ofSeconds(1));
+        followerDone.block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(2, sent.get(), "The follower was not sent upstream");
+        Assertions.assertFalse(
+                follower.getResponse().getHeaders().containsKey(HttpHeaders.SET_COOKIE),
+                "The cookie of another user was shared"
+        );
+        Assertions.assertEquals(1, count("fallback"));
+    }
+
+    /**
+     * Tests that followers of a request that fails are sent upstream by themselves.
+     */
+    @Test
+    void testFailedLeaderFallsBack() {
+        final var filter = filter(Duration.ofSeconds(5));
+        final var leaderDone = filter.filter(exchange(PATH), exchange -> {
+            sent.incrementAndGet();
+            return release.then(Mono.error(new IllegalStateException("Upstream failed")));
+        }).toProcessor();
+        final var follower = exchange(PATH);
+        final var followerDone = filter.filter(follower, upstream()).toProcessor();
+
+        release.onComplete();
+        Assertions.assertThrows(IllegalStateException.class, () -> leaderDone.block(Duration.ofSeconds(1)));
+        followerDone.block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(2, sent.get(), "The follower was not sent upstream");
+        Assertions.assertEquals(BODY, follower.getResponse().getBodyAsString().block());
+        Assertions.assertEquals(1, count("fallback"));
+    }
+
+    /**
+     * Tests that a follower whose leader takes longer than the timeout is sent upstream by itself.
+     */
+    @Test
+    void testTimeoutFallsBack() {
+        final var filter = filter(Duration.ofMillis(100));
+        final var leaderDone = filter.filter(exchange(PATH), upstream()).toProcessor();
+        final var follower = exchange(PATH);
+        filter.filter(follower, exchange -> {
+            sent.incrementAndGet();
+            return exchange.getResponse().setComplete();
+        }).block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(2, sent.get(), "The follower was not sent upstream");
+        Assertions.assertFalse(leaderDone.isTerminated(), "The leader must not be affected");
+        Assertions.assertEquals(1, count("fallback"));
+        release.onComplete();
+        leaderDone.block(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Tests that requests that are not identical, or not to the coalesced paths, are not coalesced.
+     */
+    @Test
+    void testOtherRequestsAreNotCoalesced() {
+        final var filter = filter(Duration.ofSeconds(5));
+        final var first = filter.filter(exchange(PATH), upstream()).toProcessor();
+        final var otherPath = filter.filter(exchange("/exams/2"), upstream()).toProcessor();
+        final var notCoalescedPath = filter.filter(exchange("/users/1"), upstream()).toProcessor();
+        final var post = filter.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.post("http://gateway" + PATH).build()),
+                upstream()
+        ).toProcessor();
+        Assertions.assertEquals(4, sent.get());
+
+        release.onComplete();
+        Mono.when(first, otherPath, notCoalescedPath, post).block(Duration.ofSeconds(1));
+        Assertions.assertEquals(2, count("leader"), "Only the requests to coalesced paths lead");
+    }
+
+
+    /**
+     * Creates a {@link CoalescingFilter} that coalesces the requests to the exams of the {@link #ROUTE}.
+     *
+     * @param timeout The maximum amount of time a request waits for the response of an identical one.
+     * @return The {@link CoalescingFilter}.
+     */
+    private CoalescingFilter filter(final Duration timeout) {
+        final var coalescer = new CoalescingFilter.RouteCoalescer(
+                ROUTE,
+                List.of(new PathPatternParser().parse("/exams/{examId}")),
+                1024,
+                timeout,
+                meterRegistry
+        );
+        return new CoalescingFilter(Map.of(ROUTE, coalescer));
+    }
+
+    /**
+     * Creates an anonymous GET request to the given {@code path}, routed by the {@link #ROUTE}.
+     *
+     * @param path The path.
+     * @return The {@link MockServerWebExchange}.
+     */
+    private static MockServerWebExchange exchange(final String path) {
+        final var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("http://gateway" + path).build());
+        exchange.getAttributes().put(
+                ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
+                Route.async().id(ROUTE).uri("http://service").predicate(ignored -> true).build()
+        );
+        return exchange;
+    }
+
+    /**
+     * Creates the {@link GatewayFilterChain} that stands for the upstream, which responds once {@link #release}d.
+     *
+     * @return The {@link GatewayFilterChain}.
+     */
+    private GatewayFilterChain upstream() {
+        return upstream(headers -> {
+        });
+    }
+
+    /**
+     * Creates the {@link GatewayFilterChain} that stands for the upstream, which responds once {@link #release}d.
+     *
+     * @param headers Sets additional response headers.
+     * @return The {@link GatewayFilterChain}.
+     */
+    private GatewayFilterChain upstream(final Consumer<HttpHeaders> headers) {
+        return exchange -> {
+            sent.incrementAndGet();
+            return release.then(Mono.defer(() -> respond(exchange, headers)));
+        };
+    }
+
+    /**
+     * Writes the upstream response in the given {@code exchange}.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @param headers  Sets additional response headers.
+     * @return A {@link Mono} that completes once the response is written.
+     */
+    private static Mono<Void> respond(final ServerWebExchange exchange, final Consumer<HttpHeaders> headers) {
+        final var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setETag("\"v1\"");
+        headers.accept(response.getHeaders());
+        return response.writeWith(Mono.fromSupplier(
+                () -> response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Returns the amount of requests handled with the given {@code result}.
+     *
+     * @param result How the requests were handled.
+     * @return The amount of requests.
+     */
+    private int count(final String result) {
+        return (int) meterRegistry.get("gateway.coalescing.requests")
+                .tags("route", ROUTE, "result", result)
+                .counter()
+                .count();
+    }
+}
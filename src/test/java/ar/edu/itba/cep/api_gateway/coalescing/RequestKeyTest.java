@@ -0,0 +1,130 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests the {@link RequestKey}.
+ */
+class RequestKeyTest {
+
+    /**
+     * The route id used by the tests.
+     */
+    private static final String ROUTE = "evaluations-service";
+
+    /**
+     * The path used by the tests.
+     */
+    private static final String PATH = "/exams/1";
+
+
+    /**
+     * Tests that identical requests of users with the same roles (in any order) have the same key.
+     */
+    @Test
+    void testSameRolesShareKey() {
+        final var first = key(get(PATH).build(), "alice", List.of("STUDENT", "ADMIN"));
+        final var second = key(get(PATH).build(), "bob", List.of("ADMIN", "STUDENT"));
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    /**
+     * Tests that requests of users with different roles, or anonymous ones, have different keys.
+     */
+    @Test
+    void testRolesSeparateKeys() {
+        final var student = key(get(PATH).build(), "alice", List.of("STUDENT"));
+        final var teacher = key(get(PATH).build(), "bob", List.of("TEACHER"));
+        final var both = key(get(PATH).build(), "carol", List.of("STUDENT", "TEACHER"));
+        final var anonymous = RequestKey.of(ROUTE, get(PATH).build()).block();
+        Assertions.assertNotEquals(student, teacher);
+        Assertions.assertNotEquals(student, both);
+        Assertions.assertNotEquals(student, anonymous);
+    }
+
+    /**
+     * Tests that requests with different conditional headers (i.e validators) have different keys,
+     * as each one might get a different response (e.g a 304 Not Modified).
+     */
+    @Test
+    void testValidatorsSeparateKeys() {
+        final var plain = key(get(PATH).build(), "alice", List.of());
+        final var ifNoneMatch = key(get(PATH).ifNoneMatch("\"v1\"").build(), "alice", List.of());
+        final var otherIfNoneMatch = key(get(PATH).ifNoneMatch("\"v2\"").build(), "alice", List.of());
+        final var ifModifiedSince = key(get(PATH).ifModifiedSince(1_000L).build(), "alice", List.of());
+        Assertions.assertNotEquals(plain, ifNoneMatch);
+        Assertions.assertNotEquals(ifNoneMatch, otherIfNoneMatch);
+        Assertions.assertNotEquals(plain, ifModifiedSince);
+        Assertions.assertEquals(ifNoneMatch, key(get(PATH).ifNoneMatch("\"v1\"").build(), "bob", List.of()));
+    }
+
+    /**
+     * Tests that requests with a different route, path, query or content negotiation headers have different keys.
+     */
+    @Test
+    void testRequestSeparatesKeys() {
+        final var plain = key(get(PATH).build(), "alice", List.of());
+        Assertions.assertNotEquals(plain, key(get("/exams/2").build(), "alice", List.of()));
+        Assertions.assertNotEquals(plain, key(get(PATH + "?page=2").build(), "alice", List.of()));
+        Assertions.assertNotEquals(
+                plain,
+                key(get(PATH).header(HttpHeaders.ACCEPT, "text/plain").build(), "alice", List.of())
+        );
+        Assertions.assertNotEquals(
+                plain,
+                key(get(PATH).header(HttpHeaders.ACCEPT_ENCODING, "gzip").build(), "alice", List.of())
+        );
+        final var otherRoute = RequestKey.of("users-service", get(PATH).build())
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication("alice", List.of())))
+                .block();
+        Assertions.assertNotEquals(plain, otherRoute);
+    }
+
+
+    /**
+     * Creates a builder of a GET request to the given {@code path}.
+     *
+     * @param path The path (and query).
+     * @return The {@link MockServerHttpRequest.BaseBuilder}.
+     */
+    private static MockServerHttpRequest.BaseBuilder<?> get(final String path) {
+        return MockServerHttpRequest.get("http://gateway" + path);
+    }
+
+    /**
+     * Creates the {@link RequestKey} of the given {@code request}, performed by a user.
+     *
+     * @param request  The {@link MockServerHttpRequest}.
+     * @param username The username of the user.
+     * @param roles    The roles of the user.
+     * @return The {@link RequestKey}.
+     */
+    private static RequestKey key(
+            final MockServerHttpRequest request,
+            final String username,
+            final List<String> roles) {
+        return RequestKey.of(ROUTE, request)
+                .subscriberContext(ReactiveSecurityContextHolder.withAuthentication(authentication(username, roles)))
+                .block();
+    }
+
+    /**
+     * Creates the {@link BearerTokenAuthentication} of a user.
+     *
+     * @param username The username of the user.
+     * @param roles    The roles of the user.
+     * @return The {@link BearerTokenAuthentication}.
+     */
+    private static BearerTokenAuthentication authentication(final String username, final List<String> roles) {
+        return new BearerTokenAuthentication(UUID.randomUUID(), username, roles);
+    }
+}
@@ -0,0 +1,104 @@
+package ar.edu.itba.cep.api_gateway.coalescing;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Tests the {@link SharedResponse}.
+ */
+class SharedResponseTest {
+
+    /**
+     * Tests that a plain response, or one that only varies on the headers included in the key, can be shared.
+     */
+    @Test
+    void testShareable() {
+        Assertions.assertTrue(response(new HttpHeaders()).isShareable());
+        Assertions.assertTrue(response(headers(HttpHeaders.VARY, "Accept, accept-encoding")).isShareable());
+        Assertions.assertTrue(response(headers(HttpHeaders.CACHE_CONTROL, "public, max-age=60")).isShareable());
+        Assertions.assertTrue(response(headers(HttpHeaders.CACHE_CONTROL, "no-cache")).isShareable());
+    }
+
+    /**
+     * Tests that a response that sets cookies is not shared.
+     */
+    @Test
+    void testSetCookieIsNotShareable() {
+        Assertions.assertFalse(response(headers(HttpHeaders.SET_COOKIE, "session=secret")).isShareable());
+    }
+
+    /**
+     * Tests that a response that varies on headers that are not included in the key is not shared.
+     */
+    @Test
+    void testVaryIsNotShareable() {
+        Assertions.assertFalse(response(headers(HttpHeaders.VARY, "Accept, Cookie")).isShareable());
+        Assertions.assertFalse(response(headers(HttpHeaders.VARY, "Authorization")).isShareable());
+        Assertions.assertFalse(response(headers(HttpHeaders.VARY, "*")).isShareable());
+    }
+
+    /**
+     * Tests that a private or no-store response is not shared, no matter the case or arguments of the directive.
+     */
+    @Test
+    void testPrivateAndNoStoreAreNotShareable() {
+        Assertions.assertFalse(response(headers(HttpHeaders.CACHE_CONTROL, "private")).isShareable());
+        Assertions.assertFalse(response(headers(HttpHeaders.CACHE_CONTROL, "max-age=60, Private")).isShareable());
+        Assertions.assertFalse(response(headers(HttpHeaders.CACHE_CONTROL, "private=\"Set-Cookie\"")).isShareable());
+        Assertions.assertFalse(response(headers(HttpHeaders.CACHE_CONTROL, "no-store")).isShareable());
+    }
+
+    /**
+     * Tests that writing a response keeps the headers already set (e.g the CORS ones),
+     * merging the 'Vary' header values.
+     */
+    @Test
+    void testWriteTo() {
+        final var headers = new HttpHeaders();
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
+        headers.setAccessControlAllowOrigin("https://upstream.example.com");
+        headers.setETag("\"shared\"");
+        final var shared = new SharedResponse(HttpStatus.OK, headers, "body".getBytes(StandardCharsets.UTF_8));
+
+        final var response = new MockServerHttpResponse();
+        response.getHeaders().setVary(List.of(HttpHeaders.ORIGIN, "accept"));
+        response.getHeaders().setAccessControlAllowOrigin("https://app.example.com");
+        shared.writeTo(response).block();
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(List.of(HttpHeaders.ORIGIN, "accept"), response.getHeaders().getVary());
+        Assertions.assertEquals("https://app.example.com", response.getHeaders().getAccessControlAllowOrigin());
+        Assertions.assertEquals("\"shared\"", response.getHeaders().getETag());
+        Assertions.assertEquals("body", response.getBodyAsString().block());
+    }
+
+
+    /**
+     * Creates {@link HttpHeaders} with a single header.
+     *
+     * @param name  The header name.
+     * @param value The header value.
+     * @return The {@link HttpHeaders}.
+     */
+    private static HttpHeaders headers(final String name, final String value) {
+        final var headers = new HttpHeaders();
+        headers.add(name, value);
+        return headers;
+    }
+
+    /**
+     * Creates a {@link SharedResponse} with the given {@code headers}.
+     *
+     * @param headers The response's {@link HttpHeaders}.
+     * @return The {@link SharedResponse}.
+     */
+    private static SharedResponse response(final HttpHeaders headers) {
+        return new SharedResponse(HttpStatus.OK, HttpHeaders.readOnlyHttpHeaders(headers), new byte[0]);
+    }
+}
@@ -0,0 +1,320 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests the {@link CompressingResponse} (i.e which bodies are compressed, and the headers of compressed responses),
+ * with gzip.
+ */
+class CompressingResponseTest {
+
+    /**
+     * The minimum size of a response body to be compressed.
+     */
+    private static final int MIN_SIZE = 1024;
+
+    /**
+     * The maximum size of a response body to be compressed.
+     */
+    private static final int MAX_SIZE = 16 * 1024;
+
+    /**
+     * A compressible JSON body, between the minimum and the maximum size.
+     */
+    private static final byte[] BODY = "{\"exams\":[]}".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+
+    /**
+     * The {@link MeterRegistry} of the compressor.
+     */
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /**
+     * The gzip {@link ContentCoding}.
+     */
+    private final ContentCoding gzip = new GzipCoding(6);
+    /**
+     * The {@link Compressor} being used.
+     */
+    private Compressor compressor = compressor(gzip, 1, 16);
+
+
+    @AfterEach
+    void stopCompressor() {
+        compressor.dispose();
+    }
+
+
+    /**
+     * Tests that a body between the minimum and the maximum size is compressed (even if received in several buffers),
+     * with the encoding headers, and that its compression is reported.
+     */
+    @Test
+    void testBodyIsCompressed() {
+        final var response = jsonResponse();
+        response.getHeaders().setETag("\"v1\"");
+
+        write(response, BODY, 100);
+
+        final var headers = response.getHeaders();
+        final var compressed = body(response);
+        Assertions.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertEquals(compressed.length, headers.getContentLength());
+        Assertions.assertTrue(compressed.length < BODY.length, "The body did not shrink");
+        Assertions.assertArrayEquals(BODY, gunzip(compressed));
+        Assertions.assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), headers.getVary());
+        Assertions.assertEquals("W/\"v1\"", headers.getETag(), "The ETag of the compressed body must be weak");
+        Assertions.assertEquals(1, count("compressed"));
+        Assertions.assertEquals(
+                BODY.length - compressed.length,
+                meterRegistry.get("gateway.compression.bytes-saved").counter().count()
+        );
+    }
+
+    /**
+     * Tests that {@code Accept-Encoding} is not added again to a {@code Vary} header that lists it
+     * (in any case) or that is {@code *}, and that weak ETags are kept.
+     */
+    @Test
+    void testExistingVaryAndWeakETagAreKept() {
+        final var listed = jsonResponse();
+        listed.getHeaders().setVary(List.of("Origin", "accept-encoding"));
+        listed.getHeaders().setETag("W/\"v1\"");
+        write(listed, BODY, BODY.length);
+        Assertions.assertEquals(List.of("Origin", "accept-encoding"), listed.getHeaders().getVary());
+        Assertions.assertEquals("W/\"v1\"", listed.getHeaders().getETag());
+
+        final var any = jsonResponse();
+        any.getHeaders().setVary(List.of("*"));
+        write(any, BODY, BODY.length);
+        Assertions.assertEquals(List.of("*"), any.getHeaders().getVary());
+        Assertions.assertEquals(2, count("compressed"));
+    }
+
+    /**
+     * Tests that bodies smaller than the minimum size (without a declared length) are sent as they are.
+     */
+    @Test
+    void testSmallBodyIsNotCompressed() {
+        final var small = new byte[MIN_SIZE - 1];
+        final var response = jsonResponse();
+
+        write(response, small, 100);
+
+        assertUncompressed(response, small);
+        Assertions.assertEquals(1, count("skipped"));
+    }
+
+    /**
+     * Tests that a body that becomes larger than the maximum size (without a declared length) is streamed
+     * uncompressed, including the bytes received before it crossed the maximum size.
+     */
+    @Test
+    void testLargeBodyIsStreamedUncompressed() {
+        final var large = "{\"exams\":[]}".repeat(2 * MAX_SIZE / 12).getBytes(StandardCharsets.UTF_8);
+        final var response = jsonResponse();
+
+        write(response, large, 1000);
+
+        assertUncompressed(response, large);
+        Assertions.assertEquals(1, count("skipped"));
+    }
+
+    /**
+     * Tests that a body that does not shrink when compressed is sent as it is.
+     */
+    @Test
+    void testIncompressibleBodyIsSentAsItIs() {
+        final var random = new byte[4 * MIN_SIZE];
+        new Random(0).nextBytes(random);
+        final var response = jsonResponse();
+
+        write(response, random, random.length);
+
+        assertUncompressed(response, random);
+        Assertions.assertEquals(1, count("skipped"));
+    }
+
+    /**
+     * Tests that responses that can not be compressed (e.g already encoded ones) pass through untouched,
+     * without being reported.
+     */
+    @Test
+    void testNotCompressibleResponsePassesThrough() {
+        final var response = jsonResponse();
+        response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "br");
+
+        write(response, BODY, 100);
+
+        Assertions.assertArrayEquals(BODY, body(response));
+        Assertions.assertEquals("br", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertTrue(response.getHeaders().getVary().isEmpty());
+        Assertions.assertEquals(0, count("compressed") + count("skipped") + count("rejected"));
+    }
+
+    /**
+     * Tests that, when the workers and their queue are full, bodies are sent uncompressed right away
+     * (instead of waiting for a worker), and that they are reported as rejected.
+     */
+    @Test
+    void testSaturatedWorkersFallBack() throws InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var blocking = new ContentCoding() {
+            @Override
+            public String getName() {
+                return "gzip";
+            }
+
+            @Override
+            public byte[] encode(final byte[] input) throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return gzip.encode(input);
+            }
+        };
+        compressor.dispose();
+        compressor = compressor(blocking, 1, 1);
+        try {
+            final var running = new CompressingResponse(jsonResponse(), compressor, blocking);
+            final var runningWritten = running.writeWith(Flux.just(running.bufferFactory().wrap(BODY))).toProcessor();
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS), "The worker did not start compressing");
+            final var queued = new CompressingResponse(jsonResponse(), compressor, blocking);
+            final var queuedWritten = queued.writeWith(Flux.just(queued.bufferFactory().wrap(BODY))).toProcessor();
+
+            final var rejected = jsonResponse();
+            final var decorated = new CompressingResponse(rejected, compressor, blocking);
+            decorated.writeWith(Flux.just(decorated.bufferFactory().wrap(BODY))).block(Duration.ofSeconds(1));
+
+            assertUncompressed(rejected, BODY);
+            Assertions.assertEquals(1, count("rejected"));
+            Assertions.assertFalse(queuedWritten.isTerminated(), "The queued response was not waiting");
+            release.countDown();
+            runningWritten.block(Duration.ofSeconds(5));
+            queuedWritten.block(Duration.ofSeconds(5));
+            Assertions.assertEquals(2, count("compressed"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+
+    /**
+     * Creates a {@link Compressor} for the given {@code coding}, with the minimum and maximum sizes of these tests.
+     *
+     * @param coding    The {@link ContentCoding}.
+     * @param workers   The amount of worker threads.
+     * @param maxQueued The maximum amount of responses waiting to be compressed.
+     * @return The {@link Compressor}.
+     */
+    private Compressor compressor(final ContentCoding coding, final int workers, final int maxQueued) {
+        return new Compressor(MIN_SIZE, MAX_SIZE, List.of(), workers, maxQueued, List.of(coding), meterRegistry);
+    }
+
+    /**
+     * @return A new 200 OK JSON {@link MockServerHttpResponse}, without a declared length.
+     */
+    private static MockServerHttpResponse jsonResponse() {
+        final var response = new MockServerHttpResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response;
+    }
+
+    /**
+     * Writes the given {@code body} into the given {@code response}, through a gzip {@link CompressingResponse}.
+     *
+     * @param response  The {@link MockServerHttpResponse}.
+     * @param body      The body.
+     * @param chunkSize The size of each of the buffers in which the body is written.
+     */
+    private void write(final MockServerHttpResponse response, final byte[] body, final int chunkSize) {
+        final var compressing = new CompressingResponse(response, compressor, gzip);
+        final var buffers = Flux.range(0, (body.length + chunkSize - 1) / chunkSize)
+                .map(i -> compressing.bufferFactory()
+                        .wrap(Arrays.copyOfRange(body, i * chunkSize, Math.min(body.length, (i + 1) * chunkSize))));
+        compressing.writeWith(buffers).block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Asserts that the given {@code response} was written uncompressed, with the given {@code body}.
+     *
+     * @param response The {@link MockServerHttpResponse}.
+     * @param body     The expected body.
+     */
+    private static void assertUncompressed(final MockServerHttpResponse response, final byte[] body) {
+        Assertions.assertArrayEquals(body, body(response));
+        Assertions.assertFalse(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING));
+        Assertions.assertTrue(response.getHeaders().getVary().isEmpty(), "An uncompressed response must not vary");
+    }
+
+    /**
+     * Reads the written body of the given {@code response}.
+     *
+     * @param response The {@link MockServerHttpResponse}.
+     * @return The body.
+     */
+    private static byte[] body(final MockServerHttpResponse response) {
+        return DataBufferUtils.join(response.getBody())
+                .map(buffer -> {
+                    final var bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .defaultIfEmpty(new byte[0])
+                .block(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Decompresses the given gzip {@code compressed} bytes.
+     *
+     * @param compressed The compressed bytes.
+     * @return The decompressed bytes.
+     */
+    private static byte[] gunzip(final byte[] compressed) {
+        try (final var gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gzip.readAllBytes();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the amount of gzip responses with the given compression {@code result}.
+     *
+     * @param result The compression result.
+     * @return The amount of responses.
+     */
+    private int count(final String result) {
+        return (int) meterRegistry.get("gateway.compression.responses")
+                .tags("coding", "gzip", "result", result)
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,194 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests the {@link CompressionFilter} (i.e the negotiation of the coding through the {@code Accept-Encoding} header),
+ * with codings that encode any body into their name.
+ */
+class CompressionFilterTest {
+
+    /**
+     * The body of the upstream responses (large enough to be compressed).
+     */
+    private static final String BODY = "{\"exams\":[]}".repeat(200);
+
+
+    /**
+     * The available codings, in order of preference.
+     */
+    private final List<ContentCoding> codings = List.of(coding("br"), coding("gzip"));
+    /**
+     * The {@link Compressor} of the filter.
+     */
+    private final Compressor compressor = new Compressor(
+            1024,
+            1024 * 1024,
+            List.of(),
+            1,
+            16,
+            codings,
+            new SimpleMeterRegistry()
+    );
+    /**
+     * The {@link CompressionFilter} being tested.
+     */
+    private final CompressionFilter filter = new CompressionFilter(codings, compressor);
+
+
+    @AfterEach
+    void stopCompressor() {
+        filter.destroy();
+    }
+
+
+    /**
+     * Tests that the coding with the highest quality value is chosen, whatever the order of the header.
+     */
+    @Test
+    void testHighestQualityIsChosen() {
+        Assertions.assertEquals("gzip", negotiate("br;q=0.5, gzip;q=0.8"));
+        Assertions.assertEquals("br", negotiate("gzip;q=0.8, br"));
+        Assertions.assertEquals("gzip", negotiate("gzip"));
+    }
+
+    /**
+     * Tests that, when several codings are equally accepted, the first of the available ones is chosen.
+     */
+    @Test
+    void testEqualQualitiesFollowThePreference() {
+        Assertions.assertEquals("br", negotiate("gzip, br"));
+        Assertions.assertEquals("br", negotiate("gzip;q=0.5, br;q=0.5"));
+    }
+
+    /**
+     * Tests that {@code *} stands for the codings that are not listed.
+     */
+    @Test
+    void testWildcard() {
+        Assertions.assertEquals("br", negotiate("*"));
+        Assertions.assertEquals("gzip", negotiate("br;q=0, *;q=0.1"));
+        Assertions.assertEquals("br", negotiate("gzip;q=0.5, *"));
+        Assertions.assertNull(negotiate("*;q=0"));
+    }
+
+    /**
+     * Tests that codings with a zero (or an invalid) quality value are not accepted,
+     * and that responses are sent uncompressed if no available coding is accepted.
+     */
+    @Test
+    void testNotAcceptedCodings() {
+        Assertions.assertNull(negotiate("gzip;q=0, br;q=0.000"));
+        Assertions.assertNull(negotiate("gzip;q=high, br;q="));
+        Assertions.assertNull(negotiate("identity, deflate"));
+        Assertions.assertNull(negotiate(null), "A request without Accept-Encoding header was compressed");
+    }
+
+    /**
+     * Tests that coding names and the quality parameter are case insensitive, in any default locale
+     * (e.g lower casing {@code GZIP} in Turkish does not give {@code gzip}).
+     */
+    @Test
+    void testNamesAreCaseInsensitiveInAnyLocale() {
+        final var defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+            Assertions.assertEquals("gzip", negotiate("GZIP;Q=0.9, BR;Q=0.1"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /**
+     * Tests that the values of several {@code Accept-Encoding} headers are taken together.
+     */
+    @Test
+    void testSeveralHeaders() {
+        final var request = MockServerHttpRequest.get("http://gateway/exams")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=0.1")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .build();
+        Assertions.assertEquals("gzip", encoding(request));
+    }
+
+    /**
+     * Tests that responses to HEAD requests are not compressed (as they do not have a body).
+     */
+    @Test
+    void testHeadRequestsAreNotCompressed() {
+        final var request = MockServerHttpRequest.method(HttpMethod.HEAD, "http://gateway/exams")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .build();
+        Assertions.assertNull(encoding(request));
+    }
+
+
+    /**
+     * Sends a GET request with the given {@code Accept-Encoding} header through the filter.
+     *
+     * @param acceptEncoding The value of the {@code Accept-Encoding} header ({@code null} to send none).
+     * @return The {@code Content-Encoding} of the response ({@code null} if it was not compressed).
+     */
+    private String negotiate(final String acceptEncoding) {
+        final var request = MockServerHttpRequest.get("http://gateway/exams");
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return encoding(request.build());
+    }
+
+    /**
+     * Sends the given {@code request} through the filter, to an upstream that responds with the {@link #BODY}.
+     *
+     * @param request The {@link MockServerHttpRequest}.
+     * @return The {@code Content-Encoding} of the response ({@code null} if it was not compressed).
+     */
+    private String encoding(final MockServerHttpRequest request) {
+        final var exchange = MockServerWebExchange.from(request);
+        final GatewayFilterChain upstream = filtered -> {
+            final var response = filtered.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response.writeWith(Mono.fromSupplier(
+                    () -> response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+        };
+        filter.filter(exchange, upstream).block(Duration.ofSeconds(5));
+        return exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    /**
+     * Creates a {@link ContentCoding} that encodes any input into its name.
+     *
+     * @param name The coding's name.
+     * @return The {@link ContentCoding}.
+     */
+    private static ContentCoding coding(final String name) {
+        return new ContentCoding() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public byte[] encode(final byte[] input) {
+                return name.getBytes(StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
@@ -0,0 +1,170 @@
+package ar.edu.itba.cep.api_gateway.compression;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tests the {@link Compressor} (i.e which responses can be compressed, and the bounded pool of workers).
+ */
+class CompressorTest {
+
+    /**
+     * The minimum size of a response body to be compressed.
+     */
+    private static final int MIN_SIZE = 1024;
+
+    /**
+     * The maximum size of a response body to be compressed.
+     */
+    private static final int MAX_SIZE = 16 * 1024;
+
+
+    /**
+     * The {@link Compressor} being tested (with a single worker and a single queued response).
+     */
+    private final Compressor compressor = new Compressor(
+            MIN_SIZE,
+            MAX_SIZE,
+            List.of(MediaType.parseMediaType("image/*"), MediaType.TEXT_EVENT_STREAM),
+            1,
+            1,
+            List.of(new GzipCoding(6)),
+            new SimpleMeterRegistry()
+    );
+
+
+    @AfterEach
+    void stopCompressor() {
+        compressor.dispose();
+    }
+
+
+    /**
+     * Tests that responses with a body of a content type that is not excluded can be compressed.
+     */
+    @Test
+    void testCompressibleResponses() {
+        Assertions.assertTrue(isCompressible(HttpStatus.OK, headers -> {
+        }));
+        Assertions.assertTrue(isCompressible(HttpStatus.NOT_FOUND, headers -> headers.setContentLength(MIN_SIZE)));
+        Assertions.assertTrue(isCompressible(HttpStatus.OK, headers -> headers.setContentLength(MAX_SIZE)));
+        Assertions.assertTrue(isCompressible(HttpStatus.OK, headers -> headers.setCacheControl("max-age=60")));
+    }
+
+    /**
+     * Tests that responses without a body to be compressed (by their status) can not be compressed.
+     */
+    @Test
+    void testStatusesWithoutBody() {
+        for (final var status : List.of(HttpStatus.NO_CONTENT, HttpStatus.PARTIAL_CONTENT, HttpStatus.NOT_MODIFIED)) {
+            Assertions.assertFalse(isCompressible(status, headers -> {
+            }), status + " responses must not be compressed");
+        }
+    }
+
+    /**
+     * Tests that encoded responses, ranges, and responses that forbid transformations (in any case)
+     * can not be compressed.
+     */
+    @Test
+    void testEncodedOrNotTransformableResponses() {
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers ->
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip")));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers ->
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes 0-99/200")));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers -> headers.setCacheControl("No-Transform")));
+    }
+
+    /**
+     * Tests that responses declaring a length out of the size limits can not be compressed.
+     */
+    @Test
+    void testDeclaredLengthOutOfLimits() {
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers -> headers.setContentLength(MIN_SIZE - 1)));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers -> headers.setContentLength(MAX_SIZE + 1)));
+    }
+
+    /**
+     * Tests that responses with an excluded, a missing, or an invalid content type can not be compressed.
+     */
+    @Test
+    void testContentTypes() {
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers -> headers.setContentType(MediaType.IMAGE_PNG)));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers ->
+                headers.setContentType(MediaType.TEXT_EVENT_STREAM)));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers -> headers.remove(HttpHeaders.CONTENT_TYPE)));
+        Assertions.assertFalse(isCompressible(HttpStatus.OK, headers ->
+                headers.set(HttpHeaders.CONTENT_TYPE, "not a media type")));
+    }
+
+    /**
+     * Tests that encoding fails right away with a {@link RejectedExecutionException}
+     * once the worker is busy and the queue is full.
+     */
+    @Test
+    void testEncodingIsRejectedWhenSaturated() throws InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var blocking = new ContentCoding() {
+            @Override
+            public String getName() {
+                return "gzip";
+            }
+
+            @Override
+            public byte[] encode(final byte[] input) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return input;
+            }
+        };
+        try {
+            final var running = compressor.encode(blocking, new byte[1]).toProcessor();
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS), "The worker did not start encoding");
+            final var queued = compressor.encode(blocking, new byte[1]).toProcessor();
+
+            Assertions.assertThrows(
+                    RejectedExecutionException.class,
+                    () -> compressor.encode(blocking, new byte[1]).block(Duration.ofSeconds(1))
+            );
+            release.countDown();
+            Assertions.assertNotNull(running.block(Duration.ofSeconds(5)));
+            Assertions.assertNotNull(queued.block(Duration.ofSeconds(5)));
+        } finally {
+            release.countDown();
+        }
+    }
+
+
+    /**
+     * Checks whether a JSON response with the given {@code status} and headers can be compressed.
+     *
+     * @param status  The response's {@link HttpStatus}.
+     * @param headers Changes the response's {@link HttpHeaders}.
+     * @return Whether the response can be compressed.
+     */
+    private boolean isCompressible(final HttpStatus status, final Consumer<HttpHeaders> headers) {
+        final var response = new MockServerHttpResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        headers.accept(response.getHeaders());
+        return compressor.isCompressible(response);
+    }
+}
@@ -0,0 +1,139 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link EventSplitter} (i.e the event boundaries of server-sent event streams).
+ */
+class EventSplitterTest {
+
+    /**
+     * The maximum event size used by the tests that do not test it (larger than any of their events).
+     */
+    private static final int MAX_EVENT_SIZE = 1024;
+
+
+    /**
+     * Tests that events whose lines end with LF are split after their empty line.
+     */
+    @Test
+    void testLf() {
+        final var splitter = new EventSplitter(MAX_EVENT_SIZE);
+
+        Assertions.assertEquals(
+                List.of("data: first\n\n", "event: second\ndata: 2\n\n"),
+                split(splitter, "data: first\n\nevent: second\ndata: 2\n\ndata: third")
+        );
+        Assertions.assertEquals("data: third", remaining(splitter), "The incomplete event must be kept");
+    }
+
+    /**
+     * Tests that events whose lines end with CRLF are split after the LF of their empty line.
+     */
+    @Test
+    void testCrLf() {
+        final var splitter = new EventSplitter(MAX_EVENT_SIZE);
+
+        Assertions.assertEquals(
+                List.of("data: first\r\n\r\n", "data: second\r\n\r\n"),
+                split(splitter, "data: first\r\n\r\ndata: second\r\n\r\n")
+        );
+        Assertions.assertEquals("", remaining(splitter));
+    }
+
+    /**
+     * Tests that events whose lines end with CR are split once the next byte is received
+     * (as it could have been the LF of a CRLF), or once the stream completes.
+     */
+    @Test
+    void testCr() {
+        final var splitter = new EventSplitter(MAX_EVENT_SIZE);
+
+        Assertions.assertEquals(List.of(), split(splitter, "data: first\r\r"), "The event was split too early");
+        Assertions.assertEquals(List.of("data: first\r\r"), split(splitter, "data: second\r\r"));
+        Assertions.assertEquals("data: second\r\r", remaining(splitter));
+    }
+
+    /**
+     * Tests that events split across several buffers are joined,
+     * including those whose CRLF line ends are split between buffers.
+     */
+    @Test
+    void testEventsSplitAcrossBuffers() {
+        final var splitter = new EventSplitter(MAX_EVENT_SIZE);
+
+        Assertions.assertEquals(List.of(), split(splitter, "data: fi"));
+        Assertions.assertEquals(List.of(), split(splitter, "rst\n"));
+        Assertions.assertEquals(List.of("data: first\n\n"), split(splitter, "\ndata: sec"));
+        Assertions.assertEquals(List.of(), split(splitter, "ond\r\n\r"));
+        Assertions.assertEquals(List.of("data: second\r\n\r\n"), split(splitter, "\n"));
+        Assertions.assertEquals("", remaining(splitter));
+    }
+
+    /**
+     * Tests that a single byte per buffer gives the same events as the whole stream in a single buffer.
+     */
+    @Test
+    void testByteByByte() {
+        final var stream = "data: a\n\ndata: b\r\n\r\ndata: c\r\rdata: d\n\n";
+        final var splitter = new EventSplitter(MAX_EVENT_SIZE);
+        final var events = new ArrayList<String>();
+        for (final var character : stream.toCharArray()) {
+            events.addAll(split(splitter, String.valueOf(character)));
+        }
+
+        Assertions.assertEquals(split(new EventSplitter(MAX_EVENT_SIZE), stream), events);
+        Assertions.assertEquals(
+                List.of("data: a\n\n", "data: b\r\n\r\n", "data: c\r\r", "data: d\n\n"),
+                events
+        );
+    }
+
+    /**
+     * Tests that events larger than the maximum size are split into chunks of the maximum size,
+     * whether they are received in a single buffer or in several ones.
+     */
+    @Test
+    void testOversizeEvents() {
+        final var splitter = new EventSplitter(8);
+
+        Assertions.assertEquals(
+                List.of("data: 01", "23456789", "\n\n"),
+                split(splitter, "data: 0123456789\n\n")
+        );
+        Assertions.assertEquals(List.of(), split(splitter, "data"));
+        Assertions.assertEquals(List.of("data: ab"), split(splitter, ": abc"));
+        Assertions.assertEquals("c", remaining(splitter));
+    }
+
+
+    /**
+     * Feeds the given {@code bytes} to the given {@code splitter}.
+     *
+     * @param splitter The {@link EventSplitter}.
+     * @param bytes    The bytes (as an UTF-8 string).
+     * @return The completed events (as UTF-8 strings).
+     */
+    private static List<String> split(final EventSplitter splitter, final String bytes) {
+        return splitter.split(bytes.getBytes(StandardCharsets.UTF_8))
+                .stream()
+                .map(event -> new String(event, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Takes the bytes received by the given {@code splitter} after its last event.
+     *
+     * @param splitter The {@link EventSplitter}.
+     * @return The remaining bytes (as an UTF-8 string).
+     */
+    private static String remaining(final EventSplitter splitter) {
+        return new String(splitter.remaining(), StandardCharsets.UTF_8);
+    }
+}
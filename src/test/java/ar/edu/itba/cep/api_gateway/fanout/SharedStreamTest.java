@@ -0,0 +1,163 @@
+package ar.edu.itba.cep.api_gateway.fanout;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link SharedStream} (i.e the multicast of events to its viewers, and its upstream subscription).
+ */
+class SharedStreamTest {
+
+    /**
+     * The maximum event size.
+     */
+    private static final int MAX_EVENT_SIZE = 1024;
+
+    /**
+     * The size of the viewers' queues.
+     */
+    private static final int BUFFER_SIZE = 4;
+
+    /**
+     * The amount of events published by the tests (many more than fit in the viewers' queues).
+     */
+    private static final int EVENTS = 200;
+
+
+    /**
+     * Tests that a viewer whose client stopped reading is dropped once its queue overflows
+     * (i.e it stops getting events, and leaves the stream), without holding up the other viewers,
+     * which receive every event.
+     */
+    @Test
+    void testSlowViewerIsDropped() {
+        final var stream = new SharedStream(MAX_EVENT_SIZE, ignored -> {
+        });
+        stream.open(Mono.never());
+        final var fastViewer = viewer();
+        final var slowViewer = viewer();
+        Assertions.assertTrue(stream.join(fastViewer));
+        Assertions.assertTrue(stream.join(slowViewer));
+
+        final var fastResponse = new MockServerHttpResponse();
+        final var fastDropped = new AtomicBoolean(false);
+        final var fastWritten = stream.writeTo(fastResponse, fastViewer, () -> fastDropped.set(true)).toProcessor();
+        final var slowResponse = new MockServerHttpResponse();
+        // The slow viewer's client reads the first buffer, and then stops reading
+        final var slowReceived = new AtomicInteger(0);
+        slowResponse.setWriteHandler(body -> Mono.create(sink -> body.subscribe(new BaseSubscriber<DataBuffer>() {
+            @Override
+            protected void hookOnSubscribe(final Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            protected void hookOnNext(final DataBuffer buffer) {
+                slowReceived.incrementAndGet();
+                DataBufferUtils.release(buffer);
+            }
+        })));
+        final var slowDropped = new AtomicInteger(0);
+        stream.writeTo(slowResponse, slowViewer, slowDropped::incrementAndGet).subscribe();
+
+        stream.head(HttpStatus.OK, HttpHeaders.EMPTY);
+        for (var i = 0; i < EVENTS; i++) {
+            stream.publish(("data: " + i + "\n\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        Assertions.assertEquals(1, slowDropped.get(), "The slow viewer was not dropped once");
+        Assertions.assertEquals(1, slowReceived.get(), "The stopped client got more events than it read");
+        Assertions.assertFalse(fastDropped.get(), "The fast viewer was dropped");
+        Assertions.assertFalse(fastWritten.isTerminated(), "The fast viewer's response was ended");
+        Assertions.assertTrue(stream.join(viewer()), "The stream was closed when the slow viewer left");
+        final var received = fastResponse.getBody()
+                .take(EVENTS)
+                .count()
+                .block(Duration.ofSeconds(5));
+        Assertions.assertEquals(Long.valueOf(EVENTS), received, "The fast viewer did not receive every event");
+    }
+
+    /**
+     * Tests that the upstream subscription is kept while there are viewers, and that it is cancelled
+     * (closing the stream) once the last viewer leaves.
+     */
+    @Test
+    void testLastViewerLeavingCancelsUpstream() {
+        final var closed = new AtomicInteger(0);
+        final var stream = new SharedStream(MAX_EVENT_SIZE, ignored -> closed.incrementAndGet());
+        final var upstreamCancelled = new AtomicBoolean(false);
+        stream.open(Mono.<Void>never().doOnCancel(() -> upstreamCancelled.set(true)));
+        final var first = viewer();
+        final var second = viewer();
+        Assertions.assertTrue(stream.join(first));
+        Assertions.assertTrue(stream.join(second));
+        stream.head(HttpStatus.OK, HttpHeaders.EMPTY);
+        final var firstWriting = stream.writeTo(new MockServerHttpResponse(), first, () -> {
+        }).subscribe();
+        final var secondWriting = stream.writeTo(new MockServerHttpResponse(), second, () -> {
+        }).subscribe();
+
+        firstWriting.dispose();
+        Assertions.assertFalse(upstreamCancelled.get(), "The upstream was cancelled while there still was a viewer");
+        Assertions.assertEquals(0, closed.get());
+
+        secondWriting.dispose();
+        Assertions.assertTrue(upstreamCancelled.get(), "The upstream was not cancelled");
+        Assertions.assertEquals(1, closed.get(), "The stream was not closed once");
+        Assertions.assertFalse(stream.join(viewer()), "A viewer joined a closed stream");
+    }
+
+    /**
+     * Tests that the viewers' responses complete once the upstream response completes,
+     * after receiving the remaining bytes, and that the stream is closed.
+     */
+    @Test
+    void testUpstreamCompletionEndsTheViewers() {
+        final var closed = new AtomicInteger(0);
+        final var stream = new SharedStream(MAX_EVENT_SIZE, ignored -> closed.incrementAndGet());
+        final var upstream = MonoProcessor.<Void>create();
+        stream.open(upstream);
+        final var viewer = viewer();
+        Assertions.assertTrue(stream.join(viewer));
+        final var response = new MockServerHttpResponse();
+        final var written = stream.writeTo(response, viewer, () -> {
+        }).toProcessor();
+
+        stream.head(HttpStatus.OK, HttpHeaders.EMPTY);
+        stream.publish("data: first\n\ndata: incompl".getBytes(StandardCharsets.UTF_8));
+        upstream.onComplete();
+
+        written.block(Duration.ofSeconds(5));
+        Assertions.assertEquals(
+                "data: first\n\ndata: incompl",
+                response.getBodyAsString().block(Duration.ofSeconds(5)),
+                "The remaining bytes were not sent"
+        );
+        Assertions.assertEquals(1, closed.get(), "The stream was not closed once");
+        Assertions.assertFalse(stream.join(viewer()), "A viewer joined a closed stream");
+    }
+
+
+    /**
+     * @return A new viewer (with a queue of {@link #BUFFER_SIZE} events).
+     */
+    private static UnicastProcessor<byte[]> viewer() {
+        return UnicastProcessor.create(Queues.<byte[]>get(BUFFER_SIZE).get());
+    }
+}
@@ -0,0 +1,432 @@
+package ar.edu.itba.cep.api_gateway.http2;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2DataFrame;
+import io.netty.handler.codec.http2.DefaultHttp2GoAwayFrame;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.DefaultHttp2ResetFrame;
+import io.netty.handler.codec.http2.Http2DataFrame;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexCodecBuilder;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link H2cClient} (i.e its connection pools and streams) against a stub h2c backend.
+ */
+class H2cClientTest {
+
+    /**
+     * The size of the large bodies (much larger than the default HTTP/2 flow control windows, of 64KB).
+     */
+    private static final int LARGE_BODY_SIZE = 1024 * 1024;
+
+    /**
+     * The amount of time the pools of the clients are kept after they were last used.
+     */
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The {@link DefaultDataBufferFactory} with which bodies are sent and received.
+     */
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+
+    /**
+     * The amount of connections accepted by the stub backend.
+     */
+    private static final AtomicInteger ACCEPTED = new AtomicInteger();
+
+    /**
+     * The {@link EventLoopGroup} of the stub backend and the clients.
+     */
+    private static EventLoopGroup eventLoopGroup;
+    /**
+     * The stub backend's server {@link Channel}.
+     */
+    private static Channel backend;
+
+
+    /**
+     * Starts the stub backend, which answers according to the request path:
+     * {@code /echo} echoes the request body, {@code /goaway} answers and then sends a GOAWAY frame
+     * (without closing the connection), and {@code /reset} sends the response headers and then resets the stream.
+     */
+    @BeforeAll
+    static void startBackend() {
+        eventLoopGroup = new NioEventLoopGroup(2);
+        backend = new ServerBootstrap()
+                .group(eventLoopGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(final Channel channel) {
+                        ACCEPTED.incrementAndGet();
+                        channel.pipeline().addLast(Http2MultiplexCodecBuilder
+                                .forServer(new ChannelInitializer<Channel>() {
+                                    @Override
+                                    protected void initChannel(final Channel stream) {
+                                        stream.pipeline().addLast(new StubStream());
+                                    }
+                                })
+                                .build());
+                    }
+                })
+                .bind(0)
+                .syncUninterruptibly()
+                .channel();
+    }
+
+    /**
+     * Stops the stub backend.
+     */
+    @AfterAll
+    static void stopBackend() {
+        if (backend != null) {
+            backend.close().syncUninterruptibly();
+        }
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+
+    /**
+     * Tests that request bodies are forwarded (whether they are empty or sent in several buffers,
+     * as no length is known in advance), and that response bodies are received.
+     */
+    @Test
+    void testBodies() {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var client = client(1, 10, meterRegistry);
+        try {
+            final var chunked = send(client, "/echo", Flux.just("first ", "second ", "third")
+                    .map(chunk -> BUFFER_FACTORY.wrap(chunk.getBytes(StandardCharsets.UTF_8))));
+            Assertions.assertEquals("200", chunked.getKey());
+            Assertions.assertEquals("first second third", new String(chunked.getValue(), StandardCharsets.UTF_8));
+
+            final var empty = send(client, "/echo", Flux.empty());
+            Assertions.assertEquals("200", empty.getKey());
+            Assertions.assertEquals(0, empty.getValue().length);
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Tests that bodies larger than the flow control windows are sent and received completely
+     * (i.e the windows are updated as the bodies are consumed on both sides).
+     */
+    @Test
+    void testFlowControlWindows() {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var client = client(1, 10, meterRegistry);
+        try {
+            final var body = new byte[LARGE_BODY_SIZE];
+            ThreadLocalRandom.current().nextBytes(body);
+            final var chunkSize = 16 * 1024;
+            final var request = Flux.range(0, LARGE_BODY_SIZE / chunkSize)
+                    .<DataBuffer>map(i -> BUFFER_FACTORY.wrap(
+                            Arrays.copyOfRange(body, i * chunkSize, (i + 1) * chunkSize)
+                    ));
+
+            final var response = send(client, "/echo", request);
+            Assertions.assertEquals("200", response.getKey());
+            Assertions.assertArrayEquals(body, response.getValue(), "The body was not echoed completely");
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Tests that a connection that receives a GOAWAY frame is removed from the pool (and closed),
+     * so a new connection is opened for the next requests even if the maximum amount of connections is one.
+     */
+    @Test
+    void testGoAway() throws InterruptedException {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var client = client(1, 10, meterRegistry);
+        try {
+            final var accepted = ACCEPTED.get();
+            Assertions.assertEquals("200", send(client, "/goaway", Flux.empty()).getKey());
+            awaitConnections(meterRegistry, 0);
+
+            Assertions.assertEquals(
+                    "200",
+                    send(client, "/echo", Flux.empty()).getKey(),
+                    "The request was not sent through a new connection"
+            );
+            Assertions.assertEquals(accepted + 2, ACCEPTED.get());
+            Assertions.assertEquals(1, connections(meterRegistry));
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Tests that a stream reset by the upstream fails the response body, and that its stream is released
+     * (i.e the next request gets a stream even if the maximum amount of concurrent streams is one)
+     * without closing the connection.
+     */
+    @Test
+    void testReset() {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var client = client(1, 1, meterRegistry);
+        try {
+            final var error = Assertions.assertThrows(
+                    RuntimeException.class,
+                    () -> send(client, "/reset", Flux.empty())
+            );
+            Assertions.assertTrue(error.getCause() instanceof IOException, "The body did not fail with the reset");
+
+            Assertions.assertEquals("200", send(client, "/echo", Flux.empty()).getKey(), "The stream was not released");
+            Assertions.assertEquals(1, connections(meterRegistry), "The connection must be kept");
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Tests that a pool with an active stream is not closed, no matter for how long it lasts (e.g a large download),
+     * and that it is closed (with its connections) once it has been idle for the idle timeout after the stream ends.
+     */
+    @Test
+    void testLongStreamOutlivesIdleTimeout() throws InterruptedException {
+        final var meterRegistry = new SimpleMeterRegistry();
+        final var client = client(1, 10, meterRegistry);
+        try {
+            final var accepted = ACCEPTED.get();
+            final var port = ((InetSocketAddress) backend.localAddress()).getPort();
+            final var stream = client.acquire(URI.create("http://localhost:" + port + "/echo"))
+                    .block(Duration.ofSeconds(10));
+            Assertions.assertNotNull(stream);
+            client.evictIdle(System.nanoTime() + 2 * IDLE_TIMEOUT.toNanos());
+            Assertions.assertEquals(1, connections(meterRegistry), "A pool with an active stream was closed");
+
+            final var headers = new DefaultHttp2Headers()
+                    .method("POST")
+                    .path("/echo")
+                    .scheme("http")
+                    .authority("localhost:" + port);
+            final var body = stream.send(headers, Flux.just(BUFFER_FACTORY.wrap(new byte[]{1, 2, 3})))
+                    .then(stream.responseHeaders())
+                    .then(DataBufferUtils.join(stream.body(BUFFER_FACTORY)).map(H2cClientTest::toBytes))
+                    .doFinally(ignored -> stream.dispose())
+                    .block(Duration.ofSeconds(10));
+            Assertions.assertArrayEquals(new byte[]{1, 2, 3}, body, "The long stream was broken");
+
+            client.evictIdle(System.nanoTime() + IDLE_TIMEOUT.toNanos() / 2);
+            Assertions.assertEquals(1, connections(meterRegistry), "The pool was closed before the idle timeout");
+            // The stream is released asynchronously, once its channel is closed
+            final var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (connections(meterRegistry) != 0 && System.nanoTime() - deadline < 0) {
+                client.evictIdle(System.nanoTime() + 2 * IDLE_TIMEOUT.toNanos());
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(0, connections(meterRegistry), "The idle pool was not closed");
+            Assertions.assertEquals("200", send(client, "/echo", Flux.empty()).getKey());
+            Assertions.assertEquals(accepted + 2, ACCEPTED.get(), "The idle pool was not replaced by a new one");
+        } finally {
+            client.close();
+        }
+    }
+
+
+    /**
+     * Creates an {@link H2cClient} to the stub backend.
+     *
+     * @param maxConnections       The maximum amount of connections.
+     * @param maxConcurrentStreams The maximum amount of concurrent streams in each connection.
+     * @param meterRegistry        The {@link MeterRegistry} to which the pools statistics are reported.
+     * @return The {@link H2cClient}.
+     */
+    private static H2cClient client(
+            final int maxConnections,
+            final int maxConcurrentStreams,
+            final MeterRegistry meterRegistry) {
+        final var bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true);
+        return new H2cClient(
+                "test",
+                bootstrap,
+                maxConnections,
+                maxConcurrentStreams,
+                10,
+                Duration.ofSeconds(5),
+                IDLE_TIMEOUT,
+                meterRegistry
+        );
+    }
+
+    /**
+     * Sends a POST request to the stub backend, and receives its response.
+     *
+     * @param client The {@link H2cClient}.
+     * @param path   The request path.
+     * @param body   The request body.
+     * @return The response status and body.
+     */
+    private static Map.Entry<String, byte[]> send(
+            final H2cClient client,
+            final String path,
+            final Flux<DataBuffer> body) {
+        final var port = ((InetSocketAddress) backend.localAddress()).getPort();
+        final Http2Headers headers = new DefaultHttp2Headers()
+                .method("POST")
+                .path(path)
+                .scheme("http")
+                .authority("localhost:" + port);
+        return client.acquire(URI.create("http://localhost:" + port + path))
+                .flatMap(stream -> stream.send(headers, body)
+                        .then(stream.responseHeaders())
+                        .flatMap(responseHeaders -> DataBufferUtils.join(stream.body(BUFFER_FACTORY))
+                                .map(H2cClientTest::toBytes)
+                                .defaultIfEmpty(new byte[0])
+                                .map(bytes -> Map.entry(responseHeaders.status().toString(), bytes)))
+                        .doFinally(ignored -> stream.dispose()))
+                .block(Duration.ofSeconds(10));
+    }
+
+    /**
+     * Copies the given {@code buffer} into an array, releasing it.
+     *
+     * @param buffer The {@link DataBuffer}.
+     * @return The bytes.
+     */
+    private static byte[] toBytes(final DataBuffer buffer) {
+        try {
+            final var bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Returns the amount of open connections, as reported by the connections gauge.
+     *
+     * @param meterRegistry The {@link MeterRegistry} of the client.
+     * @return The amount of connections.
+     */
+    private static int connections(final MeterRegistry meterRegistry) {
+        return (int) meterRegistry.get("gateway.http2.upstream.connections").gauge().value();
+    }
+
+    /**
+     * Waits until the amount of open connections is the given one.
+     *
+     * @param meterRegistry The {@link MeterRegistry} of the client.
+     * @param expected      The expected amount of connections.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private static void awaitConnections(final MeterRegistry meterRegistry, final int expected)
+            throws InterruptedException {
+        final var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (connections(meterRegistry) != expected && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(expected, connections(meterRegistry), "The connection was not removed");
+    }
+
+
+    /**
+     * The handler of a stream of the stub backend, which reads the whole request before answering.
+     */
+    private static final class StubStream extends ChannelInboundHandlerAdapter {
+
+        /**
+         * The request headers ({@code null} until received).
+         */
+        private Http2Headers headers;
+        /**
+         * The request body received so far.
+         */
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws IOException {
+            try {
+                if (msg instanceof Http2HeadersFrame) {
+                    final var frame = (Http2HeadersFrame) msg;
+                    headers = frame.headers();
+                    if (frame.isEndStream()) {
+                        respond(ctx);
+                    }
+                } else if (msg instanceof Http2DataFrame) {
+                    final var frame = (Http2DataFrame) msg;
+                    frame.content().readBytes(body, frame.content().readableBytes());
+                    if (frame.isEndStream()) {
+                        respond(ctx);
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        /**
+         * Answers the request, according to its path.
+         *
+         * @param ctx The {@link ChannelHandlerContext} of the stream.
+         */
+        private void respond(final ChannelHandlerContext ctx) {
+            final var path = headers.path().toString();
+            final var responseHeaders = new DefaultHttp2Headers().status("200");
+            switch (path) {
+                case "/echo":
+                    ctx.write(new DefaultHttp2HeadersFrame(responseHeaders, false));
+                    ctx.writeAndFlush(new DefaultHttp2DataFrame(Unpooled.wrappedBuffer(body.toByteArray()), true));
+                    break;
+                case "/goaway":
+                    ctx.writeAndFlush(new DefaultHttp2HeadersFrame(responseHeaders, true));
+                    ctx.channel().parent().writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR));
+                    break;
+                case "/reset":
+                    ctx.writeAndFlush(new DefaultHttp2HeadersFrame(responseHeaders, false));
+                    ctx.writeAndFlush(new DefaultHttp2ResetFrame(Http2Error.CANCEL));
+                    break;
+                default:
+                    ctx.writeAndFlush(new DefaultHttp2HeadersFrame(new DefaultHttp2Headers().status("404"), true));
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link BodyLimitFilter} (i.e the rejection of requests with too large bodies, declared or streamed,
+ * and its meters), with an upstream that reads the request body.
+ */
+class BodyLimitFilterTest {
+
+    /**
+     * The id of the limited route.
+     */
+    private static final String ROUTE = "evaluations-service";
+
+    /**
+     * The maximum size of the request bodies of the {@link #ROUTE}.
+     */
+    private static final int MAX_SIZE = 8;
+
+
+    /**
+     * The {@link MeterRegistry} of the filter.
+     */
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /**
+     * The {@link BodyLimitFilter} being tested.
+     */
+    private final BodyLimitFilter filter = new BodyLimitFilter(
+            Map.of(ROUTE, new BodyLimitFilter.RouteLimit(ROUTE, MAX_SIZE, meterRegistry))
+    );
+    /**
+     * The amount of requests sent upstream.
+     */
+    private final AtomicInteger sent = new AtomicInteger(0);
+
+
+    /**
+     * Tests that a request whose body is up to the maximum size is sent upstream with its whole body.
+     */
+    @Test
+    void testBodyUpToTheMaximumSizeIsSent() {
+        final var exchange = exchange("12345678", true);
+
+        filter.filter(exchange, upstream()).block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(1, sent.get(), "The request was not sent upstream");
+        Assertions.assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals("12345678", exchange.getResponse().getBodyAsString().block(Duration.ofSeconds(1)));
+        Assertions.assertFalse(RequestBodies.isTooLarge(exchange));
+        Assertions.assertEquals(0, rejections("declared") + rejections("streamed"));
+    }
+
+    /**
+     * Tests that a request declaring a larger {@code Content-Length} is rejected right away
+     * (without being sent upstream), closing its connection, and that it is counted as a declared rejection.
+     */
+    @Test
+    void testDeclaredLengthIsRejected() {
+        final var exchange = exchange("123456789", true);
+
+        filter.filter(exchange, upstream()).block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(0, sent.get(), "The request was sent upstream");
+        assertRejected(exchange);
+        Assertions.assertEquals(1, rejections("declared"), "The rejection was not counted");
+        Assertions.assertEquals(0, rejections("streamed"));
+    }
+
+    /**
+     * Tests that a request without a declared length (e.g a chunked upload) is rejected once its streamed body
+     * crosses the maximum size, and that it is counted as a streamed rejection.
+     */
+    @Test
+    void testStreamedBodyIsRejected() {
+        final var exchange = exchange("123456789", false);
+
+        filter.filter(exchange, upstream()).block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(1, sent.get(), "The request was not streamed upstream");
+        assertRejected(exchange);
+        Assertions.assertEquals(1, rejections("streamed"), "The rejection was not counted");
+        Assertions.assertEquals(0, rejections("declared"));
+    }
+
+    /**
+     * Tests that a streamed body that crosses the maximum size once the response was committed
+     * fails the request (as its status can not be changed anymore), without counting it as a rejection.
+     */
+    @Test
+    void testStreamedBodyAfterCommittedResponseFails() {
+        final var exchange = exchange("123456789", false);
+        final GatewayFilterChain upstream = limited -> {
+            limited.getResponse().setStatusCode(HttpStatus.OK);
+            return limited.getResponse().setComplete().then(read(limited));
+        };
+
+        Assertions.assertThrows(
+                ResponseStatusException.class,
+                () -> filter.filter(exchange, upstream).block(Duration.ofSeconds(1))
+        );
+        Assertions.assertEquals(HttpStatus.OK, exchange.getResponse().getStatusCode());
+        Assertions.assertTrue(RequestBodies.isTooLarge(exchange), "The body was not marked as too large");
+        Assertions.assertEquals(0, rejections("streamed"), "A request that was not rejected was counted");
+    }
+
+    /**
+     * Tests that other upstream failures are not turned into rejections.
+     */
+    @Test
+    void testOtherFailuresAreNotRejections() {
+        final var exchange = exchange("1234", false);
+
+        Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> filter.filter(exchange, ignored -> Mono.error(new IllegalStateException("Upstream failed")))
+                        .block(Duration.ofSeconds(1))
+        );
+        Assertions.assertFalse(RequestBodies.isTooLarge(exchange));
+        Assertions.assertEquals(0, rejections("declared") + rejections("streamed"));
+    }
+
+    /**
+     * Tests that requests of routes without a limit (or without a route) are not limited.
+     */
+    @Test
+    void testOtherRoutesAreNotLimited() {
+        final var exchange = MockServerWebExchange.from(MockServerHttpRequest.post("http://gateway/upload")
+                .contentLength(9)
+                .body("123456789"));
+
+        filter.filter(exchange, upstream()).block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(1, sent.get(), "The request was not sent upstream");
+        Assertions.assertEquals("123456789", exchange.getResponse().getBodyAsString().block(Duration.ofSeconds(1)));
+    }
+
+
+    /**
+     * Creates a POST request with the given {@code body}, routed by the {@link #ROUTE}.
+     *
+     * @param body                  The body (as an UTF-8 string), sent in a buffer per byte.
+     * @param declaresContentLength Whether the request declares its {@code Content-Length}.
+     * @return The {@link MockServerWebExchange}.
+     */
+    private static MockServerWebExchange exchange(final String body, final boolean declaresContentLength) {
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        final var request = MockServerHttpRequest.post("http://gateway/upload");
+        if (declaresContentLength) {
+            request.contentLength(bytes.length);
+        }
+        final var buffers = Flux.range(0, bytes.length)
+                .map(i -> new DefaultDataBufferFactory().wrap(new byte[]{bytes[i]}))
+                .cast(DataBuffer.class);
+        final var exchange = MockServerWebExchange.from(request.body(buffers));
+        exchange.getAttributes().put(
+                ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
+                Route.async().id(ROUTE).uri("http://service").predicate(ignored -> true).build()
+        );
+        return exchange;
+    }
+
+    /**
+     * Creates the {@link GatewayFilterChain} that stands for the upstream, which reads the whole request body,
+     * and responds with it.
+     *
+     * @return The {@link GatewayFilterChain}.
+     */
+    private GatewayFilterChain upstream() {
+        return exchange -> {
+            sent.incrementAndGet();
+            final var response = exchange.getResponse();
+            return DataBufferUtils.join(exchange.getRequest().getBody())
+                    .flatMap(body -> {
+                        response.setStatusCode(HttpStatus.OK);
+                        return response.writeWith(Mono.just(body));
+                    });
+        };
+    }
+
+    /**
+     * Reads the whole request body of the given {@code exchange}, discarding it.
+     *
+     * @param exchange The {@link ServerWebExchange}.
+     * @return A {@link Mono} that completes once the body is read.
+     */
+    private static Mono<Void> read(final ServerWebExchange exchange) {
+        return exchange.getRequest().getBody()
+                .doOnNext(DataBufferUtils::release)
+                .then();
+    }
+
+    /**
+     * Asserts that the request in the given {@code exchange} was rejected with a 413 Payload Too Large response
+     * that closes the connection.
+     *
+     * @param exchange The {@link MockServerWebExchange}.
+     */
+    private static void assertRejected(final MockServerWebExchange exchange) {
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+        Assertions.assertEquals("close", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONNECTION));
+        Assertions.assertTrue(RequestBodies.isTooLarge(exchange), "The body was not marked as too large");
+    }
+
+    /**
+     * Returns the amount of requests of the {@link #ROUTE} rejected for the given {@code reason}.
+     *
+     * @param reason Why the requests were rejected.
+     * @return The amount of requests.
+     */
+    private int rejections(final String reason) {
+        return (int) meterRegistry.get("gateway.body-limit.rejections")
+                .tags("route", ROUTE, "reason", reason)
+                .counter()
+                .count();
+    }
+}
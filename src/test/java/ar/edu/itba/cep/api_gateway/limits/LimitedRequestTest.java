@@ -0,0 +1,160 @@
+package ar.edu.itba.cep.api_gateway.limits;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link LimitedRequest} (i.e the counting of the body bytes as they are streamed).
+ */
+class LimitedRequestTest {
+
+    /**
+     * The maximum size of the bodies.
+     */
+    private static final int MAX_SIZE = 8;
+
+
+    /**
+     * The factory of the body buffers (Netty ones, so the tests can check whether they are released).
+     */
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+    /**
+     * The amount of times the body became too large.
+     */
+    private final AtomicInteger tooLarge = new AtomicInteger(0);
+
+
+    /**
+     * Tests that a body of up to the maximum size is streamed untouched.
+     */
+    @Test
+    void testBodyUpToTheMaximumSizeIsStreamed() {
+        final var request = request(List.of("1234", "5678"));
+
+        Assertions.assertEquals(List.of("1234", "5678"), read(request.getBody()));
+        Assertions.assertEquals(0, tooLarge.get(), "A body of the maximum size was rejected");
+    }
+
+    /**
+     * Tests that a body larger than the maximum size fails with a 413 status as soon as it crosses the limit,
+     * after streaming the buffers that fit, releasing the buffer that crossed it, and not reading the rest.
+     */
+    @Test
+    void testBodyLargerThanTheMaximumSizeFails() {
+        final var crossing = buffer("56789");
+        final var rest = new AtomicInteger(0);
+        final var body = Flux.concat(
+                Flux.just(buffer("1234"), crossing),
+                Flux.defer(() -> {
+                    rest.incrementAndGet();
+                    return Flux.just(buffer("0"));
+                })
+        );
+        final var request = new LimitedRequest(
+                MockServerHttpRequest.post("http://gateway/upload").body(body),
+                MAX_SIZE,
+                tooLarge::incrementAndGet
+        );
+
+        final var received = request.getBody()
+                .map(LimitedRequestTest::string)
+                .onErrorResume(error -> {
+                    Assertions.assertTrue(error instanceof ResponseStatusException, "Unexpected error: " + error);
+                    Assertions.assertEquals(
+                            HttpStatus.PAYLOAD_TOO_LARGE,
+                            ((ResponseStatusException) error).getStatus()
+                    );
+                    return Flux.just("<too large>");
+                })
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        Assertions.assertEquals(List.of("1234", "<too large>"), received);
+        Assertions.assertEquals(1, tooLarge.get(), "The too large callback was not called once");
+        Assertions.assertEquals(0, crossing.getNativeBuffer().refCnt(), "The crossing buffer was not released");
+        Assertions.assertEquals(0, rest.get(), "The rest of the body was read");
+    }
+
+    /**
+     * Tests that each subscription to the body counts its bytes from zero (e.g when a request is retried).
+     */
+    @Test
+    void testEachSubscriptionIsCountedByItself() {
+        final var request = new LimitedRequest(
+                MockServerHttpRequest.post("http://gateway/upload")
+                        .body(Flux.defer(() -> Flux.just(buffer("1234"), buffer("5678")))),
+                MAX_SIZE,
+                tooLarge::incrementAndGet
+        );
+
+        Assertions.assertEquals(List.of("1234", "5678"), read(request.getBody()));
+        Assertions.assertEquals(List.of("1234", "5678"), read(request.getBody()));
+        Assertions.assertEquals(0, tooLarge.get(), "The bytes of both subscriptions were added");
+    }
+
+
+    /**
+     * Creates a {@link LimitedRequest} whose body is made of the given {@code chunks},
+     * limited to {@link #MAX_SIZE} bytes.
+     *
+     * @param chunks The chunks of the body (as UTF-8 strings), each in its own buffer.
+     * @return The {@link LimitedRequest}.
+     */
+    private LimitedRequest request(final List<String> chunks) {
+        final var body = Flux.fromIterable(chunks).map(this::buffer);
+        return new LimitedRequest(
+                MockServerHttpRequest.post("http://gateway/upload").body(body),
+                MAX_SIZE,
+                tooLarge::incrementAndGet
+        );
+    }
+
+    /**
+     * Creates a buffer with the given {@code chunk}.
+     *
+     * @param chunk The chunk (as an UTF-8 string).
+     * @return The {@link NettyDataBuffer}.
+     */
+    private NettyDataBuffer buffer(final String chunk) {
+        return (NettyDataBuffer) bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the given {@code body}.
+     *
+     * @param body The body.
+     * @return Each of the buffers of the body (as UTF-8 strings).
+     */
+    private static List<String> read(final Flux<DataBuffer> body) {
+        return body.map(LimitedRequestTest::string)
+                .collect(Collectors.toList())
+                .block(Duration.ofSeconds(1));
+    }
+
+    /**
+     * Reads the given {@code buffer}, releasing it.
+     *
+     * @param buffer The {@link DataBuffer}.
+     * @return Its content (as an UTF-8 string).
+     */
+    private static String string(final DataBuffer buffer) {
+        final var string = StandardCharsets.UTF_8.decode(buffer.asByteBuffer()).toString();
+        DataBufferUtils.release(buffer);
+        return string;
+    }
+}
@@ -0,0 +1,351 @@
+package ar.edu.itba.cep.api_gateway.loadbalancing;
+
+import com.netflix.loadbalancer.Server;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link RouteBalancer} (i.e the peak-EWMA costs and the passive ejection of instances),
+ * using an explicit clock.
+ * With two servers, the two random candidates are always both of them, so every choice is deterministic.
+ */
+class RouteBalancerTest {
+
+    /**
+     * The instant used as "now" by the tests, in nanoseconds.
+     */
+    private static final long NOW = 1_000_000_000L;
+
+    /**
+     * The time it takes for the latency of an instance to decay to 1/e of its value.
+     */
+    private static final Duration DECAY_TIME = Duration.ofSeconds(10);
+
+    /**
+     * The amount of consecutive failed calls after which an instance is ejected.
+     */
+    private static final int CONSECUTIVE_FAILURES = 3;
+
+    /**
+     * For how long an instance is ejected the first time.
+     */
+    private static final long BASE_EJECTION = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The maximum amount of time an instance is ejected.
+     */
+    private static final long MAX_EJECTION = TimeUnit.SECONDS.toNanos(3);
+
+    /**
+     * For how long an ejected instance must answer without failures before its ejection time is reset.
+     */
+    private static final long HEALTHY = TimeUnit.SECONDS.toNanos(5);
+
+    /**
+     * The amount of times each choice is repeated (so a random choice would be caught).
+     */
+    private static final int CHOICES = 20;
+
+    /**
+     * A latency of one millisecond, in nanoseconds.
+     */
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+
+    /**
+     * The instance that is made cheaper (or more expensive) by each test.
+     */
+    private final Server first = new Server("first", 8080);
+    /**
+     * The other instance.
+     */
+    private final Server second = new Server("second", 8080);
+    /**
+     * Both instances.
+     */
+    private final List<Server> servers = List.of(first, second);
+
+    /**
+     * The {@link MeterRegistry} to which the balancer reports its statistics.
+     */
+    private MeterRegistry meterRegistry;
+    /**
+     * The {@link RouteBalancer} being tested.
+     */
+    private RouteBalancer balancer;
+
+
+    @BeforeEach
+    void createBalancer() {
+        meterRegistry = new SimpleMeterRegistry();
+        balancer = new RouteBalancer(
+                "test-route",
+                DECAY_TIME,
+                Duration.ofMinutes(10),
+                CONSECUTIVE_FAILURES,
+                Duration.ofNanos(BASE_EJECTION),
+                Duration.ofNanos(MAX_EJECTION),
+                Duration.ofNanos(HEALTHY),
+                meterRegistry
+        );
+    }
+
+
+    /**
+     * Tests that, of the two candidates, the one with the lowest latency is chosen.
+     */
+    @Test
+    void testLowestLatencyIsChosen() {
+        instance(first).onResult(false, 10 * MILLISECOND, NOW);
+        instance(second).onResult(false, 100 * MILLISECOND, NOW);
+
+        assertChosen(first, NOW);
+    }
+
+    /**
+     * Tests that the in-flight requests of an instance multiply its cost,
+     * so a loaded instance gets less traffic even if it is faster.
+     */
+    @Test
+    void testInFlightRequestsRaiseTheCost() {
+        final var loaded = instance(first);
+        loaded.onResult(false, 10 * MILLISECOND, NOW);
+        instance(second).onResult(false, 100 * MILLISECOND, NOW);
+        for (var i = 0; i < 10; i++) {
+            loaded.start();
+        }
+        assertChosen(second, NOW);
+
+        for (var i = 0; i < 10; i++) {
+            loaded.complete();
+        }
+        assertChosen(first, NOW);
+    }
+
+    /**
+     * Tests that a latency peak is taken right away, and that its weight decays with time,
+     * so an instance that had a single slow response gets traffic again once it answers fast for a while.
+     */
+    @Test
+    void testLatencyPeaksAreTakenRightAwayAndDecay() {
+        final var peaked = instance(first);
+        peaked.onResult(false, 10 * MILLISECOND, NOW);
+        instance(second).onResult(false, 50 * MILLISECOND, NOW);
+        peaked.onResult(false, 1000 * MILLISECOND, NOW);
+        assertChosen(second, NOW);
+
+        // Right after the peak, a fast response barely moves the average
+        peaked.onResult(false, 10 * MILLISECOND, NOW + MILLISECOND);
+        instance(second).onResult(false, 50 * MILLISECOND, NOW + MILLISECOND);
+        assertChosen(second, NOW + MILLISECOND);
+
+        // Long after the peak, a fast response takes the place of the average
+        final var later = NOW + 10 * DECAY_TIME.toNanos();
+        peaked.onResult(false, 10 * MILLISECOND, later);
+        instance(second).onResult(false, 50 * MILLISECOND, later);
+        assertChosen(first, later);
+    }
+
+    /**
+     * Tests that an instance whose latency is still unknown gets requests while it has none in flight,
+     * but is penalized once it has, so it gets one request at a time until its latency is known.
+     */
+    @Test
+    void testUnknownLatencyIsPenalizedWhileInFlight() {
+        instance(second).onResult(false, 1000 * MILLISECOND, NOW);
+        final var unknown = instance(first);
+        assertChosen(first, NOW);
+
+        unknown.start();
+        assertChosen(second, NOW);
+
+        unknown.complete();
+        unknown.onResult(false, 10 * MILLISECOND, NOW);
+        unknown.start();
+        assertChosen(first, NOW);
+    }
+
+    /**
+     * Tests that the latency of failed calls is not recorded (i.e a fast failing instance does not look cheap).
+     */
+    @Test
+    void testFailedCallsDoNotRecordLatency() {
+        instance(first).onResult(false, 100 * MILLISECOND, NOW);
+        instance(second).onResult(false, 50 * MILLISECOND, NOW);
+        instance(first).onResult(true, MILLISECOND, NOW);
+
+        assertChosen(second, NOW);
+    }
+
+    /**
+     * Tests that an instance is ejected only after the configured amount of consecutive failures,
+     * that a successful call resets the count, and that the instance is chosen again once the ejection expires.
+     */
+    @Test
+    void testEjectionAfterConsecutiveFailures() {
+        final var failing = cheaperFirst();
+        for (var i = 0; i < CONSECUTIVE_FAILURES - 1; i++) {
+            failing.onResult(true, 0, NOW);
+        }
+        failing.onResult(false, MILLISECOND, NOW);
+        for (var i = 0; i < CONSECUTIVE_FAILURES - 1; i++) {
+            failing.onResult(true, 0, NOW);
+        }
+        assertChosen(first, NOW);
+
+        failing.onResult(true, 0, NOW);
+        assertChosen(second, NOW);
+        assertChosen(second, NOW + BASE_EJECTION - 1);
+        assertChosen(first, NOW + BASE_EJECTION);
+        Assertions.assertEquals(1, ejections(), "The ejection was not counted");
+    }
+
+    /**
+     * Tests that failures of calls that were already in flight when the instance was ejected
+     * do not extend the ejection.
+     */
+    @Test
+    void testFailuresWhileEjectedAreIgnored() {
+        final var failing = cheaperFirst();
+        eject(failing, NOW);
+        for (var i = 0; i < 2 * CONSECUTIVE_FAILURES; i++) {
+            failing.onResult(true, 0, NOW + 1);
+        }
+
+        assertChosen(first, NOW + BASE_EJECTION);
+        Assertions.assertEquals(1, ejections(), "Failures while ejected must not eject the instance again");
+    }
+
+    /**
+     * Tests that the ejection time doubles each time an instance is ejected again without having been healthy,
+     * up to the maximum ejection time, even if it answers successfully in between (i.e it flaps).
+     */
+    @Test
+    void testEjectionBacksOffExponentially() {
+        final var failing = cheaperFirst();
+        var now = NOW;
+        eject(failing, now);
+        assertChosen(first, now + BASE_EJECTION);
+
+        now += BASE_EJECTION;
+        failing.onResult(false, MILLISECOND, now);
+        eject(failing, now);
+        assertChosen(second, now + 2 * BASE_EJECTION - 1);
+        assertChosen(first, now + 2 * BASE_EJECTION);
+
+        now += 2 * BASE_EJECTION;
+        eject(failing, now);
+        assertChosen(second, now + MAX_EJECTION - 1);
+        assertChosen(first, now + MAX_EJECTION);
+    }
+
+    /**
+     * Tests that the ejection time goes back to the base one only after the instance answered without failures
+     * for the healthy time.
+     */
+    @Test
+    void testEjectionTimeIsResetAfterHealthyTime() {
+        final var failing = cheaperFirst();
+        var now = NOW;
+        eject(failing, now);
+
+        now += BASE_EJECTION;
+        failing.onResult(false, MILLISECOND, now);
+        failing.onResult(false, MILLISECOND, now + HEALTHY - 1);
+        eject(failing, now + HEALTHY - 1);
+        now += HEALTHY - 1;
+        assertChosen(second, now + BASE_EJECTION, "The instance was not healthy for long enough");
+
+        now += 2 * BASE_EJECTION;
+        failing.onResult(false, MILLISECOND, now);
+        failing.onResult(false, MILLISECOND, now + HEALTHY);
+        now += HEALTHY;
+        eject(failing, now);
+        assertChosen(second, now + BASE_EJECTION - 1);
+        assertChosen(first, now + BASE_EJECTION, "The ejection time was not reset");
+    }
+
+    /**
+     * Tests that ejections are ignored when every instance is ejected (so requests are still routed).
+     */
+    @Test
+    void testEjectionsAreIgnoredWhenEveryInstanceIsEjected() {
+        final var cheaper = cheaperFirst();
+        eject(cheaper, NOW);
+        eject(instance(second), NOW);
+
+        assertChosen(first, NOW);
+    }
+
+
+    /**
+     * Returns the instance of the given {@code server}.
+     *
+     * @param server The {@link Server}.
+     * @return The {@link RouteBalancer.Instance}.
+     */
+    private RouteBalancer.Instance instance(final Server server) {
+        return balancer.choose(List.of(server), NOW);
+    }
+
+    /**
+     * Makes the {@link #first} instance cheaper than the {@link #second} one.
+     *
+     * @return The instance of the {@link #first} server.
+     */
+    private RouteBalancer.Instance cheaperFirst() {
+        final var instance = instance(first);
+        instance.onResult(false, MILLISECOND, NOW);
+        instance(second).onResult(false, 100 * MILLISECOND, NOW);
+        return instance;
+    }
+
+    /**
+     * Ejects the given {@code instance} by failing the configured amount of consecutive calls.
+     *
+     * @param instance The {@link RouteBalancer.Instance}.
+     * @param now      The instant of the failures.
+     */
+    private static void eject(final RouteBalancer.Instance instance, final long now) {
+        for (var i = 0; i < CONSECUTIVE_FAILURES; i++) {
+            instance.onResult(true, 0, now);
+        }
+    }
+
+    /**
+     * Asserts that the given {@code server} is chosen every time at the given instant.
+     *
+     * @param server The {@link Server} that must be chosen.
+     * @param now    The instant of the choices.
+     */
+    private void assertChosen(final Server server, final long now) {
+        assertChosen(server, now, "The wrong instance was chosen");
+    }
+
+    /**
+     * Asserts that the given {@code server} is chosen every time at the given instant.
+     *
+     * @param server  The {@link Server} that must be chosen.
+     * @param now     The instant of the choices.
+     * @param message The message of the assertion.
+     */
+    private void assertChosen(final Server server, final long now, final String message) {
+        for (var i = 0; i < CHOICES; i++) {
+            Assertions.assertSame(server, balancer.choose(servers, now).getServer(), message);
+        }
+    }
+
+    /**
+     * @return The amount of ejections reported to the {@link #meterRegistry}.
+     */
+    private double ejections() {
+        return meterRegistry.get("gateway.load-balancer.ejections").counter().count();
+    }
+}
@@ -0,0 +1,266 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import ar.edu.itba.cep.api_gateway.security.bearer.BearerTokenAuthentication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link RateLimitFilter} (i.e how requests are keyed and how rejected requests are answered).
+ * Each key can perform a single request per minute.
+ */
+class RateLimitFilterTest {
+
+    /**
+     * The id of the rate limited route.
+     */
+    private static final String LIMITED_ROUTE = "limited";
+
+    /**
+     * The address of the proxy in front of the gateway.
+     */
+    private static final InetSocketAddress PROXY = new InetSocketAddress("10.0.0.1", 40000);
+
+    /**
+     * A {@link RemoteAddressResolver} that takes the connection's address (i.e no proxy is trusted).
+     */
+    private static final RemoteAddressResolver CONNECTION_ADDRESS = new RemoteAddressResolver() {
+    };
+
+    /**
+     * A {@link RemoteAddressResolver} that never knows the client address.
+     */
+    private static final RemoteAddressResolver UNKNOWN_ADDRESS = new RemoteAddressResolver() {
+        @Override
+        public InetSocketAddress resolve(final ServerWebExchange exchange) {
+            return null;
+        }
+    };
+
+
+    /**
+     * The {@link MeterRegistry} of the filter.
+     */
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    /**
+     * The amount of requests that passed the filter.
+     */
+    private final AtomicInteger passed = new AtomicInteger();
+
+
+    /**
+     * Tests that authenticated requests are keyed by user, no matter their address.
+     */
+    @Test
+    void testAuthenticatedRequestsAreKeyedByUser() {
+        final var filter = filter(CONNECTION_ADDRESS);
+        Assertions.assertTrue(send(filter, request(new InetSocketAddress("10.0.0.2", 1)), Optional.of("alice")));
+        Assertions.assertFalse(
+                send(filter, request(new InetSocketAddress("10.0.0.3", 1)), Optional.of("alice")),
+                "The same user from another address must share the limit"
+        );
+        Assertions.assertTrue(
+                send(filter, request(new InetSocketAddress("10.0.0.2", 1)), Optional.of("bob")),
+                "Another user from the same address must not share the limit"
+        );
+    }
+
+    /**
+     * Tests that anonymous requests are keyed by the connection's address (ignoring its port)
+     * when there are no trusted proxies, so the 'X-Forwarded-For' header can not be used to choose the key.
+     */
+    @Test
+    void testAnonymousRequestsAreKeyedByAddress() {
+        final var filter = filter(CONNECTION_ADDRESS);
+        Assertions.assertTrue(send(filter, request(PROXY, "1.1.1.1"), Optional.empty()));
+        Assertions.assertFalse(
+                send(filter, request(new InetSocketAddress("10.0.0.1", 40001), "2.2.2.2"), Optional.empty()),
+                "A forwarded address was trusted"
+        );
+        Assertions.assertTrue(send(filter, request(new InetSocketAddress("10.0.0.2", 1)), Optional.empty()));
+    }
+
+    /**
+     * Tests that anonymous requests are keyed by the address appended by the trusted proxy,
+     * and that the addresses set by the client itself are ignored.
+     */
+    @Test
+    void testTrustedProxies() {
+        final var filter = filter(XForwardedRemoteAddressResolver.maxTrustedIndex(1));
+        Assertions.assertTrue(send(filter, request(PROXY, "1.1.1.1"), Optional.empty()));
+        Assertions.assertTrue(
+                send(filter, request(PROXY, "2.2.2.2"), Optional.empty()),
+                "Clients behind the same proxy must not share the limit"
+        );
+        Assertions.assertFalse(
+                send(filter, request(PROXY, "3.3.3.3, 1.1.1.1"), Optional.empty()),
+                "An address set by the client was used as key"
+        );
+    }
+
+    /**
+     * Tests that anonymous requests whose address is not known share a single key.
+     */
+    @Test
+    void testUnknownAddresses() {
+        final var filter = filter(UNKNOWN_ADDRESS);
+        Assertions.assertTrue(send(filter, request(PROXY), Optional.empty()));
+        Assertions.assertFalse(send(filter, request(PROXY), Optional.empty()));
+    }
+
+    /**
+     * Tests that rejected requests get a 429 response with a 'Retry-After' header (rounded up to seconds),
+     * without being routed, and that they are counted.
+     */
+    @Test
+    void testRejection() {
+        final var filter = filter(CONNECTION_ADDRESS);
+        send(filter, request(PROXY), Optional.empty());
+        final var exchange = MockServerWebExchange.from(request(PROXY));
+        filter(filter, exchange, Optional.empty());
+
+        Assertions.assertEquals(1, passed.get(), "The rejected request was routed");
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        final var retryAfter = Long.parseLong(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(retryAfter > 58 && retryAfter <= 60, "Unexpected 'Retry-After': " + retryAfter);
+        Assertions.assertEquals(
+                1,
+                meterRegistry.get("gateway.rate-limit.rejected").tag("route", LIMITED_ROUTE).counter().count()
+        );
+    }
+
+    /**
+     * Tests that requests to routes without limits are never rejected.
+     */
+    @Test
+    void testRoutesWithoutLimits() {
+        final var filter = filter(CONNECTION_ADDRESS);
+        for (var i = 0; i < 10; i++) {
+            final var exchange = MockServerWebExchange.from(request(PROXY));
+            exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route("other"));
+            filter.filter(exchange, ignored -> {
+                passed.incrementAndGet();
+                return Mono.empty();
+            }).block();
+        }
+        Assertions.assertEquals(10, passed.get());
+    }
+
+    /**
+     * Tests that the 'Retry-After' seconds are rounded up, so clients never retry before a token is available.
+     */
+    @Test
+    void testRetryAfterRounding() {
+        final var second = TimeUnit.SECONDS.toNanos(1);
+        Assertions.assertEquals(1, RateLimitFilter.retryAfterSeconds(1));
+        Assertions.assertEquals(1, RateLimitFilter.retryAfterSeconds(second));
+        Assertions.assertEquals(2, RateLimitFilter.retryAfterSeconds(second + 1));
+        Assertions.assertEquals(60, RateLimitFilter.retryAfterSeconds(60 * second - 1));
+    }
+
+
+    /**
+     * Creates a {@link RateLimitFilter} that limits the {@link #LIMITED_ROUTE} to one request per minute.
+     *
+     * @param remoteAddressResolver The {@link RemoteAddressResolver} of the filter.
+     * @return The {@link RateLimitFilter}.
+     */
+    private RateLimitFilter filter(final RemoteAddressResolver remoteAddressResolver) {
+        final var buckets = new TokenBuckets(
+                LIMITED_ROUTE,
+                1,
+                1,
+                Duration.ofMinutes(1),
+                Duration.ofMinutes(1),
+                100,
+                meterRegistry
+        );
+        return new RateLimitFilter(Map.of(LIMITED_ROUTE, buckets), remoteAddressResolver, meterRegistry);
+    }
+
+    /**
+     * Sends the given {@code request} to the {@link #LIMITED_ROUTE} through the given {@code filter}.
+     *
+     * @param filter   The {@link RateLimitFilter}.
+     * @param request  The {@link MockServerHttpRequest}.
+     * @param username The username of the authenticated user that performs the request (empty if anonymous).
+     * @return {@code true} if the request passed the filter, or {@code false} if it was rejected.
+     */
+    private boolean send(
+            final RateLimitFilter filter,
+            final MockServerHttpRequest request,
+            final Optional<String> username) {
+        final var before = passed.get();
+        filter(filter, MockServerWebExchange.from(request), username);
+        return passed.get() > before;
+    }
+
+    /**
+     * Filters the given {@code exchange}, routed to the {@link #LIMITED_ROUTE}.
+     *
+     * @param filter   The {@link RateLimitFilter}.
+     * @param exchange The {@link MockServerWebExchange}.
+     * @param username The username of the authenticated user that performs the request (empty if anonymous).
+     */
+    private void filter(
+            final RateLimitFilter filter,
+            final MockServerWebExchange exchange,
+            final Optional<String> username) {
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route(LIMITED_ROUTE));
+        final var result = filter.filter(exchange, ignored -> {
+            passed.incrementAndGet();
+            return Mono.empty();
+        });
+        username
+                .map(user -> new BearerTokenAuthentication(UUID.randomUUID(), user, List.of()))
+                .map(authentication -> result.subscriberContext(
+                        ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .orElse(result)
+                .block();
+    }
+
+    /**
+     * Creates a GET request.
+     *
+     * @param remoteAddress The address of the connection.
+     * @param forwardedFor  The values of the 'X-Forwarded-For' header (if any).
+     * @return The {@link MockServerHttpRequest}.
+     */
+    private static MockServerHttpRequest request(final InetSocketAddress remoteAddress, final String... forwardedFor) {
+        return MockServerHttpRequest.get("http://gateway/playground")
+                .remoteAddress(remoteAddress)
+                .header(XForwardedRemoteAddressResolver.X_FORWARDED_FOR, forwardedFor)
+                .build();
+    }
+
+    /**
+     * Creates a {@link Route} with the given {@code id}.
+     *
+     * @param id The route id.
+     * @return The {@link Route}.
+     */
+    private static Route route(final String id) {
+        return Route.async().id(id).uri("http://service").predicate(exchange -> true).build();
+    }
+}
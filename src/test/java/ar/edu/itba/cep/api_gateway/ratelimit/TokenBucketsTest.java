@@ -0,0 +1,152 @@
+package ar.edu.itba.cep.api_gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link TokenBuckets} (i.e the generic cell rate algorithm arithmetic).
+ */
+class TokenBucketsTest {
+
+    /**
+     * The instant used as "now" by the tests, in nanoseconds.
+     */
+    private static final long NOW = 1_000_000_000L;
+
+    /**
+     * The time that takes to replenish one token (one request per second).
+     */
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The burst capacity of the buckets.
+     */
+    private static final int BURST = 3;
+
+    /**
+     * The key used by the tests.
+     */
+    private static final String KEY = "user";
+
+
+    /**
+     * Tests that a full bucket allows a burst of its capacity, and that the next request must wait
+     * exactly one emission interval.
+     */
+    @Test
+    void testBurst() {
+        final var buckets = buckets();
+        for (var i = 0; i < BURST; i++) {
+            Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW), "The burst was not allowed");
+        }
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, NOW), "The request after the burst must wait");
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, NOW), "A rejected request must not take a token");
+    }
+
+    /**
+     * Tests that tokens are given back one per emission interval, and that the wait shrinks as time passes.
+     */
+    @Test
+    void testRefill() {
+        final var buckets = buckets();
+        drain(buckets, NOW);
+
+        Assertions.assertEquals(INTERVAL / 4, buckets.tryAcquire(KEY, NOW + INTERVAL * 3 / 4));
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW + INTERVAL), "The token was not given back");
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, NOW + INTERVAL));
+
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW + 3 * INTERVAL));
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW + 3 * INTERVAL), "Two tokens must be given back");
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, NOW + 3 * INTERVAL));
+    }
+
+    /**
+     * Tests that a bucket is never filled over its capacity, no matter how long it is not used.
+     */
+    @Test
+    void testRefillIsCapped() {
+        final var buckets = buckets();
+        drain(buckets, NOW);
+        final var later = NOW + 100 * INTERVAL;
+        for (var i = 0; i < BURST; i++) {
+            Assertions.assertEquals(0, buckets.tryAcquire(KEY, later));
+        }
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, later), "The bucket was filled over its capacity");
+    }
+
+    /**
+     * Tests that each key has its own bucket.
+     */
+    @Test
+    void testKeysAreIndependent() {
+        final var buckets = buckets();
+        drain(buckets, NOW);
+        Assertions.assertEquals(0, buckets.tryAcquire("other", NOW), "Another key was limited");
+        Assertions.assertEquals(2, buckets.size());
+    }
+
+    /**
+     * Tests that each replica enforces its share of the limits (i.e a slower rate and a smaller burst),
+     * and that the whole limits are enforced again with a single replica.
+     */
+    @Test
+    void testReplicas() {
+        final var buckets = buckets();
+        buckets.setReplicas(2);
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW));
+        Assertions.assertEquals(2 * INTERVAL, buckets.tryAcquire(KEY, NOW), "The burst was not divided");
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, NOW + 2 * INTERVAL), "The rate was not divided");
+
+        buckets.setReplicas(1);
+        final var later = NOW + 100 * INTERVAL;
+        drain(buckets, later);
+        Assertions.assertEquals(INTERVAL, buckets.tryAcquire(KEY, later));
+    }
+
+    /**
+     * Tests that the instants are compared in an overflow safe way,
+     * as {@link System#nanoTime()} can be any value (even one that overflows while the gateway runs).
+     */
+    @Test
+    void testNanoTimeOverflow() {
+        final var buckets = buckets();
+        final var beforeOverflow = Long.MAX_VALUE - INTERVAL / 2;
+        drain(buckets, beforeOverflow);
+        Assertions.assertEquals(INTERVAL / 2, buckets.tryAcquire(KEY, beforeOverflow + INTERVAL / 2));
+        Assertions.assertEquals(0, buckets.tryAcquire(KEY, beforeOverflow + INTERVAL));
+    }
+
+
+    /**
+     * Creates the {@link TokenBuckets} used by the tests.
+     *
+     * @return The {@link TokenBuckets}.
+     */
+    private static TokenBuckets buckets() {
+        return new TokenBuckets(
+                "test",
+                BURST,
+                1,
+                Duration.ofSeconds(1),
+                Duration.ofMinutes(1),
+                100,
+                new SimpleMeterRegistry()
+        );
+    }
+
+    /**
+     * Takes all the tokens of the bucket of the {@link #KEY}, at the given instant.
+     *
+     * @param buckets The {@link TokenBuckets}.
+     * @param now     The instant.
+     */
+    private static void drain(final TokenBuckets buckets, final long now) {
+        while (buckets.tryAcquire(KEY, now) == 0) {
+            // Take the next token
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package ar.edu.itba.cep.api_gateway.resilience;
+
+import ar.edu.itba.cep.api_gateway.StubBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the bulkheads and circuit breakers of the routes against a deliberately slow (or failing) stub backend.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "eureka.client.enabled=false",
+                "spring.zipkin.enabled=false",
+                "resilience.routes.users-service.bulkhead.max-concurrent-requests="
+                        + ResilienceFilterTest.MAX_CONCURRENT,
+                "resilience.routes.evaluations-service.circuit-breaker.sliding-window-size=4",
+                "resilience.routes.evaluations-service.circuit-breaker.minimum-calls=4",
+                "resilience.routes.evaluations-service.circuit-breaker.slow-call-rate-threshold=50",
+                "resilience.routes.evaluations-service.circuit-breaker.slow-call-duration=200ms",
+                "resilience.routes.evaluations-service.circuit-breaker.open-duration=1s",
+                "resilience.routes.evaluations-service.circuit-breaker.half-open-calls=2",
+                "resilience.routes.lti-service.circuit-breaker.sliding-window-size=4",
+                "resilience.routes.lti-service.circuit-breaker.minimum-calls=4",
+                "resilience.routes.lti-service.circuit-breaker.open-duration=1m",
+        }
+)
+@ContextConfiguration(initializers = ResilienceFilterTest.BackendInitializer.class)
+class ResilienceFilterTest {
+
+    /**
+     * The maximum amount of concurrent requests to the users-service route.
+     */
+    /* package */ static final int MAX_CONCURRENT = 3;
+
+    /**
+     * The routes served by the stub backend.
+     */
+    private static final List<String> STUB_ROUTES = List.of("users-service", "evaluations-service", "lti-service");
+
+    /**
+     * The delay of the stub backend responses.
+     */
+    private static final AtomicReference<Duration> DELAY = new AtomicReference<>(Duration.ZERO);
+    /**
+     * The amount of requests received by the stub backend.
+     */
+    private static final AtomicInteger RECEIVED = new AtomicInteger();
+    /**
+     * The amount of requests the stub backend is currently handling.
+     */
+    private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+    /**
+     * The maximum amount of requests the stub backend handled at the same time.
+     */
+    private static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+
+    /**
+     * The stub backend (which serves every route).
+     */
+    private static StubBackend backend;
+
+
+    /**
+     * The gateway port.
+     */
+    @LocalServerPort
+    private int port;
+    /**
+     * The {@link MeterRegistry} to which the routes statistics are reported.
+     */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+
+    /**
+     * Stops the stub backend.
+     */
+    @AfterAll
+    static void stopBackend() {
+        if (backend != null) {
+            backend.stop();
+        }
+    }
+
+
+    /**
+     * Tests that the bulkhead caps the amount of concurrent requests to a slow route,
+     * rejecting the exceeding ones right away.
+     */
+    @Test
+    void testBulkheadRejectsExceedingRequests() {
+        DELAY.set(Duration.ofMillis(500));
+        MAX_IN_FLIGHT.set(0);
+        final var requests = 10;
+        final var statuses = Flux.range(0, requests)
+                .flatMap(i -> get("/users/" + i), requests)
+                .map(ClientResponse::statusCode)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .block(Duration.ofSeconds(10));
+
+        Assertions.assertEquals(
+                Map.of(
+                        HttpStatus.OK, (long) MAX_CONCURRENT,
+                        HttpStatus.SERVICE_UNAVAILABLE, (long) requests - MAX_CONCURRENT
+                ),
+                statuses,
+                "Only the requests that fit in the bulkhead must be routed"
+        );
+        Assertions.assertTrue(MAX_IN_FLIGHT.get() <= MAX_CONCURRENT, "The bulkhead let too many requests through");
+        Assertions.assertEquals(
+                requests - MAX_CONCURRENT,
+                meterRegistry.get("gateway.bulkhead.rejected").tag("route", "users-service").counter().count()
+        );
+    }
+
+    /**
+     * Tests that the circuit breaker opens when calls are slow, failing fast while open,
+     * and closes again once the half-open probe calls are fast.
+     */
+    @Test
+    void testCircuitBreakerOpensOnSlowCallsAndRecovers() throws InterruptedException {
+        DELAY.set(Duration.ofMillis(300));
+        for (var i = 0; i < 4; i++) {
+            Assertions.assertEquals(HttpStatus.OK, status("/solutions/" + i), "Slow calls must still be routed");
+        }
+        Assertions.assertEquals("open", state("evaluations-service"));
+
+        final var received = RECEIVED.get();
+        final var rejected = get("/solutions/fail-fast").block(Duration.ofSeconds(1));
+        Assertions.assertNotNull(rejected);
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.statusCode());
+        Assertions.assertEquals("1", rejected.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(received, RECEIVED.get(), "Requests must not be routed while the circuit is open");
+
+        DELAY.set(Duration.ZERO);
+        Thread.sleep(1100);
+        Assertions.assertEquals(HttpStatus.OK, status("/solutions/probe-1"));
+        Assertions.assertEquals("half-open", state("evaluations-service"));
+        Assertions.assertEquals(HttpStatus.OK, status("/solutions/probe-2"));
+        Assertions.assertEquals("closed", state("evaluations-service"));
+        Assertions.assertEquals(HttpStatus.OK, status("/solutions/closed"));
+    }
+
+    /**
+     * Tests that the circuit breaker opens when calls fail.
+     */
+    @Test
+    void testCircuitBreakerOpensOnFailures() {
+        DELAY.set(Duration.ZERO);
+        for (var i = 0; i < 4; i++) {
+            Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, status("/lti/admin/" + i));
+        }
+        Assertions.assertEquals("open", state("lti-service"));
+        final var received = RECEIVED.get();
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, status("/lti/admin/fail-fast"));
+        Assertions.assertEquals(received, RECEIVED.get(), "Requests must not be routed while the circuit is open");
+        Assertions.assertEquals(
+                1,
+                meterRegistry.get("gateway.circuit-breaker.rejected").tag("route", "lti-service").counter().count()
+        );
+    }
+
+
+    /**
+     * Performs a GET request to the gateway.
+     *
+     * @param path The request path.
+     * @return A {@link Mono} with the {@link ClientResponse} (whose body is released).
+     */
+    private Mono<ClientResponse> get(final String path) {
+        return WebClient.create("http://localhost:" + port)
+                .get()
+                .uri(path)
+                .exchange()
+                .flatMap(response -> response.bodyToMono(Void.class).thenReturn(response));
+    }
+
+    /**
+     * Performs a GET request to the gateway, returning the response status.
+     *
+     * @param path The request path.
+     * @return The response {@link HttpStatus}.
+     */
+    private HttpStatus status(final String path) {
+        final var response = get(path).block(Duration.ofSeconds(5));
+        Assertions.assertNotNull(response);
+        return response.statusCode();
+    }
+
+    /**
+     * Returns the state of the circuit breaker of the given route, as reported by the state gauges.
+     *
+     * @param routeId The route id.
+     * @return The tag of the current state.
+     */
+    private String state(final String routeId) {
+        return meterRegistry.get("gateway.circuit-breaker.state")
+                .tag("route", routeId)
+                .gauges()
+                .stream()
+                .filter(gauge -> gauge.value() == 1)
+                .map(gauge -> gauge.getId().getTag("state"))
+                .findFirst()
+                .orElseThrow();
+    }
+
+
+    /**
+     * An {@link ApplicationContextInitializer} that starts the stub backend, routing every stubbed route to it
+     * (before the context, so the routes already point to it).
+     * The backend answers with a 500 Internal Server Error to LTI requests, and with a 200 OK to the others,
+     * after the {@link #DELAY}.
+     */
+    /* package */ static final class BackendInitializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(final ConfigurableApplicationContext context) {
+            backend = StubBackend.start(STUB_ROUTES, (request, response) -> {
+                RECEIVED.incrementAndGet();
+                MAX_IN_FLIGHT.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+                final var status = request.uri().startsWith("/lti/")
+                        ? HttpResponseStatus.INTERNAL_SERVER_ERROR
+                        : HttpResponseStatus.OK;
+                return Mono.delay(DELAY.get())
+                        .doFinally(ignored -> IN_FLIGHT.decrementAndGet())
+                        .then(response.status(status).sendString(Mono.just("stub")).then());
+            });
+        }
+    }
+}
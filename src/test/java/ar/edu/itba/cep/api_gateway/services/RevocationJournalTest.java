@@ -0,0 +1,171 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests that the {@link RevocationJournal} keeps every revoked token across restarts,
+ * while the file grows (i.e is remapped) and is compacted.
+ */
+class RevocationJournalTest {
+
+    /**
+     * The amount of records the journal is pre-allocated with (small, so it must grow).
+     */
+    private static final int MINIMUM_RECORDS = 4;
+
+
+    /**
+     * Tests that tokens appended while the journal grows, and after it was compacted, are replayed after a restart,
+     * and that expired tokens are dropped when compacting.
+     */
+    @Test
+    void testGrowCompactAndReplay() throws IOException {
+        final var directory = Files.createTempDirectory("revocation-journal-test");
+        final var path = directory.resolve("revoked-tokens.journal");
+        try {
+            final var now = System.currentTimeMillis();
+            final var expiration = now + Duration.ofHours(1).toMillis();
+            final var table = new RevokedTokensTable(MINIMUM_RECORDS);
+            final var journal = open(path, table);
+
+            final var revoked = new ArrayList<UUID>();
+            revoke(table, journal, 1000, expiration, revoked);
+            final var expired = UUID.randomUUID();
+            table.add(expired.getMostSignificantBits(), expired.getLeastSignificantBits(), now + 50, now);
+            journal.append(expired.getMostSignificantBits(), expired.getLeastSignificantBits(), now + 50);
+            sleep(Duration.ofMillis(100));
+
+            Assertions.assertEquals(revoked.size(), journal.compact(), "Only the live tokens must be kept");
+            revoke(table, journal, 1000, expiration, revoked); // Grows again after compacting
+            journal.destroy();
+
+            final var restored = new RevokedTokensTable(MINIMUM_RECORDS);
+            final var restarted = open(path, restored);
+            try {
+                Assertions.assertEquals(revoked.size(), restored.size(), "Tokens were lost");
+                final var afterRestart = System.currentTimeMillis();
+                revoked.forEach(id -> Assertions.assertTrue(
+                        restored.contains(id.getMostSignificantBits(), id.getLeastSignificantBits(), afterRestart),
+                        "A revoked token was not replayed"
+                ));
+            } finally {
+                restarted.destroy();
+            }
+        } finally {
+            try (final var files = Files.list(directory)) {
+                for (final var file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Tests that when the compacted journal can not replace the actual one, the actual journal is kept and reopened,
+     * so tokens appended afterwards are still written and replayed after a restart.
+     */
+    @Test
+    void testFailedReplaceKeepsJournal() throws IOException {
+        final var directory = Files.createTempDirectory("revocation-journal-test");
+        final var path = directory.resolve("revoked-tokens.journal");
+        try {
+            final var expiration = System.currentTimeMillis() + Duration.ofHours(1).toMillis();
+            final var table = new RevokedTokensTable(MINIMUM_RECORDS);
+            final var journal = new RevocationJournal(path, table, Duration.ofHours(1), MINIMUM_RECORDS) {
+                @Override
+                /* package */ void replace(final Path compacted) throws IOException {
+                    throw new IOException("Forced replace failure");
+                }
+            };
+            journal.afterPropertiesSet();
+
+            final var revoked = new ArrayList<UUID>();
+            revoke(table, journal, 10, expiration, revoked);
+            Assertions.assertThrows(IOException.class, journal::compact);
+            Assertions.assertFalse(
+                    Files.exists(path.resolveSibling(path.getFileName() + ".compacting")),
+                    "The compacted journal was not deleted"
+            );
+            revoke(table, journal, 10, expiration, revoked); // Must be appended to the reopened journal
+            journal.destroy();
+
+            final var restored = new RevokedTokensTable(MINIMUM_RECORDS);
+            final var restarted = open(path, restored);
+            try {
+                Assertions.assertEquals(revoked.size(), restored.size(), "Tokens were lost");
+            } finally {
+                restarted.destroy();
+            }
+        } finally {
+            try (final var files = Files.list(directory)) {
+                for (final var file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+
+    /**
+     * Opens (and replays) a journal in the given path.
+     *
+     * @param path  The path of the journal file.
+     * @param table The {@link RevokedTokensTable} into which the journal is replayed.
+     * @return The {@link RevocationJournal}.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static RevocationJournal open(final Path path, final RevokedTokensTable table) throws IOException {
+        final var journal = new RevocationJournal(path, table, Duration.ofHours(1), MINIMUM_RECORDS);
+        journal.afterPropertiesSet();
+        return journal;
+    }
+
+    /**
+     * Revokes the given amount of new tokens, storing them in the table and in the journal.
+     *
+     * @param table      The {@link RevokedTokensTable}.
+     * @param journal    The {@link RevocationJournal}.
+     * @param amount     The amount of tokens to be revoked.
+     * @param expiration The expiration of the revocations.
+     * @param revoked    A {@link List} to which the revoked tokens are added.
+     */
+    private static void revoke(
+            final RevokedTokensTable table,
+            final RevocationJournal journal,
+            final int amount,
+            final long expiration,
+            final List<UUID> revoked) {
+        final var now = System.currentTimeMillis();
+        for (var i = 0; i < amount; i++) {
+            final var id = UUID.randomUUID();
+            table.add(id.getMostSignificantBits(), id.getLeastSignificantBits(), expiration, now);
+            journal.append(id.getMostSignificantBits(), id.getLeastSignificantBits(), expiration);
+            revoked.add(id);
+        }
+    }
+
+    /**
+     * Sleeps for the given {@code duration}.
+     *
+     * @param duration The {@link Duration}.
+     */
+    private static void sleep(final Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Assertions.fail("Interrupted");
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the propagation of revoked tokens between several in-process replicas,
+ * reporting the convergence time and the bandwidth used for a large revocation burst.
+ */
+class RevocationPropagationTest {
+
+    /**
+     * The {@link Logger}.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationPropagationTest.class);
+
+    /**
+     * The secret shared by the replicas.
+     */
+    private static final String SECRET = "test-secret";
+
+    /**
+     * The amount of tokens revoked in the burst (e.g every session at the end of an exam).
+     */
+    private static final int BURST_SIZE = 100_000;
+
+    /**
+     * The maximum amount of time to wait for the replicas to converge.
+     */
+    private static final Duration CONVERGENCE_TIMEOUT = Duration.ofSeconds(30);
+
+
+    /**
+     * The running replicas.
+     */
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+
+
+    @AfterEach
+    void stopReplicas() {
+        replicas.forEach(Replica::stop);
+    }
+
+
+    /**
+     * Tests that a revocation burst in one replica reaches a replica that is running (through pushes),
+     * and a replica that was down during the burst (through anti-entropy).
+     */
+    @Test
+    void testBurstConvergence() {
+        final var origin = startReplica();
+        final var running = startReplica();
+
+        final var expiration = Instant.now().plus(Duration.ofHours(1));
+        final var tokens = new ArrayList<UUID>(BURST_SIZE);
+        for (var i = 0; i < BURST_SIZE; i++) {
+            tokens.add(UUID.randomUUID());
+        }
+        final var burstStart = System.nanoTime();
+        tokens.forEach(token -> origin.manager.invalidateToken(token, expiration));
+        awaitConvergence(() -> running.table.size() == BURST_SIZE);
+        final var pushConvergence = Duration.ofNanos(System.nanoTime() - burstStart);
+
+        final var lateStart = System.nanoTime();
+        final var late = startReplica();
+        awaitConvergence(() -> late.table.size() == BURST_SIZE);
+        final var antiEntropyConvergence = Duration.ofNanos(System.nanoTime() - lateStart);
+
+        final var now = System.currentTimeMillis();
+        for (final var token : tokens) {
+            final var msb = token.getMostSignificantBits();
+            final var lsb = token.getLeastSignificantBits();
+            Assertions.assertTrue(running.table.contains(msb, lsb, now), "Token not propagated through push");
+            Assertions.assertTrue(late.table.contains(msb, lsb, now), "Token not propagated through anti-entropy");
+        }
+
+        LOGGER.info(
+                "Revoked {} tokens. Push convergence: {} ms (origin sent {} bytes)." +
+                        " Anti-entropy convergence: {} ms (late replica received {} bytes)",
+                BURST_SIZE,
+                pushConvergence.toMillis(),
+                (long) origin.bytes("sent"),
+                antiEntropyConvergence.toMillis(),
+                (long) late.bytes("received")
+        );
+    }
+
+    /**
+     * Tests that requests without the cluster secret are rejected.
+     */
+    @Test
+    void testSecretIsRequired() {
+        final var replica = startReplica();
+        final var status = WebClient.create()
+                .get()
+                .uri(replica.uri.resolve(RevocationPropagator.REVOCATIONS_PATH))
+                .exchange()
+                .map(response -> response.statusCode())
+                .block(Duration.ofSeconds(5));
+        Assertions.assertEquals(HttpStatus.FORBIDDEN, status, "Requests without the secret must be rejected");
+    }
+
+
+    /**
+     * Starts a new replica, which will be included in the peers of every replica.
+     *
+     * @return The started {@link Replica}.
+     */
+    private Replica startReplica() {
+        final var replica = new Replica(replicas);
+        replicas.add(replica);
+        return replica;
+    }
+
+    /**
+     * Waits until the given {@code condition} holds, failing if it does not within the convergence timeout.
+     *
+     * @param condition The condition.
+     */
+    private static void awaitConvergence(final BooleanSupplier condition) {
+        final var deadline = System.nanoTime() + CONVERGENCE_TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "Replicas did not converge");
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Assertions.fail("Interrupted while waiting for convergence");
+            }
+        }
+    }
+
+
+    /**
+     * An in-process replica, with its own revoked tokens and HTTP server.
+     */
+    private static final class Replica {
+
+        /**
+         * The revoked tokens.
+         */
+        private final RevokedTokensTable table;
+        /**
+         * The manager through which tokens are revoked.
+         */
+        private final InvalidBearerTokenManager manager;
+        /**
+         * The propagator.
+         */
+        private final RevocationPropagator propagator;
+        /**
+         * The registry in which the propagation metrics are reported.
+         */
+        private final SimpleMeterRegistry meterRegistry;
+        /**
+         * The cluster listener.
+         */
+        private final RevocationClusterServer server;
+        /**
+         * The base {@link URI} of this replica.
+         */
+        private final URI uri;
+
+
+        /**
+         * Constructor.
+         *
+         * @param replicas All the replicas (the peers are the ones in this list, excluding this replica).
+         */
+        private Replica(final List<Replica> replicas) {
+            final var properties = new RevocationProperties();
+            final var cluster = properties.getCluster();
+            cluster.setEnabled(true);
+            cluster.setSecret(SECRET);
+            cluster.setFlushInterval(Duration.ofMillis(50));
+            cluster.setAntiEntropyInterval(Duration.ofMillis(200));
+
+            this.table = new RevokedTokensTable(properties.getExpectedTokens());
+            this.meterRegistry = new SimpleMeterRegistry();
+            final RevocationPeers peers = () -> replicas.stream()
+                    .filter(replica -> replica != this)
+                    .map(replica -> replica.uri)
+                    .collect(Collectors.toList());
+            this.propagator = new RevocationPropagator(
+                    table,
+                    List.of(),
+                    Optional.empty(),
+                    peers,
+                    WebClient.create(),
+                    cluster,
+                    meterRegistry
+            );
+            this.manager = new InvalidBearerTokenManager(
+                    properties,
+                    table,
+                    List.of(),
+                    Optional.of(propagator),
+                    Optional.empty()
+            );
+
+            this.server = new RevocationClusterServer(
+                    RevocationClusterConfig.revocationClusterRoutes(propagator),
+                    Optional.of("localhost"),
+                    0
+            );
+            server.afterPropertiesSet();
+            this.uri = URI.create("http://localhost:" + server.getPort());
+            propagator.afterPropertiesSet();
+        }
+
+
+        /**
+         * Returns the amount of bytes transferred in the given direction.
+         *
+         * @param direction The direction ("sent" or "received").
+         * @return The amount of bytes.
+         */
+        private double bytes(final String direction) {
+            return meterRegistry.get("revocation.propagation.bytes").tag("direction", direction).counter().count();
+        }
+
+        /**
+         * Stops this replica.
+         */
+        private void stop() {
+            propagator.destroy();
+            server.destroy();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package ar.edu.itba.cep.api_gateway.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the {@link RevokedTokensTable}.
+ */
+class RevokedTokensTableTest {
+
+    /**
+     * The instant used as "now" by the tests, in milliseconds since the epoch.
+     */
+    private static final long NOW = 1_000_000L;
+
+    /**
+     * An expiration far in the future.
+     */
+    private static final long LATER = NOW + 3_600_000L;
+
+    /**
+     * The amount of entries with which tables are pre-sized (i.e 32 slots, holding up to 16 entries without growing).
+     */
+    private static final int EXPECTED_ENTRIES = 8;
+
+
+    /**
+     * Tests that added tokens are contained until their revocation expires, and that other tokens are not.
+     */
+    @Test
+    void testAddAndContains() {
+        final var table = new RevokedTokensTable(EXPECTED_ENTRIES);
+        final var revoked = UUID.randomUUID();
+        final var other = UUID.randomUUID();
+
+        Assertions.assertTrue(add(table, revoked, NOW + 10, NOW), "Adding a new token must change the table");
+        Assertions.assertTrue(contains(table, revoked, NOW));
+        Assertions.assertTrue(contains(table, revoked, NOW + 9));
+        Assertions.assertFalse(contains(table, revoked, NOW + 10), "The revocation must expire");
+        Assertions.assertFalse(contains(table, other, NOW));
+        Assertions.assertEquals(1, table.size());
+    }
+
+    /**
+     * Tests that adding an already contained token only extends its expiration (without using another slot),
+     * and that already expired revocations are not added.
+     */
+    @Test
+    void testAddExtendsExpiration() {
+        final var table = new RevokedTokensTable(EXPECTED_ENTRIES);
+        final var revoked = UUID.randomUUID();
+        add(table, revoked, NOW + 10, NOW);
+
+        Assertions.assertFalse(add(table, revoked, NOW + 5, NOW), "An earlier expiration must not change the table");
+        Assertions.assertFalse(contains(table, revoked, NOW + 10));
+        Assertions.assertTrue(add(table, revoked, NOW + 20, NOW), "A later expiration must change the table");
+        Assertions.assertTrue(contains(table, revoked, NOW + 10));
+        Assertions.assertEquals(1, table.size());
+
+        Assertions.assertFalse(add(table, UUID.randomUUID(), NOW, NOW), "Expired revocations must not be added");
+        Assertions.assertEquals(1, table.size());
+    }
+
+    /**
+     * Tests that tokens landing in the same slot are all found (following the probe sequence),
+     * and that a token that is not contained, but lands in that slot too, is not.
+     */
+    @Test
+    void testCollisions() {
+        final var table = new RevokedTokensTable(EXPECTED_ENTRIES);
+        final var colliding = colliding(table.capacity(), 4);
+        final var absent = colliding.remove(3);
+        colliding.forEach(id -> add(table, id, LATER, NOW));
+
+        colliding.forEach(id -> Assertions.assertTrue(contains(table, id, NOW), "A colliding token was not found"));
+        Assertions.assertFalse(contains(table, absent, NOW), "A colliding token that was not added was found");
+        Assertions.assertEquals(colliding.size(), table.size());
+    }
+
+    /**
+     * Tests that an expired entry in the middle of a probe sequence (i.e a tombstone, until it is purged)
+     * does not hide the entries after it, and that adding its token again reuses its slot.
+     */
+    @Test
+    void testTombstones() {
+        final var table = new RevokedTokensTable(EXPECTED_ENTRIES);
+        final var colliding = colliding(table.capacity(), 3);
+        final var first = colliding.get(0);
+        final var expired = colliding.get(1);
+        final var last = colliding.get(2);
+        add(table, first, LATER, NOW);
+        add(table, expired, NOW + 10, NOW);
+        add(table, last, LATER, NOW);
+
+        final var afterExpiration = NOW + 100;
+        Assertions.assertTrue(contains(table, first, afterExpiration));
+        Assertions.assertFalse(contains(table, expired, afterExpiration));
+        Assertions.assertTrue(contains(table, last, afterExpiration), "An expired entry hid the entries after it");
+
+        Assertions.assertTrue(add(table, expired, LATER, afterExpiration), "Revoking an expired token again failed");
+        Assertions.assertTrue(contains(table, expired, afterExpiration));
+        Assertions.assertEquals(3, table.size(), "Revoking an expired token again must reuse its slot");
+    }
+
+    /**
+     * Tests that purging removes only the expired entries, shrinking the table back (but not below its
+     * pre-sized capacity), and that the remaining entries are still found after it.
+     */
+    @Test
+    void testPurge() {
+        final var table = new RevokedTokensTable(EXPECTED_ENTRIES);
+        final var initialCapacity = table.capacity();
+        final var live = new ArrayList<UUID>();
+        final var expired = new ArrayList<UUID>();
+        for (var i = 0; i < 1000; i++) {
+            final var id = UUID.randomUUID();
+            if (i % 100 == 0) {
+                add(table, id, LATER, NOW);
+                live.add(id);
+            } else {
+                add(table, id, NOW + 10, NOW);
+                expired.add(id);
+            }
+        }
+        Assertions.assertTrue(table.capacity() > initialCapacity, "The table did not grow");
+        Assertions.assertEquals(0, table.purge(NOW), "Purging must not remove live entries");
+
+        final var afterExpiration = NOW + 100;
+        Assertions.assertEquals(expired.size(), table.purge(afterExpiration));
+        Assertions.assertEquals(live.size(), table.size());
+        Assertions.assertEquals(initialCapacity, table.capacity(), "The table did not shrink back");
+        live.forEach(id -> Assertions.assertTrue(contains(table, id, afterExpiration), "A live token was purged"));
+        expired.forEach(id -> Assertions.assertFalse(contains(table, id, NOW), "An expired token was not purged"));
+
+        final var entries = new HashMap<UUID, Long>();
+        table.forEach(afterExpiration, (msb, lsb, expiration) -> entries.put(new UUID(msb, lsb), expiration));
+        Assertions.assertEquals(live.size(), entries.size());
+        live.forEach(id -> Assertions.assertEquals(Long.valueOf(LATER), entries.get(id)));
+    }
+
+    /**
+     * Tests that lookups performed while the table grows (i.e while new tables are being published)
+     * always find the tokens that were already contained.
+     */
+    @Test
+    void testGrowthWithConcurrentReaders() throws InterruptedException {
+        final var table = new RevokedTokensTable(1);
+        final var watched = new ArrayList<UUID>();
+        for (var i = 0; i < 64; i++) {
+            final var id = UUID.randomUUID();
+            add(table, id, LATER, NOW);
+            watched.add(id);
+        }
+
+        final var stop = new AtomicBoolean();
+        final var misses = new AtomicLong();
+        final var lookups = new AtomicLong();
+        final var readers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        final var started = new CountDownLatch(readers);
+        final var threads = new ArrayList<Thread>();
+        for (var i = 0; i < readers; i++) {
+            final var thread = new Thread(() -> {
+                started.countDown();
+                while (!stop.get()) {
+                    for (final var id : watched) {
+                        if (!contains(table, id, NOW)) {
+                            misses.incrementAndGet();
+                        }
+                        lookups.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+
+        final var initialCapacity = table.capacity();
+        final var added = new ArrayList<UUID>();
+        for (var i = 0; i < 200_000; i++) {
+            final var id = UUID.randomUUID();
+            add(table, id, LATER, NOW);
+            added.add(id);
+        }
+        stop.set(true);
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertTrue(table.capacity() > initialCapacity, "The table did not grow");
+        Assertions.assertTrue(lookups.get() > 0, "The readers did not run");
+        Assertions.assertEquals(0, misses.get(), "Contained tokens were not found while the table was growing");
+        added.forEach(id -> Assertions.assertTrue(contains(table, id, NOW), "A token was lost while growing"));
+        Assertions.assertEquals(watched.size() + added.size(), table.size());
+    }
+
+
+    /**
+     * Adds the given token to the given table.
+     *
+     * @param table      The {@link RevokedTokensTable}.
+     * @param id         The token id.
+     * @param expiration The revocation expiration.
+     * @param now        The actual instant.
+     * @return Whether the table changed.
+     */
+    private static boolean add(final RevokedTokensTable table, final UUID id, final long expiration, final long now) {
+        return table.add(id.getMostSignificantBits(), id.getLeastSignificantBits(), expiration, now);
+    }
+
+    /**
+     * Indicates whether the given table contains the given token.
+     *
+     * @param table The {@link RevokedTokensTable}.
+     * @param id    The token id.
+     * @param now   The actual instant.
+     * @return Whether the token is revoked at the given instant.
+     */
+    private static boolean contains(final RevokedTokensTable table, final UUID id, final long now) {
+        return table.contains(id.getMostSignificantBits(), id.getLeastSignificantBits(), now);
+    }
+
+    /**
+     * Generates token ids that land in the same slot of a table with the given capacity.
+     *
+     * @param capacity The capacity of the table.
+     * @param amount   The amount of ids to generate.
+     * @return The colliding ids.
+     */
+    private static List<UUID> colliding(final int capacity, final int amount) {
+        final var mask = capacity - 1;
+        final var bySlot = new HashMap<Integer, List<UUID>>();
+        while (true) {
+            final var id = UUID.randomUUID();
+            final var slot = RevokedTokensTable.hash(id.getMostSignificantBits(), id.getLeastSignificantBits()) & mask;
+            final var ids = bySlot.computeIfAbsent(slot, ignored -> new ArrayList<>());
+            ids.add(id);
+            if (ids.size() == amount) {
+                return ids;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ar.edu.itba.cep.api_gateway.tracing;
+
+import brave.propagation.B3Propagation;
+import brave.propagation.TraceContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Tests the {@link LocalSamplingPropagationFactory}.
+ */
+class LocalSamplingPropagationFactoryTest {
+
+    /**
+     * The amount of traces created to check the probability.
+     */
+    private static final int TRACES = 100_000;
+
+
+    /**
+     * Tests that roughly the configured fraction of the traces that are not sampled are recorded locally.
+     */
+    @Test
+    void testRecordsFractionOfUnsampledTraces() {
+        final var factory = new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 0.1f);
+        final var random = new Random(0);
+        var recorded = 0;
+        for (var i = 0; i < TRACES; i++) {
+            if (factory.decorate(context(random.nextLong(), false)).sampledLocal()) {
+                recorded++;
+            }
+        }
+        Assertions.assertEquals(TRACES / 10d, recorded, TRACES / 100d, "Around 10% of the traces must be recorded");
+    }
+
+    /**
+     * Tests that the decision only depends on the trace id, so every span of a trace gets the same one.
+     */
+    @Test
+    void testDecisionDependsOnTraceId() {
+        final var factory = new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 0.5f);
+        final var random = new Random(0);
+        for (var i = 0; i < 1_000; i++) {
+            final var traceId = random.nextLong();
+            Assertions.assertEquals(
+                    factory.decorate(context(traceId, false)).sampledLocal(),
+                    factory.decorate(context(traceId, false)).sampledLocal()
+            );
+        }
+    }
+
+    /**
+     * Tests that sampled traces are left untouched, as they are already recorded.
+     */
+    @Test
+    void testSampledTracesAreNotChanged() {
+        final var factory = new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 1);
+        final var context = context(1, true);
+        Assertions.assertSame(context, factory.decorate(context));
+    }
+
+    /**
+     * Tests the bounds of the probability: nothing is recorded with {@code 0}, and everything with {@code 1}.
+     */
+    @Test
+    void testProbabilityBounds() {
+        final var never = new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 0);
+        final var always = new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 1);
+        final var random = new Random(0);
+        for (var i = 0; i < 1_000; i++) {
+            final var traceId = random.nextLong();
+            Assertions.assertFalse(never.decorate(context(traceId, false)).sampledLocal());
+            Assertions.assertTrue(always.decorate(context(traceId, false)).sampledLocal());
+        }
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> new LocalSamplingPropagationFactory(B3Propagation.FACTORY, 1.5f)
+        );
+    }
+
+
+    /**
+     * Creates a {@link TraceContext}.
+     *
+     * @param traceId The trace id.
+     * @param sampled Whether the trace is sampled.
+     * @return The created {@link TraceContext}.
+     */
+    private static TraceContext context(final long traceId, final boolean sampled) {
+        return TraceContext.newBuilder().traceId(traceId).spanId(1).sampled(sampled).build();
+    }
+}